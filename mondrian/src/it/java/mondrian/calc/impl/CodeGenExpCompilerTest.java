@@ -0,0 +1,143 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.calc.impl;
+
+import mondrian.calc.ExpCompiler;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+/**
+ * Test for {@link CodeGenExpCompiler}. Evaluates each expression with the
+ * default compiler and with the generating compiler, and checks that the
+ * results are the same.
+ */
+public class CodeGenExpCompilerTest extends FoodMartTestCase {
+    /**
+     * Expressions to compare. The rows include states with no sales, so
+     * that the operators see null values. Each expression has at least two
+     * operators at its root, so each is compiled to a generated calc.
+     */
+    private static final String[] EXPRESSIONS = {
+        "([Measures].[Store Sales] - [Measures].[Store Cost])"
+        + " / [Measures].[Store Sales]",
+        "[Measures].[Unit Sales] * 2 + - [Measures].[Store Cost] - 1",
+        "[Measures].[Store Sales] / ([Measures].[Unit Sales] - 100)",
+        "IIf([Measures].[Unit Sales] > 5000,"
+        + " [Measures].[Store Sales] / [Measures].[Unit Sales],"
+        + " [Measures].[Store Cost] * 1.5) + 1",
+        "IIf([Measures].[Unit Sales] > 5000,"
+        + " [Measures].[Store Sales], NULL) * 2",
+        "[Measures].[Unit Sales] >= 10000 AND [Measures].[Store Cost] < 20000",
+        "[Measures].[Unit Sales] = 0 OR NOT ([Measures].[Store Cost] <> 5)",
+        "([Measures].[Unit Sales] > 100) XOR ([Measures].[Store Cost] <= 100)",
+        "IIf([Measures].[Unit Sales] > 1000, [Measures].[Store Sales] > 10,"
+        + " [Measures].[Store Cost] > 10) AND 1 = 1",
+        "([Measures].[Store Sales]"
+        + " - ([Measures].[Store Sales], ParallelPeriod([Time].[Quarter])))"
+        + " / ([Measures].[Store Sales],"
+        + " ParallelPeriod([Time].[Quarter]))",
+        "Sum(YTD(), [Measures].[Store Sales])"
+        + " / Sum(YTD(), [Measures].[Unit Sales]) * 100",
+    };
+
+    public void testCompilesToGeneratedCalc() {
+        if (!CodeGenExpCompiler.isAvailable()) {
+            return;
+        }
+        ExpCompiler.Factory.setThreadLocalClassName(
+            CodeGenExpCompiler.class.getName());
+        try {
+            for (String expression : EXPRESSIONS) {
+                assertGenerated(expression);
+            }
+
+            // A single operator is not worth generating.
+            final String program2 =
+                getTestContext().compileExpression(
+                    "[Measures].[Store Sales] / 2", true);
+            assertFalse(program2, program2.contains("Generated"));
+        } finally {
+            ExpCompiler.Factory.clearThreadLocalClassName();
+        }
+    }
+
+    public void testSameResults() {
+        checkSameResults();
+    }
+
+    public void testSameResultsNullDenominatorProducesNull() {
+        propSaver.set(propSaver.properties.NullDenominatorProducesNull, true);
+        checkSameResults();
+    }
+
+    /**
+     * Tests a filter whose condition is generated, so that the generated
+     * code is called while evaluating an axis.
+     */
+    public void testFilter() {
+        checkSameResult(
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + " Filter([Store].[Store City].Members,\n"
+            + "  [Measures].[Store Sales] / [Measures].[Unit Sales] > 2.1\n"
+            + "  AND [Measures].[Unit Sales] > 10000) on 1\n"
+            + "from [Sales]");
+    }
+
+    private void checkSameResults() {
+        for (String expression : EXPRESSIONS) {
+            if (CodeGenExpCompiler.isAvailable()) {
+                ExpCompiler.Factory.setThreadLocalClassName(
+                    CodeGenExpCompiler.class.getName());
+                try {
+                    assertGenerated(expression);
+                } finally {
+                    ExpCompiler.Factory.clearThreadLocalClassName();
+                }
+            }
+            checkSameResult(
+                "with member [Measures].[X] as '" + expression + "'\n"
+                + "select {[Measures].[X]} on 0,\n"
+                + " [Store].[Store State].Members"
+                + " * {[Time].[1997].[Q1], [Time].[1997].[Q2]} on 1\n"
+                + "from [Sales]");
+        }
+    }
+
+    /**
+     * Checks that an expression compiles to a generated calc. The caller
+     * must have set the generating compiler.
+     */
+    private void assertGenerated(String expression) {
+        final String program =
+            getTestContext().compileExpression(expression, true);
+        assertTrue(
+            expression + "\n" + program,
+            program.startsWith("Generated"));
+    }
+
+    private void checkSameResult(String mdx) {
+        final String expected =
+            TestContext.toString(
+                getTestContext().withFreshConnection().executeQuery(mdx));
+        ExpCompiler.Factory.setThreadLocalClassName(
+            CodeGenExpCompiler.class.getName());
+        try {
+            assertEquals(
+                mdx,
+                expected,
+                TestContext.toString(
+                    getTestContext().withFreshConnection().executeQuery(mdx)));
+        } finally {
+            ExpCompiler.Factory.clearThreadLocalClassName();
+        }
+    }
+}
+
+// End CodeGenExpCompilerTest.java
@@ -0,0 +1,128 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+
+package mondrian.calc.impl;
+
+import mondrian.calc.TupleCursor;
+import mondrian.calc.TupleList;
+import mondrian.olap.Member;
+import mondrian.olap.ResourceLimitExceededException;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link OrdinalTupleList}.
+ */
+public class OrdinalTupleListTest extends TestCase {
+    private final Member a = mock(Member.class);
+    private final Member b = mock(Member.class);
+    private final Member c = mock(Member.class);
+
+    private OrdinalTupleList list(MemberDictionary dictionary) {
+        return new OrdinalTupleList(dictionary, 2, 4);
+    }
+
+    public void testAddAndGet() {
+        final OrdinalTupleList list = list(new MemberDictionary());
+        list.addTuple(a, b);
+        list.add(Arrays.asList(b, c));
+        list.add(0, Arrays.asList(c, a));
+        assertEquals(3, list.size());
+        assertEquals(Arrays.asList(c, a), list.get(0));
+        assertEquals(Arrays.asList(a, b), list.get(1));
+        assertSame(c, list.get(1, 2));
+        assertEquals(Arrays.asList(a, b, c), list.slice(0));
+
+        list.remove(0);
+        assertEquals(2, list.size());
+        assertEquals(Arrays.asList(a, b), list.get(0));
+
+        final TupleCursor cursor = list.tupleCursor();
+        final Member[] members = new Member[2];
+        assertTrue(cursor.forward());
+        cursor.currentToArray(members, 0);
+        assertEquals(Arrays.asList(a, b), Arrays.asList(members));
+        assertTrue(cursor.forward());
+        assertSame(c, cursor.member(1));
+        assertFalse(cursor.forward());
+    }
+
+    public void testOfAndClone() {
+        final MemberDictionary dictionary = new MemberDictionary();
+        final TupleList source = new ArrayTupleList(2);
+        source.addTuple(a, b);
+        source.addTuple(b, c);
+        final OrdinalTupleList list = OrdinalTupleList.of(dictionary, source);
+        assertEquals(source, list);
+        assertSame(list, OrdinalTupleList.of(dictionary, list));
+
+        final TupleList copy = list.cloneList(-1);
+        assertEquals(list, copy);
+        copy.addAll(list);
+        assertEquals(4, copy.size());
+        assertEquals(2, list.size());
+    }
+
+    public void testDistinct() {
+        final OrdinalTupleList list = list(new MemberDictionary());
+        list.addTuple(a, b);
+        list.addTuple(b, c);
+        list.addTuple(a, b);
+        list.addTuple(c, c);
+        list.addTuple(b, c);
+        final OrdinalTupleList distinct = list.distinct();
+        assertEquals(3, distinct.size());
+        assertEquals(Arrays.asList(a, b), distinct.get(0));
+        assertEquals(Arrays.asList(b, c), distinct.get(1));
+        assertEquals(Arrays.asList(c, c), distinct.get(2));
+    }
+
+    public void testExcept() {
+        final MemberDictionary dictionary = new MemberDictionary();
+        final OrdinalTupleList list0 = list(dictionary);
+        list0.addTuple(a, b);
+        list0.addTuple(b, c);
+        list0.addTuple(a, b);
+        list0.addTuple(c, a);
+        final OrdinalTupleList list1 = list(dictionary);
+        list1.addTuple(b, c);
+        list1.addTuple(a, a);
+        final OrdinalTupleList except = list0.except(list1);
+        assertEquals(3, except.size());
+        assertEquals(Arrays.asList(a, b), except.get(0));
+        assertEquals(Arrays.asList(a, b), except.get(1));
+        assertEquals(Arrays.asList(c, a), except.get(2));
+    }
+
+    /**
+     * Tests that a cartesian product too large for a list raises the usual
+     * crossjoin error, rather than overflowing.
+     */
+    public void testCrossJoinTooLarge() {
+        final MemberDictionary dictionary = new MemberDictionary();
+        final OrdinalTupleList list = new OrdinalTupleList(dictionary, 1, 0);
+        for (int i = 0; i < 1300; i++) {
+            list.addTuple(a);
+        }
+        try {
+            OrdinalTupleList.crossJoin(
+                dictionary, Arrays.<TupleList>asList(list, list, list));
+            fail("expected error");
+        } catch (ResourceLimitExceededException e) {
+            // ok
+        }
+    }
+}
+
+// End OrdinalTupleListTest.java
@@ -0,0 +1,106 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+
+package mondrian.olap.fun;
+
+import mondrian.calc.TupleCursor;
+import mondrian.calc.TupleList;
+import mondrian.calc.impl.UnaryTupleList;
+import mondrian.olap.Member;
+import mondrian.olap.Util;
+import mondrian.rolap.RolapUtil;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit test for {@link BoundedTupleHeap}, which finds the top or bottom
+ * tuples of a stream for the MDX functions TopCount and BottomCount.
+ */
+public class BoundedTupleHeapTest extends TestCase {
+    /**
+     * Tests that the heap retains the same tuples, in the same order, as a
+     * stable sort using {@link FunUtil#compareValues(Object, Object)}.
+     */
+    public void testSameAsStableSort() {
+        final Random random = new Random(5);
+        final Object[] specials = {
+            null, Util.nullValue, RolapUtil.valueNotReadyException,
+            Double.NaN, Double.NEGATIVE_INFINITY, FunUtil.DoubleNull
+        };
+        for (int i = 0; i < 200; i++) {
+            final int length = random.nextInt(100);
+            final List<Member> members = new ArrayList<Member>();
+            final Map<Member, Object> values = new HashMap<Member, Object>();
+            for (int j = 0; j < length; j++) {
+                final Member member = mock(Member.class);
+                final int k = random.nextInt(specials.length * 2);
+                members.add(member);
+                values.put(
+                    member,
+                    k < specials.length
+                        ? specials[k]
+                        : (Object) (double) random.nextInt(10));
+            }
+            final boolean desc = random.nextBoolean();
+            final int limit = 1 + random.nextInt(length + 5);
+            checkHeap(members, values, desc, limit);
+        }
+    }
+
+    public void testNonNumericValue() {
+        final TupleList list =
+            new UnaryTupleList(Collections.singletonList(mock(Member.class)));
+        final TupleCursor cursor = list.tupleCursor();
+        assertTrue(cursor.forward());
+        final BoundedTupleHeap heap = new BoundedTupleHeap(1, 5, true);
+        assertFalse(heap.add(cursor, "a string"));
+    }
+
+    private void checkHeap(
+        List<Member> members,
+        final Map<Member, Object> values,
+        final boolean desc,
+        int limit)
+    {
+        final BoundedTupleHeap heap = new BoundedTupleHeap(1, limit, desc);
+        final TupleCursor cursor = new UnaryTupleList(members).tupleCursor();
+        while (cursor.forward()) {
+            assertTrue(heap.add(cursor, values.get(cursor.member(0))));
+        }
+        final TupleList actual = heap.toList();
+
+        final List<Member> expected = new ArrayList<Member>(members);
+        Collections.sort(
+            expected,
+            new Comparator<Member>() {
+                public int compare(Member m1, Member m2) {
+                    final int c =
+                        FunUtil.compareValues(value(m1), value(m2));
+                    return desc ? -c : c;
+                }
+
+                private Object value(Member member) {
+                    final Object value = values.get(member);
+                    return value == null ? Util.nullValue : value;
+                }
+            });
+        final int n = Math.min(limit, members.size());
+        assertEquals(n, actual.size());
+        for (int i = 0; i < n; i++) {
+            assertSame(expected.get(i), actual.get(0, i));
+        }
+    }
+}
+
+// End BoundedTupleHeapTest.java
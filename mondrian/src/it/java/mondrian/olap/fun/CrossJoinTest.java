@@ -10,6 +10,7 @@ package mondrian.olap.fun;
 
 import mondrian.calc.*;
 import mondrian.calc.impl.ArrayTupleList;
+import mondrian.calc.impl.MemberDictionary;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
 import mondrian.olap.type.*;
@@ -72,6 +73,32 @@ public class CrossJoinTest extends FoodMartTestCase {
         super.tearDown();
     }
 
+    /**
+     * Tests that a query that is executed more than once does not keep the
+     * members of earlier executions in its member dictionary.
+     */
+    public void testMemberDictionaryPerExecution() {
+        propSaver.set(propSaver.properties.EnableOrdinalTupleLists, true);
+        final Connection connection = getConnection();
+        final Query query =
+            connection.parseQuery(
+                "select Distinct(CrossJoin([Gender].Members,"
+                + " [Marital Status].Members)) on 0 from [Sales]");
+        final Result result0 = connection.execute(query);
+        assertEquals(9, result0.getAxes()[0].getPositions().size());
+        final MemberDictionary dictionary0 = query.getMemberDictionary();
+
+        final Result result1 = connection.execute(query);
+        assertEquals(9, result1.getAxes()[0].getPositions().size());
+        final MemberDictionary dictionary1 = query.getMemberDictionary();
+        assertNotSame(dictionary0, dictionary1);
+        assertEquals(dictionary0.size(), dictionary1.size());
+
+        // Resolving the query discards the dictionary, too.
+        query.resolve();
+        assertNotSame(dictionary1, query.getMemberDictionary());
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // Iterable
     ////////////////////////////////////////////////////////////////////////
@@ -3102,7 +3102,121 @@ public class FunctionTest extends FoodMartTestCase {
             "188,412.71");
     }
 
-    // todo: testAvgWithNulls
+    /**
+     * Tests Avg over a set some of whose cells are empty or whose tuples
+     * contain the null member. Empty cells are not counted.
+     */
+    public void testAvgWithNulls() {
+        // Canada and Mexico have no sales.
+        assertExprReturns(
+            "Avg({[Store].[USA], [Store].[Canada], [Store].[Mexico]},"
+            + " [Measures].[Unit Sales])",
+            "266,773");
+        assertExprReturns(
+            "Avg({[Store].[Canada], [Store].[Mexico]},"
+            + " [Measures].[Unit Sales])",
+            "");
+        assertExprReturns(
+            "Avg({[Store].[USA], [Store].[Canada]},"
+            + " ([Measures].[Unit Sales], [Time].[1997].PrevMember))",
+            "");
+        assertBooleanExprReturns(
+            "Avg({[Store].[USA], [Store].[Canada], [Store].[Mexico]},"
+            + " [Measures].[Store Sales] / [Measures].[Unit Sales])"
+            + " = ([Store].[USA], [Measures].[Store Sales])"
+            + " / ([Store].[USA], [Measures].[Unit Sales])",
+            true);
+    }
+
+    /**
+     * Tests Sum over a set some of whose cells are empty or whose tuples
+     * contain the null member.
+     */
+    public void testSumWithNulls() {
+        assertExprReturns(
+            "Sum({[Store].[USA], [Store].[Canada], [Store].[Mexico]})",
+            "266,773");
+        assertExprReturns(
+            "Sum({[Store].[USA], [Store].[Canada], [Store].[Mexico]},"
+            + " [Measures].[Unit Sales])",
+            "266,773");
+        assertBooleanExprReturns(
+            "IsEmpty(Sum({[Store].[Canada], [Store].[Mexico]},"
+            + " [Measures].[Unit Sales]))",
+            true);
+        assertBooleanExprReturns(
+            "IsEmpty(Sum({[Store].[USA], [Store].[Canada]},"
+            + " ([Measures].[Unit Sales], [Time].[1997].PrevMember)))",
+            true);
+        assertBooleanExprReturns(
+            "Sum({[Store].[USA], [Store].[Canada]},"
+            + " [Measures].[Store Sales] / [Measures].[Unit Sales])"
+            + " = ([Store].[USA], [Measures].[Store Sales])"
+            + " / ([Store].[USA], [Measures].[Unit Sales])",
+            true);
+    }
+
+    /**
+     * Tests Sum, Avg, Min and Max of a calculated measure that is a ratio,
+     * which are evaluated without boxing each value, against the same
+     * computation written out in full.
+     */
+    public void testAggregatesOfRatio() {
+        final String ca = "[Store].[USA].[CA]";
+        final String or = "[Store].[USA].[OR]";
+        final String wa = "[Store].[USA].[WA]";
+        final Result result = executeQuery(
+            "with member [Measures].[Ratio] as\n"
+            + " '[Measures].[Store Sales] / [Measures].[Unit Sales]'\n"
+            + "member [Measures].[Sum] as\n"
+            + " 'Sum([Store].[USA].Children, [Measures].[Ratio])'\n"
+            + "member [Measures].[Sum2] as\n"
+            + " '(" + ca + ", [Measures].[Ratio])"
+            + " + (" + or + ", [Measures].[Ratio])"
+            + " + (" + wa + ", [Measures].[Ratio])'\n"
+            + "member [Measures].[Avg] as\n"
+            + " 'Avg([Store].[USA].Children, [Measures].[Ratio])'\n"
+            + "member [Measures].[Avg2] as '[Measures].[Sum2] / 3'\n"
+            + "member [Measures].[Min] as\n"
+            + " 'Min([Store].[USA].Children, [Measures].[Ratio])'\n"
+            + "member [Measures].[Max] as\n"
+            + " 'Max([Store].[USA].Children, [Measures].[Ratio])'\n"
+            + "member [Measures].[Sum Unit Sales] as\n"
+            + " 'Sum([Store].[USA].Children,"
+            + " [Measures].[Unit Sales] * 1)'\n"
+            + "select {[Measures].[Sum], [Measures].[Sum2],\n"
+            + " [Measures].[Avg], [Measures].[Avg2],\n"
+            + " [Measures].[Min], [Measures].[Max],\n"
+            + " [Measures].[Sum Unit Sales]} on 0,\n"
+            + " {" + ca + ", " + or + ", " + wa + "} on 1\n"
+            + "from [Sales]");
+        final double sum = doubleValue(result, 0, 0);
+        assertEquals(sum, doubleValue(result, 1, 0));
+        assertEquals(sum / 3, doubleValue(result, 2, 0));
+        assertEquals(doubleValue(result, 3, 0), doubleValue(result, 2, 0));
+        final double[] ratios = new double[3];
+        final Result ratioResult = executeQuery(
+            "with member [Measures].[Ratio] as\n"
+            + " '[Measures].[Store Sales] / [Measures].[Unit Sales]'\n"
+            + "select {[Measures].[Ratio]} on 0,\n"
+            + " {" + ca + ", " + or + ", " + wa + "} on 1\n"
+            + "from [Sales]");
+        for (int i = 0; i < ratios.length; i++) {
+            ratios[i] = doubleValue(ratioResult, 0, i);
+        }
+        assertEquals(
+            Math.min(ratios[0], Math.min(ratios[1], ratios[2])),
+            doubleValue(result, 4, 0));
+        assertEquals(
+            Math.max(ratios[0], Math.max(ratios[1], ratios[2])),
+            doubleValue(result, 5, 0));
+        assertEquals(266773d, doubleValue(result, 6, 0));
+    }
+
+    private static double doubleValue(Result result, int column, int row) {
+        return ((Number) result.getCell(new int[] {column, row}).getValue())
+            .doubleValue();
+    }
 
     public void testCorrelation() {
         assertExprReturns(
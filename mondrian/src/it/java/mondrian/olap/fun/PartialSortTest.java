@@ -503,6 +503,56 @@ public class PartialSortTest extends TestCase
     }
 
 
+    /**
+     * Tests that {@link ParallelTupleEvaluator#sort(double[], boolean, int)}
+     * returns the same positions as a stable sort using
+     * {@link FunUtil#compareValues(double, double)}, for full and partial
+     * sorts and for keys with many ties and nulls.
+     */
+    public void testParallelSortIsStable() {
+        final Random random = new Random(12345);
+        for (int length : new int[] {1, 10, 100, 5000}) {
+            final double[] keys = new double[length];
+            for (int i = 0; i < length; i++) {
+                keys[i] = random.nextInt(10) == 0
+                    ? FunUtil.DoubleNull
+                    : random.nextInt(length / 3 + 1);
+            }
+            for (boolean desc : new boolean[] {false, true}) {
+                for (int limit : new int[] {1, 7, length / 5, length}) {
+                    if (limit <= 0 || limit > length) {
+                        continue;
+                    }
+                    checkParallelSort(keys, desc, limit);
+                }
+            }
+        }
+    }
+
+    private void checkParallelSort(
+        final double[] keys,
+        final boolean desc,
+        int limit)
+    {
+        final Integer[] expected = new Integer[keys.length];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i;
+        }
+        Arrays.sort(
+            expected,
+            new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    final int c = FunUtil.compareValues(keys[o1], keys[o2]);
+                    return desc ? -c : c;
+                }
+            });
+        final int[] actual = ParallelTupleEvaluator.sort(keys, desc, limit);
+        assertEquals(limit, actual.length);
+        for (int i = 0; i < limit; i++) {
+            assertEquals(expected[i].intValue(), actual[i]);
+        }
+    }
+
     // Compares elapsed time of full sort (mergesort), partial sort, and stable
     // partial sort on the same input set.
     private void speedTest(Logger logger, int length, int limit) {
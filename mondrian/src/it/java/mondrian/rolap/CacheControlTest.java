@@ -1277,6 +1277,76 @@ public class CacheControlTest extends FoodMartTestCase {
         assertCacheStateEquals(tag, "${output2}", actual);
     }
 
+    /**
+     * Tests {@link CacheControl#refresh(CellRegion, long)} end to end.
+     *
+     * <p>The test database cannot be appended to, so the test pretends that
+     * the rows of [Store].[USA].[OR] were appended after a given time. A
+     * segment loaded before that time is merged with those rows, so the
+     * cell for Oregon doubles. Refreshing again with the same time must not
+     * merge the rows a second time; nor may a refresh merge rows into a
+     * segment that was loaded after the time, since such a segment may
+     * already contain them. In both cases the segment is flushed, and the
+     * next query reads the true value from the database.
+     */
+    public void testRefresh() throws Exception {
+        if (MondrianProperties.instance().DisableCaching.get()) {
+            return;
+        }
+        propSaver.set(propSaver.properties.UseAggregates, false);
+        final String query =
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "[Store].[USA].Children on 1\n"
+            + "from [Sales]";
+        final String expected =
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "Axis #2:\n"
+            + "{[Store].[USA].[CA]}\n"
+            + "{[Store].[USA].[OR]}\n"
+            + "{[Store].[USA].[WA]}\n"
+            + "Row #0: 74,748\n"
+            + "Row #1: 67,659\n"
+            + "Row #2: 124,366\n";
+        final String expectedMerged =
+            expected.replace("Row #1: 67,659", "Row #1: 135,318");
+
+        final TestContext testContext = getTestContext();
+        flushCache(testContext);
+        final CacheControl cacheControl = testContext.getCacheControl();
+        final Cube salesCube =
+            getConnection().getSchema().lookupCube("Sales", true);
+        final SchemaReader schemaReader =
+            salesCube.getSchemaReader(null).withLocus();
+        final Member memberOregon = schemaReader.getMemberByUniqueName(
+            Id.Segment.toList("Store", "USA", "OR"), true);
+        final CellRegion region =
+            cacheControl.createCrossjoinRegion(
+                cacheControl.createMeasuresRegion(salesCube),
+                cacheControl.createMemberRegion(memberOregon, false));
+
+        // Segment loaded before the append is merged; refreshing again with
+        // the same append time flushes it.
+        assertQueryReturns(query, expected);
+        Thread.sleep(10);
+        final long appendTime = System.currentTimeMillis();
+        Thread.sleep(10);
+        cacheControl.refresh(region, appendTime);
+        assertQueryReturns(query, expectedMerged);
+        cacheControl.refresh(region, appendTime);
+        assertQueryReturns(query, expected);
+
+        // Segment loaded after the append is flushed.
+        flushCache(testContext);
+        final long appendTime2 = System.currentTimeMillis();
+        Thread.sleep(10);
+        assertQueryReturns(query, expected);
+        cacheControl.refresh(region, appendTime2);
+        assertQueryReturns(query, expected);
+    }
+
     // todo: Test flushing a segment which is unconstrained
 
     // todo: Test flushing a segment where 2 or more axes are reduced. E.g.
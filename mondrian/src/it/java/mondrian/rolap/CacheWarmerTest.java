@@ -0,0 +1,121 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap;
+
+import mondrian.test.FoodMartTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test for {@link CacheWarmer}.
+ */
+public class CacheWarmerTest extends FoodMartTestCase {
+    private static final String MDX1 =
+        "select [Measures].[Unit Sales] on 0 from [Sales]";
+    private static final String MDX2 =
+        "select [Measures].[Store Sales] on 0,\n"
+        + " [Gender].Members on 1 from [Sales]";
+    private static final String MDX3 =
+        "select {[Measures].[Bad Measure]} on 0 from [Sales]";
+
+    public CacheWarmerTest(String name) {
+        super(name);
+    }
+
+    public void testTopQueries() {
+        final CacheWarmer warmer = new CacheWarmer(null);
+        final RolapConnection connection =
+            (RolapConnection) getConnection();
+        final String schemaKey = CacheWarmer.key(connection.getSchema());
+        warmer.record(connection, MDX1, 100);
+        warmer.record(connection, MDX2, 60);
+        warmer.record(connection, MDX2, 60);
+        assertEquals(
+            Arrays.asList(MDX2, MDX1), warmer.topQueries(schemaKey, 10));
+        assertEquals(
+            Arrays.asList(MDX2), warmer.topQueries(schemaKey, 1));
+        assertTrue(warmer.topQueries("NoSuchSchema", 10).isEmpty());
+
+        // Statements of the internal connection, such as replays, are not
+        // recorded.
+        warmer.record(
+            connection.getSchema().getInternalConnection(), MDX3, 1000);
+        assertEquals(2, warmer.topQueries(schemaKey, 10).size());
+    }
+
+    /**
+     * Tests that statements are recorded separately for schemas that have
+     * the same name but different catalogs.
+     */
+    public void testSchemasWithSameName() {
+        final CacheWarmer warmer = new CacheWarmer(null);
+        final RolapConnection connection =
+            (RolapConnection) getConnection();
+        final RolapConnection connection2 =
+            (RolapConnection) getTestContext()
+                .createSubstitutingCube(
+                    "Sales",
+                    null,
+                    "<CalculatedMember name='Twice Unit Sales'"
+                    + " dimension='Measures'"
+                    + " formula='[Measures].[Unit Sales] * 2'/>")
+                .getConnection();
+        assertEquals(
+            connection.getSchema().getName(),
+            connection2.getSchema().getName());
+        final String schemaKey = CacheWarmer.key(connection.getSchema());
+        final String schemaKey2 = CacheWarmer.key(connection2.getSchema());
+        assertFalse(schemaKey.equals(schemaKey2));
+
+        warmer.record(connection, MDX1, 10);
+        warmer.record(connection2, MDX2, 20);
+        assertEquals(Arrays.asList(MDX1), warmer.topQueries(schemaKey, 10));
+        assertEquals(Arrays.asList(MDX2), warmer.topQueries(schemaKey2, 10));
+    }
+
+    public void testSaveAndLoad() throws IOException {
+        final File file = File.createTempFile("warmup", ".txt");
+        try {
+            final CacheWarmer warmer = new CacheWarmer(file);
+            final RolapConnection connection =
+                (RolapConnection) getConnection();
+            final String schemaKey = CacheWarmer.key(connection.getSchema());
+            final String mdx = MDX2 + "\twith a tab\r\\";
+            warmer.record(connection, MDX1, 10);
+            warmer.record(connection, mdx, 20);
+            warmer.save();
+
+            final List<String> queries =
+                new CacheWarmer(file).topQueries(schemaKey, 10);
+            assertEquals(Arrays.asList(mdx, MDX1), queries);
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testReplay() {
+        final CacheWarmer warmer = new CacheWarmer(null);
+        final RolapConnection connection =
+            (RolapConnection) getConnection();
+        propSaver.set(propSaver.properties.CacheWarmupQueryCount, 10);
+        warmer.record(connection, MDX1, 10);
+        warmer.record(connection, MDX2, 20);
+        warmer.record(connection, MDX3, 30);
+        assertEquals(2, warmer.replay(connection.getSchema()));
+
+        propSaver.set(propSaver.properties.CacheWarmupQueryCount, 1);
+        assertEquals(0, warmer.replay(connection.getSchema()));
+    }
+}
+
+// End CacheWarmerTest.java
@@ -749,17 +749,14 @@ public class FilterTest extends BatchTestCase {
     }
 
     /**
-     * Executes a Filter() whose condition contains a calculated member.
+     * Executes a Filter() whose condition contains a calculated member. The
+     * member divides by a measure, which may be zero, so the filter is not
+     * evaluated in SQL.
      */
     public void testCmNativeFilter() {
         propSaver.set(MondrianProperties.instance().ExpandNonNative, false);
         propSaver.set(MondrianProperties.instance().EnableNativeFilter, true);
-
-        // Get a fresh connection; Otherwise the mondrian property setting
-        // is not refreshed for this parameter.
-        boolean requestFreshConnection = true;
-        checkNative(
-            0,
+        checkNotNative(
             8,
             "with member [Measures].[Rendite] as '([Measures].[Store Sales] - [Measures].[Store Cost]) / [Measures].[Store Cost]' "
             + "select NON EMPTY {[Measures].[Unit Sales], [Measures].[Store Cost], [Measures].[Rendite], [Measures].[Store Sales]} ON COLUMNS, "
@@ -813,8 +810,7 @@ public class FilterTest extends BatchTestCase {
             + "Row #7: 46\n"
             + "Row #7: 28.34\n"
             + "Row #7: 1.81\n"
-            + "Row #7: 79.58\n",
-            requestFreshConnection);
+            + "Row #7: 79.58\n");
     }
 
     public void testNonNativeFilterWithNullMeasure() {
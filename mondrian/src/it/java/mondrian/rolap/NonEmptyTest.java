@@ -1377,11 +1377,11 @@ public class NonEmptyTest extends BatchTestCase {
             return;
         }
         String query =
-            "with member [Measures].[Store Profit Rate] as '([Measures].[Store Sales]-[Measures].[Store Cost])/[Measures].[Store Cost]', format = '#.00%' "
+            "with member [Measures].[Store Profit] as '([Measures].[Store Sales]-[Measures].[Store Cost])/1000', format = '#.00' "
             + "select {[Measures].[Store Sales]} on columns,"
             + "  NON EMPTY TopCount("
             + "        [Customers].[All Customers].[USA].children, "
-            + "        3, [Measures].[Store Profit Rate] / 2) ON ROWS"
+            + "        3, [Measures].[Store Profit] / 2) ON ROWS"
             + " from [Sales]";
 
         propSaver.set(MondrianProperties.instance().EnableNativeTopCount, true);
@@ -10,6 +10,7 @@
 package mondrian.rolap;
 
 import mondrian.olap.Util;
+import mondrian.test.PropertySaver;
 import mondrian.util.ByteString;
 
 import junit.framework.TestCase;
@@ -17,8 +18,13 @@ import junit.framework.TestCase;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.sql.DataSource;
 
 import static mondrian.rolap.RolapConnectionProperties.CatalogContent;
@@ -38,6 +44,10 @@ public class RolapSchemaPoolConcurrencyTest extends TestCase
 
     private List<RolapSchema> addedSchemas;
     private RolapSchemaPool poolSpy;
+    private final AtomicInteger createCount = new AtomicInteger();
+    private volatile long createMillis;
+    private volatile CountDownLatch createLatch;
+    private volatile boolean createFails;
 
     public void setUp() {
         addedSchemas = new ArrayList<RolapSchema>();
@@ -66,6 +76,17 @@ public class RolapSchemaPoolConcurrencyTest extends TestCase
     public RolapSchema answer(InvocationOnMock invocation) throws Throwable {
         SchemaKey key = (SchemaKey) invocation.getArguments()[4];
         ByteString md5 = (ByteString) invocation.getArguments()[5];
+        createCount.incrementAndGet();
+        if (createMillis > 0) {
+            Thread.sleep(createMillis);
+        }
+        final CountDownLatch latch = createLatch;
+        if (latch != null) {
+            latch.await();
+        }
+        if (createFails) {
+            throw new RuntimeException("invalid schema");
+        }
         RolapConnection connection = mock(RolapConnection.class);
         //noinspection deprecation
         return new RolapSchema(key, md5, connection);
@@ -149,6 +170,155 @@ public class RolapSchemaPoolConcurrencyTest extends TestCase
     }
 
 
+    /**
+     * Many threads ask at the same time for a schema that takes a while to
+     * load. It is loaded once, and they all receive the same schema.
+     */
+    public void testConcurrentGettersLoadSchemaOnce() throws Exception {
+        final int actorsAmount = 10;
+        final String catalogUrl = UUID.randomUUID().toString();
+        final DataSource ds = mock(DataSource.class);
+        final Util.PropertyList list = new Util.PropertyList();
+        list.put(CatalogContent.name(), UUID.randomUUID().toString());
+        list.put(UseContentChecksum.name(), "true");
+        createMillis = 200;
+
+        final Set<RolapSchema> schemas =
+            Collections.synchronizedSet(new HashSet<RolapSchema>());
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Callable<String>> actors =
+            new ArrayList<Callable<String>>(actorsAmount);
+        for (int i = 0; i < actorsAmount; i++) {
+            actors.add(
+                new Callable<String>() {
+                    public String call() throws Exception {
+                        start.await();
+                        schemas.add(poolSpy.get(catalogUrl, ds, list));
+                        return null;
+                    }
+                });
+        }
+        final ExecutorService executorService =
+            Executors.newFixedThreadPool(actorsAmount);
+        try {
+            final List<Future<String>> futures =
+                new ArrayList<Future<String>>();
+            for (Callable<String> actor : actors) {
+                futures.add(executorService.submit(actor));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                assertNull(future.get());
+            }
+        } finally {
+            executorService.shutdown();
+            addedSchemas.addAll(schemas);
+        }
+        assertEquals(1, createCount.get());
+        assertEquals(1, schemas.size());
+    }
+
+
+    /**
+     * When a catalog's content changes and schemas are refreshed in the
+     * background, readers keep the previous version of the schema while the
+     * new version loads, then see the new version.
+     */
+    public void testRefreshInBackground() throws Exception {
+        final PropertySaver propSaver = new PropertySaver();
+        propSaver.set(propSaver.properties.SchemaRefreshInBackground, true);
+        final File file = File.createTempFile("schema", ".xml");
+        try {
+            final String catalogUrl = file.getAbsolutePath();
+            final DataSource ds = mock(DataSource.class);
+            final Util.PropertyList list = new Util.PropertyList();
+            list.put(UseContentChecksum.name(), "true");
+
+            write(file, "<Schema name='v1'/>");
+            final RolapSchema schema1 = poolSpy.get(catalogUrl, ds, list);
+            addedSchemas.add(schema1);
+            assertEquals(1, createCount.get());
+
+            // The content changes. Readers get the previous version while
+            // the new version loads, and only one load starts.
+            write(file, "<Schema name='v2'/>");
+            createLatch = new CountDownLatch(1);
+            assertSame(schema1, poolSpy.get(catalogUrl, ds, list));
+            assertSame(schema1, poolSpy.get(catalogUrl, ds, list));
+
+            // Once the new version has loaded, readers see it.
+            createLatch.countDown();
+            final long deadline = System.currentTimeMillis() + 10000;
+            RolapSchema schema2;
+            while ((schema2 = poolSpy.get(catalogUrl, ds, list)) == schema1) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            addedSchemas.add(schema2);
+            assertEquals(2, createCount.get());
+            assertEquals(
+                new ByteString(Util.digestMd5("<Schema name='v2'/>")),
+                schema2.getChecksum());
+            assertSame(schema2, poolSpy.get(catalogUrl, ds, list));
+        } finally {
+            createLatch = null;
+            propSaver.reset();
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that a background load that fails is not retried while the
+     * schema content is unchanged, and that the previous version is served.
+     */
+    public void testRefreshInBackgroundFails() throws Exception {
+        final PropertySaver propSaver = new PropertySaver();
+        propSaver.set(propSaver.properties.SchemaRefreshInBackground, true);
+        final File file = File.createTempFile("schema", ".xml");
+        try {
+            final String catalogUrl = file.getAbsolutePath();
+            final DataSource ds = mock(DataSource.class);
+            final Util.PropertyList list = new Util.PropertyList();
+            list.put(UseContentChecksum.name(), "true");
+
+            write(file, "<Schema name='v1'/>");
+            final RolapSchema schema1 = poolSpy.get(catalogUrl, ds, list);
+            addedSchemas.add(schema1);
+            assertEquals(1, createCount.get());
+
+            write(file, "<Schema name='v2'/>");
+            createFails = true;
+            assertSame(schema1, poolSpy.get(catalogUrl, ds, list));
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (createCount.get() < 2) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+
+            // The load has failed; readers keep the previous version, and
+            // do not start the load again.
+            for (int i = 0; i < 20; i++) {
+                assertSame(schema1, poolSpy.get(catalogUrl, ds, list));
+                Thread.sleep(10);
+            }
+            assertEquals(2, createCount.get());
+        } finally {
+            createFails = false;
+            propSaver.reset();
+            file.delete();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+
     public void testFourAddersTwoRemoversTenGetters() throws Exception {
         final int addingCycles = 200;
         final int removersAmount = 2;
@@ -229,6 +229,23 @@ public class RolapSchemaTest extends PropertyRestoringTestCase {
     }
 
 
+    public void testAddAndRemoveCube() {
+        RolapSchema schema = createSchema();
+        RolapCube cube = mockCube(schema);
+        when(cube.getName()).thenReturn("Sales");
+
+        schema.addCube(cube);
+        assertSame(cube, schema.lookupCube("Sales"));
+        assertEquals(1, schema.getLoadedCubeList().size());
+        assertEquals(schema.getLoadedCubeList(), schema.getCubeList());
+
+        assertTrue(schema.removeCube("Sales"));
+        assertNull(schema.lookupCube("Sales"));
+        assertTrue(schema.getLoadedCubeList().isEmpty());
+        assertFalse(schema.removeCube("Sales"));
+    }
+
+
     private void assertMondrianException(
         MondrianException expected,
         MondrianException actual)
@@ -0,0 +1,136 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap;
+
+import mondrian.calc.TupleList;
+import mondrian.calc.impl.ArrayTupleList;
+import mondrian.olap.*;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit test for {@link SharedExpResultCache}, the cache of expression results
+ * that is shared by all queries on a schema.
+ */
+public class SharedExpResultCacheTest extends FoodMartTestCase {
+    public void testEvictsLeastRecentlyUsed() {
+        propSaver.set(propSaver.properties.SharedExpCacheSize, 5);
+        final SharedExpResultCache cache = new SharedExpResultCache();
+        final Set<RolapStar> stars =
+            Collections.singleton(mock(RolapStar.class));
+        final ArrayTupleList list = new ArrayTupleList(2);
+        list.addTuple(mock(Member.class), mock(Member.class));
+        list.addTuple(mock(Member.class), mock(Member.class));
+
+        cache.put("a", 1, stars, cache.generation());
+        cache.put("b", 2, stars, cache.generation());
+        cache.put("c", 3, stars, cache.generation());
+        assertEquals(3, cache.size());
+
+        // Touch "a", so that "b" and "c" are the least recently used, and are
+        // removed to make room for a list of 4 members.
+        assertEquals(1, cache.get("a"));
+        cache.put("d", list, stars, cache.generation());
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(list, cache.get("d"));
+
+        // Lists are shared read-only.
+        try {
+            ((TupleList) cache.get("d")).addTuple(
+                mock(Member.class), mock(Member.class));
+            fail("expected error");
+        } catch (UnsupportedOperationException e) {
+            // ok
+        }
+
+        // The cache holds a copy, so the producer can still modify its list.
+        list.addTuple(mock(Member.class), mock(Member.class));
+        assertEquals(2, ((TupleList) cache.get("d")).size());
+
+        // A value larger than the cache is not added; a value that cannot be
+        // shared is not added.
+        final ArrayTupleList bigList = new ArrayTupleList(2);
+        for (int i = 0; i < 3; i++) {
+            bigList.addTuple(mock(Member.class), mock(Member.class));
+        }
+        cache.put("e", bigList, stars, cache.generation());
+        cache.put("f", new Object(), stars, cache.generation());
+        assertNull(cache.get("e"));
+        assertNull(cache.get("f"));
+        assertEquals(2, cache.size());
+    }
+
+    public void testFlush() {
+        propSaver.set(propSaver.properties.SharedExpCacheSize, 100);
+        final SharedExpResultCache cache = new SharedExpResultCache();
+        final RolapStar star1 = mock(RolapStar.class);
+        final RolapStar star2 = mock(RolapStar.class);
+        cache.put("a", 1, Collections.singleton(star1), cache.generation());
+        cache.put("b", 2, Collections.singleton(star2), cache.generation());
+
+        final long generation = cache.generation();
+        cache.flush(Collections.singleton(star1));
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.get("b"));
+
+        // A result computed before the flush is not added.
+        cache.put("c", 3, Collections.singleton(star2), generation);
+        assertNull(cache.get("c"));
+    }
+
+    /**
+     * Tests that the result of a cached expression is shared by queries on
+     * different connections, and is removed when the cells of the cube are
+     * flushed.
+     */
+    public void testSharedBetweenQueries() {
+        propSaver.set(propSaver.properties.SharedExpCacheSize, 1000);
+        final String mdx =
+            "with set [Top Stores] as\n"
+            + " 'Cache(TopCount([Store].[Store Name].Members, 3,"
+            + " [Measures].[Unit Sales]))'\n"
+            + "select {[Measures].[Unit Sales]} on 0,\n"
+            + " [Top Stores] on 1\n"
+            + "from [Sales]";
+        final TestContext context = getTestContext().withFreshConnection();
+        final SharedExpResultCache cache =
+            ((RolapSchema) context.getConnection().getSchema())
+                .getSharedExpResultCache();
+        cache.clear();
+        final long hitCount = cache.getHitCount();
+        final String expected =
+            TestContext.toString(context.executeQuery(mdx));
+        assertTrue(cache.size() > 0);
+        assertEquals(hitCount, cache.getHitCount());
+
+        // The second query takes the set from the shared cache.
+        assertEquals(
+            expected,
+            TestContext.toString(
+                getTestContext().withFreshConnection().executeQuery(mdx)));
+        assertTrue(cache.getHitCount() > hitCount);
+
+        final CacheControl cacheControl = context.getCacheControl();
+        final Cube salesCube =
+            context.getConnection().getSchema().lookupCube("Sales", true);
+        cacheControl.flush(cacheControl.createMeasuresRegion(salesCube));
+        assertEquals(0, cache.size());
+    }
+}
+
+// End SharedExpResultCacheTest.java
@@ -0,0 +1,235 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.StarColumnPredicate;
+import mondrian.rolap.aggmatcher.AggStar;
+import mondrian.test.PropertyRestoringTestCase;
+
+import org.mockito.Mockito;
+
+import java.util.*;
+
+/**
+ * Unit test for {@link AggStarChooser}.
+ */
+public class AggStarChooserTest extends PropertyRestoringTestCase {
+
+    private RolapStar star;
+    private AggStarChooser chooser;
+    private BitKey levelBitKey;
+    private BitKey measureBitKey;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        star = Mockito.mock(RolapStar.class);
+        chooser = new AggStarChooser(star);
+        levelBitKey = BitKey.Factory.makeBitKey(10);
+        levelBitKey.set(1);
+        measureBitKey = BitKey.Factory.makeBitKey(10);
+        measureBitKey.set(5);
+        propSaver.set(propSaver.properties.ChooseAggregateByVolume, false);
+    }
+
+    private AggStar mockAggStar(String name, long rowCount) {
+        final AggStar aggStar = Mockito.mock(AggStar.class);
+        final AggStar.FactTable factTable =
+            Mockito.mock(AggStar.FactTable.class);
+        Mockito.when(aggStar.getFactTable()).thenReturn(factTable);
+        Mockito.when(factTable.getName()).thenReturn(name);
+        Mockito.when(factTable.getNumberOfRows()).thenReturn(rowCount);
+        Mockito.when(factTable.getTotalColumnSize()).thenReturn(1L);
+        return aggStar;
+    }
+
+    /**
+     * The smaller aggregate table wins, even if it comes later in the list.
+     */
+    public void testChoosesSmallest() {
+        final AggStar big = mockAggStar("agg_big", 50000000L);
+        final AggStar small = mockAggStar("agg_small", 2000000L);
+        final List<Object> key = chooser.key(levelBitKey, measureBitKey, null);
+        final AggStarChooser.Choice choice =
+            chooser.choose(
+                key,
+                chooser.getGeneration(),
+                Arrays.asList(
+                    new AggStarChooser.Choice(big, true),
+                    new AggStarChooser.Choice(small, true)),
+                levelBitKey,
+                null);
+        assertSame(small, choice.aggStar);
+        assertTrue(choice.rollup);
+
+        // Decision is cached.
+        assertSame(choice, chooser.lookup(key));
+        chooser.clear();
+        assertNull(chooser.lookup(key));
+    }
+
+    /**
+     * An exact match beats a slightly smaller table that must be rolled up.
+     */
+    public void testRollupPenalty() {
+        final AggStar exact = mockAggStar("agg_exact", 1100L);
+        final AggStar rollup = mockAggStar("agg_rollup", 1000L);
+        assertTrue(
+            chooser.cost(exact, false, levelBitKey, null)
+            < chooser.cost(rollup, true, levelBitKey, null));
+    }
+
+    /**
+     * A table of unknown size is ranked after tables whose size is known.
+     */
+    public void testUnknownSize() {
+        final AggStar unknown = mockAggStar("agg_unknown", -1L);
+        final AggStar known = mockAggStar("agg_known", 1000000L);
+        final List<Object> key = chooser.key(levelBitKey, measureBitKey, null);
+        final AggStarChooser.Choice choice =
+            chooser.choose(
+                key,
+                chooser.getGeneration(),
+                Arrays.asList(
+                    new AggStarChooser.Choice(unknown, false),
+                    new AggStarChooser.Choice(known, false)),
+                levelBitKey,
+                null);
+        assertSame(known, choice.aggStar);
+    }
+
+    /**
+     * A predicate on a column held in an aggregate table's fact table reduces
+     * the rows read from it, but only if the column's cardinality is known.
+     */
+    public void testPredicateSelectivity() {
+        final RolapStar.Column column = mockColumn(2, 1000L);
+        final AggStar big = mockAggStar("agg_big", 1000000L);
+        final AggStar small = mockAggStar("agg_small", 100000L);
+        mockAggColumn(big, column, true);
+        mockAggColumn(small, column, false);
+        final List<StarColumnPredicate> predicates =
+            Collections.<StarColumnPredicate>singletonList(
+                new ValueColumnPredicate(column, "x"));
+
+        // The predicate selects 1 row in 1000 of agg_big. agg_small holds
+        // the column in a dimension table, so every row is read.
+        assertEquals(
+            1000d, chooser.cost(big, false, levelBitKey, predicates), 1e-6);
+        assertEquals(
+            100000d, chooser.cost(small, false, levelBitKey, predicates), 1e-6);
+        final List<Object> key =
+            chooser.key(levelBitKey, measureBitKey, predicates);
+        final AggStarChooser.Choice choice =
+            chooser.choose(
+                key,
+                chooser.getGeneration(),
+                Arrays.asList(
+                    new AggStarChooser.Choice(small, false),
+                    new AggStarChooser.Choice(big, false)),
+                levelBitKey,
+                predicates);
+        assertSame(big, choice.aggStar);
+
+        // A predicate with many values has a different shape.
+        final List<StarColumnPredicate> values =
+            new ArrayList<StarColumnPredicate>();
+        for (int i = 0; i < 500; i++) {
+            values.add(new ValueColumnPredicate(column, i));
+        }
+        final List<StarColumnPredicate> listPredicates =
+            Collections.<StarColumnPredicate>singletonList(
+                new ListColumnPredicate(column, values));
+        assertFalse(
+            key.equals(
+                chooser.key(levelBitKey, measureBitKey, listPredicates)));
+        assertEquals(
+            500000d,
+            chooser.cost(big, false, levelBitKey, listPredicates),
+            1e-6);
+
+        // If the cardinality is not known, the predicate is ignored, and
+        // the shape is different.
+        final RolapStar.Column unknown = mockColumn(2, -1L);
+        final List<StarColumnPredicate> unknownPredicates =
+            Collections.<StarColumnPredicate>singletonList(
+                new ValueColumnPredicate(unknown, "x"));
+        assertFalse(
+            key.equals(
+                chooser.key(levelBitKey, measureBitKey, unknownPredicates)));
+        assertEquals(
+            1000000d,
+            chooser.cost(big, false, levelBitKey, unknownPredicates),
+            1e-6);
+        Mockito.verify(unknown, Mockito.never()).getCardinality();
+    }
+
+    /**
+     * A decision made while the cache is cleared is not cached.
+     */
+    public void testClearWhileChoosing() {
+        final AggStar agg = mockAggStar("agg", 1000L);
+        final List<Object> key = chooser.key(levelBitKey, measureBitKey, null);
+        final int generation = chooser.getGeneration();
+        chooser.clear();
+        final AggStarChooser.Choice choice =
+            chooser.choose(
+                key,
+                generation,
+                Arrays.asList(new AggStarChooser.Choice(agg, false)),
+                levelBitKey,
+                null);
+        assertSame(agg, choice.aggStar);
+        assertNull(chooser.lookup(key));
+    }
+
+    private RolapStar.Column mockColumn(int bitPos, long cardinality) {
+        final RolapStar.Column column = Mockito.mock(RolapStar.Column.class);
+        Mockito.when(column.getBitPosition()).thenReturn(bitPos);
+        Mockito.when(column.getCachedCardinality()).thenReturn(cardinality);
+        return column;
+    }
+
+    private void mockAggColumn(
+        AggStar aggStar,
+        RolapStar.Column column,
+        boolean inFactTable)
+    {
+        final AggStar.Table.Column aggColumn =
+            Mockito.mock(AggStar.Table.Column.class);
+        final AggStar.Table table =
+            inFactTable
+                ? aggStar.getFactTable()
+                : Mockito.mock(AggStar.Table.class);
+        Mockito.when(aggColumn.getTable()).thenReturn(table);
+        Mockito.when(aggStar.lookupColumn(column.getBitPosition()))
+            .thenReturn(aggColumn);
+    }
+
+    /**
+     * If there are no candidates, the choice is the fact table.
+     */
+    public void testNoCandidates() {
+        final List<Object> key = chooser.key(levelBitKey, measureBitKey, null);
+        final AggStarChooser.Choice choice =
+            chooser.choose(
+                key,
+                chooser.getGeneration(),
+                Arrays.<AggStarChooser.Choice>asList(),
+                levelBitKey,
+                null);
+        assertSame(AggStarChooser.Choice.NONE, choice);
+        assertNull(choice.aggStar);
+    }
+}
+
+// End AggStarChooserTest.java
@@ -153,6 +153,160 @@ public class AggregationOnDistinctCountMeasuresTest extends BatchTestCase {
         assertQuerySql(query, patterns);
     }
 
+    /**
+     * Tests that Aggregate over a sum measure gives the same result when it
+     * is evaluated in SQL (see
+     * {@link MondrianProperties#AggregatePushdownThreshold}), and that
+     * overlapping members are still rolled up one by one.
+     */
+    public void testAggregatePushdown() {
+        final String query =
+            "WITH MEMBER [Store].[X] AS "
+            + "'Aggregate({[Store].[USA].[CA], [Store].[USA].[OR], "
+            + "[Store].[USA].[WA]})'\n"
+            + "MEMBER [Store].[Y] AS "
+            + "'Aggregate({[Store].[USA], [Store].[USA].[CA]})'\n"
+            + "SELECT {[Store].[X], [Store].[Y]} ON 0,\n"
+            + "{[Measures].[Unit Sales], [Measures].[Customer Count]} ON 1\n"
+            + "FROM [Sales]";
+        final String expected =
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Store].[X]}\n"
+            + "{[Store].[Y]}\n"
+            + "Axis #2:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "{[Measures].[Customer Count]}\n"
+            + "Row #0: 266,773\n"
+            + "Row #0: 341,521\n"
+            + "Row #1: 5,581\n"
+            + "Row #1: 5,581\n";
+        assertQueryReturns(query, expected);
+
+        propSaver.set(propSaver.properties.AggregatePushdownThreshold, 2);
+        getTestContext().getConnection().getCacheControl(null)
+            .flushSchemaCache();
+        assertQueryReturns(query, expected);
+    }
+
+    /**
+     * Tests that Aggregate over tuples that mix the 'all' member of a
+     * hierarchy with other members of that hierarchy is not evaluated in
+     * SQL. The 'all' member overlaps the other members, so a single
+     * statement would count their rows once rather than twice.
+     */
+    public void testAggregatePushdownAllMember() {
+        final String query =
+            "WITH MEMBER [Store].[Z] AS "
+            + "'Aggregate({([Store].[USA], [Gender].[F]), "
+            + "([Store].[All Stores], [Gender].[F])})'\n"
+            + "SELECT {[Store].[Z]} ON 0,\n"
+            + "{[Measures].[Unit Sales]} ON 1\n"
+            + "FROM [Sales]";
+        final String expected =
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Store].[Z]}\n"
+            + "Axis #2:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "Row #0: 263,116\n";
+        assertQueryReturns(query, expected);
+
+        propSaver.set(propSaver.properties.AggregatePushdownThreshold, 2);
+        getTestContext().getConnection().getCacheControl(null)
+            .flushSchemaCache();
+        assertQueryReturns(query, expected);
+    }
+
+    /**
+     * Tests the SQL generated when Aggregate is evaluated in SQL: one
+     * statement, constrained by the whole set, as an IN list or, if the set
+     * is longer than {@link MondrianProperties#MaxConstraints}, as an inline
+     * table.
+     */
+    public void testAggregatePushdownSql() {
+        final String query =
+            "WITH MEMBER [Time].[1997].[X] AS "
+            + "'Aggregate({[Time].[1997].[Q1], [Time].[1997].[Q2], "
+            + "[Time].[1997].[Q3]})'\n"
+            + "SELECT {[Time].[1997].[X]} ON 0,\n"
+            + "{[Measures].[Unit Sales]} ON 1\n"
+            + "FROM [Sales]";
+        final String expected =
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Time].[1997].[X]}\n"
+            + "Axis #2:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "Row #0: 194,749\n";
+        propSaver.set(propSaver.properties.AggregatePushdownThreshold, 2);
+        assertQueryReturns(query, expected);
+
+        final String mysqlSql =
+            "select sum(`sales_fact_1997`.`unit_sales`) as `m0` "
+            + "from `time_by_day` as `time_by_day`, "
+            + "`sales_fact_1997` as `sales_fact_1997` "
+            + "where `sales_fact_1997`.`time_id` = `time_by_day`.`time_id` "
+            + "and (((`time_by_day`.`the_year`, `time_by_day`.`quarter`) "
+            + "in ((1997, 'Q1'), (1997, 'Q2'), (1997, 'Q3'))))";
+        assertQuerySql(
+            query,
+            new SqlPattern[] {
+                new SqlPattern(
+                    Dialect.DatabaseProduct.MYSQL, mysqlSql, mysqlSql)
+            });
+
+        // The set is longer than the DBMS's IN lists may be, so it is sent
+        // as an inline table.
+        propSaver.set(propSaver.properties.MaxConstraints, 2);
+        assertQueryReturns(query, expected);
+        final String mysqlInlineSql =
+            "select sum(`sales_fact_1997`.`unit_sales`) as `m0` "
+            + "from `time_by_day` as `time_by_day`, "
+            + "`sales_fact_1997` as `sales_fact_1997` "
+            + "where `sales_fact_1997`.`time_id` = `time_by_day`.`time_id` "
+            + "and (((`time_by_day`.`the_year`, `time_by_day`.`quarter`) "
+            + "in (select 1997 as `c0`, 'Q1' as `c1` "
+            + "union all select 1997 as `c0`, 'Q2' as `c1` "
+            + "union all select 1997 as `c0`, 'Q3' as `c1`)))";
+        assertQuerySql(
+            query,
+            new SqlPattern[] {
+                new SqlPattern(
+                    Dialect.DatabaseProduct.MYSQL,
+                    mysqlInlineSql,
+                    mysqlInlineSql)
+            });
+    }
+
+    /**
+     * Tests that Aggregate over members of a parent-child hierarchy is not
+     * evaluated in SQL. Each member's cell includes the rows of its
+     * descendants, through the closure table, which a predicate on the
+     * members' keys would not.
+     */
+    public void testAggregatePushdownParentChild() {
+        final String query =
+            "WITH MEMBER [Employees].[X] AS "
+            + "'Aggregate({[Employees].[Sheri Nowmer].[Derrick Whelply], "
+            + "[Employees].[Sheri Nowmer].[Michael Spence], "
+            + "[Employees].[Sheri Nowmer].[Maya Gutierrez]})'\n"
+            + "SELECT {[Employees].[X]} ON 0,\n"
+            + "{[Measures].[Number of Employees], [Measures].[Org Salary]}"
+            + " ON 1\n"
+            + "FROM [HR]";
+        final String expected =
+            TestContext.toString(getTestContext().executeQuery(query));
+
+        propSaver.set(propSaver.properties.AggregatePushdownThreshold, 2);
+        getTestContext().getConnection().getCacheControl(null)
+            .flushSchemaCache();
+        assertQueryReturns(query, expected);
+    }
+
     public void testCrossJoinMembersWithSetOfMembers() {
         // make sure tuple optimization will be used
         propSaver.set(propSaver.properties.MaxConstraints, 2);
@@ -1465,6 +1619,128 @@ public class AggregationOnDistinctCountMeasuresTest extends BatchTestCase {
             optimized.toString());
     }
 
+    public void testRemoveOverlappingTupleEntries() {
+        final Member usa = storeMember("USA");
+        final Member ca = storeMember("USA", "CA");
+        final Member or = storeMember("USA", "OR");
+        final Member wa = storeMember("USA", "WA");
+        final Member all = allMember("Gender", salesCube);
+        final Member female =
+            member(
+                Id.Segment.toList("Gender", "All Gender", "F"),
+                salesCubeSchemaReader);
+        final Member male =
+            member(
+                Id.Segment.toList("Gender", "All Gender", "M"),
+                salesCubeSchemaReader);
+
+        TupleList tl = new ArrayTupleList(2);
+        tl.addTuple(ca, female);
+        tl.addTuple(or, all);
+        tl.addTuple(or, male);
+        tl.addTuple(ca, female);
+        tl.addTuple(usa, female);
+        tl.addTuple(wa, male);
+        tl.addTuple(or, all);
+
+        // (CA, F) is within (USA, F), and (OR, M) is within (OR, All Gender).
+        // Duplicates are removed; otherwise the order is preserved.
+        TupleList trimmed =
+            AggregateFunDef.AggregateCalc.removeOverlappingTupleEntries(tl);
+        assertEquals(
+            "[[[Store].[USA].[OR], [Gender].[All Gender]],"
+            + " [[Store].[USA], [Gender].[F]],"
+            + " [[Store].[USA].[WA], [Gender].[M]]]",
+            trimmed.toString());
+    }
+
+    /**
+     * Tests that a distinct-count aggregation removes the tuples that are
+     * contained in other tuples before it checks the size of the list.
+     * Without that, the list would be longer than
+     * {@link MondrianProperties#MaxConstraints} and give an error.
+     */
+    public void testAggregateRemovesOverlappingTuples() {
+        propSaver.set(props.MaxConstraints, 3);
+        assertQueryReturns(
+            "with member [Store].[X] as 'Aggregate({[Store].[USA].[CA],"
+            + " [Store].[USA].[CA].[Alameda],"
+            + " [Store].[USA].[CA].[Beverly Hills],"
+            + " [Store].[USA].[OR],"
+            + " [Store].[USA].[OR].[Portland]})'\n"
+            + "select {[Measures].[Customer Count]} on columns,\n"
+            + " {[Store].[X]} on rows\n"
+            + "from [Sales]",
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Customer Count]}\n"
+            + "Axis #2:\n"
+            + "{[Store].[X]}\n"
+            + "Row #0: 3,753\n");
+    }
+
+    /**
+     * Tests {@link AggregateFunDef.AggregateCalc#removeOverlappingTupleEntries}
+     * on tuples whose members have too many combinations of ancestors to
+     * look up, so that it compares them with the tuples that have the same
+     * first member or one of its ancestors.
+     */
+    public void testRemoveOverlappingTupleEntriesLongTuples() {
+        final Member pepper =
+            salesMember(
+                "Product", "All Products", "Food", "Baking Goods",
+                "Baking Goods", "Spices", "BBB Best", "BBB Best Pepper");
+        final Member bbbBest = pepper.getParentMember();
+        final Member garlic =
+            salesMember(
+                "Product", "All Products", "Food", "Produce", "Vegetables",
+                "Fresh Vegetables", "Hermanos", "Hermanos Garlic");
+        final Member abel =
+            salesMember(
+                "Customers", "All Customers", "USA", "CA", "Woodland Hills",
+                "Abel Young");
+        final Member store14 =
+            storeMember("USA", "CA", "San Francisco", "Store 14");
+        final Member sanFrancisco = store14.getParentMember();
+        final Member store6 =
+            storeMember("USA", "CA", "Beverly Hills", "Store 6");
+        final Member january = salesMember("Time", "1997", "Q1", "1");
+        final Member q1 = january.getParentMember();
+
+        TupleList tl = new ArrayTupleList(4);
+        tl.addTuple(pepper, abel, store14, january);
+        tl.addTuple(bbbBest, abel, sanFrancisco, q1);
+        tl.addTuple(pepper, abel, store6, january);
+        tl.addTuple(garlic, abel, store14, january);
+        tl.addTuple(pepper, abel, store6, january);
+
+        // (Pepper, Store 14) is within (BBB Best, San Francisco). Store 6 is
+        // not in San Francisco, and Garlic is not a BBB Best product.
+        TupleList trimmed =
+            AggregateFunDef.AggregateCalc.removeOverlappingTupleEntries(tl);
+        assertEquals(3, trimmed.size());
+        assertEquals(
+            Arrays.asList(bbbBest, abel, sanFrancisco, q1), trimmed.get(0));
+        assertEquals(
+            Arrays.asList(pepper, abel, store6, january), trimmed.get(1));
+        assertEquals(
+            Arrays.asList(garlic, abel, store14, january), trimmed.get(2));
+    }
+
+    private Member salesMember(String... names) {
+        return member(Id.Segment.toList(names), salesCubeSchemaReader);
+    }
+
+    private Member storeMember(String... names) {
+        final List<String> list =
+            new ArrayList<String>(Arrays.asList("Store", "All Stores"));
+        list.addAll(Arrays.asList(names));
+        return member(
+            Id.Segment.toList(list.toArray(new String[list.size()])),
+            salesCubeSchemaReader);
+    }
+
     private boolean tuppleListContains(
         TupleList tuples,
         Member memberByUniqueName)
@@ -1029,6 +1029,35 @@ public class SegmentBuilderTest extends BatchTestCase {
       assertEquals(3, rollup.left.getConstrainedColumns().size());
   }
 
+    public void testMerge() {
+        // Cached segment:   a=1, b=2
+        // Appended rows:    b=10, c=20
+        final SegmentBody body =
+            new DenseDoubleSegmentBody(
+                new BitSet(),
+                new double[] {1, 2},
+                Collections.singletonList(of(toSortedSet("a", "b"), false)));
+        final SegmentBody delta =
+            new DenseDoubleSegmentBody(
+                new BitSet(),
+                new double[] {10, 20},
+                Collections.singletonList(of(toSortedSet("b", "c"), false)));
+
+        SegmentBody merged =
+            SegmentBuilder.merge(
+                body, delta, RolapAggregator.Sum, Dialect.Datatype.Numeric);
+        assertEquals(
+            toSortedSet("a", "b", "c"), merged.getAxisValueSets()[0]);
+        assertArraysAreEqual(
+            new double[] {1, 12, 20}, (double[]) merged.getValueArray());
+
+        merged =
+            SegmentBuilder.merge(
+                body, delta, RolapAggregator.Max, Dialect.Datatype.Numeric);
+        assertArraysAreEqual(
+            new double[] {1, 10, 20}, (double[]) merged.getValueArray());
+    }
+
   public String removeJdkDependentStrings(String data) {
       data = data.replaceAll("(?m)^Checksum:.*(?:\\r?\\n)?","");
       data = data.replaceAll("(?m)^ID:.*(?:\\r?\\n)?","");
@@ -0,0 +1,354 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.olap.CacheControl;
+import mondrian.olap.Cube;
+import mondrian.olap.MondrianServer;
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapConnection;
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.RolapUtil;
+import mondrian.server.Execution;
+import mondrian.server.Locus;
+import mondrian.server.UrlRepositoryContentFinder;
+import mondrian.spi.SegmentCacheTransport;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+import mondrian.spi.impl.LoopbackSegmentCacheTransport;
+import mondrian.test.PropertySaver;
+import mondrian.test.TestContext;
+import mondrian.util.ByteString;
+import mondrian.xmla.test.XmlaTestContext;
+
+import junit.framework.TestCase;
+
+import org.olap4j.CellSet;
+import org.olap4j.OlapConnection;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for {@link SegmentCacheCoordinator} and
+ * {@link LoopbackSegmentCacheTransport}.
+ */
+public class SegmentCacheCoordinatorTest extends TestCase {
+    private SegmentCacheCoordinator first;
+    private SegmentCacheCoordinator second;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Transports created later have greater node ids, so the first
+        // coordinator has precedence over the second.
+        first =
+            new SegmentCacheCoordinator(
+                new LoopbackSegmentCacheTransport(), null);
+        second =
+            new SegmentCacheCoordinator(
+                new LoopbackSegmentCacheTransport(), null);
+    }
+
+    protected void tearDown() throws Exception {
+        first.tearDown();
+        second.tearDown();
+        super.tearDown();
+    }
+
+    public void testWaitsForPeerWithPrecedence() throws Exception {
+        final SegmentHeader header = header("a");
+        first.loadStarted(header);
+        second.loadStarted(header);
+        waitUntilLoadingOnPeer(second, header);
+
+        // The first coordinator never waits for the second.
+        assertFalse(first.isLoadingOnPeer(header));
+        assertFalse(
+            first.awaitPeerLoad(header, System.currentTimeMillis() + 10000));
+
+        final FutureTask<Boolean> future =
+            new FutureTask<Boolean>(
+                new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        return second.awaitPeerLoad(
+                            header, System.currentTimeMillis() + 10000);
+                    }
+                });
+        final Thread thread = new Thread(future);
+        thread.start();
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        first.loadFinished(header, true);
+        assertTrue(future.get(10, TimeUnit.SECONDS));
+        assertFalse(second.isLoadingOnPeer(header));
+    }
+
+    public void testTimeout() throws Exception {
+        final SegmentHeader header = header("b");
+        first.loadStarted(header);
+        waitUntilLoadingOnPeer(second, header);
+        final long start = System.currentTimeMillis();
+        assertFalse(second.awaitPeerLoad(header, start + 100));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+
+        // Other segments are not affected.
+        assertFalse(second.isLoadingOnPeer(header("c")));
+    }
+
+    public void testMessageIsSerializable() throws Exception {
+        final List<SegmentCacheTransport.Message> received =
+            new CopyOnWriteArrayList<SegmentCacheTransport.Message>();
+        final LoopbackSegmentCacheTransport sender =
+            new LoopbackSegmentCacheTransport();
+        final LoopbackSegmentCacheTransport receiver =
+            new LoopbackSegmentCacheTransport();
+        try {
+            receiver.addListener(
+                new SegmentCacheTransport.Listener() {
+                    public void messageReceived(
+                        SegmentCacheTransport.Message message)
+                    {
+                        received.add(message);
+                    }
+                });
+            final SegmentColumn[] region = {
+                header("d").getConstrainedColumns().get(0)
+            };
+            final SegmentCacheTransport.Message message =
+                SegmentCacheTransport.Message.flush(
+                    sender.getNodeId(), "schema",
+                    new ByteString(new byte[] {1}), "Sales", "measure",
+                    "fact", region);
+            sender.send(message);
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (received.isEmpty()
+                && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(10);
+            }
+            assertEquals(1, received.size());
+            final SegmentCacheTransport.Message copy = received.get(0);
+            assertNotSame(message, copy);
+            assertEquals(SegmentCacheTransport.Message.Type.FLUSH, copy.type);
+            assertEquals(sender.getNodeId(), copy.nodeId);
+            assertEquals("Sales", copy.cubeName);
+            assertEquals(message.schemaChecksum, copy.schemaChecksum);
+            assertEquals(1, copy.region.size());
+            assertEquals(region[0].values, copy.region.get(0).values);
+        } finally {
+            sender.tearDown();
+            receiver.tearDown();
+        }
+    }
+
+    /**
+     * Tests two servers that share a segment cache. The second server waits
+     * for the first to load a segment rather than running the same SQL, and
+     * a flush on the first server removes the segment from the second.
+     */
+    public void testTwoServers() throws Exception {
+        final PropertySaver propSaver = new PropertySaver();
+        propSaver.set(
+            propSaver.properties.SegmentCache,
+            MockSegmentCache.class.getName());
+        propSaver.set(
+            propSaver.properties.SegmentCacheTransport,
+            LoopbackSegmentCacheTransport.class.getName());
+        propSaver.set(propSaver.properties.SegmentCachePeerLoadTimeout, 30000);
+        new MockSegmentCache().tearDown();
+
+        final String mdx =
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "{[Gender].[F], [Gender].[M]} on 1\n"
+            + "from [Sales]";
+        final AtomicInteger sqlCount = new AtomicInteger();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RolapUtil.setHook(
+            new RolapUtil.ExecuteQueryHook() {
+                public void onExecuteQuery(String sql) {
+                    if (!sql.contains("sum(") || !sql.contains("unit_sales")) {
+                        return;
+                    }
+                    if (sqlCount.incrementAndGet() == 1) {
+                        // Hold the first server's SQL until the second
+                        // server is waiting for it.
+                        blocked.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            });
+        // The first server is created first, so has precedence.
+        final MondrianServer serverA = createServer();
+        final MondrianServer serverB = createServer();
+        try {
+            final OlapConnection connA =
+                serverA.getConnection("FoodMart", "FoodMart", null);
+            final OlapConnection connB =
+                serverB.getConnection("FoodMart", "FoodMart", null);
+            final SegmentCacheManager cacheMgrB =
+                serverB.getAggregationManager().cacheMgr;
+
+            final FutureTask<String> futureA = execute(connA, mdx);
+            assertTrue(blocked.await(30, TimeUnit.SECONDS));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (cacheMgrB.coordinator.getPeerLoads().isEmpty()) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            final SegmentHeader header =
+                cacheMgrB.coordinator.getPeerLoads().get(0);
+
+            final FutureTask<String> futureB = execute(connB, mdx);
+            deadline = System.currentTimeMillis() + 10000;
+            while (!isAwaitingPeerLoad()) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            release.countDown();
+            final String resultA = futureA.get(30, TimeUnit.SECONDS);
+            assertEquals(resultA, futureB.get(30, TimeUnit.SECONDS));
+            assertEquals(1, sqlCount.get());
+            assertTrue(indexContains(cacheMgrB, header));
+
+            // Flush on the first server, and the second server forgets the
+            // segment too.
+            final RolapConnection rolapConnA =
+                connA.unwrap(RolapConnection.class);
+            final Cube cube = rolapConnA.getSchema().lookupCube("Sales", true);
+            final CacheControl cacheControl =
+                rolapConnA.getCacheControl(null);
+            cacheControl.flush(cacheControl.createMeasuresRegion(cube));
+            deadline = System.currentTimeMillis() + 10000;
+            while (indexContains(cacheMgrB, header)) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            final FutureTask<String> futureB2 = execute(connB, mdx);
+            assertEquals(resultA, futureB2.get(30, TimeUnit.SECONDS));
+            assertEquals(2, sqlCount.get());
+        } finally {
+            release.countDown();
+            RolapUtil.setHook(null);
+            serverA.shutdown();
+            serverB.shutdown();
+            new MockSegmentCache().tearDown();
+            propSaver.reset();
+        }
+    }
+
+    private static MondrianServer createServer() {
+        return MondrianServer.createWithRepository(
+            new UrlRepositoryContentFinder(
+                "inline:" + new XmlaTestContext().getDataSourcesString()),
+            null);
+    }
+
+    /**
+     * Executes a query in a new thread.
+     */
+    private static FutureTask<String> execute(
+        final OlapConnection connection,
+        final String mdx)
+    {
+        final FutureTask<String> future =
+            new FutureTask<String>(
+                new Callable<String>() {
+                    public String call() throws Exception {
+                        final CellSet cellSet =
+                            connection.createStatement().executeOlapQuery(mdx);
+                        return TestContext.toString(cellSet);
+                    }
+                });
+        new Thread(future).start();
+        return future;
+    }
+
+    /**
+     * Returns whether a thread is waiting in
+     * {@link SegmentCacheCoordinator#awaitPeerLoad}.
+     */
+    private static boolean isAwaitingPeerLoad() {
+        for (StackTraceElement[] stackTrace
+            : Thread.getAllStackTraces().values())
+        {
+            for (StackTraceElement element : stackTrace) {
+                if (element.getClassName().equals(
+                        SegmentCacheCoordinator.class.getName())
+                    && element.getMethodName().equals("awaitPeerLoad"))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean indexContains(
+        final SegmentCacheManager cacheMgr,
+        final SegmentHeader header)
+    {
+        return Locus.execute(
+            Execution.NONE,
+            "SegmentCacheCoordinatorTest.indexContains",
+            new Locus.Action<Boolean>() {
+                public Boolean execute() {
+                    final Locus locus = Locus.peek();
+                    return cacheMgr.execute(
+                        new SegmentCacheManager.Command<Boolean>() {
+                            public Boolean call() {
+                                final RolapStar star =
+                                    SegmentCacheManager.getStar(header);
+                                return star != null
+                                    && cacheMgr.getIndexRegistry()
+                                        .getIndex(star).contains(header);
+                            }
+                            public Locus getLocus() {
+                                return locus;
+                            }
+                        });
+                }
+            });
+    }
+
+    private static void waitUntilLoadingOnPeer(
+        SegmentCacheCoordinator coordinator,
+        SegmentHeader header)
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!coordinator.isLoadingOnPeer(header)) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static SegmentHeader header(String value) {
+        final SortedSet<Comparable> values = new TreeSet<Comparable>();
+        values.add(value);
+        final BitKey bitKey = BitKey.Factory.makeBitKey(1);
+        bitKey.set(0);
+        return new SegmentHeader(
+            "schema", new ByteString(new byte[] {1}), "Sales", "measure",
+            Collections.singletonList(new SegmentColumn("c", -1, values)),
+            Collections.<String>emptyList(), "fact", bitKey,
+            Collections.<SegmentColumn>emptyList());
+    }
+}
+
+// End SegmentCacheCoordinatorTest.java
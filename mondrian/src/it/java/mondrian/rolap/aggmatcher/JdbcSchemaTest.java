@@ -0,0 +1,83 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.aggmatcher;
+
+import mondrian.test.FoodMartTestCase;
+
+import java.io.File;
+import java.util.Collections;
+import javax.sql.DataSource;
+
+/**
+ * Test for the metadata cache of {@link JdbcSchema}.
+ */
+public class JdbcSchemaTest extends FoodMartTestCase {
+
+    public JdbcSchemaTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that the metadata cache file is used until it expires, and that
+     * {@link JdbcSchema#clearMetadataCache(DataSource)} deletes it.
+     */
+    public void testMetadataCache() throws Exception {
+        final File dir = File.createTempFile("metadata", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        final DataSource dataSource = getConnection().getDataSource();
+        try {
+            propSaver.set(
+                propSaver.properties.AggregateMetadataCacheDir,
+                dir.getPath());
+            propSaver.set(propSaver.properties.AggregateMetadataCacheMaxAge, 0);
+            JdbcSchema.clearDB(dataSource);
+            JdbcSchema db = JdbcSchema.makeDB(dataSource);
+            db.load();
+            final String tableName =
+                db.getTables().iterator().next().getName();
+            db.loadColumns(
+                Collections.singletonList(db.getTable(tableName)));
+            final File[] files = dir.listFiles();
+            assertEquals(1, files.length);
+
+            // Columns are read from the cache file.
+            JdbcSchema.clearDB(dataSource);
+            db = JdbcSchema.makeDB(dataSource);
+            db.load();
+            assertTrue(db.getTable(tableName).isLoaded());
+
+            // Unless the file has expired.
+            propSaver.set(
+                propSaver.properties.AggregateMetadataCacheMaxAge, 60);
+            assertTrue(
+                files[0].setLastModified(
+                    System.currentTimeMillis() - 120 * 1000L));
+            JdbcSchema.clearDB(dataSource);
+            db = JdbcSchema.makeDB(dataSource);
+            db.load();
+            assertFalse(db.getTable(tableName).isLoaded());
+
+            JdbcSchema.clearMetadataCache(dataSource);
+            assertEquals(0, dir.listFiles().length);
+        } finally {
+            JdbcSchema.clearDB(dataSource);
+            final File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+}
+
+// End JdbcSchemaTest.java
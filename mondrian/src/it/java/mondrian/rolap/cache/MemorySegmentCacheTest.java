@@ -0,0 +1,188 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.cache;
+
+import mondrian.rolap.BitKey;
+import mondrian.spi.SegmentBody;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+import mondrian.util.ByteString;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link MemorySegmentCache} with a size limit.
+ */
+public class MemorySegmentCacheTest extends TestCase {
+    private static final long MILLI = 1000000L;
+
+    /** Estimated size of a segment of 1,000 cells. */
+    private static final long SEGMENT_BYTES =
+        MemorySegmentCache.estimateBytes(body(1000));
+
+    public void testEvictsLeastValuable() {
+        final MemorySegmentCache cache =
+            new MemorySegmentCache(SEGMENT_BYTES * 3, 100);
+        final SegmentHeader a = header("Sales", "a");
+        final SegmentHeader b = header("Sales", "b");
+        final SegmentHeader c = header("Sales", "c");
+        final SegmentHeader d = header("Sales", "d");
+        put(cache, a, 90000 * MILLI);
+        put(cache, b, 5 * MILLI);
+        put(cache, c, 10 * MILLI);
+        assertEquals(3 * SEGMENT_BYTES, cache.getByteCount());
+
+        // b was cheapest to load.
+        assertTrue(put(cache, d, 10 * MILLI));
+        assertTrue(cache.contains(a));
+        assertFalse(cache.contains(b));
+        assertTrue(cache.contains(c));
+        assertTrue(cache.contains(d));
+        assertEquals(3 * SEGMENT_BYTES, cache.getByteCount());
+
+        // A segment that was cheap to load is not admitted at the expense of
+        // segments that were expensive.
+        assertFalse(put(cache, b, 0));
+        assertFalse(cache.contains(b));
+
+        // Unless the segments it would replace are rarely used.
+        for (int i = 0; i < 20; i++) {
+            cache.get(b);
+        }
+        assertTrue(put(cache, b, 0));
+        assertTrue(cache.contains(a));
+        assertTrue(cache.contains(b));
+        assertEquals(3 * SEGMENT_BYTES, cache.getByteCount());
+
+        // A segment larger than the cache is never admitted.
+        cache.setLoadCost(header("Sales", "e"), 90000 * MILLI);
+        assertFalse(cache.put(header("Sales", "e"), body(5000)));
+    }
+
+    public void testPinnedSegmentsAreNotEvicted() {
+        final MemorySegmentCache cache =
+            new MemorySegmentCache(SEGMENT_BYTES * 2, 100);
+        final SegmentHeader a = header("Sales", "a");
+        final SegmentHeader b = header("Sales", "b");
+        final SegmentHeader c = header("Sales", "c");
+        put(cache, a, 1000 * MILLI);
+        put(cache, b, 5 * MILLI);
+
+        final Object owner = new Object();
+        final MemorySegmentCache.Pins pins = cache.createPins(owner);
+        pins.pin(b);
+        assertTrue(put(cache, c, 90000 * MILLI));
+        assertFalse(cache.contains(a));
+        assertTrue(cache.contains(b));
+
+        // Once released, b can be evicted.
+        pins.release();
+        assertTrue(put(cache, a, 90000 * MILLI));
+        assertFalse(cache.contains(b));
+        assertTrue(cache.contains(a));
+        assertTrue(cache.contains(c));
+
+        // Pins can be used again after they are released.
+        pins.pin(a);
+        assertTrue(put(cache, b, 90000 * MILLI));
+        assertTrue(cache.contains(a));
+        assertFalse(cache.contains(c));
+        assertTrue(cache.contains(b));
+    }
+
+    /**
+     * Tests that a segment that is used after it was put is ranked by its
+     * current value, not its value when it was put.
+     */
+    public void testUsedSegmentsAreReranked() {
+        final MemorySegmentCache cache =
+            new MemorySegmentCache(SEGMENT_BYTES * 3, 100);
+        final SegmentHeader a = header("Sales", "a");
+        final SegmentHeader b = header("Sales", "b");
+        final SegmentHeader c = header("Sales", "c");
+        final SegmentHeader d = header("Sales", "d");
+        put(cache, a, 5 * MILLI);
+        put(cache, b, 10 * MILLI);
+        put(cache, c, 10 * MILLI);
+
+        // a was cheapest to load, but it is used often.
+        for (int i = 0; i < 10; i++) {
+            cache.get(a);
+        }
+        assertTrue(put(cache, d, 10 * MILLI));
+        assertTrue(cache.contains(a));
+        assertEquals(
+            1, (cache.contains(b) ? 0 : 1) + (cache.contains(c) ? 0 : 1));
+        assertTrue(cache.contains(d));
+        assertEquals(3 * SEGMENT_BYTES, cache.getByteCount());
+    }
+
+    public void testCubeQuota() {
+        final MemorySegmentCache cache =
+            new MemorySegmentCache(SEGMENT_BYTES * 10, 20);
+        final SegmentHeader sales = header("Sales", "a");
+        put(cache, header("Warehouse", "a"), MILLI);
+        put(cache, sales, 0);
+        put(cache, header("Sales", "b"), MILLI);
+        put(cache, header("Sales", "c"), MILLI);
+        assertFalse(cache.contains(sales));
+        assertTrue(cache.contains(header("Sales", "b")));
+        assertTrue(cache.contains(header("Sales", "c")));
+        assertTrue(cache.contains(header("Warehouse", "a")));
+        assertEquals(3 * SEGMENT_BYTES, cache.getByteCount());
+
+        assertTrue(cache.remove(header("Warehouse", "a")));
+        assertEquals(2 * SEGMENT_BYTES, cache.getByteCount());
+    }
+
+    public void testSoftReferences() {
+        final MemorySegmentCache cache = new MemorySegmentCache(0, 100);
+        final SegmentHeader a = header("Sales", "a");
+        final SegmentBody body = body(1000);
+        assertNull(cache.createPins(new Object()));
+        assertTrue(cache.put(a, body));
+        assertSame(body, cache.get(a));
+        assertEquals(0, cache.getByteCount());
+    }
+
+    private static boolean put(
+        MemorySegmentCache cache,
+        SegmentHeader header,
+        long loadNanos)
+    {
+        cache.setLoadCost(header, loadNanos);
+        return cache.put(header, body(1000));
+    }
+
+    private static SegmentBody body(int cellCount) {
+        final SegmentBody body = mock(SegmentBody.class);
+        when(body.getValueArray()).thenReturn(new double[cellCount]);
+        return body;
+    }
+
+    private static SegmentHeader header(String cubeName, String value) {
+        final SortedSet<Comparable> values = new TreeSet<Comparable>();
+        values.add(value);
+        final BitKey bitKey = BitKey.Factory.makeBitKey(1);
+        bitKey.set(0);
+        return new SegmentHeader(
+            "schema", new ByteString(new byte[] {1}), cubeName, "measure",
+            Collections.singletonList(new SegmentColumn("c", -1, values)),
+            Collections.<String>emptyList(), "fact", bitKey,
+            Collections.<SegmentColumn>emptyList());
+    }
+}
+
+// End MemorySegmentCacheTest.java
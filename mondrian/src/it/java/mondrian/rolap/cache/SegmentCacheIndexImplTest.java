@@ -0,0 +1,334 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.cache;
+
+import mondrian.rolap.BitKey;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+import mondrian.util.ByteString;
+
+import junit.framework.TestCase;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+
+/**
+ * Test for {@link SegmentCacheIndexImpl} and {@link SegmentHeaderIndex}.
+ * Checks lookups and flushes against a linear scan over a synthetic
+ * population of headers.
+ */
+public class SegmentCacheIndexImplTest extends TestCase {
+    private static final Logger LOGGER =
+        Logger.getLogger(SegmentCacheIndexImplTest.class);
+
+    private static final ByteString CHECKSUM = new ByteString(new byte[] {1});
+    private static final String[] COLUMNS = {"year", "state", "product"};
+    private static final List<String> NO_PREDICATES =
+        Collections.emptyList();
+
+    private final Random random = new Random(1234);
+
+    public void testLocateAndIntersectMatchScan() {
+        final SegmentCacheIndexImpl index =
+            new SegmentCacheIndexImpl(Thread.currentThread());
+        final List<SegmentHeader> headers = new ArrayList<SegmentHeader>();
+        for (int i = 0; i < 2000; i++) {
+            final SegmentHeader header =
+                randomHeader(2 + random.nextInt(2), 20);
+            if (!headers.contains(header)) {
+                headers.add(header);
+                index.add(header, null, false);
+            }
+        }
+        checkMatchesScan(index, headers);
+
+        // Remove every third header, then check again.
+        for (Iterator<SegmentHeader> iterator = headers.iterator();
+            iterator.hasNext();)
+        {
+            final SegmentHeader header = iterator.next();
+            if (random.nextInt(3) == 0) {
+                index.remove(header);
+                iterator.remove();
+            }
+        }
+        checkMatchesScan(index, headers);
+    }
+
+    /**
+     * Tests that locating a cell examines only the headers that have the
+     * value of its most selective coordinate, not every header.
+     */
+    public void testLocateIsSublinear() {
+        final SegmentCacheIndexImpl index =
+            new SegmentCacheIndexImpl(Thread.currentThread());
+        final SegmentHeaderIndex headerIndex = new SegmentHeaderIndex();
+        final int headerCount = 50000;
+        for (int i = 0; i < headerCount; i++) {
+            final SegmentHeader header =
+                header(
+                    column("year", 1997 + i % 3),
+                    column("state", "S" + i / 3));
+            index.add(header, null, false);
+            headerIndex.add(header, i);
+        }
+        final BitKey bitKey =
+            header(column("year", 1997), column("state", "S0"))
+                .getConstrainedColumnsBitKey();
+        final int lookupCount = 1000;
+        int found = 0;
+        int examined = 0;
+        for (int i = 0; i < lookupCount; i++) {
+            final Map<String, Comparable> coordinates =
+                new HashMap<String, Comparable>();
+            final int n = random.nextInt(headerCount);
+            coordinates.put("year", 1997 + n % 3);
+            coordinates.put("state", "S" + n / 3);
+            found += locate(index, bitKey, coordinates).size();
+            examined += headerIndex.locate(coordinates).size();
+        }
+        assertEquals(lookupCount, found);
+
+        // Each state is in 3 headers, each year in about 16,667. A linear
+        // scan would examine all 50,000.
+        LOGGER.debug(
+            "Located " + lookupCount + " cells among " + headerCount
+            + " segments, examining " + examined + " headers");
+        assertTrue(
+            "examined " + examined + " headers",
+            examined <= 3 * lookupCount);
+    }
+
+    /**
+     * Tests that rollup prefers the fewest segments, and among those the
+     * segments with fewest cells.
+     */
+    public void testRollupChoosesFewestSegments() {
+        final SegmentCacheIndexImpl index =
+            new SegmentCacheIndexImpl(Thread.currentThread());
+        final SegmentHeader a =
+            header(column("year", 1997), column("state", 3, "CA"));
+        final SegmentHeader b =
+            header(column("year", 1997), column("state", 3, "OR"));
+        final SegmentHeader c =
+            header(column("year", 1997), column("state", 3, "WA"));
+        final SegmentHeader all2 =
+            header(
+                column("year", 2, 1997, 1998),
+                column("state", 3, "CA", "OR", "WA"));
+        final SegmentHeader all =
+            header(column("year", 1997), column("state", 3, "CA", "OR", "WA"));
+        for (SegmentHeader header : Arrays.asList(a, b, c, all2, all)) {
+            index.add(header, null, false);
+        }
+        final List<List<SegmentHeader>> candidates = findRollup(index, 1997);
+        assertEquals(1, candidates.size());
+        assertEquals(Collections.singletonList(all), candidates.get(0));
+
+        index.remove(all);
+        index.remove(all2);
+        assertEquals(
+            Collections.singletonList(Arrays.asList(a, b, c)),
+            findRollup(index, 1997));
+        assertEquals(0, findRollup(index, 1998).size());
+    }
+
+    /**
+     * Tests that a failed rollup is remembered until a segment is added, and
+     * that removing one of several segments of the same dimensionality keeps
+     * the others available for rollup.
+     */
+    public void testRollupAfterAddAndRemove() {
+        final SegmentCacheIndexImpl index =
+            new SegmentCacheIndexImpl(Thread.currentThread());
+        final SegmentHeader a =
+            header(column("year", 1997), column("state", 2, "CA"));
+        final SegmentHeader b =
+            header(column("year", 1997), column("state", 2, "OR"));
+        final SegmentHeader ab =
+            header(column("year", 1997), column("state", 2, "CA", "OR"));
+        index.add(a, null, false);
+        assertEquals(0, findRollup(index, 1997).size());
+        assertEquals(0, findRollup(index, 1997).size());
+
+        index.add(b, null, false);
+        assertEquals(
+            Collections.singletonList(Arrays.asList(a, b)),
+            findRollup(index, 1997));
+
+        index.add(ab, null, false);
+        index.remove(a);
+        assertEquals(
+            Collections.singletonList(Collections.singletonList(ab)),
+            findRollup(index, 1997));
+    }
+
+    private List<List<SegmentHeader>> findRollup(
+        SegmentCacheIndexImpl index,
+        int year)
+    {
+        return index.findRollupCandidates(
+            "schema", CHECKSUM, "cube", "measure", "fact", bitKey(1),
+            Collections.<String, Comparable>singletonMap("year", year),
+            NO_PREDICATES);
+    }
+
+    private void checkMatchesScan(
+        SegmentCacheIndexImpl index,
+        List<SegmentHeader> headers)
+    {
+        for (int i = 0; i < 500; i++) {
+            final SegmentHeader template =
+                randomHeader(2 + random.nextInt(2), 20);
+            final Map<String, Comparable> coordinates =
+                new HashMap<String, Comparable>();
+            for (SegmentColumn column : template.getConstrainedColumns()) {
+                coordinates.put(
+                    column.columnExpression, "v" + random.nextInt(20));
+            }
+            final BitKey bitKey = template.getConstrainedColumnsBitKey();
+            final List<SegmentHeader> expected =
+                new ArrayList<SegmentHeader>();
+            for (SegmentHeader header : headers) {
+                if (header.getConstrainedColumnsBitKey().equals(bitKey)
+                    && SegmentCacheIndexImpl.matches(
+                        header, coordinates, NO_PREDICATES))
+                {
+                    expected.add(header);
+                }
+            }
+            assertEquals(expected, locate(index, bitKey, coordinates));
+
+            final SegmentColumn[] region = randomRegion();
+            final List<SegmentHeader> expected2 =
+                new ArrayList<SegmentHeader>();
+            for (SegmentHeader header : headers) {
+                if (intersects(header, region)) {
+                    expected2.add(header);
+                }
+            }
+            assertEquals(
+                expected2,
+                index.intersectRegion(
+                    "schema", CHECKSUM, "cube", "measure", "fact", region));
+        }
+    }
+
+    private List<SegmentHeader> locate(
+        SegmentCacheIndexImpl index,
+        BitKey bitKey,
+        Map<String, Comparable> coordinates)
+    {
+        return index.locate(
+            "schema", CHECKSUM, "cube", "measure", "fact", bitKey,
+            coordinates, NO_PREDICATES);
+    }
+
+    /**
+     * Linear implementation of whether a header intersects a region; same
+     * as the one in {@link SegmentCacheIndexImpl} before it had an index.
+     */
+    private static boolean intersects(
+        SegmentHeader header,
+        SegmentColumn[] region)
+    {
+        if (region.length == 0) {
+            return true;
+        }
+        for (SegmentColumn regionColumn : region) {
+            final SegmentColumn headerColumn =
+                header.getConstrainedColumn(regionColumn.columnExpression);
+            if (headerColumn == null
+                || headerColumn.values == null
+                || regionColumn.values == null)
+            {
+                return true;
+            }
+            for (Comparable value : regionColumn.values) {
+                if (headerColumn.values.contains(value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a header constrained on the first {@code columnCount}
+     * columns. Each column is wildcarded or has a few random values; some
+     * headers have an excluded region.
+     */
+    private SegmentHeader randomHeader(int columnCount, int valueCount) {
+        final List<SegmentColumn> columns = new ArrayList<SegmentColumn>();
+        for (int i = 0; i < columnCount; i++) {
+            columns.add(randomColumn(COLUMNS[i], valueCount));
+        }
+        final List<SegmentColumn> excluded = new ArrayList<SegmentColumn>();
+        if (random.nextInt(10) == 0) {
+            excluded.add(randomColumn(COLUMNS[0], valueCount));
+        }
+        return new SegmentHeader(
+            "schema", CHECKSUM, "cube", "measure", columns, NO_PREDICATES,
+            "fact", bitKey(columnCount), excluded);
+    }
+
+    private SegmentColumn[] randomRegion() {
+        final int columnCount = random.nextInt(3);
+        final SegmentColumn[] region = new SegmentColumn[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            region[i] = randomColumn(COLUMNS[random.nextInt(3)], 20);
+        }
+        return region;
+    }
+
+    private SegmentColumn randomColumn(String name, int valueCount) {
+        if (random.nextInt(5) == 0) {
+            return new SegmentColumn(name, valueCount, null);
+        }
+        final SortedSet<Comparable> values = new TreeSet<Comparable>();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            values.add("v" + random.nextInt(valueCount));
+        }
+        return new SegmentColumn(name, valueCount, values);
+    }
+
+    private static SegmentColumn column(String name, Comparable value) {
+        final SortedSet<Comparable> values = new TreeSet<Comparable>();
+        values.add(value);
+        return new SegmentColumn(name, -1, values);
+    }
+
+    private static SegmentColumn column(
+        String name,
+        int valueCount,
+        Comparable... values)
+    {
+        return new SegmentColumn(
+            name, valueCount, new TreeSet<Comparable>(Arrays.asList(values)));
+    }
+
+    private static SegmentHeader header(SegmentColumn... columns) {
+        return new SegmentHeader(
+            "schema", CHECKSUM, "cube", "measure", Arrays.asList(columns),
+            NO_PREDICATES, "fact", bitKey(columns.length),
+            Collections.<SegmentColumn>emptyList());
+    }
+
+    private static BitKey bitKey(int columnCount) {
+        final BitKey bitKey = BitKey.Factory.makeBitKey(COLUMNS.length);
+        for (int i = 0; i < columnCount; i++) {
+            bitKey.set(i);
+        }
+        return bitKey;
+    }
+}
+
+// End SegmentCacheIndexImplTest.java
@@ -241,6 +241,48 @@ public class DrillThroughTest extends FoodMartTestCase {
         assertFalse(cell.canDrillThrough());
     }
 
+    /**
+     * Tests that the drill-through count is read from the cached fact count
+     * of the cell, or estimated, according to the
+     * {@link MondrianProperties#DrillThroughCount} property.
+     */
+    public void testDrillThroughCountFromCache() {
+        final Result result = executeQuery(
+            "select {[Measures].[Unit Sales], [Measures].[Fact Count]} on 0,\n"
+            + " {[Gender].[M]} on 1\n"
+            + "from [Sales]\n"
+            + "where [Marital Status].[S]");
+        final Cell cell = result.getCell(new int[] {0, 0});
+        final int factCount =
+            ((Number) result.getCell(new int[] {1, 0}).getValue()).intValue();
+        propSaver.set(propSaver.properties.DrillThroughCount, "SQL");
+        assertEquals(factCount, cell.getDrillThroughCount());
+
+        // The fact count is in the cache, so no SQL is needed.
+        propSaver.set(propSaver.properties.DrillThroughCount, "CACHE");
+        RolapUtil.setHook(
+            new RolapUtil.ExecuteQueryHook() {
+                public void onExecuteQuery(String sql) {
+                    fail("Expected count to come from cache: " + sql);
+                }
+            });
+        try {
+            assertEquals(factCount, cell.getDrillThroughCount());
+        } finally {
+            RolapUtil.setHook(null);
+        }
+
+        // Once the cache is flushed, the count is estimated.
+        final CacheControl cacheControl =
+            getConnection().getCacheControl(null);
+        cacheControl.flush(
+            cacheControl.createMeasuresRegion(result.getQuery().getCube()));
+        propSaver.set(propSaver.properties.DrillThroughCount, "ESTIMATE");
+        final int estimate = cell.getDrillThroughCount();
+        assertTrue(estimate > 0);
+        assertTrue(estimate <= 86837);
+    }
+
     public void testDrillthroughCompoundSlicer() {
         // Tests a case associated with
         // http://jira.pentaho.com/browse/MONDRIAN-1587
@@ -12,7 +12,9 @@
 */
 package mondrian.test;
 
+import mondrian.calc.impl.CodeGenExpCompilerTest;
 import mondrian.calc.impl.ConstantCalcTest;
+import mondrian.calc.impl.OrdinalTupleListTest;
 import mondrian.olap.*;
 import mondrian.olap.fun.*;
 import mondrian.olap.fun.vba.ExcelTest;
@@ -22,6 +24,8 @@ import mondrian.olap4j.XmlaExtraTest;
 import mondrian.rolap.*;
 import mondrian.rolap.agg.*;
 import mondrian.rolap.aggmatcher.*;
+import mondrian.rolap.cache.MemorySegmentCacheTest;
+import mondrian.rolap.cache.SegmentCacheIndexImplTest;
 import mondrian.rolap.format.DefaultFormatterTest;
 import mondrian.rolap.format.FormatterCreateContextTest;
 import mondrian.rolap.format.FormatterFactoryTest;
@@ -303,6 +307,16 @@ public class Main extends TestSuite {
             addTest(suite, EffectiveMemberCacheTest.class);
             addTest(suite, SqlStatementTest.class);
             addTest(suite, ValidMeasureFunDefTest.class);
+            addTest(suite, AggStarChooserTest.class);
+            addTest(suite, JdbcSchemaTest.class);
+            addTest(suite, OrdinalTupleListTest.class);
+            addTest(suite, BoundedTupleHeapTest.class);
+            addTest(suite, SharedExpResultCacheTest.class);
+            addTest(suite, CodeGenExpCompilerTest.class);
+            addTest(suite, SegmentCacheIndexImplTest.class);
+            addTest(suite, MemorySegmentCacheTest.class);
+            addTest(suite, CacheWarmerTest.class);
+            addTest(suite, SegmentCacheCoordinatorTest.class);
 
             boolean testNonEmpty = isRunOnce();
             if (!MondrianProperties.instance().EnableNativeNonEmpty.get()) {
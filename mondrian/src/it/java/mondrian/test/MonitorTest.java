@@ -21,6 +21,10 @@ import java.io.StringWriter;
 import java.sql.SQLException;
 import java.util.List;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
 /**
  * Unit test for monitoring, including {@link mondrian.server.monitor.Monitor}.
  *
@@ -153,6 +157,43 @@ public class MonitorTest extends FoodMartTestCase {
         // sort
         // (other expensive operations similar to sort?)
     }
+
+    /**
+     * Tests that a {@link CellCacheRollupEvent} is visited only by an
+     * {@link ExtendedVisitor}, so that implementations of {@link Visitor}
+     * written before the event existed still work.
+     */
+    @SuppressWarnings("unchecked")
+    public void testRollupEventVisitor() {
+        final CellCacheRollupEvent event =
+            new CellCacheRollupEvent(0L, 1, 2, 3L, 4L, 5, 6, 1, 100L);
+        final Visitor<String> visitor = mock(Visitor.class);
+        assertNull(event.accept(visitor));
+        verifyZeroInteractions(visitor);
+
+        final ExtendedVisitor<String> extendedVisitor =
+            mock(ExtendedVisitor.class);
+        when(extendedVisitor.visit(event)).thenReturn("rollup");
+        assertEquals("rollup", event.accept(extendedVisitor));
+    }
+
+    /**
+     * Tests that a {@link CacheWarmupEvent} is visited only by an
+     * {@link ExtendedVisitor}.
+     */
+    @SuppressWarnings("unchecked")
+    public void testWarmupEventVisitor() {
+        final CacheWarmupEvent event =
+            new CacheWarmupEvent(0L, 1, "FoodMart", 10, 1, 500L);
+        final Visitor<String> visitor = mock(Visitor.class);
+        assertNull(event.accept(visitor));
+        verifyZeroInteractions(visitor);
+
+        final ExtendedVisitor<String> extendedVisitor =
+            mock(ExtendedVisitor.class);
+        when(extendedVisitor.visit(event)).thenReturn("warmup");
+        assertEquals("warmup", event.accept(extendedVisitor));
+    }
 }
 
 // End MonitorTest.java
@@ -697,6 +697,171 @@ public class NativeSetEvaluationTest extends BatchTestCase {
             + "Row #0: 13,573\n");
     }
 
+    /**
+     * Tests that Head and Subset read only the requested range of a level's
+     * members, in natural order, whether or not they are empty.
+     */
+    public void testNativeHeadAndSubset() {
+        propSaver.set(propSaver.properties.EnableNativeSubset, true);
+        checkNative(
+            0,
+            2,
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "Subset([Customers].[Country].Members, 1, 2) on 1\n"
+            + "from Sales",
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "Axis #2:\n"
+            + "{[Customers].[Mexico]}\n"
+            + "{[Customers].[USA]}\n"
+            + "Row #0: \n"
+            + "Row #1: 266,773\n",
+            true);
+        checkNative(
+            0,
+            2,
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "Head([Product].[Drink].Children, 2) on 1\n"
+            + "from Sales",
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "Axis #2:\n"
+            + "{[Product].[Drink].[Alcoholic Beverages]}\n"
+            + "{[Product].[Drink].[Beverages]}\n"
+            + "Row #0: 6,838\n"
+            + "Row #1: 13,573\n",
+            true);
+    }
+
+    /**
+     * Tests that Head and Subset read the right range of a level that has a
+     * null member. The null member comes first, so the range must not be
+     * cut from rows sorted with the null key last.
+     */
+    public void testNativeHeadAndSubsetNullMember() {
+        propSaver.set(propSaver.properties.EnableNativeSubset, true);
+        checkNative(
+            0,
+            2,
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "Head([Store Size in SQFT].[Store Sqft].Members, 2) on 1\n"
+            + "from Sales",
+            null,
+            true);
+        checkNative(
+            0,
+            2,
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "Subset([Store Size in SQFT].[Store Sqft].Members, 1, 2) on 1\n"
+            + "from Sales",
+            null,
+            true);
+    }
+
+    /**
+     * Tests that Head and Subset are not evaluated in SQL over the members
+     * of a level whose members have different parents, or over a sorted set.
+     */
+    public void testNonNativeHeadAndSubset() {
+        propSaver.set(propSaver.properties.EnableNativeSubset, true);
+        checkNotNative(
+            50,
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "Subset([Customers].[Name].Members, 1000, 50) on 1\n"
+            + "from Sales");
+        checkNotNative(
+            10,
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "Head(Order(NonEmpty([Customers].[Name].Members,"
+            + " {[Measures].[Unit Sales]}),"
+            + " [Measures].[Unit Sales], BDESC), 10) on 1\n"
+            + "from Sales");
+    }
+
+    /**
+     * Tests that a filter on a calculated measure, defined over stored
+     * measures using division by a constant, CoalesceEmpty, IIf and Case, is
+     * evaluated in SQL, and that a ratio of measures is not.
+     */
+    public void testNativeFilterOnCalculatedMeasure() {
+        if (!MondrianProperties.instance().EnableNativeFilter.get()) {
+            return;
+        }
+        final String withMember =
+            "with member [Measures].[Profit Thousands] as\n"
+            + " '([Measures].[Store Sales] - [Measures].[Store Cost])"
+            + " / 1000'\n"
+            + "member [Measures].[Profit Margin] as\n"
+            + " '([Measures].[Store Sales] - [Measures].[Store Cost])"
+            + " / [Measures].[Store Sales]'\n";
+        final String[] conditions = {
+            "[Measures].[Profit Thousands] > 0.5",
+            "CoalesceEmpty([Measures].[Profit Thousands], 0) > 0.5",
+            "IIf([Measures].[Store Sales] > 0,"
+            + " [Measures].[Profit Thousands], 0) > 0.5",
+            "Case When [Measures].[Store Sales] > 100000"
+            + " Then [Measures].[Profit Thousands] Else 0 End > 0.5",
+        };
+        for (boolean nullDenominatorProducesNull : new boolean[] {false, true})
+        {
+            propSaver.set(
+                propSaver.properties.NullDenominatorProducesNull,
+                nullDenominatorProducesNull);
+            for (String condition : conditions) {
+                checkNative(
+                    0,
+                    3,
+                    withMember
+                    + "select {[Measures].[Profit Thousands]} on 0,\n"
+                    + "Filter([Store].[Store State].Members, " + condition
+                    + ") on 1\n"
+                    + "from Sales",
+                    null,
+                    true);
+            }
+
+            // In MDX, division by zero gives infinity (or null), not the
+            // SQL error or null, so a ratio of measures is not compiled.
+            checkNotNative(
+                3,
+                withMember
+                + "select {[Measures].[Profit Margin]} on 0,\n"
+                + "Filter([Store].[Store State].Members,"
+                + " [Measures].[Profit Margin] > 0.5) on 1\n"
+                + "from Sales");
+        }
+    }
+
+    /**
+     * Tests that a filter whose condition is true for an empty tuple, by
+     * way of CoalesceEmpty, is not evaluated in SQL. The SQL joins to the
+     * fact table, so it would not return the empty tuples.
+     */
+    public void testNativeFilterCoalesceEmptyTrueForEmpty() {
+        if (!MondrianProperties.instance().EnableNativeFilter.get()) {
+            return;
+        }
+        checkNotNative(
+            2,
+            "select {[Measures].[Unit Sales]} on 0,\n"
+            + "Filter([Store].[Store Country].Members,"
+            + " CoalesceEmpty([Measures].[Unit Sales], 0) = 0) on 1\n"
+            + "from Sales",
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "Axis #2:\n"
+            + "{[Store].[Canada]}\n"
+            + "{[Store].[Mexico]}\n"
+            + "Row #0: \n"
+            + "Row #1: \n");
+    }
+
     public void testAggTCTwoArgWithCrossjoinedSet() {
         if (!MondrianProperties.instance().EnableNativeTopCount.get()) {
             return;
@@ -166,6 +166,115 @@ public class Olap4jTest extends FoodMartTestCase {
             member.getPropertyValue(property));
     }
 
+    /**
+     * Tests {@link mondrian.olap4j.CellSetExport}, which reads the cells of a
+     * cell set in pages and through a cursor.
+     *
+     * @throws SQLException on error
+     */
+    public void testCellSetExport() throws SQLException {
+        final OlapConnection connection =
+            getTestContext().getOlap4jConnection();
+        final CellSet cellSet =
+            connection.createStatement().executeOlapQuery(
+                "with member [Measures].[Name] as\n"
+                + " [Product].CurrentMember.Name\n"
+                + "select {[Measures].[Unit Sales], [Measures].[Name]} on 0,\n"
+                + " [Product].[Product Family].Members\n"
+                + " * {[Time].[1997].[Q1], [Time].[1998].[Q1]} on 1\n"
+                + "from [Sales]");
+        assertTrue(cellSet.isWrapperFor(mondrian.olap4j.CellSetExport.class));
+        final mondrian.olap4j.CellSetExport export =
+            cellSet.unwrap(mondrian.olap4j.CellSetExport.class);
+        assertEquals(12, export.getCellCount());
+
+        // A page size that does not divide the number of cells.
+        final mondrian.olap4j.CellSetExport.Page page =
+            new mondrian.olap4j.CellSetExport.Page(5);
+        final mondrian.olap4j.CellSetExport.Cursor cursor =
+            export.createCursor();
+        int nullCount = 0;
+        int stringCount = 0;
+        for (int ordinal = 0; ordinal < export.getCellCount();) {
+            final int count = export.read(ordinal, page);
+            assertEquals(ordinal, page.firstOrdinal);
+            assertEquals(count, page.count);
+            assertEquals(Math.min(5, 12 - ordinal), count);
+            for (int i = 0; i < count; i++, ordinal++) {
+                final Cell cell = cellSet.getCell(ordinal);
+                assertEquals(cell.isNull(), page.nulls.get(i));
+                if (cell.isNull()) {
+                    ++nullCount;
+                } else if (cell.getValue() instanceof String) {
+                    ++stringCount;
+                    assertTrue(page.nonNumeric.get(i));
+                } else {
+                    assertFalse(page.nonNumeric.get(i));
+                    assertEquals(cell.getDoubleValue(), page.values[i]);
+                }
+                if (ordinal > 0) {
+                    assertTrue(cursor.next());
+                }
+                assertEquals(ordinal, cursor.getOrdinal());
+                assertEquals(
+                    cell.getCoordinateList(), cursor.getCoordinateList());
+                assertEquals(cell.getValue(), cursor.getValue());
+                assertEquals(
+                    cell.getFormattedValue(), cursor.getFormattedValue());
+            }
+        }
+        // Unit Sales is null in 1998; Name is never null.
+        assertEquals(3, nullCount);
+        assertEquals(6, stringCount);
+        assertFalse(cursor.next());
+        assertEquals(11, cursor.getOrdinal());
+
+        assertEquals(
+            cellSet.getCell(3).getValue(), cursor.moveTo(3).getValue());
+        try {
+            export.read(12, page);
+            fail("expected exception");
+        } catch (IndexOutOfBoundsException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Tests {@link mondrian.olap4j.CellSetExport} on a cell set with no
+     * cells.
+     *
+     * @throws SQLException on error
+     */
+    public void testCellSetExportEmpty() throws SQLException {
+        final OlapConnection connection =
+            getTestContext().getOlap4jConnection();
+        final CellSet cellSet =
+            connection.createStatement().executeOlapQuery(
+                "select Filter([Product].[Product Family].Members, 1 = 0)"
+                + " on 0\n"
+                + "from [Sales]");
+        final mondrian.olap4j.CellSetExport export =
+            cellSet.unwrap(mondrian.olap4j.CellSetExport.class);
+        assertEquals(0, export.getCellCount());
+        final mondrian.olap4j.CellSetExport.Cursor cursor =
+            export.createCursor();
+        assertEquals(-1, cursor.getOrdinal());
+        assertFalse(cursor.next());
+        assertEquals(-1, cursor.getOrdinal());
+        try {
+            cursor.getValue();
+            fail("expected exception");
+        } catch (java.util.NoSuchElementException e) {
+            // ok
+        }
+        try {
+            export.read(0, new mondrian.olap4j.CellSetExport.Page(5));
+            fail("expected exception");
+        } catch (IndexOutOfBoundsException e) {
+            // ok
+        }
+    }
+
     /**
      * Tests that a property that is not a standard olap4j property but is a
      * Mondrian-builtin property (viz, "FORMAT_EXP") is included among a level's
@@ -383,6 +492,38 @@ public class Olap4jTest extends FoodMartTestCase {
             results.poll(10, TimeUnit.SECONDS));
     }
 
+    /**
+     * Tests that canceling the statement stops a client that is reading the
+     * rows of a drill-through.
+     */
+    public void testDrillThroughCancel() throws Exception {
+        final OlapConnection connection =
+            getTestContext().getOlap4jConnection();
+        final OlapStatement statement = connection.createStatement();
+        final ResultSet resultSet =
+            statement.executeQuery(
+                "DRILLTHROUGH\n"
+                + "SELECT FROM [Sales] WHERE [Measures].[Unit Sales]");
+        assertEquals(
+            ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        int rowCount = 0;
+        for (; rowCount < 10; rowCount++) {
+            assertTrue(resultSet.next());
+        }
+        statement.cancel();
+        try {
+            while (resultSet.next()) {
+                ++rowCount;
+            }
+            fail("expected error, got " + rowCount + " rows");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("canceled"));
+        }
+        assertTrue(rowCount < 86837);
+        resultSet.close();
+        statement.close();
+    }
+
     /**
      * Test case for
      * <a href="http://jira.pentaho.com/browse/MONDRIAN-1204">MONDRIAN-1204,
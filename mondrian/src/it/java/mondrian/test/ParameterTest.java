@@ -10,6 +10,7 @@
 */
 package mondrian.test;
 
+import mondrian.calc.Calc;
 import mondrian.olap.*;
 import mondrian.rolap.RolapConnectionProperties;
 
@@ -324,6 +325,54 @@ public class ParameterTest extends FoodMartTestCase {
         assertFalse(parameter0.isSet());
     }
 
+    /**
+     * Tests that a query that is executed several times compiles its
+     * calculated members only once, and that a parameter that is used both on
+     * an axis and in a calculated member has the same value in both places
+     * after it is changed between executions.
+     */
+    public void testReExecuteQueryWithParameter() {
+        Connection connection = getConnection();
+        Query query = connection.parseQuery(
+            "with member [Measures].[Foo] as\n"
+            + " Parameter(\"P\", NUMERIC, 1)\n"
+            + "select {[Measures].[Foo]} ON COLUMNS,\n"
+            + " TopCount([Product].Children, Parameter(\"P\", NUMERIC, 1),\n"
+            + "   [Measures].[Unit Sales]) ON ROWS\n"
+            + "from [Sales]");
+        assertEquals(1, query.getParameters().length);
+        final Parameter parameter = query.getParameters()[0];
+        Result result = connection.execute(query);
+        TestContext.assertEqualsVerbose(
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Foo]}\n"
+            + "Axis #2:\n"
+            + "{[Product].[Food]}\n"
+            + "Row #0: 1\n",
+            TestContext.toString(result));
+
+        final Exp exp = query.getFormulas()[0].getExpression();
+        final Calc calc = query.compileExpression(exp, true, null);
+        assertSame(calc, query.compileExpression(exp, true, null));
+
+        parameter.setValue(2);
+        result = connection.execute(query);
+        TestContext.assertEqualsVerbose(
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Foo]}\n"
+            + "Axis #2:\n"
+            + "{[Product].[Food]}\n"
+            + "{[Product].[Non-Consumable]}\n"
+            + "Row #0: 2\n"
+            + "Row #1: 2\n",
+            TestContext.toString(result));
+        assertSame(calc, query.compileExpression(exp, true, null));
+    }
+
     public void testNumericParameterStringValueFails() {
         assertExprThrows(
             "Parameter(\"S\",NUMERIC,\"x\" || \"y\",\"A string parameter\")",
@@ -26,12 +26,15 @@ import org.apache.commons.io.IOUtils;
 import org.apache.log4j.*;
 import org.apache.log4j.varia.LevelRangeFilter;
 
+import org.olap4j.OlapConnection;
 import org.olap4j.metadata.NamedList;
 
 import java.io.*;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * Unit tests for various schema features.
@@ -4888,6 +4891,90 @@ public class SchemaTest extends FoodMartTestCase {
         }
     }
 
+
+    /**
+     * Tests that if {@link MondrianProperties#LazyCubeLoading} is set, a cube
+     * is built when it is first used, and that listing the names of cubes or
+     * looking up a cube via olap4j does not build other cubes.
+     */
+    public void testLazyCubeLoading() throws SQLException {
+        propSaver.set(propSaver.properties.LazyCubeLoading, true);
+        final TestContext context = getTestContext().withSchemaPool(false);
+        final RolapSchema schema =
+            (RolapSchema) context.getConnection().getSchema();
+        assertTrue(schema.getCubeNames().contains("Store"));
+        assertFalse(loadedCubeNames(schema).contains("Store"));
+
+        context.assertQueryReturns(
+            "select {[Measures].[Store Sqft]} on 0 from [Store]",
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Store Sqft]}\n"
+            + "Row #0: 571,596\n");
+        assertTrue(loadedCubeNames(schema).contains("Store"));
+        assertFalse(loadedCubeNames(schema).contains("Warehouse"));
+
+        final OlapConnection olap4jConnection =
+            context.getOlap4jConnection();
+        final RolapSchema olap4jSchema =
+            olap4jConnection.unwrap(RolapConnection.class).getSchema();
+        assertFalse(loadedCubeNames(olap4jSchema).contains("Warehouse"));
+        final NamedList<org.olap4j.metadata.Cube> cubes =
+            olap4jConnection.getOlapSchema().getCubes();
+        assertEquals("Warehouse", cubes.get("Warehouse").getName());
+        assertNull(cubes.get("warehouse"));
+        assertTrue(loadedCubeNames(olap4jSchema).contains("Warehouse"));
+        assertFalse(loadedCubeNames(olap4jSchema).contains("Store"));
+    }
+
+    /**
+     * Tests that threads that look up lazily built cubes at the same time,
+     * including a virtual cube and its base cubes, each build a cube once
+     * and all see the same instance.
+     */
+    public void testLazyCubeLoadingConcurrent() throws Exception {
+        propSaver.set(propSaver.properties.LazyCubeLoading, true);
+        final TestContext context = getTestContext().withSchemaPool(false);
+        final RolapSchema schema =
+            (RolapSchema) context.getConnection().getSchema();
+        final String[] cubeNames =
+            {"Warehouse and Sales", "Sales", "Warehouse"};
+        final int threadCount = 6;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final ExecutorService executor =
+            Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<Cube>> futures = new ArrayList<Future<Cube>>();
+            for (int i = 0; i < threadCount; i++) {
+                final String cubeName = cubeNames[i % cubeNames.length];
+                futures.add(
+                    executor.submit(
+                        new Callable<Cube>() {
+                            public Cube call() throws Exception {
+                                startLatch.await();
+                                return schema.lookupCube(cubeName, true);
+                            }
+                        }));
+            }
+            startLatch.countDown();
+            for (int i = 0; i < threadCount; i++) {
+                final Cube cube = futures.get(i).get(60, TimeUnit.SECONDS);
+                assertEquals(cubeNames[i % cubeNames.length], cube.getName());
+                assertSame(cube, schema.lookupCube(cube.getName(), true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<String> loadedCubeNames(RolapSchema schema) {
+        final List<String> names = new ArrayList<String>();
+        for (RolapCube cube : schema.getLoadedCubeList()) {
+            names.add(cube.getName());
+        }
+        return names;
+    }
 }
 
 // End SchemaTest.java
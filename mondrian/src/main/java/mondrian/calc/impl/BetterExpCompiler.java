@@ -54,6 +54,25 @@ public class BetterExpCompiler extends AbstractExpCompiler {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the expression reads a cell value, such as a measure or a tuple,
+     * returns an {@link AbstractDoubleCalc}, so that functions that
+     * accumulate values, such as <code>Sum</code> and <code>Avg</code>,
+     * evaluate it without boxing.
+     */
+    public DoubleCalc compileDouble(Exp exp) {
+        final DoubleCalc calc = super.compileDouble(exp);
+        if (calc instanceof ValueCalc
+            || calc instanceof MemberValueCalc
+            || calc instanceof TupleValueCalc)
+        {
+            return new CellDoubleCalc(calc);
+        }
+        return calc;
+    }
+
     public ListCalc compileList(Exp exp, boolean mutable) {
         final ListCalc listCalc = super.compileList(exp, mutable);
         if (mutable && listCalc.getResultStyle() == ResultStyle.LIST) {
@@ -64,6 +83,41 @@ public class BetterExpCompiler extends AbstractExpCompiler {
         return listCalc;
     }
 
+    /**
+     * Calc that reads a cell value as a double. It is a thin wrapper around
+     * a generic calc whose {@link DoubleCalc#evaluateDouble} does not box,
+     * and it does not appear in the plan.
+     */
+    private static class CellDoubleCalc extends AbstractDoubleCalc {
+        private final DoubleCalc calc;
+
+        public CellDoubleCalc(DoubleCalc calc) {
+            super(
+                new DummyExp(
+                    calc.getType() instanceof NumericType
+                        ? calc.getType()
+                        : new NumericType()),
+                new Calc[] {calc});
+            this.calc = calc;
+        }
+
+        public double evaluateDouble(Evaluator evaluator) {
+            return calc.evaluateDouble(evaluator);
+        }
+
+        public Object evaluate(Evaluator evaluator) {
+            return calc.evaluate(evaluator);
+        }
+
+        public boolean dependsOn(Hierarchy hierarchy) {
+            return calc.dependsOn(hierarchy);
+        }
+
+        public void accept(CalcWriter calcWriter) {
+            calc.accept(calcWriter);
+        }
+    }
+
     private static class CopyListCalc extends AbstractListCalc {
         private final ListCalc listCalc;
 
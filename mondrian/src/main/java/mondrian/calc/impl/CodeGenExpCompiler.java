@@ -0,0 +1,737 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.calc.impl;
+
+import mondrian.calc.*;
+import mondrian.mdx.ResolvedFunCall;
+import mondrian.olap.*;
+import mondrian.olap.fun.FunUtil;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.tools.*;
+
+/**
+ * Expression compiler that generates Java classes for trees of scalar
+ * operators.
+ *
+ * <p>The interpreter represents an expression such as
+ * <code>([Measures].[Store Sales] - [Measures].[Store Cost]) /
+ * [Measures].[Store Sales] &gt; 0.5</code> as a tree of calcs, and evaluates
+ * each operator by a virtual call to its arguments. This compiler instead
+ * generates the source code of a single calc for the whole tree of
+ * arithmetic operators, comparisons, logical operators, <code>IIf</code>
+ * and numeric literals, compiles it using the platform's Java compiler,
+ * and loads it. The JIT can then inline the operators into one method.
+ *
+ * <p>Any other expression, such as a member or tuple reference or a call
+ * to <code>ParallelPeriod</code>, is compiled as usual and becomes an
+ * argument of the generated calc; the generated code calls it via
+ * {@link DoubleCalc#evaluateDouble} or {@link BooleanCalc#evaluateBoolean}.
+ * The generated code has the same semantics as the built-in operators,
+ * including the treatment of null values and the property
+ * {@link MondrianProperties#NullDenominatorProducesNull}.
+ *
+ * <p>Generated classes are cached by the shape of the expression, so
+ * expressions that differ only in their arguments and constants share a
+ * class. If no Java compiler is available (for example, if Mondrian runs in
+ * a JRE), or if compilation fails, expressions are compiled as usual.
+ *
+ * <p>To use this compiler, set the property
+ * {@link MondrianProperties#ExpCompilerClass} to
+ * <code>mondrian.calc.impl.CodeGenExpCompiler</code>.
+ */
+public class CodeGenExpCompiler extends BetterExpCompiler {
+    private static final Logger LOGGER =
+        Logger.getLogger(CodeGenExpCompiler.class);
+
+    /**
+     * Minimum number of operators in a tree for it to be worth generating
+     * a class.
+     */
+    private static final int MIN_OPERATOR_COUNT = 2;
+
+    /**
+     * Maximum number of generated classes to keep.
+     */
+    private static final int MAX_CLASS_COUNT = 256;
+
+    private static final String PACKAGE = "mondrian.calc.gen";
+    private static final String NAME = "%NAME%";
+    private static final String RUNTIME =
+        CodeGenExpCompiler.class.getName() + ".";
+
+    private static final AtomicInteger CLASS_ID = new AtomicInteger();
+
+    /**
+     * Constructors of generated classes, keyed by source code. Accessed
+     * only while holding the lock on the map.
+     */
+    private static final Map<String, Constructor<?>> CONSTRUCTORS =
+        new LinkedHashMap<String, Constructor<?>>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Constructor<?>> eldest)
+            {
+                return size() > MAX_CLASS_COUNT;
+            }
+        };
+
+    /**
+     * Source code of generated classes that could not be compiled, so that
+     * they are not compiled again. Accessed only while holding the lock on
+     * {@link #CONSTRUCTORS}.
+     */
+    private static final Map<String, Boolean> FAILED_SOURCES =
+        new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Boolean> eldest)
+            {
+                return size() > MAX_CLASS_COUNT;
+            }
+        };
+
+    private static volatile boolean compilerMissing;
+
+    public CodeGenExpCompiler(Evaluator evaluator, Validator validator) {
+        super(evaluator, validator);
+    }
+
+    public CodeGenExpCompiler(
+        Evaluator evaluator,
+        Validator validator,
+        List<ResultStyle> resultStyles)
+    {
+        super(evaluator, validator, resultStyles);
+    }
+
+    /**
+     * Returns whether a Java compiler is available to compile generated
+     * classes.
+     */
+    public static boolean isAvailable() {
+        return !compilerMissing && ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    public Calc compile(Exp exp) {
+        if (exp instanceof ResolvedFunCall) {
+            final ResolvedFunCall call = (ResolvedFunCall) exp;
+            final Op op = Op.of(call.getFunDef());
+            // A numeric IIf returns whatever value its branch returns, for
+            // example a string or an error, so it can only be generated if
+            // its result is converted to a double.
+            if (op != null
+                && op != Op.IIF_NUMERIC
+                && countOperators(call) >= MIN_OPERATOR_COUNT)
+            {
+                final Calc calc = generate(call, op.numeric);
+                if (calc != null) {
+                    return calc;
+                }
+            }
+        }
+        return super.compile(exp);
+    }
+
+    /**
+     * Returns the number of operators that would be generated for an
+     * expression.
+     */
+    private static int countOperators(Exp exp) {
+        if (!(exp instanceof ResolvedFunCall)) {
+            return 0;
+        }
+        final ResolvedFunCall call = (ResolvedFunCall) exp;
+        final Op op = Op.of(call.getFunDef());
+        if (op == null) {
+            return 0;
+        }
+        int count = 1;
+        for (Exp arg : call.getArgs()) {
+            count += countOperators(arg);
+        }
+        return count;
+    }
+
+    /**
+     * Generates, compiles and instantiates a calc for a call to an operator,
+     * or returns null if the calc cannot be compiled.
+     */
+    private Calc generate(ResolvedFunCall call, boolean numeric) {
+        final Generator generator = new Generator();
+        final String result = generator.generate(call, numeric, "        ");
+        final String source = generator.source(numeric, result);
+        final Constructor<?> constructor = getConstructor(source);
+        if (constructor == null) {
+            return null;
+        }
+        final double[] constants = new double[generator.constants.size()];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = generator.constants.get(i);
+        }
+        try {
+            return (Calc) constructor.newInstance(
+                call,
+                generator.calcs.toArray(new Calc[generator.calcs.size()]),
+                constants);
+        } catch (Exception e) {
+            throw Util.newInternal(e, "while instantiating generated calc");
+        }
+    }
+
+    /**
+     * Returns the constructor of a generated class, compiling the class if
+     * it is not in the cache, or null if it cannot be compiled. A class that
+     * could not be compiled is not compiled again.
+     *
+     * @param source Source code, with {@link #NAME} in place of the class
+     *     name
+     * @return Constructor, or null
+     */
+    private static Constructor<?> getConstructor(String source) {
+        synchronized (CONSTRUCTORS) {
+            Constructor<?> constructor = CONSTRUCTORS.get(source);
+            if (constructor == null
+                && !compilerMissing
+                && !FAILED_SOURCES.containsKey(source))
+            {
+                final String name = "Calc" + CLASS_ID.incrementAndGet();
+                final Class<?> clazz =
+                    compileClass(PACKAGE + "." + name,
+                        source.replace(NAME, name));
+                if (clazz != null) {
+                    constructor = clazz.getConstructors()[0];
+                    CONSTRUCTORS.put(source, constructor);
+                } else {
+                    FAILED_SOURCES.put(source, Boolean.TRUE);
+                }
+            }
+            return constructor;
+        }
+    }
+
+    /**
+     * Compiles a class in memory and loads it, or returns null if the class
+     * cannot be compiled.
+     *
+     * @param className Fully-qualified class name
+     * @param source Source code
+     * @return Class, or null
+     */
+    private static Class<?> compileClass(
+        final String className,
+        final String source)
+    {
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            LOGGER.warn(
+                "No Java compiler is available; expressions will be"
+                + " interpreted");
+            compilerMissing = true;
+            return null;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Compiling generated calc:\n" + source);
+        }
+        final Map<String, ByteArrayOutputStream> outputs =
+            new HashMap<String, ByteArrayOutputStream>();
+        final JavaFileManager fileManager =
+            new ForwardingJavaFileManager<StandardJavaFileManager>(
+                javac.getStandardFileManager(null, null, null))
+            {
+                public JavaFileObject getJavaFileForOutput(
+                    Location location,
+                    final String name,
+                    JavaFileObject.Kind kind,
+                    FileObject sibling)
+                {
+                    return new SimpleJavaFileObject(
+                        URI.create(
+                            "mem:///" + name.replace('.', '/')
+                            + kind.extension),
+                        kind)
+                    {
+                        public OutputStream openOutputStream() {
+                            final ByteArrayOutputStream out =
+                                new ByteArrayOutputStream();
+                            outputs.put(name, out);
+                            return out;
+                        }
+                    };
+                }
+            };
+        final JavaFileObject sourceFile =
+            new SimpleJavaFileObject(
+                URI.create(
+                    "string:///" + className.replace('.', '/')
+                    + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE)
+            {
+                public CharSequence getCharContent(
+                    boolean ignoreEncodingErrors)
+                {
+                    return source;
+                }
+            };
+        final StringWriter messages = new StringWriter();
+        final Boolean success =
+            javac.getTask(
+                messages,
+                fileManager,
+                null,
+                Arrays.asList("-classpath", classPath(), "-g:none"),
+                null,
+                Collections.singletonList(sourceFile)).call();
+        final ByteArrayOutputStream out = outputs.get(className);
+        if (!Boolean.TRUE.equals(success) || out == null) {
+            LOGGER.warn(
+                "Could not compile generated calc " + className
+                + "; expression will be interpreted: " + messages);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Source of " + className + ":\n" + source);
+            }
+            return null;
+        }
+        final byte[] bytes = out.toByteArray();
+        return new ClassLoader(CodeGenExpCompiler.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass(className, bytes, 0, bytes.length);
+            }
+        }.define();
+    }
+
+    /**
+     * Returns the class path for compiling generated classes: the class path
+     * of the JVM plus the location that Mondrian was loaded from, which
+     * differ in an application server.
+     */
+    private static String classPath() {
+        final StringBuilder buf =
+            new StringBuilder(System.getProperty("java.class.path", ""));
+        final CodeSource codeSource =
+            CodeGenExpCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            try {
+                buf.append(File.pathSeparator)
+                    .append(new File(codeSource.getLocation().toURI()));
+            } catch (Exception e) {
+                // Not a file; rely on the class path of the JVM.
+                Util.discard(e);
+            }
+        }
+        return buf.toString();
+    }
+
+    /** Helper for generated code; implements the "+" operator. */
+    public static double plus(double v0, double v1) {
+        if (v0 == FunUtil.DoubleNull) {
+            return v1;
+        } else if (v1 == FunUtil.DoubleNull) {
+            return v0;
+        } else {
+            return v0 + v1;
+        }
+    }
+
+    /** Helper for generated code; implements the "-" operator. */
+    public static double minus(double v0, double v1) {
+        if (v0 == FunUtil.DoubleNull) {
+            return v1 == FunUtil.DoubleNull ? FunUtil.DoubleNull : - v1;
+        } else if (v1 == FunUtil.DoubleNull) {
+            return v0;
+        } else {
+            return v0 - v1;
+        }
+    }
+
+    /** Helper for generated code; implements the "*" operator. */
+    public static double multiply(double v0, double v1) {
+        if (v0 == FunUtil.DoubleNull || v1 == FunUtil.DoubleNull) {
+            return FunUtil.DoubleNull;
+        }
+        return v0 * v1;
+    }
+
+    /**
+     * Helper for generated code; implements the "/" operator if
+     * {@link MondrianProperties#NullDenominatorProducesNull} is false.
+     */
+    public static double divide(double v0, double v1) {
+        if (v0 == FunUtil.DoubleNull) {
+            return FunUtil.DoubleNull;
+        } else if (v1 == FunUtil.DoubleNull) {
+            return Double.POSITIVE_INFINITY;
+        } else {
+            return v0 / v1;
+        }
+    }
+
+    /**
+     * Helper for generated code; implements the "/" operator if
+     * {@link MondrianProperties#NullDenominatorProducesNull} is true.
+     */
+    public static double divideNull(double v0, double v1) {
+        if (v0 == FunUtil.DoubleNull || v1 == FunUtil.DoubleNull) {
+            return FunUtil.DoubleNull;
+        }
+        return v0 / v1;
+    }
+
+    /** Helper for generated code; implements the prefix "-" operator. */
+    public static double negate(double v) {
+        return v == FunUtil.DoubleNull ? FunUtil.DoubleNull : - v;
+    }
+
+    /**
+     * Helper for generated code; returns whether a comparison between two
+     * numbers is null.
+     */
+    public static boolean eitherNull(double v0, double v1) {
+        return Double.isNaN(v0)
+            || Double.isNaN(v1)
+            || v0 == FunUtil.DoubleNull
+            || v1 == FunUtil.DoubleNull;
+    }
+
+    /**
+     * Base class for generated numeric calcs.
+     */
+    public abstract static class DoubleBase extends AbstractDoubleCalc {
+        protected DoubleBase(Exp exp, Calc[] calcs) {
+            super(exp, calcs);
+        }
+
+        protected String getName() {
+            return "Generated";
+        }
+    }
+
+    /**
+     * Base class for generated boolean calcs.
+     */
+    public abstract static class BooleanBase extends AbstractBooleanCalc {
+        protected BooleanBase(Exp exp, Calc[] calcs) {
+            super(exp, calcs);
+        }
+
+        protected String getName() {
+            return "Generated";
+        }
+    }
+
+    /**
+     * Operators that can be generated.
+     */
+    private enum Op {
+        PLUS(Syntax.Infix, "+", true),
+        MINUS(Syntax.Infix, "-", true),
+        MULTIPLY(Syntax.Infix, "*", true),
+        DIVIDE(Syntax.Infix, "/", true),
+        NEGATE(Syntax.Prefix, "-", true),
+        EQ(Syntax.Infix, "=", false),
+        NE(Syntax.Infix, "<>", false),
+        LT(Syntax.Infix, "<", false),
+        LE(Syntax.Infix, "<=", false),
+        GT(Syntax.Infix, ">", false),
+        GE(Syntax.Infix, ">=", false),
+        AND(Syntax.Infix, "AND", false),
+        OR(Syntax.Infix, "OR", false),
+        XOR(Syntax.Infix, "XOR", false),
+        NOT(Syntax.Prefix, "NOT", false),
+        IIF_NUMERIC(Syntax.Function, "IIf", true),
+        IIF_BOOLEAN(Syntax.Function, "IIf", false);
+
+        final Syntax syntax;
+        final String name;
+        final boolean numeric;
+
+        Op(Syntax syntax, String name, boolean numeric) {
+            this.syntax = syntax;
+            this.name = name;
+            this.numeric = numeric;
+        }
+
+        /**
+         * Returns the operator implemented by a function, or null if the
+         * function cannot be generated.
+         */
+        static Op of(FunDef funDef) {
+            for (Op op : values()) {
+                if (op.syntax == funDef.getSyntax()
+                    && op.name.equalsIgnoreCase(funDef.getName())
+                    && op.matches(
+                        funDef.getReturnCategory(),
+                        funDef.getParameterCategories()))
+                {
+                    return op;
+                }
+            }
+            return null;
+        }
+
+        private boolean matches(int returnCategory, int[] parameters) {
+            switch (this) {
+            case NEGATE:
+                return returnCategory == Category.Numeric
+                    && Arrays.equals(parameters, new int[] {Category.Numeric});
+            case NOT:
+                return returnCategory == Category.Logical
+                    && Arrays.equals(parameters, new int[] {Category.Logical});
+            case AND:
+            case OR:
+            case XOR:
+                return returnCategory == Category.Logical
+                    && Arrays.equals(
+                        parameters,
+                        new int[] {Category.Logical, Category.Logical});
+            case IIF_NUMERIC:
+                return returnCategory == Category.Numeric
+                    && Arrays.equals(
+                        parameters,
+                        new int[] {
+                            Category.Logical, Category.Numeric,
+                            Category.Numeric});
+            case IIF_BOOLEAN:
+                return returnCategory == Category.Logical
+                    && Arrays.equals(
+                        parameters,
+                        new int[] {
+                            Category.Logical, Category.Logical,
+                            Category.Logical});
+            default:
+                return returnCategory
+                    == (numeric ? Category.Numeric : Category.Logical)
+                    && Arrays.equals(
+                        parameters,
+                        new int[] {Category.Numeric, Category.Numeric});
+            }
+        }
+    }
+
+    /**
+     * Generates the source code of a calc. Each operator stores its result
+     * in a local variable; arguments that are not operators become fields.
+     */
+    private class Generator {
+        final List<Calc> calcs = new ArrayList<Calc>();
+        final List<String> calcTypes = new ArrayList<String>();
+        final List<Double> constants = new ArrayList<Double>();
+        final StringBuilder body = new StringBuilder();
+        private int variableCount;
+
+        /**
+         * Generates code that evaluates an expression, and returns the name
+         * of the variable or field that holds its value.
+         *
+         * @param exp Expression
+         * @param numeric Whether the value is required as a double (else a
+         *     boolean)
+         * @param indent Indentation of generated statements
+         * @return Name of variable
+         */
+        String generate(Exp exp, boolean numeric, String indent) {
+            final Op op = exp instanceof ResolvedFunCall
+                ? Op.of(((ResolvedFunCall) exp).getFunDef())
+                : null;
+            if (op == null || op.numeric != numeric) {
+                return generateArgument(exp, numeric, indent);
+            }
+            final Exp[] args = ((ResolvedFunCall) exp).getArgs();
+            final String v = "v" + variableCount++;
+            switch (op) {
+            case PLUS:
+            case MINUS:
+            case MULTIPLY:
+            case DIVIDE:
+                final String a0 = generate(args[0], true, indent);
+                final String a1 = generate(args[1], true, indent);
+                final String method;
+                switch (op) {
+                case PLUS:
+                    method = "plus";
+                    break;
+                case MINUS:
+                    method = "minus";
+                    break;
+                case MULTIPLY:
+                    method = "multiply";
+                    break;
+                default:
+                    method =
+                        MondrianProperties.instance()
+                            .NullDenominatorProducesNull.get()
+                            ? "divideNull"
+                            : "divide";
+                    break;
+                }
+                statement(
+                    indent, "final double " + v + " = " + RUNTIME + method
+                    + "(" + a0 + ", " + a1 + ");");
+                return v;
+            case NEGATE:
+                statement(
+                    indent, "final double " + v + " = " + RUNTIME + "negate("
+                    + generate(args[0], true, indent) + ");");
+                return v;
+            case EQ:
+            case NE:
+            case LT:
+            case LE:
+            case GT:
+            case GE:
+                final String c0 = generate(args[0], true, indent);
+                final String c1 = generate(args[1], true, indent);
+                statement(
+                    indent, "final boolean " + v + " = !" + RUNTIME
+                    + "eitherNull(" + c0 + ", " + c1 + ") && " + c0 + " "
+                    + (op == Op.EQ ? "==" : op == Op.NE ? "!=" : op.name)
+                    + " " + c1 + ";");
+                return v;
+            case NOT:
+                statement(
+                    indent, "final boolean " + v + " = !"
+                    + generate(args[0], false, indent) + ";");
+                return v;
+            case XOR:
+                final String x0 = generate(args[0], false, indent);
+                final String x1 = generate(args[1], false, indent);
+                statement(
+                    indent,
+                    "final boolean " + v + " = " + x0 + " != " + x1 + ";");
+                return v;
+            case AND:
+            case OR:
+                // As the built-in operators, don't short-circuit while
+                // evaluating axes, so that all cells are requested at once.
+                final String b0 = generate(args[0], false, indent);
+                statement(indent, "boolean " + v + ";");
+                statement(
+                    indent, "if (!e.isEvalAxes() && "
+                    + (op == Op.AND ? "!" : "") + b0 + ") {");
+                statement(
+                    indent, "    " + v + " = " + (op == Op.OR) + ";");
+                statement(indent, "} else {");
+                final String b1 = generate(args[1], false, indent + "    ");
+                statement(
+                    indent, "    " + v + " = " + b0
+                    + (op == Op.AND ? " && " : " || ") + b1 + ";");
+                statement(indent, "}");
+                return v;
+            case IIF_NUMERIC:
+            case IIF_BOOLEAN:
+                final String condition = generate(args[0], false, indent);
+                statement(
+                    indent, (numeric ? "double " : "boolean ") + v + ";");
+                statement(indent, "if (" + condition + ") {");
+                final String t = generate(args[1], numeric, indent + "    ");
+                statement(indent, "    " + v + " = " + t + ";");
+                statement(indent, "} else {");
+                final String f = generate(args[2], numeric, indent + "    ");
+                statement(indent, "    " + v + " = " + f + ";");
+                statement(indent, "}");
+                return v;
+            default:
+                throw Util.unexpected(op);
+            }
+        }
+
+        /**
+         * Generates code for an argument that is not an operator: a numeric
+         * literal becomes a constant, anything else is compiled as usual,
+         * becomes a field, and is evaluated into a variable.
+         */
+        private String generateArgument(
+            Exp exp,
+            boolean numeric,
+            String indent)
+        {
+            if (numeric
+                && exp instanceof Literal
+                && ((Literal) exp).getValue() instanceof Number)
+            {
+                constants.add(
+                    ((Number) ((Literal) exp).getValue()).doubleValue());
+                return "k" + (constants.size() - 1);
+            }
+            final String c = "c" + calcs.size();
+            final String v = "v" + variableCount++;
+            if (numeric) {
+                calcs.add(compileDouble(exp));
+                calcTypes.add("DoubleCalc");
+                statement(
+                    indent,
+                    "final double " + v + " = " + c + ".evaluateDouble(e);");
+            } else {
+                calcs.add(compileBoolean(exp));
+                calcTypes.add("BooleanCalc");
+                statement(
+                    indent,
+                    "final boolean " + v + " = " + c
+                    + ".evaluateBoolean(e);");
+            }
+            return v;
+        }
+
+        private void statement(String indent, String statement) {
+            body.append(indent).append(statement).append('\n');
+        }
+
+        /**
+         * Returns the source code of the class.
+         */
+        String source(boolean numeric, String result) {
+            final StringBuilder buf = new StringBuilder();
+            buf.append("package ").append(PACKAGE).append(";\n\n")
+                .append("public final class ").append(NAME)
+                .append(" extends ").append(RUNTIME)
+                .append(numeric ? "DoubleBase" : "BooleanBase")
+                .append(" {\n");
+            for (int i = 0; i < calcs.size(); i++) {
+                buf.append("    private final mondrian.calc.")
+                    .append(calcTypes.get(i)).append(" c").append(i)
+                    .append(";\n");
+            }
+            for (int i = 0; i < constants.size(); i++) {
+                buf.append("    private final double k").append(i)
+                    .append(";\n");
+            }
+            buf.append("\n    public ").append(NAME)
+                .append("(mondrian.olap.Exp exp, mondrian.calc.Calc[] calcs,")
+                .append(" double[] k) {\n")
+                .append("        super(exp, calcs);\n");
+            for (int i = 0; i < calcs.size(); i++) {
+                buf.append("        this.c").append(i)
+                    .append(" = (mondrian.calc.").append(calcTypes.get(i))
+                    .append(") calcs[").append(i).append("];\n");
+            }
+            for (int i = 0; i < constants.size(); i++) {
+                buf.append("        this.k").append(i).append(" = k[")
+                    .append(i).append("];\n");
+            }
+            buf.append("    }\n\n    public ")
+                .append(
+                    numeric
+                        ? "double evaluateDouble"
+                        : "boolean evaluateBoolean")
+                .append("(mondrian.olap.Evaluator e) {\n")
+                .append(body)
+                .append("        return ").append(result).append(";\n")
+                .append("    }\n}\n");
+            return buf.toString();
+        }
+    }
+}
+
+// End CodeGenExpCompiler.java
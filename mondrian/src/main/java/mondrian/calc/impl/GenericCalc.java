@@ -55,7 +55,7 @@ public abstract class GenericCalc
         return (Member[]) evaluate(evaluator);
     }
 
-    private String msg(TypeEnum expectedType, Object o) {
+    private static String msg(TypeEnum expectedType, Object o) {
         final TypeEnum actualType = actualType(o);
         return "Expected value of type " + expectedType + "; got value '" + o
            + "' (" + (actualType == null ? o.getClass() : actualType) + ")";
@@ -107,7 +107,19 @@ public abstract class GenericCalc
     }
 
     public double evaluateDouble(Evaluator evaluator) {
-        final Object o = evaluate(evaluator);
+        return toDouble(evaluator, evaluate(evaluator));
+    }
+
+    /**
+     * Converts the value of a numeric expression to a <code>double</code>.
+     *
+     * @param evaluator Evaluator, used to create an exception if the value
+     *     is not numeric
+     * @param o Value
+     * @return Value as a double, or {@link FunUtil#DoubleNull} if the value
+     *     is null
+     */
+    public static double toDouble(Evaluator evaluator, Object o) {
         try {
             final Number number = (Number) o;
             return numberToDouble(number);
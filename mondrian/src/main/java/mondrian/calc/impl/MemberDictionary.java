@@ -0,0 +1,111 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.calc.impl;
+
+import mondrian.olap.Member;
+import mondrian.olap.Util;
+
+import java.util.*;
+
+/**
+ * Dictionary that assigns an int ordinal to each {@link Member}, so that
+ * tuples can be stored, hashed and compared as arrays of ints. Used by
+ * {@link OrdinalTupleList}.
+ *
+ * <p>Each distinct member object has its own ordinal, so that a list can
+ * give back exactly the objects that were put into it. Several objects may
+ * be equal according to {@link Member#equals(Object)} (for example, a member
+ * and a visual total that wraps it); such objects share an <em>equality
+ * class</em>, and it is equality classes that are hashed and compared.
+ *
+ * <p>A dictionary is usually scoped to a query; see
+ * {@link mondrian.olap.Query#getMemberDictionary()}. It is safe for use by
+ * several threads. Looking up a member by ordinal does not lock.
+ */
+public class MemberDictionary {
+    private final Map<Member, Integer> ordinals =
+        new IdentityHashMap<Member, Integer>();
+    private final Map<Member, Integer> classes =
+        new HashMap<Member, Integer>();
+
+    // Arrays are replaced, never shrunk, when they grow. An ordinal is only
+    // handed out after its slots have been written.
+    private volatile Member[] members = new Member[16];
+    private volatile int[] memberClasses = new int[16];
+    private int size;
+
+    /**
+     * Creates an empty MemberDictionary.
+     */
+    public MemberDictionary() {
+    }
+
+    /**
+     * Returns the ordinal of a member, assigning one if the member has not
+     * been seen before.
+     *
+     * @param member Member
+     * @return Ordinal
+     */
+    public synchronized int ordinal(Member member) {
+        final Integer ordinal = ordinals.get(member);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        Integer equalityClass = classes.get(member);
+        if (equalityClass == null) {
+            equalityClass = classes.size();
+            classes.put(member, equalityClass);
+        }
+        Member[] members = this.members;
+        int[] memberClasses = this.memberClasses;
+        if (size == members.length) {
+            final int newCapacity = size * 2;
+            members = Util.copyOf(members, newCapacity);
+            memberClasses = Util.copyOf(memberClasses, newCapacity);
+        }
+        members[size] = member;
+        memberClasses[size] = equalityClass;
+        this.members = members;
+        this.memberClasses = memberClasses;
+        ordinals.put(member, size);
+        return size++;
+    }
+
+    /**
+     * Returns the member with a given ordinal.
+     *
+     * @param ordinal Ordinal, as returned by {@link #ordinal(Member)}
+     * @return Member
+     */
+    public Member member(int ordinal) {
+        return members[ordinal];
+    }
+
+    /**
+     * Returns the equality class of the member with a given ordinal. Two
+     * members have the same equality class if and only if they are equal.
+     *
+     * @param ordinal Ordinal, as returned by {@link #ordinal(Member)}
+     * @return Equality class
+     */
+    public int equalityClass(int ordinal) {
+        return memberClasses[ordinal];
+    }
+
+    /**
+     * Returns the number of distinct member objects in this dictionary.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
+
+// End MemberDictionary.java
@@ -12,8 +12,10 @@ package mondrian.calc.impl;
 import mondrian.calc.Calc;
 import mondrian.calc.MemberCalc;
 import mondrian.olap.*;
+import mondrian.olap.fun.FunUtil;
 import mondrian.olap.type.ScalarType;
 import mondrian.olap.type.Type;
+import mondrian.rolap.RolapEvaluator;
 
 /**
  * Expression which evaluates a few member expressions,
@@ -104,6 +106,31 @@ public class MemberValueCalc extends GenericCalc {
         }
     }
 
+    public double evaluateDouble(Evaluator evaluator) {
+        if (!(evaluator instanceof RolapEvaluator)) {
+            return super.evaluateDouble(evaluator);
+        }
+        final int savepoint = evaluator.savepoint();
+        try {
+            final Member member = memberCalc.evaluateMember(evaluator);
+            if (member == null
+                || member.isNull())
+            {
+                return FunUtil.DoubleNull;
+            }
+            evaluator.setContext(member);
+            if (nullCheck
+                && evaluator.needToReturnNullForUnrelatedDimension(
+                    new Member[] {member}))
+            {
+                return FunUtil.DoubleNull;
+            }
+            return ((RolapEvaluator) evaluator).evaluateCurrentDouble();
+        } finally {
+            evaluator.restore(savepoint);
+        }
+    }
+
     public Calc[] getCalcs() {
         return new MemberCalc[] {memberCalc};
     }
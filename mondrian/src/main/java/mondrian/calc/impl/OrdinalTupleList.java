@@ -0,0 +1,557 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.calc.impl;
+
+import mondrian.calc.*;
+import mondrian.olap.*;
+import mondrian.resource.MondrianResource;
+import mondrian.server.Execution;
+import mondrian.server.Locus;
+import mondrian.util.CancellationChecker;
+
+import java.util.*;
+
+/**
+ * Implementation of {@link TupleList} that stores tuples end-to-end as the
+ * int ordinals of their members in a {@link MemberDictionary}.
+ *
+ * <p>Hashing and comparing tuples works on ints, without creating a
+ * {@code List<Member>} per tuple, so set operations such as
+ * {@link #distinct()} and {@link #except(OrdinalTupleList)} are cheaper than
+ * the equivalent operations on a {@link java.util.HashSet} of tuples.
+ * Cursors over this list do not allocate per tuple either.
+ *
+ * <p>Tuples are equal if their members are equal (in the sense of
+ * {@link Member#equals(Object)}), the same as for other implementations of
+ * {@link TupleList}; but the list gives back exactly the member objects that
+ * were put into it.
+ */
+public class OrdinalTupleList extends AbstractEndToEndTupleList {
+    private final MemberDictionary dictionary;
+    private int[] data;
+    private int size;
+
+    /**
+     * Creates an empty OrdinalTupleList.
+     *
+     * @param dictionary Dictionary that assigns ordinals to members
+     * @param arity Arity
+     * @param initialCapacity Initial capacity, in tuples
+     */
+    public OrdinalTupleList(
+        MemberDictionary dictionary,
+        int arity,
+        int initialCapacity)
+    {
+        this(
+            dictionary, arity, new int[Math.max(initialCapacity, 1) * arity],
+            0);
+    }
+
+    private OrdinalTupleList(
+        MemberDictionary dictionary,
+        int arity,
+        int[] data,
+        int size)
+    {
+        super(arity);
+        assert arity > 0;
+        assert data.length % arity == 0;
+        this.dictionary = dictionary;
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Returns a list with the same tuples as a given list, converting it if
+     * it is not already an OrdinalTupleList based on the given dictionary.
+     *
+     * @param dictionary Dictionary
+     * @param list List of tuples
+     * @return Ordinal tuple list
+     */
+    public static OrdinalTupleList of(
+        MemberDictionary dictionary,
+        TupleList list)
+    {
+        if (list instanceof OrdinalTupleList
+            && ((OrdinalTupleList) list).dictionary == dictionary)
+        {
+            return (OrdinalTupleList) list;
+        }
+        final OrdinalTupleList result =
+            new OrdinalTupleList(dictionary, list.getArity(), list.size());
+        final TupleCursor cursor = list.tupleCursor();
+        while (cursor.forward()) {
+            result.addCurrent(cursor);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dictionary that assigns ordinals to members.
+     */
+    public MemberDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the ordinal of a member of a tuple.
+     *
+     * @param index Ordinal of tuple in this list
+     * @param column Ordinal of member within tuple
+     * @return Ordinal of member in the dictionary
+     */
+    public int ordinal(int index, int column) {
+        return data[index * arity + column];
+    }
+
+    @Override
+    protected List<Member> backingList() {
+        return new AbstractList<Member>() {
+            @Override
+            public Member get(int index) {
+                return dictionary.member(data[index]);
+            }
+
+            @Override
+            public Member set(int index, Member element) {
+                assert mutable;
+                final Member previous = dictionary.member(data[index]);
+                data[index] = dictionary.ordinal(element);
+                return previous;
+            }
+
+            @Override
+            public int size() {
+                return size * arity;
+            }
+        };
+    }
+
+    @Override
+    public Member get(int slice, int index) {
+        return dictionary.member(data[index * arity + slice]);
+    }
+
+    @Override
+    public List<Member> get(int index) {
+        final int startIndex = index * arity;
+        final List<Member> list =
+            new AbstractList<Member>() {
+                public Member get(int index) {
+                    return dictionary.member(data[startIndex + index]);
+                }
+
+                public int size() {
+                    return arity;
+                }
+            };
+        if (mutable) {
+            return Util.flatList(list);
+        }
+        return list;
+    }
+
+    @Override
+    public List<Member> set(int index, List<Member> element) {
+        assert mutable;
+        for (int i = 0, startIndex = index * arity; i < arity; i++) {
+            data[startIndex + i] = dictionary.ordinal(element.get(i));
+        }
+        return null; // not compliant with List contract
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void addCurrent(TupleCursor tupleIter) {
+        assert mutable;
+        ensureCapacity((size + 1) * arity);
+        final int n = size * arity;
+        if (tupleIter instanceof OrdinalTupleCursor
+            && ((OrdinalTupleCursor) tupleIter).dictionary() == dictionary)
+        {
+            ((OrdinalTupleCursor) tupleIter).currentToOrdinals(data, n);
+        } else {
+            for (int i = 0; i < arity; i++) {
+                data[n + i] = dictionary.ordinal(tupleIter.member(i));
+            }
+        }
+        ++size;
+    }
+
+    @Override
+    public boolean add(List<Member> members) {
+        add(size, members);
+        return true;
+    }
+
+    @Override
+    public void add(int index, List<Member> members) {
+        assert mutable;
+        if (members.size() != arity) {
+            throw new IllegalArgumentException(
+                "Tuple length does not match arity");
+        }
+        ensureCapacity((size + 1) * arity);
+        int n = index * arity;
+        System.arraycopy(data, n, data, n + arity, size * arity - n);
+        for (int i = 0; i < arity; i++) {
+            data[n++] = dictionary.ordinal(members.get(i));
+        }
+        ++size;
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends List<Member>> c) {
+        assert mutable;
+        final int size1 = c.size();
+        ensureCapacity((size + size1) * arity);
+        int n = index * arity;
+        System.arraycopy(
+            data, n, data, n + size1 * arity, size * arity - n);
+        if (c instanceof OrdinalTupleList
+            && ((OrdinalTupleList) c).dictionary == dictionary)
+        {
+            System.arraycopy(
+                ((OrdinalTupleList) c).data, 0, data, n, size1 * arity);
+        } else {
+            for (List<Member> members : c) {
+                for (Member member : members) {
+                    data[n++] = dictionary.ordinal(member);
+                }
+            }
+        }
+        size += size1;
+        return size1 > 0;
+    }
+
+    public void addTuple(Member... members) {
+        assert mutable;
+        if (members.length != arity) {
+            throw new IllegalArgumentException(
+                "Tuple length does not match arity");
+        }
+        ensureCapacity((size + 1) * arity);
+        final int n = size * arity;
+        for (int i = 0; i < arity; i++) {
+            data[n + i] = dictionary.ordinal(members[i]);
+        }
+        ++size;
+    }
+
+    /**
+     * Adds a tuple given as member ordinals.
+     *
+     * @param ordinals Array containing ordinals
+     * @param offset Offset of first ordinal of the tuple in the array
+     */
+    public void addOrdinals(int[] ordinals, int offset) {
+        assert mutable;
+        ensureCapacity((size + 1) * arity);
+        System.arraycopy(ordinals, offset, data, size * arity, arity);
+        ++size;
+    }
+
+    @Override
+    public List<Member> remove(int index) {
+        assert mutable;
+        final int n = index * arity;
+        System.arraycopy(data, n + arity, data, n, size * arity - n - arity);
+        --size;
+        return null; // not compliant with List contract
+    }
+
+    public List<Member> slice(final int column) {
+        if (column < 0 || column >= arity) {
+            throw new IllegalArgumentException();
+        }
+        return new AbstractList<Member>() {
+            @Override
+            public Member get(int index) {
+                return dictionary.member(data[index * arity + column]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public TupleList cloneList(int capacity) {
+        if (capacity < 0) {
+            // copy of this list with the same contents
+            return new OrdinalTupleList(
+                dictionary, arity, data.clone(), size);
+        } else {
+            // empty copy of this list with given capacity
+            return new OrdinalTupleList(dictionary, arity, capacity);
+        }
+    }
+
+    public TupleIterator tupleIteratorInternal() {
+        return new OrdinalTupleListIterator();
+    }
+
+    /**
+     * Returns a list of the distinct tuples of this list, in order of first
+     * occurrence.
+     *
+     * @return List without duplicates
+     */
+    public OrdinalTupleList distinct() {
+        final OrdinalTupleList result =
+            new OrdinalTupleList(dictionary, arity, size);
+        final TupleSet set = new TupleSet(this, size);
+        for (int i = 0; i < size; i++) {
+            if (set.add(i)) {
+                result.addOrdinals(data, i * arity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the tuples of this list that do not occur in another list.
+     * Duplicates in this list are retained.
+     *
+     * @param other Tuples to remove; must use the same dictionary
+     * @return List of tuples of this list that are not in the other list
+     */
+    public OrdinalTupleList except(OrdinalTupleList other) {
+        assert other.dictionary == dictionary;
+        assert other.arity == arity;
+        final TupleSet set = new TupleSet(other, other.size);
+        for (int i = 0; i < other.size; i++) {
+            set.add(i);
+        }
+        final OrdinalTupleList result =
+            new OrdinalTupleList(dictionary, arity, size);
+        for (int i = 0; i < size; i++) {
+            if (!set.contains(this, i)) {
+                result.addOrdinals(data, i * arity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cartesian product of several lists.
+     *
+     * @param dictionary Dictionary
+     * @param lists Lists
+     * @return Cartesian product
+     * @throws ResourceLimitExceededException if the product exceeds
+     *     {@link MondrianProperties#ResultLimit} or is too large to be held
+     *     in a list
+     */
+    public static OrdinalTupleList crossJoin(
+        MemberDictionary dictionary,
+        List<TupleList> lists)
+    {
+        int arity = 0;
+        long size = 1;
+        final OrdinalTupleList[] ordinalLists =
+            new OrdinalTupleList[lists.size()];
+        for (int i = 0; i < ordinalLists.length; i++) {
+            ordinalLists[i] = of(dictionary, lists.get(i));
+            arity += ordinalLists[i].arity;
+            size *= ordinalLists[i].size;
+        }
+        Util.checkCJResultLimit(size);
+        // The ordinals of all tuples are held in one array.
+        if (size * arity > Integer.MAX_VALUE) {
+            throw MondrianResource.instance().LimitExceededDuringCrossjoin.ex(
+                size, Integer.MAX_VALUE / arity);
+        }
+        final OrdinalTupleList result =
+            new OrdinalTupleList(dictionary, arity, (int) size);
+        crossJoinRecurse(ordinalLists, 0, new int[arity], 0, result);
+        return result;
+    }
+
+    private static void crossJoinRecurse(
+        OrdinalTupleList[] lists,
+        int i,
+        int[] partial,
+        int partialSize,
+        OrdinalTupleList result)
+    {
+        final OrdinalTupleList list = lists[i];
+        final int listArity = list.arity;
+        int currentIteration = 0;
+        final Execution execution = Locus.peek().execution;
+        for (int j = 0; j < list.size; j++) {
+            CancellationChecker.checkCancelOrTimeout(
+                currentIteration++, execution);
+            System.arraycopy(
+                list.data, j * listArity, partial, partialSize, listArity);
+            if (i == lists.length - 1) {
+                result.addOrdinals(partial, 0);
+            } else {
+                crossJoinRecurse(
+                    lists, i + 1, partial, partialSize + listArity, result);
+            }
+        }
+    }
+
+    private int hash(int index) {
+        int h = 0;
+        for (int i = index * arity, end = i + arity; i < end; i++) {
+            h = h * 31 + dictionary.equalityClass(data[i]);
+        }
+        return h;
+    }
+
+    private boolean tupleEquals(
+        int index,
+        OrdinalTupleList other,
+        int otherIndex)
+    {
+        final int n = index * arity;
+        final int otherN = otherIndex * arity;
+        for (int i = 0; i < arity; i++) {
+            final int ordinal = data[n + i];
+            final int otherOrdinal = other.data[otherN + i];
+            if (ordinal != otherOrdinal
+                && dictionary.equalityClass(ordinal)
+                != dictionary.equalityClass(otherOrdinal))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        int oldCapacity = data.length;
+        if (minCapacity > oldCapacity) {
+            int newCapacity = (oldCapacity * 3) / 2 + 1;
+            if (newCapacity < minCapacity) {
+                newCapacity = minCapacity;
+            }
+            // Up to next multiple of arity.
+            final int rem = newCapacity % arity;
+            if (rem != 0) {
+                newCapacity += (arity - rem);
+            }
+            data = Util.copyOf(data, newCapacity);
+        }
+    }
+
+    /**
+     * Cursor that can copy the ordinals of the current tuple.
+     */
+    private interface OrdinalTupleCursor extends TupleCursor {
+        MemberDictionary dictionary();
+
+        void currentToOrdinals(int[] ordinals, int offset);
+    }
+
+    private class OrdinalTupleListIterator
+        extends AbstractTupleListIterator
+        implements OrdinalTupleCursor
+    {
+        public MemberDictionary dictionary() {
+            return dictionary;
+        }
+
+        public void currentToOrdinals(int[] ordinals, int offset) {
+            System.arraycopy(data, lastRet * arity, ordinals, offset, arity);
+        }
+
+        public void setContext(Evaluator evaluator) {
+            for (int i = 0, x = lastRet * arity; i < arity; i++) {
+                evaluator.setContext(dictionary.member(data[x + i]));
+            }
+        }
+
+        public Member member(int column) {
+            return dictionary.member(data[lastRet * arity + column]);
+        }
+
+        public void currentToArray(Member[] members, int offset) {
+            for (int i = 0, x = lastRet * arity; i < arity; i++) {
+                members[offset + i] = dictionary.member(data[x + i]);
+            }
+        }
+    }
+
+    /**
+     * Open-addressing hash set of the tuples of an {@link OrdinalTupleList},
+     * identified by their position in the list.
+     */
+    private static class TupleSet {
+        private final OrdinalTupleList list;
+        private final int[] table;
+        private final int mask;
+
+        TupleSet(OrdinalTupleList list, int expectedSize) {
+            this.list = list;
+            int capacity = 16;
+            while (capacity < expectedSize * 2) {
+                capacity <<= 1;
+            }
+            this.table = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Adds the tuple at a given position in the list, if there is not
+         * already an equal tuple in the set.
+         *
+         * @param index Position of tuple in the list
+         * @return Whether the tuple was added
+         */
+        boolean add(int index) {
+            int slot = spread(list.hash(index)) & mask;
+            while (true) {
+                final int entry = table[slot];
+                if (entry == 0) {
+                    table[slot] = index + 1;
+                    return true;
+                }
+                if (list.tupleEquals(entry - 1, list, index)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Returns whether the set contains a tuple equal to a given tuple of
+         * a list that uses the same dictionary.
+         */
+        boolean contains(OrdinalTupleList other, int index) {
+            int slot = spread(other.hash(index)) & mask;
+            while (true) {
+                final int entry = table[slot];
+                if (entry == 0) {
+                    return false;
+                }
+                if (list.tupleEquals(entry - 1, other, index)) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static int spread(int h) {
+            h ^= (h >>> 20) ^ (h >>> 12);
+            return h ^ (h >>> 7) ^ (h >>> 4);
+        }
+    }
+}
+
+// End OrdinalTupleList.java
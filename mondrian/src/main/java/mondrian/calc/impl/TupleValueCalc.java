@@ -11,9 +11,11 @@ package mondrian.calc.impl;
 
 import mondrian.calc.*;
 import mondrian.olap.*;
+import mondrian.olap.fun.FunUtil;
 import mondrian.olap.fun.TupleFunDef;
 import mondrian.olap.type.TupleType;
 import mondrian.olap.type.Type;
+import mondrian.rolap.RolapEvaluator;
 
 /**
  * Expression which evaluates a tuple expression,
@@ -69,6 +71,30 @@ public class TupleValueCalc extends GenericCalc {
         }
     }
 
+    public double evaluateDouble(Evaluator evaluator) {
+        if (!(evaluator instanceof RolapEvaluator)) {
+            return super.evaluateDouble(evaluator);
+        }
+        final Member[] members = tupleCalc.evaluateTuple(evaluator);
+        if (members == null) {
+            return FunUtil.DoubleNull;
+        }
+
+        if (nullCheck
+            && evaluator.needToReturnNullForUnrelatedDimension(members))
+        {
+            return FunUtil.DoubleNull;
+        }
+
+        final int savepoint = evaluator.savepoint();
+        try {
+            evaluator.setContext(members);
+            return ((RolapEvaluator) evaluator).evaluateCurrentDouble();
+        } finally {
+            evaluator.restore(savepoint);
+        }
+    }
+
     public Calc[] getCalcs() {
         return new Calc[] {tupleCalc};
     }
@@ -11,6 +11,7 @@ package mondrian.calc.impl;
 
 import mondrian.calc.Calc;
 import mondrian.olap.*;
+import mondrian.rolap.RolapEvaluator;
 
 /**
  * Expression which yields the value of the current member in the current
@@ -35,6 +36,13 @@ public class ValueCalc extends GenericCalc {
         return evaluator.evaluateCurrent();
     }
 
+    public double evaluateDouble(Evaluator evaluator) {
+        if (evaluator instanceof RolapEvaluator) {
+            return ((RolapEvaluator) evaluator).evaluateCurrentDouble();
+        }
+        return super.evaluateDouble(evaluator);
+    }
+
     public boolean dependsOn(Hierarchy hierarchy) {
         return true;
     }
@@ -30,6 +30,7 @@ import javax.sql.DataSource;
  * <li>{@link #createCrossjoinRegion(mondrian.olap.CacheControl.CellRegion[])}</li>
  * <li>{@link #createMeasuresRegion(Cube)}</li>
  * <li>{@link #flush(mondrian.olap.CacheControl.CellRegion)}</li>
+ * <li>{@link #refresh(mondrian.olap.CacheControl.CellRegion, long)}</li>
  * </ul></p>
  *
  * <p>Methods concerning member cache:<ul>
@@ -178,6 +179,32 @@ public interface CacheControl {
      */
     void flush(CellRegion region);
 
+    /**
+     * Brings up to date the cells in the cell cache that correspond to
+     * measures in a cube and to a region of the fact table to which rows have
+     * been appended.
+     *
+     * <p>The region must contain only rows that were appended at or after
+     * {@code appendTime}; typically it is the partition that the appended
+     * rows belong to, for example today's member of the time dimension.
+     * Cells of measures whose aggregator is sum, count, min or max, and
+     * that were loaded before {@code appendTime}, are brought up to date by
+     * querying only the rows in the region and combining them with the
+     * cached values; this is much cheaper than flushing and reloading cells
+     * that span a larger period. Cells loaded at or after
+     * {@code appendTime} may already contain some of the appended rows, so
+     * they are flushed, as are other cells that intersect the region, and
+     * all cells if the region contains ranges of members. Calling this
+     * method again with the same time therefore flushes the cells that the
+     * first call brought up to date, rather than counting the rows twice.
+     *
+     * @param region a region
+     * @param appendTime Time, as given by
+     *     {@link System#currentTimeMillis()}, no later than the start of the
+     *     transaction that appended the rows
+     */
+    void refresh(CellRegion region, long appendTime);
+
     /**
      * Prints the state of the cell cache as it pertains to a given region.
      * @param pw the output target
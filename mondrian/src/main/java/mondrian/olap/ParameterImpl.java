@@ -32,6 +32,13 @@ public class ParameterImpl
     private String description;
     private Exp defaultExp;
     private Type type;
+
+    /**
+     * Whether {@link #slot} has been allocated by a compiler. Until then, it
+     * holds the value, if any, set before the query was compiled.
+     */
+    private boolean slotRegistered;
+
     private ParameterSlot slot = new ParameterSlot() {
         Object value;
         boolean assigned;
@@ -187,19 +194,30 @@ public class ParameterImpl
     public void setDefaultExp(Exp defaultExp) {
         assert defaultExp != null;
         this.defaultExp = defaultExp;
+        // The query is being resolved again; the next compiler must compile
+        // the new default value.
+        this.slotRegistered = false;
     }
 
     public Calc compile(ExpCompiler compiler) {
-        final ParameterSlot slot = compiler.registerParameter(this);
-        if (this.slot != null) {
-            // save previous value
-            if (this.slot.isParameterSet()) {
-                slot.setParameterValue(
-                    this.slot.getParameterValue(),
-                    true);
+        // A query compiles its axes when it is resolved, and calculated
+        // members and named sets when they are first used, each time with a
+        // new compiler. All of the compiled expressions must read the same
+        // slot, otherwise a value set between executions would be seen by
+        // some and not others.
+        if (!slotRegistered) {
+            final ParameterSlot slot = compiler.registerParameter(this);
+            if (this.slot != null) {
+                // save previous value
+                if (this.slot.isParameterSet()) {
+                    slot.setParameterValue(
+                        this.slot.getParameterValue(),
+                        true);
+                }
             }
+            this.slot = slot;
+            slotRegistered = true;
         }
-        this.slot = slot;
         if (type instanceof SetType) {
             return new MemberListParameterCalc(slot);
         } else {
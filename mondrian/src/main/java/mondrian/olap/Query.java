@@ -11,6 +11,7 @@
 package mondrian.olap;
 
 import mondrian.calc.*;
+import mondrian.calc.impl.MemberDictionary;
 import mondrian.mdx.*;
 import mondrian.olap.fun.ParameterFunDef;
 import mondrian.olap.type.*;
@@ -28,6 +29,8 @@ import org.olap4j.mdx.IdentifierSegment;
 import java.io.PrintWriter;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <code>Query</code> is an MDX query.
@@ -137,6 +140,21 @@ public class Query extends QueryPart {
 
     private Map<String, Object> evalCache = new HashMap<String, Object>();
 
+    /**
+     * Compiled expressions of calculated members, named sets and format
+     * strings, which are compiled when they are first evaluated. They belong
+     * to the query rather than to an execution, so that executing a prepared
+     * statement again does not compile them again.
+     */
+    private final ConcurrentMap<CompiledExpKey, Calc> compiledExps =
+        new ConcurrentHashMap<CompiledExpKey, Calc>();
+
+    /**
+     * Dictionary of members for columnar tuple lists; created on demand and
+     * discarded when the query is resolved or executed again.
+     */
+    private MemberDictionary memberDictionary;
+
     /**
      * List of aliased expressions defined in this query, and where they are
      * defined. There might be more than one aliased expression with the same
@@ -467,6 +485,10 @@ public class Query extends QueryPart {
      * tree in any way.
      */
     public void resolve() {
+        // Expressions compiled before may refer to parts of the query that
+        // are about to change.
+        compiledExps.clear();
+        clearMemberDictionary();
         // Before commencing validation, create all calculated members
         // and calculated sets
         createFormulaElements();
@@ -1289,6 +1311,30 @@ public class Query extends QueryPart {
         Exp exp,
         boolean scalar,
         ResultStyle resultStyle)
+    {
+        final CompiledExpKey key =
+            new CompiledExpKey(
+                exp,
+                scalar,
+                resultStyle != null ? resultStyle : this.resultStyle,
+                statement.getProfileHandler() != null);
+        Calc calc = compiledExps.get(key);
+        if (calc == null) {
+            // Compile without holding a lock. If another thread compiles the
+            // same expression meanwhile, use whichever calc was stored first.
+            calc = compileExpressionInternal(exp, scalar, resultStyle);
+            final Calc previous = compiledExps.putIfAbsent(key, calc);
+            if (previous != null) {
+                calc = previous;
+            }
+        }
+        return calc;
+    }
+
+    private Calc compileExpressionInternal(
+        Exp exp,
+        boolean scalar,
+        ResultStyle resultStyle)
     {
         // REVIEW: Set query on a connection's shared internal statement is
         // not re-entrant.
@@ -1431,7 +1477,7 @@ public class Query extends QueryPart {
      * @param key the cache key
      * @param value the cache value
      */
-    public void putEvalCache(String key, Object value) {
+    public synchronized void putEvalCache(String key, Object value) {
         evalCache.put(key, value);
     }
 
@@ -1441,17 +1487,40 @@ public class Query extends QueryPart {
      * @param key the cache key
      * @return the cached value or null.
      */
-    public Object getEvalCache(String key) {
+    public synchronized Object getEvalCache(String key) {
         return evalCache.get(key);
     }
 
     /**
      * Remove all entries in the evaluation cache
      */
-    public void clearEvalCache() {
+    public synchronized void clearEvalCache() {
         evalCache.clear();
     }
 
+    /**
+     * Returns the dictionary that assigns ordinals to the members used by
+     * this query, creating it if necessary. Tuple lists that share a
+     * dictionary can be combined without converting their members.
+     *
+     * @return Member dictionary
+     */
+    public synchronized MemberDictionary getMemberDictionary() {
+        if (memberDictionary == null) {
+            memberDictionary = new MemberDictionary();
+        }
+        return memberDictionary;
+    }
+
+    /**
+     * Discards the member dictionary, so that the members seen by one
+     * execution of this query are not retained by the next. Tuple lists
+     * created earlier keep their own reference to the old dictionary.
+     */
+    public synchronized void clearMemberDictionary() {
+        memberDictionary = null;
+    }
+
     /**
      * Closes this query.
      *
@@ -1482,6 +1551,60 @@ public class Query extends QueryPart {
         this.ownStatement = ownStatement;
     }
 
+    /**
+     * Just a simple key of Exp/scalar/resultStyle/profiling, used for keeping
+     * compiled expressions.  Previous to the introduction of this
+     * class, the key was a list constructed as Arrays.asList(exp, scalar,
+     * resultStyle) and having poorer performance on equals, hashCode,
+     * and construction.
+     */
+    private static class CompiledExpKey {
+        private final Exp exp;
+        private final boolean scalar;
+        private final ResultStyle resultStyle;
+        private final boolean profiling;
+        private int hashCode = Integer.MIN_VALUE;
+
+        private CompiledExpKey(
+            Exp exp,
+            boolean scalar,
+            ResultStyle resultStyle,
+            boolean profiling)
+        {
+            this.exp = exp;
+            this.scalar = scalar;
+            this.resultStyle = resultStyle;
+            this.profiling = profiling;
+        }
+
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof CompiledExpKey)) {
+                return false;
+            }
+            CompiledExpKey otherKey = (CompiledExpKey)other;
+            return this.scalar == otherKey.scalar
+                   && this.profiling == otherKey.profiling
+                   && this.resultStyle == otherKey.resultStyle
+                   && this.exp.equals(otherKey.exp);
+        }
+
+        public int hashCode() {
+            if (hashCode != Integer.MIN_VALUE) {
+                return hashCode;
+            } else {
+                int hash = 0;
+                hash = Util.hash(hash, scalar);
+                hash = Util.hash(hash, profiling);
+                hash = Util.hash(hash, resultStyle);
+                this.hashCode = Util.hash(hash, exp);
+            }
+            return this.hashCode;
+        }
+    }
+
     /**
      * Source of metadata within the scope of a query.
      *
@@ -1019,6 +1019,13 @@ public class Util extends XOMUtil {
         String cubeName,
         boolean fail)
     {
+        // Look up by name first, so that if cubes are built lazily, only the
+        // cube we want is built.
+        final Cube namedCube =
+            schemaReader.getSchema().lookupCube(cubeName, false);
+        if (namedCube != null && schemaReader.getRole().canAccess(namedCube)) {
+            return namedCube;
+        }
         for (Cube cube : schemaReader.getCubes()) {
             if (Util.compareName(cube.getName(), cubeName) == 0) {
                 return cube;
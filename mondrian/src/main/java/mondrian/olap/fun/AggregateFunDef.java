@@ -14,8 +14,7 @@ import mondrian.mdx.MemberExpr;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
 import mondrian.olap.Role.RollupPolicy;
-import mondrian.rolap.RolapAggregator;
-import mondrian.rolap.RolapEvaluator;
+import mondrian.rolap.*;
 
 import org.apache.log4j.Logger;
 
@@ -35,6 +34,12 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
         AggregateFunDef.class.getSimpleName();
     private static final Logger LOGGER =
         Logger.getLogger(AggregateFunDef.class);
+    /**
+     * Maximum number of combinations of ancestors that
+     * {@link AggregateCalc#removeOverlappingTupleEntries(TupleList)} will
+     * look up for a tuple before it falls back to comparing tuples.
+     */
+    private static final int MAX_ANCESTOR_COMBINATIONS = 256;
     static final ReflectiveMultiResolver resolver =
         new ReflectiveMultiResolver(
             "Aggregate", "Aggregate(<Set>[, <Numeric Expression>])",
@@ -145,6 +150,13 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
                 final int savepoint = evaluator.savepoint();
                 try {
                     evaluator.setNonEmpty(false);
+                    if (canPushDown(calc, evaluator, tupleList, aggregator)) {
+                        // Evaluate one cell constrained by the whole list,
+                        // as for distinct-count, rather than one cell per
+                        // tuple.
+                        return evaluator.pushAggregation(tupleList)
+                            .evaluateCurrent();
+                    }
                     final Object o =
                         rollup.aggregate(
                             evaluator, tupleList, calc);
@@ -187,7 +199,15 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
                 // very slow.  May want to revisit this if someone
                 // improves the algorithm.
             } else {
-                tupleList = optimizeTupleList(evaluator, tupleList, true);
+                // If large lists are pushed down to SQL, they are sent to
+                // the DBMS as an inline table, so there is no upper limit.
+                tupleList =
+                    optimizeTupleList(
+                        evaluator,
+                        tupleList,
+                        MondrianProperties.instance()
+                            .AggregatePushdownThreshold.get() <= 0,
+                        true);
             }
 
             // Can't aggregate distinct-count values in the same way
@@ -203,6 +223,101 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
             return evaluator2.evaluateCurrent();
         }
 
+        /**
+         * Returns whether the aggregate of a list of tuples can be computed
+         * by a single cell request, constrained by all of the tuples, rather
+         * than by rolling up a cell for each tuple.
+         *
+         * <p>This is possible if the list is large enough (see
+         * {@link MondrianProperties#AggregatePushdownThreshold}), the
+         * expression is the current stored measure, the context contains no
+         * other calculated members, and every tuple consists of stored
+         * members that join to the measure's cube and are not in a
+         * parent-child hierarchy. For aggregators other than min and max,
+         * the tuples must also be disjoint, otherwise rows would be counted
+         * once in SQL but several times in the rollup.
+         *
+         * @param calc Compiled expression to aggregate
+         * @param evaluator Evaluation context
+         * @param tupleList List of tuples
+         * @param aggregator Aggregator of current measure
+         * @return Whether the aggregate can be computed in SQL
+         */
+        private static boolean canPushDown(
+            Calc calc,
+            Evaluator evaluator,
+            TupleList tupleList,
+            Aggregator aggregator)
+        {
+            final int threshold =
+                MondrianProperties.instance().AggregatePushdownThreshold.get();
+            if (threshold <= 0
+                || tupleList.size() < threshold
+                || !(calc instanceof ValueCalc)
+                || !(evaluator instanceof RolapEvaluator)
+                || !canOptimize(evaluator, tupleList))
+            {
+                return false;
+            }
+            final Member[] members = evaluator.getMembers();
+            if (!(members[0] instanceof RolapStoredMeasure)) {
+                return false;
+            }
+            final RolapCube cube = ((RolapStoredMeasure) members[0]).getCube();
+            final List<Member> firstTuple = tupleList.get(0);
+            final Set<Hierarchy> hierarchies = new HashSet<Hierarchy>();
+            for (Member member : firstTuple) {
+                hierarchies.add(member.getHierarchy());
+            }
+            for (int i = 1; i < members.length; i++) {
+                if (members[i].isCalculated()
+                    && !hierarchies.contains(members[i].getHierarchy()))
+                {
+                    return false;
+                }
+            }
+            final boolean disjoint =
+                aggregator != RolapAggregator.Min
+                && aggregator != RolapAggregator.Max;
+            final Set<List<Member>> tuples = new HashSet<List<Member>>();
+            final TupleCursor cursor = tupleList.tupleCursor();
+            while (cursor.forward()) {
+                for (int i = 0; i < firstTuple.size(); i++) {
+                    final Member member = cursor.member(i);
+                    if (!(member instanceof RolapCubeMember)
+                        || member.isCalculated()
+                        || member.isNull())
+                    {
+                        return false;
+                    }
+                    final RolapCubeLevel level =
+                        ((RolapCubeMember) member).getLevel();
+                    // A member of a parent-child level stands for its
+                    // descendants too, which a predicate on its key would
+                    // not include.
+                    if (!member.isAll()
+                        && (level.getBaseStarKeyColumn(cube) == null
+                            || level.isParentChild()))
+                    {
+                        return false;
+                    }
+                    // Distinct tuples whose members in each position are at
+                    // the same level cannot overlap. An 'all' member
+                    // overlaps every other member of its hierarchy, so it
+                    // too must be at the same level as the first tuple's.
+                    if (disjoint
+                        && level != firstTuple.get(i).getLevel())
+                    {
+                        return false;
+                    }
+                }
+                if (disjoint && !tuples.add(cursor.current())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         /**
          * Analyzes a list of tuples and determines if the list can
          * be safely optimized. If a member of the tuple list is on
@@ -233,19 +348,37 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
 
         public static TupleList optimizeTupleList(
             Evaluator evaluator, TupleList tupleList, boolean checkSize)
+        {
+            return optimizeTupleList(evaluator, tupleList, checkSize, false);
+        }
+
+        /**
+         * Optimizes a list of tuples so that it generates a shorter
+         * predicate, replacing complete sets of children by their parent.
+         *
+         * @param evaluator Evaluation context
+         * @param tupleList List of tuples
+         * @param checkSize Whether to throw if the optimized list is longer
+         *   than {@link MondrianProperties#MaxConstraints}
+         * @param removeOverlaps Whether to remove tuples that are contained
+         *   in another tuple of the list; valid only if a row that matches
+         *   several tuples is to be counted once, as for distinct-count
+         * @return Optimized list
+         */
+        public static TupleList optimizeTupleList(
+            Evaluator evaluator,
+            TupleList tupleList,
+            boolean checkSize,
+            boolean removeOverlaps)
         {
             if (!canOptimize(evaluator, tupleList)) {
                 return tupleList;
             }
 
-            // FIXME: We remove overlapping tuple entries only to pass
-            // AggregationOnDistinctCountMeasuresTest
-            // .testOptimizeListWithTuplesOfLength3 on Access. Without
-            // the optimization, we generate a statement 7000
-            // characters long and Access gives "Query is too complex".
-            // The optimization is expensive, so we only want to do it
-            // if the DBMS can't execute the query otherwise.
-            if (false) {
+            // Without this, the list in AggregationOnDistinctCountMeasuresTest
+            // .testOptimizeListWithTuplesOfLength3 generates a statement 7000
+            // characters long, and Access gives "Query is too complex".
+            if (removeOverlaps) {
                 tupleList = removeOverlappingTupleEntries(tupleList);
             }
             tupleList =
@@ -276,36 +409,181 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
         public static TupleList removeOverlappingTupleEntries(
             TupleList list)
         {
-            TupleList trimmedList = list.cloneList(list.size());
-            Member[] tuple1 = new Member[list.getArity()];
-            Member[] tuple2 = new Member[list.getArity()];
-            final TupleCursor cursor1 = list.tupleCursor();
-            while (cursor1.forward()) {
-                cursor1.currentToArray(tuple1, 0);
-                if (trimmedList.isEmpty()) {
-                    trimmedList.addTuple(tuple1);
-                } else {
-                    boolean ignore = false;
-                    final TupleIterator iterator = trimmedList.tupleIterator();
-                    while (iterator.forward()) {
-                        iterator.currentToArray(tuple2, 0);
-                        if (isSuperSet(tuple1, tuple2)) {
-                            iterator.remove();
-                        } else if (isSuperSet(tuple2, tuple1)
-                            || isEqual(tuple1, tuple2))
-                        {
-                            ignore = true;
-                            break;
-                        }
+            // A tuple can only be a superset of another tuple if each of its
+            // members is an ancestor-or-self of the corresponding member of
+            // the other. So, rather than comparing every pair of tuples,
+            // index the tuples by the unique names of their members, and
+            // look up the combinations of ancestors of each tuple.
+            final int arity = list.getArity();
+            final List<Member[]> tuples = new ArrayList<Member[]>(list.size());
+            final Map<List<String>, Member[]> index =
+                new HashMap<List<String>, Member[]>();
+            final Map<Member, String[]> ancestorMap =
+                new HashMap<Member, String[]>();
+            final TupleCursor cursor = list.tupleCursor();
+            while (cursor.forward()) {
+                final Member[] tuple = new Member[arity];
+                cursor.currentToArray(tuple, 0);
+                tuples.add(tuple);
+                final List<String> key = uniqueNames(tuple);
+                if (!index.containsKey(key)) {
+                    index.put(key, tuple);
+                }
+            }
+            final TupleList trimmedList = list.cloneList(index.size());
+            final Set<List<String>> seen = new HashSet<List<String>>();
+            Map<String, List<Member[]>> firstColumnIndex = null;
+            final String[][] ancestors = new String[arity][];
+            for (Member[] tuple : tuples) {
+                if (!seen.add(uniqueNames(tuple))) {
+                    // Equal to a tuple we have already seen.
+                    continue;
+                }
+                long combinationCount = 1;
+                for (int i = 0; i < arity; i++) {
+                    ancestors[i] = ancestorNames(tuple[i], ancestorMap);
+                    combinationCount *= ancestors[i].length;
+                    if (combinationCount > MAX_ANCESTOR_COMBINATIONS) {
+                        break;
                     }
-                    if (!ignore) {
-                        trimmedList.addTuple(tuple1);
+                }
+                final boolean overlaps;
+                if (combinationCount <= MAX_ANCESTOR_COMBINATIONS) {
+                    overlaps = hasSuperSet(tuple, ancestors, index);
+                } else {
+                    // Too many combinations (deep hierarchies, or long
+                    // tuples). Compare with the tuples whose first member is
+                    // an ancestor of this tuple's first member.
+                    if (firstColumnIndex == null) {
+                        firstColumnIndex =
+                            indexByFirstMember(index.values());
                     }
+                    overlaps = hasSuperSet(
+                        tuple,
+                        ancestorNames(tuple[0], ancestorMap),
+                        firstColumnIndex);
+                }
+                if (!overlaps) {
+                    trimmedList.addTuple(tuple);
                 }
             }
             return trimmedList;
         }
 
+        /**
+         * Returns whether there is a tuple in an index that is a superset of
+         * a given tuple, probing the index with every combination of the
+         * ancestors of the tuple's members.
+         *
+         * @param tuple Tuple
+         * @param ancestors Unique names of the ancestors-or-self of each
+         *   member of the tuple, starting with the member itself
+         * @param index Tuples indexed by unique names of their members
+         * @return Whether a superset of the tuple exists
+         */
+        private static boolean hasSuperSet(
+            Member[] tuple,
+            String[][] ancestors,
+            Map<List<String>, Member[]> index)
+        {
+            final int[] positions = new int[ancestors.length];
+            final String[] probe = new String[ancestors.length];
+            for (int i = 0; i < ancestors.length; i++) {
+                probe[i] = ancestors[i][0];
+            }
+            final List<String> probeList = Arrays.asList(probe);
+            while (true) {
+                // Move to the next combination; the first combination, which
+                // is the tuple itself, is skipped.
+                int i = 0;
+                while (i < ancestors.length
+                    && ++positions[i] == ancestors[i].length)
+                {
+                    positions[i] = 0;
+                    probe[i] = ancestors[i][0];
+                    ++i;
+                }
+                if (i == ancestors.length) {
+                    return false;
+                }
+                probe[i] = ancestors[i][positions[i]];
+                final Member[] candidate = index.get(probeList);
+                if (candidate != null && isSuperSet(candidate, tuple)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Returns whether there is a tuple in an index that is a superset of
+         * a given tuple, looking only at tuples whose first member is an
+         * ancestor-or-self of the tuple's first member.
+         */
+        private static boolean hasSuperSet(
+            Member[] tuple,
+            String[] firstAncestors,
+            Map<String, List<Member[]>> firstColumnIndex)
+        {
+            for (String name : firstAncestors) {
+                final List<Member[]> candidates = firstColumnIndex.get(name);
+                if (candidates == null) {
+                    continue;
+                }
+                for (Member[] candidate : candidates) {
+                    if (isSuperSet(candidate, tuple)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static Map<String, List<Member[]>> indexByFirstMember(
+            Collection<Member[]> tuples)
+        {
+            final Map<String, List<Member[]>> map =
+                new HashMap<String, List<Member[]>>();
+            for (Member[] tuple : tuples) {
+                final String name = tuple[0].getUniqueName();
+                List<Member[]> list = map.get(name);
+                if (list == null) {
+                    list = new ArrayList<Member[]>();
+                    map.put(name, list);
+                }
+                list.add(tuple);
+            }
+            return map;
+        }
+
+        private static List<String> uniqueNames(Member[] tuple) {
+            final String[] names = new String[tuple.length];
+            for (int i = 0; i < tuple.length; i++) {
+                names[i] = tuple[i].getUniqueName();
+            }
+            return Arrays.asList(names);
+        }
+
+        /**
+         * Returns the unique names of a member and its ancestors, starting
+         * with the member itself. This is the chain that
+         * {@link Member#isChildOrEqualTo(Member)} walks.
+         */
+        private static String[] ancestorNames(
+            Member member,
+            Map<Member, String[]> ancestorMap)
+        {
+            String[] names = ancestorMap.get(member);
+            if (names == null) {
+                final List<String> list = new ArrayList<String>();
+                for (Member m = member; m != null; m = m.getParentMember()) {
+                    list.add(m.getUniqueName());
+                }
+                names = list.toArray(new String[list.size()]);
+                ancestorMap.put(member, names);
+            }
+            return names;
+        }
+
         /**
          * Returns whether tuple1 is a superset of tuple2.
          *
@@ -434,12 +712,8 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
                 for (int i = 0; i < tuple.size(); i++) {
                     Member member = tuple.get(i);
                     Map<Member, Integer> map = counters[i];
-                    if (map.containsKey(member)) {
-                        Integer count = map.get(member);
-                        map.put(member, ++count);
-                    } else {
-                        map.put(member, 1);
-                    }
+                    Integer count = map.get(member);
+                    map.put(member, count == null ? 1 : count + 1);
                 }
             }
             return counters;
@@ -450,64 +724,55 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
             SchemaReader reader,
             Cube baseCubeForMeasure)
         {
-            boolean didOptimize;
-            Set<Member> membersToBeOptimized = new LinkedHashSet<Member>();
-            Set<Member> optimizedMembers = new LinkedHashSet<Member>();
-            while (members.size() > 0) {
-                Iterator<Member> iterator = members.iterator();
-                Member first = iterator.next();
-                if (first.isAll()) {
-                    optimizedMembers.clear();
-                    optimizedMembers.add(first);
-                    return optimizedMembers;
-                }
-                membersToBeOptimized.add(first);
-                iterator.remove();
-
-                Member firstParentMember = first.getParentMember();
-                while (iterator.hasNext()) {
-                    Member current =  iterator.next();
-                    if (current.isAll()) {
-                        optimizedMembers.clear();
-                        optimizedMembers.add(current);
-                        return optimizedMembers;
+            while (true) {
+                // Group members by parent, in one pass, in order of first
+                // appearance.
+                final Map<Member, List<Member>> membersByParent =
+                    new LinkedHashMap<Member, List<Member>>();
+                for (Member member : members) {
+                    if (member.isAll()) {
+                        final Set<Member> allMembers =
+                            new LinkedHashSet<Member>();
+                        allMembers.add(member);
+                        return allMembers;
                     }
-
-                    Member currentParentMember = current.getParentMember();
-                    if (firstParentMember == null
-                        && currentParentMember == null
-                        || (firstParentMember != null
-                        && firstParentMember.equals(currentParentMember)))
-                    {
-                        membersToBeOptimized.add(current);
-                        iterator.remove();
+                    final Member parentMember = member.getParentMember();
+                    List<Member> siblings = membersByParent.get(parentMember);
+                    if (siblings == null) {
+                        siblings = new ArrayList<Member>();
+                        membersByParent.put(parentMember, siblings);
                     }
+                    siblings.add(member);
                 }
 
-                int childCountOfParent = -1;
-                if (firstParentMember != null) {
-                    childCountOfParent =
-                        getChildCount(firstParentMember, reader);
-                }
-                if (childCountOfParent != -1
-                    && membersToBeOptimized.size() == childCountOfParent
-                    && canOptimize(firstParentMember, baseCubeForMeasure))
+                // Replace each group that contains all of the children of its
+                // parent by the parent. If the last group was replaced, try
+                // again at the next level up.
+                final Set<Member> optimizedMembers =
+                    new LinkedHashSet<Member>();
+                boolean didOptimize = false;
+                for (Map.Entry<Member, List<Member>> entry
+                    : membersByParent.entrySet())
                 {
-                    optimizedMembers.add(firstParentMember);
-                    didOptimize = true;
-                } else {
-                    optimizedMembers.addAll(membersToBeOptimized);
-                    didOptimize = false;
+                    final Member parentMember = entry.getKey();
+                    final List<Member> siblings = entry.getValue();
+                    if (parentMember != null
+                        && siblings.size()
+                        == getChildCount(parentMember, reader)
+                        && canOptimize(parentMember, baseCubeForMeasure))
+                    {
+                        optimizedMembers.add(parentMember);
+                        didOptimize = true;
+                    } else {
+                        optimizedMembers.addAll(siblings);
+                        didOptimize = false;
+                    }
                 }
-                membersToBeOptimized.clear();
-
-                if (members.size() == 0 && didOptimize) {
-                    Set temp = members;
-                    members = optimizedMembers;
-                    optimizedMembers = temp;
+                if (!didOptimize) {
+                    return optimizedMembers;
                 }
+                members = optimizedMembers;
             }
-            return optimizedMembers;
         }
 
         /**
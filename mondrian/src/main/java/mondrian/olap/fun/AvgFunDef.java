@@ -44,10 +44,7 @@ class AvgFunDef extends AbstractAggregateFunDef {
                 final int savepoint = evaluator.savepoint();
                 evaluator.setNonEmpty(false);
                 try {
-                    final double avg =
-                        (Double) avg(
-                            evaluator, memberList, calc);
-                    return avg;
+                    return avgDouble(evaluator, memberList, calc);
                 } finally {
                     evaluator.restore(savepoint);
                 }
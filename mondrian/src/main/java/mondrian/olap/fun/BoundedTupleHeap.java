@@ -0,0 +1,230 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.olap.fun;
+
+import mondrian.calc.*;
+import mondrian.olap.*;
+import mondrian.rolap.RolapUtil;
+
+/**
+ * Heap that retains the first <i>n</i> of a stream of tuples, ordered by a
+ * value computed for each tuple. Helper for the MDX functions
+ * <code>TopCount</code> and <code>BottomCount</code>.
+ *
+ * <p>Memory use is proportional to <i>n</i>, not to the number of tuples in
+ * the stream. Sort keys are held as primitives: a rank (value not ready,
+ * null, number) and a <code>double</code>. Ties are broken by position in the
+ * stream, so the result is the same as a stable sort using
+ * {@link FunUtil#compareValues(Object, Object)}.
+ *
+ * <p>Values that are not numbers or nulls (for example strings, or errors)
+ * cannot be held; {@link #add(TupleCursor, Object)} returns false, and the
+ * caller should sort in some other way.
+ */
+class BoundedTupleHeap {
+    private static final byte RANK_NOT_READY = 0;
+    private static final byte RANK_NULL = 1;
+    private static final byte RANK_NUMBER = 2;
+
+    private final int arity;
+    private final int limit;
+    private final boolean desc;
+
+    // Entry properties, indexed by slot. The heap is an array of slots whose
+    // root is the entry that would be evicted first.
+    private byte[] ranks;
+    private double[] values;
+    private int[] ordinals;
+    private Member[] members;
+    private int[] heap;
+    private int size;
+    private int ordinal;
+
+    /**
+     * Creates a BoundedTupleHeap.
+     *
+     * @param arity Arity of tuples
+     * @param limit Maximum number of tuples to retain
+     * @param desc Whether to retain the tuples with the highest values
+     */
+    BoundedTupleHeap(int arity, int limit, boolean desc) {
+        assert limit > 0;
+        this.arity = arity;
+        this.limit = limit;
+        this.desc = desc;
+        allocate(Math.min(limit, 16));
+    }
+
+    private void allocate(int capacity) {
+        ranks = ranks == null
+            ? new byte[capacity]
+            : copyOf(ranks, capacity);
+        values = values == null
+            ? new double[capacity]
+            : Util.copyOf(values, capacity);
+        ordinals = ordinals == null
+            ? new int[capacity]
+            : Util.copyOf(ordinals, capacity);
+        heap = heap == null
+            ? new int[capacity]
+            : Util.copyOf(heap, capacity);
+        members = members == null
+            ? new Member[capacity * arity]
+            : Util.copyOf(members, capacity * arity);
+    }
+
+    private static byte[] copyOf(byte[] original, int newLength) {
+        final byte[] copy = new byte[newLength];
+        System.arraycopy(
+            original, 0, copy, 0, Math.min(original.length, newLength));
+        return copy;
+    }
+
+    /**
+     * Offers the current tuple of a cursor, whose sort value has been
+     * computed.
+     *
+     * @param cursor Cursor positioned on a tuple
+     * @param value Value of sort expression for the tuple
+     * @return false if the value cannot be held in this heap
+     */
+    boolean add(TupleCursor cursor, Object value) {
+        final byte rank;
+        final double d;
+        if (value == null || value == Util.nullValue) {
+            rank = RANK_NULL;
+            d = 0;
+        } else if (value == RolapUtil.valueNotReadyException) {
+            rank = RANK_NOT_READY;
+            d = 0;
+        } else if (value instanceof Number) {
+            rank = RANK_NUMBER;
+            d = ((Number) value).doubleValue();
+        } else {
+            return false;
+        }
+        final int thisOrdinal = ordinal++;
+        final int slot;
+        if (size < limit) {
+            if (size == heap.length) {
+                allocate((int) Math.min((long) limit, size * 2L));
+            }
+            slot = size;
+            heap[size] = slot;
+            set(slot, rank, d, thisOrdinal, cursor);
+            siftUp(size++);
+        } else {
+            // An entry that arrives later loses ties, so it must be strictly
+            // less than the root to displace it.
+            slot = heap[0];
+            if (compare(rank, d, thisOrdinal, slot) >= 0) {
+                return true;
+            }
+            set(slot, rank, d, thisOrdinal, cursor);
+            siftDown();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tuples retained, in order.
+     *
+     * @return List of at most <i>limit</i> tuples
+     */
+    TupleList toList() {
+        final int n = size;
+        final int[] sorted = new int[n];
+        while (size > 0) {
+            sorted[--size] = heap[0];
+            heap[0] = heap[size];
+            siftDown();
+        }
+        final TupleList list = TupleCollections.createList(arity, n);
+        final Member[] tuple = new Member[arity];
+        for (int slot : sorted) {
+            System.arraycopy(members, slot * arity, tuple, 0, arity);
+            list.addTuple(tuple);
+        }
+        return list;
+    }
+
+    private void set(
+        int slot,
+        byte rank,
+        double value,
+        int ordinal,
+        TupleCursor cursor)
+    {
+        ranks[slot] = rank;
+        values[slot] = value;
+        ordinals[slot] = ordinal;
+        cursor.currentToArray(members, slot * arity);
+    }
+
+    /**
+     * Compares an entry that has not been added with the entry in a slot.
+     */
+    private int compare(byte rank, double value, int ordinal, int slot) {
+        int c = rank == ranks[slot]
+            ? (rank == RANK_NUMBER
+                ? FunUtil.compareValues(value, values[slot])
+                : 0)
+            : (rank < ranks[slot] ? -1 : 1);
+        if (c != 0) {
+            return desc ? -c : c;
+        }
+        return ordinal < ordinals[slot] ? -1 : 1;
+    }
+
+    private int compare(int slot0, int slot1) {
+        if (slot0 == slot1) {
+            return 0;
+        }
+        return compare(ranks[slot0], values[slot0], ordinals[slot0], slot1);
+    }
+
+    private void siftUp(int k) {
+        while (k > 0) {
+            final int parent = (k - 1) >>> 1;
+            if (compare(heap[parent], heap[k]) >= 0) {
+                return;
+            }
+            swap(parent, k);
+            k = parent;
+        }
+    }
+
+    private void siftDown() {
+        int k = 0;
+        while (true) {
+            final int left = 2 * k + 1;
+            if (left >= size) {
+                return;
+            }
+            int child = left;
+            if (left + 1 < size && compare(heap[left + 1], heap[left]) > 0) {
+                child = left + 1;
+            }
+            if (compare(heap[k], heap[child]) >= 0) {
+                return;
+            }
+            swap(k, child);
+            k = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        final int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+    }
+}
+
+// End BoundedTupleHeap.java
@@ -549,6 +549,9 @@ public class CrossJoinFunDef extends FunDefBase {
         // large - which means we're allocating a huge array which we might
         // pare down later by applying NON EMPTY constraints - which is a
         // concern.
+        if (MondrianProperties.instance().EnableOrdinalTupleLists.get()) {
+            return OrdinalTupleList.crossJoin(memberDictionary(), lists);
+        }
         List<Member> result = new ArrayList<Member>((int) size * arity);
 
         final Member[] partialArray = new Member[arity];
@@ -557,6 +560,18 @@ public class CrossJoinFunDef extends FunDefBase {
         return new ListTupleList(arity, result);
     }
 
+    /**
+     * Returns the member dictionary of the query being executed, or a new
+     * dictionary if there is no such query.
+     */
+    private static MemberDictionary memberDictionary() {
+        final Execution execution = Locus.peek().execution;
+        final Query query = execution.getMondrianStatement().getQuery();
+        return query == null
+            ? new MemberDictionary()
+            : query.getMemberDictionary();
+    }
+
     private static void cartesianProductRecurse(
         int i,
         List<TupleList> lists,
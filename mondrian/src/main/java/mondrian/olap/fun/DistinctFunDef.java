@@ -11,9 +11,9 @@ package mondrian.olap.fun;
 
 import mondrian.calc.*;
 import mondrian.calc.impl.AbstractListCalc;
+import mondrian.calc.impl.OrdinalTupleList;
 import mondrian.mdx.ResolvedFunCall;
-import mondrian.olap.Evaluator;
-import mondrian.olap.Member;
+import mondrian.olap.*;
 
 import java.util.*;
 
@@ -52,6 +52,11 @@ class DistinctFunDef extends FunDefBase {
 
         public TupleList evaluateList(Evaluator evaluator) {
             TupleList list = listCalc.evaluateList(evaluator);
+            if (MondrianProperties.instance().EnableOrdinalTupleLists.get()) {
+                return OrdinalTupleList.of(
+                    evaluator.getQuery().getMemberDictionary(), list)
+                    .distinct();
+            }
             Set<List<Member>> set = new HashSet<List<Member>>(list.size());
             TupleList result = list.cloneList(list.size());
             for (List<Member> element : list) {
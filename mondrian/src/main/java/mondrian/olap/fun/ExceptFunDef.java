@@ -12,6 +12,8 @@ package mondrian.olap.fun;
 import mondrian.calc.*;
 import mondrian.calc.impl.AbstractListCalc;
 import mondrian.calc.impl.ArrayTupleList;
+import mondrian.calc.impl.MemberDictionary;
+import mondrian.calc.impl.OrdinalTupleList;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
 
@@ -51,6 +53,14 @@ class ExceptFunDef extends FunDefBase {
                 if (list1.isEmpty()) {
                     return list0;
                 }
+                if (MondrianProperties.instance().EnableOrdinalTupleLists
+                    .get())
+                {
+                    final MemberDictionary dictionary =
+                        evaluator.getQuery().getMemberDictionary();
+                    return OrdinalTupleList.of(dictionary, list0).except(
+                        OrdinalTupleList.of(dictionary, list1));
+                }
                 final Set<List<Member>> set1 = new HashSet<List<Member>>(list1);
                 final TupleList result =
                     new ArrayTupleList(list0.getArity(), list0.size());
@@ -102,6 +102,52 @@ class FilterFunDef extends FunDefBase {
         }
     }
 
+    /**
+     * Adds to a list the tuples of another list for which a condition is
+     * true. Evaluates the condition in parallel if the list is large enough;
+     * see {@link ParallelTupleEvaluator}.
+     *
+     * @param evaluator Evaluator
+     * @param list List of tuples
+     * @param bcalc Condition
+     * @param result List to add tuples to
+     * @return The result list
+     */
+    private static TupleList filter(
+        Evaluator evaluator,
+        TupleList list,
+        BooleanCalc bcalc,
+        TupleList result)
+    {
+        if (ParallelTupleEvaluator.isEnabled(evaluator, list.size())) {
+            final boolean[] matches =
+                ParallelTupleEvaluator.evaluateConditions(
+                    evaluator, list, bcalc);
+            if (matches != null) {
+                final TupleCursor cursor = list.tupleCursor();
+                for (int i = 0; cursor.forward(); i++) {
+                    if (matches[i]) {
+                        result.addCurrent(cursor);
+                    }
+                }
+                return result;
+            }
+        }
+        final TupleCursor cursor = list.tupleCursor();
+        int currentIteration = 0;
+        Execution execution =
+            evaluator.getQuery().getStatement().getCurrentExecution();
+        while (cursor.forward()) {
+            CancellationChecker.checkCancelOrTimeout(
+                currentIteration++, execution);
+            cursor.setContext(evaluator);
+            if (bcalc.evaluateBoolean(evaluator)) {
+                result.addCurrent(cursor);
+            }
+        }
+        return result;
+    }
+
     private static abstract class BaseIterCalc extends AbstractIterCalc {
         protected BaseIterCalc(ResolvedFunCall call, Calc[] calcs) {
             super(call, calcs);
@@ -157,19 +203,7 @@ class FilterFunDef extends FunDefBase {
                     TupleCollections.createList(
                         list.getArity(), list.size() / 2);
                 evaluator.setNonEmpty(false);
-                TupleCursor cursor = list.tupleCursor();
-                int currentIteration = 0;
-                Execution execution =
-                    evaluator.getQuery().getStatement().getCurrentExecution();
-                while (cursor.forward()) {
-                    CancellationChecker.checkCancelOrTimeout(
-                        currentIteration++, execution);
-                    cursor.setContext(evaluator);
-                    if (bcalc.evaluateBoolean(evaluator)) {
-                        result.addCurrent(cursor);
-                    }
-                }
-                return result;
+                return filter(evaluator, list, bcalc, result);
             } finally {
                 evaluator.restore(savepoint);
                 evaluator.getTiming().markEnd(TIMING_NAME);
@@ -195,19 +229,7 @@ class FilterFunDef extends FunDefBase {
             final int savepoint = evaluator.savepoint();
             try {
                 evaluator.setNonEmpty(false);
-                TupleCursor cursor = members.tupleCursor();
-                int currentIteration = 0;
-                Execution execution =
-                    evaluator.getQuery().getStatement().getCurrentExecution();
-                while (cursor.forward()) {
-                    CancellationChecker.checkCancelOrTimeout(
-                        currentIteration++, execution);
-                    cursor.setContext(evaluator);
-                    if (bcalc.evaluateBoolean(evaluator)) {
-                        result.addCurrent(cursor);
-                    }
-                }
-                return result;
+                return filter(evaluator, members, bcalc, result);
             } finally {
                 evaluator.restore(savepoint);
             }
@@ -336,19 +358,7 @@ class FilterFunDef extends FunDefBase {
             final int savepoint = evaluator.savepoint();
             try {
                 evaluator.setNonEmpty(false);
-                final TupleCursor cursor = members0.tupleCursor();
-                int currentIteration = 0;
-                Execution execution =
-                    evaluator.getQuery().getStatement().getCurrentExecution();
-                while (cursor.forward()) {
-                    CancellationChecker.checkCancelOrTimeout(
-                        currentIteration++, execution);
-                    cursor.setContext(evaluator);
-                    if (bcalc.evaluateBoolean(evaluator)) {
-                        result.addCurrent(cursor);
-                    }
-                }
-                return result;
+                return filter(evaluator, members0, bcalc, result);
             } finally {
                 evaluator.restore(savepoint);
             }
@@ -375,19 +385,7 @@ class FilterFunDef extends FunDefBase {
                 // for capacity planning, guess selectivity = .5
                 TupleList result = members0.cloneList(members0.size() / 2);
                 evaluator.setNonEmpty(false);
-                final TupleCursor cursor = members0.tupleCursor();
-                int currentIteration = 0;
-                Execution execution = evaluator.getQuery()
-                    .getStatement().getCurrentExecution();
-                while (cursor.forward()) {
-                    CancellationChecker.checkCancelOrTimeout(
-                        currentIteration++, execution);
-                    cursor.setContext(evaluator);
-                    if (bcalc.evaluateBoolean(evaluator)) {
-                        result.addCurrent(cursor);
-                    }
-                }
-                return result;
+                return filter(evaluator, members0, bcalc, result);
             } finally {
                 evaluator.restore(savepoint);
                 evaluator.getTiming().markEnd(TIMING_NAME);
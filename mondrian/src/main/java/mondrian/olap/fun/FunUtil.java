@@ -513,6 +513,23 @@ public class FunUtil extends Util {
             return memberList;
         }
 
+        if (brk
+            && ParallelTupleEvaluator.isEnabled(
+                evaluator,
+                memberList == null ? Integer.MAX_VALUE : memberList.size()))
+        {
+            if (memberList == null) {
+                memberList = new ArrayList<Member>();
+                for (Member member : memberIter) {
+                    memberList.add(member);
+                }
+            }
+            memberIter = memberList;
+            if (sortMembersParallel(evaluator, memberList, exp, desc)) {
+                return memberList;
+            }
+        }
+
         evaluator.getTiming().markStart(SORT_EVAL_TIMING_NAME);
         boolean timingEval = true;
         boolean timingSort = false;
@@ -552,6 +569,49 @@ public class FunUtil extends Util {
         }
     }
 
+    /**
+     * Sorts a list of members in place by the value of an expression,
+     * evaluating the expression in parallel; see
+     * {@link ParallelTupleEvaluator}. Stable sort.
+     *
+     * @return false if the list could not be sorted in parallel, and the
+     * caller must sort sequentially
+     */
+    private static boolean sortMembersParallel(
+        Evaluator evaluator,
+        List<Member> memberList,
+        Calc exp,
+        boolean desc)
+    {
+        if (!ParallelTupleEvaluator.isEnabled(evaluator, memberList.size())) {
+            return false;
+        }
+        evaluator.getTiming().markStart(SORT_EVAL_TIMING_NAME);
+        final double[] keys;
+        try {
+            keys = ParallelTupleEvaluator.evaluateKeys(
+                evaluator, new UnaryTupleList(memberList), exp);
+        } finally {
+            evaluator.getTiming().markEnd(SORT_EVAL_TIMING_NAME);
+        }
+        if (keys == null) {
+            return false;
+        }
+        evaluator.getTiming().markStart(SORT_TIMING_NAME);
+        try {
+            final int[] indexes =
+                ParallelTupleEvaluator.sort(keys, desc, keys.length);
+            final Member[] members =
+                memberList.toArray(new Member[memberList.size()]);
+            for (int i = 0; i < indexes.length; i++) {
+                memberList.set(i, members[indexes[i]]);
+            }
+            return true;
+        } finally {
+            evaluator.getTiming().markEnd(SORT_TIMING_NAME);
+        }
+    }
+
     /**
      * Sorts a list of members according to a list of SortKeySpecs.
      * An in-place, Stable sort.
@@ -663,6 +723,20 @@ public class FunUtil extends Util {
                 tupleIterable.getArity(),
                 Arrays.asList(tuples));
 
+        if (brk && ParallelTupleEvaluator.isEnabled(evaluator, tuples.length)) {
+            final double[] keys =
+                ParallelTupleEvaluator.evaluateKeys(evaluator, result, exp);
+            if (keys != null) {
+                final int[] indexes =
+                    ParallelTupleEvaluator.sort(keys, desc, keys.length);
+                final List<Member>[] tuples2 = tuples.clone();
+                for (int i = 0; i < indexes.length; i++) {
+                    tuples[i] = tuples2[indexes[i]];
+                }
+                return result;
+            }
+        }
+
         Comparator<List<Member>> comparator;
         if (brk) {
             comparator =
@@ -1318,23 +1392,14 @@ public class FunUtil extends Util {
         TupleList members,
         Calc calc)
     {
-        SetWrapper sw = evaluateSet(evaluator, members, calc);
-        if (sw.errorCount > 0) {
+        NumericSummary summary = summarize(evaluator, members, calc);
+        if (summary.errorCount > 0) {
             return Double.NaN;
+        } else if (summary.isEmpty()) {
+            return Util.nullValue;
         } else {
-            final int size = sw.v.size();
-            if (size == 0) {
-                return Util.nullValue;
-            } else {
-                Double min = ((Number) sw.v.get(0)).doubleValue();
-                for (int i = 1; i < size; i++) {
-                    Double iValue = ((Number) sw.v.get(i)).doubleValue();
-                    if (iValue < min) {
-                        min = iValue;
-                    }
-                }
-                return min;
-            }
+            summary.checkNumeric();
+            return summary.min;
         }
     }
 
@@ -1343,23 +1408,14 @@ public class FunUtil extends Util {
         TupleList members,
         Calc exp)
     {
-        SetWrapper sw = evaluateSet(evaluator, members, exp);
-        if (sw.errorCount > 0) {
+        NumericSummary summary = summarize(evaluator, members, exp);
+        if (summary.errorCount > 0) {
             return Double.NaN;
+        } else if (summary.isEmpty()) {
+            return Util.nullValue;
         } else {
-            final int size = sw.v.size();
-            if (size == 0) {
-                return Util.nullValue;
-            } else {
-                Double max = ((Number) sw.v.get(0)).doubleValue();
-                for (int i = 1; i < size; i++) {
-                    Double iValue = ((Number) sw.v.get(i)).doubleValue();
-                    if (iValue > max) {
-                        max = iValue;
-                    }
-                }
-                return max;
-            }
+            summary.checkNumeric();
+            return summary.max;
         }
     }
 
@@ -1479,22 +1535,42 @@ public class FunUtil extends Util {
         TupleList members,
         Calc calc)
     {
-        SetWrapper sw = evaluateSet(evaluator, members, calc);
-        return (sw.errorCount > 0)
-            ? new Double(Double.NaN)
-            : (sw.v.size() == 0)
-            ? Util.nullValue
-            : new Double(_avg(sw));
+        final double d = avgDouble(evaluator, members, calc);
+        return d == DoubleNull ? Util.nullValue : new Double(d);
+    }
+
+    /**
+     * Computes the average of an expression over a list of tuples, without
+     * allocating an object per tuple.
+     *
+     * @return Average; {@link #DoubleNull} if there are no values; NaN if
+     * any value is not ready
+     */
+    public static double avgDouble(
+        Evaluator evaluator,
+        TupleList members,
+        Calc calc)
+    {
+        NumericSummary summary = summarize(evaluator, members, calc);
+        if (summary.errorCount > 0) {
+            return Double.NaN;
+        } else if (summary.isEmpty()) {
+            return DoubleNull;
+        } else {
+            summary.checkNumeric();
+            // Empty cells are not counted, as in SSAS.
+            return summary.sum / (double) summary.count;
+        }
     }
 
-    // TODO: parameterize inclusion of nulls; also, maybe make _avg a method of
-    // setwrapper, so we can cache the result (i.e. for correl)
+    // REVIEW: maybe make _avg a method of setwrapper, so we can cache the
+    // result (i.e. for correl)
     private static double _avg(SetWrapper sw) {
         double sum = 0.0;
         for (int i = 0; i < sw.v.size(); i++) {
             sum += ((Number) sw.v.get(i)).doubleValue();
         }
-        // TODO: should look at context and optionally include nulls
+        // Empty cells are not in sw.v, so they are not counted; see avgDouble.
         return sum / (double) sw.v.size();
     }
 
@@ -1512,18 +1588,7 @@ public class FunUtil extends Util {
         TupleList members,
         Calc exp)
     {
-        SetWrapper sw = evaluateSet(evaluator, members, exp);
-        if (sw.errorCount > 0) {
-            return Double.NaN;
-        } else if (sw.v.size() == 0) {
-            return DoubleNull;
-        } else {
-            double sum = 0.0;
-            for (int i = 0; i < sw.v.size(); i++) {
-                sum += ((Number) sw.v.get(i)).doubleValue();
-            }
-            return sum;
-        }
+        return sumDouble(evaluator, (TupleIterable) members, exp);
     }
 
     public static double sumDouble(
@@ -1531,17 +1596,14 @@ public class FunUtil extends Util {
         TupleIterable iterable,
         Calc exp)
     {
-        SetWrapper sw = evaluateSet(evaluator, iterable, exp);
-        if (sw.errorCount > 0) {
+        NumericSummary summary = summarize(evaluator, iterable, exp);
+        if (summary.errorCount > 0) {
             return Double.NaN;
-        } else if (sw.v.size() == 0) {
+        } else if (summary.isEmpty()) {
             return DoubleNull;
         } else {
-            double sum = 0.0;
-            for (int i = 0; i < sw.v.size(); i++) {
-                sum += ((Number) sw.v.get(i)).doubleValue();
-            }
-            return sum;
+            summary.checkNumeric();
+            return summary.sum;
         }
     }
 
@@ -1621,6 +1683,85 @@ public class FunUtil extends Util {
         return retval;
     }
 
+    /**
+     * Evaluates {@code calc} over {@code members} and accumulates the count,
+     * sum, minimum and maximum of the values in primitives.
+     *
+     * <p>Unlike {@link #evaluateSet(Evaluator, TupleIterable, Calc)}, does
+     * not build a list of values. If the expression is compiled to a
+     * primitive calc ({@link AbstractDoubleCalc} or
+     * {@link AbstractIntegerCalc}, whose <code>evaluate</code> method boxes
+     * the primitive value), calls <code>evaluateDouble</code> or
+     * <code>evaluateInteger</code>, so a numeric calculated member such as a
+     * ratio is summed without allocating an object per tuple. Other calcs
+     * are evaluated as objects, so that values which are not ready are
+     * counted as errors.
+     *
+     * @pre calc != null
+     */
+    static NumericSummary summarize(
+        Evaluator evaluator,
+        TupleIterable members,
+        Calc calc)
+    {
+        assert members != null;
+        assert calc != null;
+        assert calc.getType() instanceof ScalarType;
+
+        final NumericSummary summary = new NumericSummary();
+        final TupleCursor cursor = members.tupleCursor();
+        int currentIteration = 0;
+        Execution execution =
+            evaluator.getQuery().getStatement().getCurrentExecution();
+        if (calc instanceof AbstractDoubleCalc) {
+            final DoubleCalc doubleCalc = (DoubleCalc) calc;
+            while (cursor.forward()) {
+                CancellationChecker.checkCancelOrTimeout(
+                    currentIteration++, execution);
+                cursor.setContext(evaluator);
+                final double d = doubleCalc.evaluateDouble(evaluator);
+                if (d == DoubleNull) {
+                    summary.nullCount++;
+                } else {
+                    summary.add(d);
+                }
+            }
+        } else if (calc instanceof AbstractIntegerCalc) {
+            final IntegerCalc integerCalc = (IntegerCalc) calc;
+            while (cursor.forward()) {
+                CancellationChecker.checkCancelOrTimeout(
+                    currentIteration++, execution);
+                cursor.setContext(evaluator);
+                final int i = integerCalc.evaluateInteger(evaluator);
+                if (i == IntegerNull) {
+                    summary.nullCount++;
+                } else {
+                    summary.add(i);
+                }
+            }
+        } else {
+            while (cursor.forward()) {
+                CancellationChecker.checkCancelOrTimeout(
+                    currentIteration++, execution);
+                cursor.setContext(evaluator);
+                Object o = calc.evaluate(evaluator);
+                if (o == null || o == Util.nullValue) {
+                    summary.nullCount++;
+                } else if (o == RolapUtil.valueNotReadyException) {
+                    // Carry on summing, so that if we are running in a
+                    // BatchingCellReader, we find out all the dependent
+                    // cells we need
+                    summary.errorCount++;
+                } else if (o instanceof Number) {
+                    summary.add(((Number) o).doubleValue());
+                } else if (summary.nonNumeric == null) {
+                    summary.nonNumeric = o;
+                }
+            }
+        }
+        return summary;
+    }
+
     /**
      * Evaluates one or more expressions against the member list returning
      * a SetWrapper array. Where this differs very significantly from the
@@ -3435,6 +3576,57 @@ public class FunUtil extends Util {
         }
     }
 
+    /**
+     * Count, sum, minimum and maximum of the numeric values of an expression
+     * over a set of tuples, as computed by
+     * {@link FunUtil#summarize(Evaluator, TupleIterable, Calc)}.
+     */
+    static class NumericSummary {
+        int count;
+        int nullCount;
+        int errorCount;
+        double sum;
+        double min;
+        double max;
+
+        /** First value that was not null or a number, if any. */
+        Object nonNumeric;
+
+        void add(double d) {
+            if (count++ == 0) {
+                min = max = d;
+            } else {
+                if (d < min) {
+                    min = d;
+                }
+                if (d > max) {
+                    max = d;
+                }
+            }
+            sum += d;
+        }
+
+        /**
+         * Returns whether there were no values other than nulls and values
+         * that were not ready.
+         */
+        boolean isEmpty() {
+            return count == 0 && nonNumeric == null;
+        }
+
+        /**
+         * Throws if any value was not a number. (Strings and other objects
+         * cannot be summed or compared with numbers.)
+         */
+        void checkNumeric() {
+            if (nonNumeric != null) {
+                throw new ClassCastException(
+                    nonNumeric.getClass().getName()
+                    + " cannot be cast to " + Number.class.getName());
+            }
+        }
+    }
+
     static class SetWrapper {
         List v = new ArrayList();
         public int errorCount = 0, nullCount = 0;
@@ -15,6 +15,7 @@ import mondrian.calc.impl.ConstantCalc;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.Evaluator;
 import mondrian.olap.FunDef;
+import mondrian.olap.NativeEvaluator;
 
 /**
  * Definition of the <code>Head</code> and <code>Tail</code>
@@ -47,7 +48,9 @@ class HeadTailFunDef extends FunDefBase {
         head = dummyFunDef.getName().equals("Head");
     }
 
-    public Calc compileCall(ResolvedFunCall call, ExpCompiler compiler) {
+    public Calc compileCall(
+        final ResolvedFunCall call, ExpCompiler compiler)
+    {
         final ListCalc listCalc =
             compiler.compileList(call.getArg(0));
         final IntegerCalc integerCalc =
@@ -59,6 +62,14 @@ class HeadTailFunDef extends FunDefBase {
                 call, new Calc[] {listCalc, integerCalc})
             {
                 public TupleList evaluateList(Evaluator evaluator) {
+                    // Use a native evaluator, if more efficient.
+                    final NativeEvaluator nativeEvaluator =
+                        evaluator.getSchemaReader().getNativeSetEvaluator(
+                            call.getFunDef(), call.getArgs(), evaluator, this);
+                    if (nativeEvaluator != null) {
+                        return (TupleList)
+                            nativeEvaluator.execute(ResultStyle.LIST);
+                    }
                     final int savepoint = evaluator.savepoint();
                     try {
                         evaluator.setNonEmpty(false);
@@ -0,0 +1,564 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.olap.fun;
+
+import mondrian.calc.*;
+import mondrian.olap.*;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapEvaluator;
+import mondrian.server.Execution;
+import mondrian.server.Locus;
+import mondrian.util.CancellationChecker;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Evaluates an expression for each tuple of a large set using several
+ * threads, and sorts the results.
+ *
+ * <p>Used by the <code>Order</code>, <code>TopCount</code>,
+ * <code>BottomCount</code> and <code>Filter</code> functions if the set has
+ * at least {@link MondrianProperties#ParallelEvaluationThreshold} tuples.
+ *
+ * <p>The set is split into chunks. Each chunk is evaluated by an evaluator
+ * created using {@link RolapEvaluator#pushCacheOnly()}, which reads cells
+ * only from the cache. If any chunk needs a cell that is not in the cache,
+ * the methods return null, and the caller must evaluate on the calling
+ * thread in the usual way, so that the missing cells are loaded in a batch.
+ *
+ * <p>Sort keys are held in a <code>double[]</code> and sorted as an array of
+ * <code>int</code> indexes. Ties are broken by position in the input, so the
+ * order is the same as a stable sort using {@link FunUtil#compareValues}.
+ */
+final class ParallelTupleEvaluator {
+    private static final Logger LOGGER =
+        Logger.getLogger(ParallelTupleEvaluator.class);
+
+    private static final int THREAD_COUNT =
+        Math.max(
+            1,
+            MondrianProperties.instance().ParallelEvaluationThreads.get());
+
+    /**
+     * Executor that evaluates chunks. The calling thread always evaluates
+     * the first chunk itself.
+     */
+    private static final ExecutorService executor =
+        Util.getExecutorService(
+            THREAD_COUNT,
+            THREAD_COUNT,
+            1,
+            "mondrian.olap.fun.ParallelTupleEvaluator$executor",
+            null);
+
+    /**
+     * Whether the current thread is one of the executor's threads. A worker
+     * must not wait for other tasks on the same executor, so nested calls
+     * evaluate sequentially.
+     */
+    private static final ThreadLocal<Boolean> IN_WORKER =
+        new ThreadLocal<Boolean>();
+
+    private ParallelTupleEvaluator() {
+    }
+
+    /**
+     * Returns whether a set of a given size should be evaluated in parallel.
+     *
+     * @param evaluator Evaluator
+     * @param size Number of tuples
+     * @return Whether to evaluate in parallel
+     */
+    static boolean isEnabled(Evaluator evaluator, int size) {
+        final int threshold =
+            MondrianProperties.instance().ParallelEvaluationThreshold.get();
+        return threshold > 0
+            && size >= threshold
+            && size > 1
+            && THREAD_COUNT > 1
+            // Profiling and dependency-testing evaluators keep state that
+            // is not safe for use by several threads.
+            && evaluator.getClass() == RolapEvaluator.class
+            && IN_WORKER.get() == null
+            && !MondrianProperties.instance().DisableCaching.get();
+    }
+
+    /**
+     * Evaluates a numeric expression for each tuple of a list.
+     *
+     * <p>Null values are represented by {@link FunUtil#DoubleNull}. Returns
+     * null if any value cannot be represented as a double without changing
+     * the order defined by {@link FunUtil#compareValues(Object, Object)}, or
+     * if any cell is not in the cache.
+     *
+     * @param evaluator Evaluator
+     * @param list List of tuples
+     * @param calc Expression
+     * @return Array of values, or null if the caller must evaluate
+     * sequentially
+     */
+    static double[] evaluateKeys(
+        Evaluator evaluator,
+        TupleList list,
+        final Calc calc)
+    {
+        final double[] keys = new double[list.size()];
+        final boolean ok = evaluate(
+            evaluator, list,
+            new ChunkEvaluator() {
+                public boolean evaluate(Evaluator evaluator, int i) {
+                    final Object o = calc.evaluate(evaluator);
+                    if (o == null) {
+                        keys[i] = FunUtil.DoubleNull;
+                        return true;
+                    }
+                    if (!(o instanceof Number)) {
+                        // Strings, dates, errors, Util.nullValue
+                        return false;
+                    }
+                    final double d = ((Number) o).doubleValue();
+                    if (d == FunUtil.DoubleNull
+                        || d == Double.NEGATIVE_INFINITY)
+                    {
+                        // Would compare differently from null.
+                        return false;
+                    }
+                    keys[i] = d;
+                    return true;
+                }
+            });
+        return ok ? keys : null;
+    }
+
+    /**
+     * Evaluates a boolean expression for each tuple of a list.
+     *
+     * @param evaluator Evaluator
+     * @param list List of tuples
+     * @param calc Condition
+     * @return Array of values, or null if the caller must evaluate
+     * sequentially
+     */
+    static boolean[] evaluateConditions(
+        Evaluator evaluator,
+        TupleList list,
+        final BooleanCalc calc)
+    {
+        final boolean[] values = new boolean[list.size()];
+        final boolean ok = evaluate(
+            evaluator, list,
+            new ChunkEvaluator() {
+                public boolean evaluate(Evaluator evaluator, int i) {
+                    values[i] = calc.evaluateBoolean(evaluator);
+                    return true;
+                }
+            });
+        return ok ? values : null;
+    }
+
+    /**
+     * Returns the positions of the first {@code limit} values in sorted
+     * order. Ties are broken by position, so the result is the same as for a
+     * stable sort.
+     *
+     * <p>Chunks are sorted in parallel, using a bounded heap if
+     * {@code limit} is small, and then merged.
+     *
+     * @param keys Sort keys
+     * @param desc Whether to sort descending
+     * @param limit Maximum number of positions to return
+     * @return Positions of the first values, in order
+     */
+    static int[] sort(
+        final double[] keys,
+        final boolean desc,
+        final int limit)
+    {
+        final int size = keys.length;
+        final int chunkCount =
+            IN_WORKER.get() == null
+                ? Math.min(THREAD_COUNT, Math.max(1, size / 1000))
+                : 1;
+        if (chunkCount == 1) {
+            return sort(keys, desc, 0, size, limit);
+        }
+        final int[][] results = new int[chunkCount][];
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int c = 1; c < chunkCount; c++) {
+            final int c2 = c;
+            futures.add(
+                executor.submit(
+                    new Runnable() {
+                        public void run() {
+                            results[c2] = sort(
+                                keys, desc,
+                                chunkStart(c2, chunkCount, size),
+                                chunkStart(c2 + 1, chunkCount, size),
+                                limit);
+                        }
+                    }));
+        }
+        results[0] =
+            sort(keys, desc, 0, chunkStart(1, chunkCount, size), limit);
+        for (Future<?> future : futures) {
+            await(future);
+        }
+        return merge(keys, desc, results, Math.min(limit, size));
+    }
+
+    /**
+     * Returns the positions of the first {@code limit} values in a range,
+     * in sorted order.
+     *
+     * @param keys Sort keys
+     * @param desc Whether to sort descending
+     * @param start First position
+     * @param end Last position plus one
+     * @param limit Maximum number of positions to return
+     * @return Positions, in order
+     */
+    static int[] sort(
+        double[] keys,
+        boolean desc,
+        int start,
+        int end,
+        int limit)
+    {
+        final int n = end - start;
+        if (limit < n / 4) {
+            return top(keys, desc, start, end, limit);
+        }
+        final int[] indexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = start + i;
+        }
+        mergeSort(keys, desc, indexes, new int[n], 0, n);
+        return limit < n ? Util.copyOf(indexes, limit) : indexes;
+    }
+
+    private static int compare(double[] keys, boolean desc, int i, int j) {
+        final int c = FunUtil.compareValues(keys[i], keys[j]);
+        if (c != 0) {
+            return desc ? -c : c;
+        }
+        return i < j ? -1 : (i == j ? 0 : 1);
+    }
+
+    private static void mergeSort(
+        double[] keys,
+        boolean desc,
+        int[] a,
+        int[] aux,
+        int lo,
+        int hi)
+    {
+        if (hi - lo < 16) {
+            // insertion sort
+            for (int i = lo + 1; i < hi; i++) {
+                final int x = a[i];
+                int j = i - 1;
+                while (j >= lo && compare(keys, desc, a[j], x) > 0) {
+                    a[j + 1] = a[j];
+                    --j;
+                }
+                a[j + 1] = x;
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        mergeSort(keys, desc, a, aux, lo, mid);
+        mergeSort(keys, desc, a, aux, mid, hi);
+        if (compare(keys, desc, a[mid - 1], a[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(a, lo, aux, lo, hi - lo);
+        for (int i = lo, j = mid, k = lo; k < hi; k++) {
+            if (j >= hi
+                || (i < mid && compare(keys, desc, aux[i], aux[j]) <= 0))
+            {
+                a[k] = aux[i++];
+            } else {
+                a[k] = aux[j++];
+            }
+        }
+    }
+
+    /**
+     * Finds the first {@code limit} positions using a bounded heap whose
+     * root is the greatest of the positions retained so far.
+     */
+    private static int[] top(
+        double[] keys,
+        boolean desc,
+        int start,
+        int end,
+        int limit)
+    {
+        final int[] heap = new int[limit];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            if (n < limit) {
+                int k = n++;
+                heap[k] = i;
+                while (k > 0) {
+                    final int parent = (k - 1) >>> 1;
+                    if (compare(keys, desc, heap[parent], heap[k]) >= 0) {
+                        break;
+                    }
+                    swap(heap, parent, k);
+                    k = parent;
+                }
+            } else if (limit > 0 && compare(keys, desc, i, heap[0]) < 0) {
+                heap[0] = i;
+                siftDown(keys, desc, heap, n);
+            }
+        }
+        final int[] result = new int[n];
+        while (n > 0) {
+            result[--n] = heap[0];
+            heap[0] = heap[n];
+            siftDown(keys, desc, heap, n);
+        }
+        return result;
+    }
+
+    private static void siftDown(
+        double[] keys,
+        boolean desc,
+        int[] heap,
+        int n)
+    {
+        int k = 0;
+        while (true) {
+            final int left = 2 * k + 1;
+            if (left >= n) {
+                return;
+            }
+            int child = left;
+            if (left + 1 < n
+                && compare(keys, desc, heap[left + 1], heap[left]) > 0)
+            {
+                child = left + 1;
+            }
+            if (compare(keys, desc, heap[k], heap[child]) >= 0) {
+                return;
+            }
+            swap(heap, k, child);
+            k = child;
+        }
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        final int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private static int[] merge(
+        double[] keys,
+        boolean desc,
+        int[][] runs,
+        int limit)
+    {
+        final int[] result = new int[limit];
+        final int[] heads = new int[runs.length];
+        for (int k = 0; k < limit; k++) {
+            int best = -1;
+            for (int r = 0; r < runs.length; r++) {
+                if (heads[r] < runs[r].length
+                    && (best < 0
+                        || compare(
+                            keys, desc,
+                            runs[r][heads[r]],
+                            runs[best][heads[best]]) < 0))
+                {
+                    best = r;
+                }
+            }
+            result[k] = runs[best][heads[best]++];
+        }
+        return result;
+    }
+
+    private static int chunkStart(int chunk, int chunkCount, int size) {
+        return (int) ((long) size * chunk / chunkCount);
+    }
+
+    /**
+     * Evaluates each tuple of a list, in chunks, on several threads.
+     *
+     * @return false if any chunk needed a cell that was not in the cache, or
+     * produced a value that the caller cannot use
+     */
+    private static boolean evaluate(
+        Evaluator evaluator,
+        final TupleList list,
+        final ChunkEvaluator chunkEvaluator)
+    {
+        final RolapEvaluator rolapEvaluator = (RolapEvaluator) evaluator;
+        final int size = list.size();
+        final int chunkCount = Math.min(THREAD_COUNT, size);
+        final Locus locus = Locus.peek();
+        final RolapCube cube = rolapEvaluator.getCube();
+        final AtomicBoolean stop = new AtomicBoolean();
+
+        // Forks are created on this thread, because the parent evaluator
+        // is not safe to read while it is being modified.
+        final RolapEvaluator[] forks = new RolapEvaluator[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            forks[c] = rolapEvaluator.pushCacheOnly();
+        }
+
+        // Evaluate the first tuple before starting any threads. In the
+        // first pass of a query no cells are in the cache, and this avoids
+        // wasted effort.
+        final int firstEnd = chunkStart(1, chunkCount, size);
+        if (!evaluateChunk(
+                forks[0], list, 0, 1, chunkEvaluator, stop,
+                locus.execution))
+        {
+            return false;
+        }
+
+        final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (int c = 1; c < chunkCount; c++) {
+            final RolapEvaluator fork = forks[c];
+            final int start = chunkStart(c, chunkCount, size);
+            final int end = chunkStart(c + 1, chunkCount, size);
+            futures.add(
+                executor.submit(
+                    new Callable<Boolean>() {
+                        public Boolean call() {
+                            IN_WORKER.set(Boolean.TRUE);
+                            Locus.push(locus);
+                            try {
+                                return evaluateChunk(
+                                    fork, list, start, end, chunkEvaluator,
+                                    stop, locus.execution);
+                            } finally {
+                                Locus.pop(locus);
+                                IN_WORKER.remove();
+                                // Segments registered by this thread must
+                                // not outlive the statement.
+                                cube.clearCachedAggregations(true);
+                            }
+                        }
+                    }));
+        }
+        boolean ok;
+        try {
+            ok = evaluateChunk(
+                forks[0], list, 1, firstEnd, chunkEvaluator, stop,
+                locus.execution);
+        } catch (RuntimeException e) {
+            stop.set(true);
+            throw e;
+        } catch (Error e) {
+            stop.set(true);
+            throw e;
+        } finally {
+            // Wait for workers even if this thread failed; they must not
+            // use the statement after it has moved on.
+            for (Future<Boolean> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    // handled below
+                }
+            }
+        }
+        for (Future<Boolean> future : futures) {
+            ok &= await(future);
+        }
+        if (!ok && LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "Parallel evaluation of " + size
+                + " tuples fell back to sequential evaluation");
+        }
+        return ok;
+    }
+
+    private static boolean evaluateChunk(
+        RolapEvaluator evaluator,
+        TupleList list,
+        int start,
+        int end,
+        ChunkEvaluator chunkEvaluator,
+        AtomicBoolean stop,
+        Execution execution)
+    {
+        int currentIteration = 0;
+        final TupleCursor cursor = list.subList(start, end).tupleCursor();
+        for (int i = start; cursor.forward(); i++) {
+            CancellationChecker.checkCancelOrTimeout(
+                currentIteration++, execution);
+            if (stop.get()) {
+                return false;
+            }
+            cursor.setContext(evaluator);
+            try {
+                if (!chunkEvaluator.evaluate(evaluator, i)
+                    || evaluator.getMissCount() > 0)
+                {
+                    stop.set(true);
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                stop.set(true);
+                if (evaluator.getMissCount() > 0) {
+                    // Probably caused by a value that is not ready; the
+                    // caller will evaluate again, and load the cells.
+                    return false;
+                }
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Util.newError(e, "while evaluating in parallel");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw Util.newError(cause, "while evaluating in parallel");
+        }
+    }
+
+    /**
+     * Evaluates one tuple, whose members have been set as the context of
+     * the evaluator.
+     */
+    private interface ChunkEvaluator {
+        /**
+         * Evaluates the tuple at a given position.
+         *
+         * @param evaluator Evaluator
+         * @param i Position of tuple in the list
+         * @return false if the value cannot be used
+         */
+        boolean evaluate(Evaluator evaluator, int i);
+    }
+}
+
+// End ParallelTupleEvaluator.java
@@ -15,6 +15,9 @@ import mondrian.calc.*;
 import mondrian.calc.impl.*;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
+import mondrian.server.Execution;
+import mondrian.server.Locus;
+import mondrian.util.CancellationChecker;
 
 import java.util.AbstractList;
 import java.util.List;
@@ -59,10 +62,10 @@ class TopBottomCountFunDef extends FunDefBase {
     }
 
     public Calc compileCall(final ResolvedFunCall call, ExpCompiler compiler) {
-        // Compile the member list expression. Ask for a mutable list, because
-        // we're going to sort it later.
-        final ListCalc listCalc =
-                compiler.compileList(call.getArg(0), true);
+        // Compile the set expression as an iterable. If the set is not
+        // already a list, we can find the top tuples without materializing
+        // it.
+        final IterCalc iterCalc = compiler.compileIter(call.getArg(0));
         final IntegerCalc integerCalc =
                 compiler.compileInteger(call.getArg(1));
         final Calc orderCalc =
@@ -72,7 +75,7 @@ class TopBottomCountFunDef extends FunDefBase {
         final int arity = call.getType().getArity();
         return new AbstractListCalc(
             call,
-            new Calc[]{listCalc, integerCalc, orderCalc})
+            new Calc[]{iterCalc, integerCalc, orderCalc})
         {
             public TupleList evaluateList(Evaluator evaluator) {
                 // Use a native evaluator, if more efficient.
@@ -91,8 +94,21 @@ class TopBottomCountFunDef extends FunDefBase {
                     return TupleCollections.emptyList(arity);
                 }
 
-                TupleList list = listCalc.evaluateList(evaluator);
-                assert list.getArity() == arity;
+                final TupleIterable iterable =
+                    iterCalc.evaluateIterable(evaluator);
+                assert iterable.getArity() == arity;
+                if (n > 0
+                    && !(iterable instanceof TupleList
+                        && ParallelTupleEvaluator.isEnabled(
+                            evaluator, ((TupleList) iterable).size())))
+                {
+                    final TupleList result = streamList(evaluator, iterable, n);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+
+                TupleList list = TupleCollections.materialize(iterable, true);
                 if (list.isEmpty()) {
                     return list;
                 }
@@ -111,6 +127,45 @@ class TopBottomCountFunDef extends FunDefBase {
                     Math.min(n, list.size()));
             }
 
+            /**
+             * Finds the first {@code n} tuples in a single pass over the
+             * set, keeping at most {@code n} tuples in memory.
+             *
+             * @return Top or bottom tuples, or null if the sort values
+             * cannot be compared as numbers
+             */
+            private TupleList streamList(
+                Evaluator evaluator,
+                TupleIterable iterable,
+                int n)
+            {
+                final TupleCursor cursor = iterable.tupleCursor();
+                int currentIteration = 0;
+                final Execution execution = Locus.peek().execution;
+                if (orderCalc == null) {
+                    final TupleList result =
+                        TupleCollections.createList(arity);
+                    while (result.size() < n && cursor.forward()) {
+                        CancellationChecker.checkCancelOrTimeout(
+                            currentIteration++, execution);
+                        result.addCurrent(cursor);
+                    }
+                    return result;
+                }
+                final BoundedTupleHeap heap =
+                    new BoundedTupleHeap(arity, n, top);
+                final Evaluator evaluator2 = evaluator.push();
+                while (cursor.forward()) {
+                    CancellationChecker.checkCancelOrTimeout(
+                        currentIteration++, execution);
+                    cursor.setContext(evaluator2);
+                    if (!heap.add(cursor, orderCalc.evaluate(evaluator2))) {
+                        return null;
+                    }
+                }
+                return heap.toList();
+            }
+
             private TupleList partiallySortList(
                 Evaluator evaluator,
                 TupleList list,
@@ -138,6 +193,21 @@ class TopBottomCountFunDef extends FunDefBase {
                 }
 
                 // normal case: no need for chunks
+                if (ParallelTupleEvaluator.isEnabled(evaluator, list.size())) {
+                    final double[] keys =
+                        ParallelTupleEvaluator.evaluateKeys(
+                            evaluator, list, orderCalc);
+                    if (keys != null) {
+                        final int[] indexes =
+                            ParallelTupleEvaluator.sort(keys, top, n);
+                        final TupleList result =
+                            TupleCollections.createList(arity, n);
+                        for (int index : indexes) {
+                            result.add(list.get(index));
+                        }
+                        return result;
+                    }
+                }
                 final int savepoint = evaluator.savepoint();
                 try {
                     switch (list.getArity()) {
@@ -0,0 +1,158 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.olap4j;
+
+import org.olap4j.Cell;
+import org.olap4j.CellSet;
+
+import java.util.BitSet;
+
+/**
+ * Bulk access to the cells of a {@link CellSet} produced by the Mondrian
+ * olap4j driver.
+ *
+ * <p>{@link CellSet#getCell(int)} creates a {@link Cell} and a list of
+ * coordinates each time it is called, which is wasteful for an application
+ * that copies a large grid. This extension reads the values of a range of
+ * cells into the primitive arrays of a {@link Page}, which can be reused
+ * from one range to the next, and provides a {@link Cursor}, a single
+ * {@link Cell} that can be moved from one cell to another.
+ *
+ * <p>To use it, unwrap a cell set:
+ *
+ * <blockquote><pre>
+ * CellSet cellSet = statement.executeOlapQuery(mdx);
+ * CellSetExport export = cellSet.unwrap(CellSetExport.class);
+ * CellSetExport.Page page = new CellSetExport.Page(1024);
+ * for (int i = 0; i &lt; export.getCellCount(); i += page.count) {
+ *     export.read(i, page);
+ *     // use page.values, page.nulls ...
+ * }</pre></blockquote>
+ *
+ * <p>Cells are numbered in the same way as {@link CellSet#getCell(int)};
+ * that is, the coordinate on the first axis varies fastest.
+ */
+public interface CellSetExport {
+    /**
+     * Returns the number of cells in the cell set; that is, the product of
+     * the number of positions on each axis.
+     *
+     * @return Number of cells
+     */
+    int getCellCount();
+
+    /**
+     * Reads the values of consecutive cells into a page.
+     *
+     * <p>Reads as many cells as the page can hold, or until the last cell of
+     * the cell set, and sets the {@link Page#firstOrdinal} and
+     * {@link Page#count} fields of the page.
+     *
+     * @param firstOrdinal Ordinal of the first cell to read
+     * @param page Page to populate
+     * @return Number of cells read
+     * @throws IndexOutOfBoundsException if the ordinal is negative or not
+     *     less than the number of cells
+     */
+    int read(int firstOrdinal, Page page);
+
+    /**
+     * Creates a cursor. The cursor is positioned on the first cell; if the
+     * cell set has no cells, it is positioned before the first cell, its
+     * ordinal is -1, and {@link Cursor#next()} returns false.
+     *
+     * <p>A cursor is not thread-safe; each thread should create its own.
+     *
+     * @return Cursor
+     */
+    Cursor createCursor();
+
+    /**
+     * Values of a range of cells, in columnar form.
+     *
+     * <p>For the cell at offset {@code i} in the page (the cell whose ordinal
+     * is {@code firstOrdinal + i}):
+     *
+     * <ul>
+     * <li>if {@code nulls.get(i)}, the cell is null and {@code values[i]} is
+     *     0;</li>
+     * <li>otherwise, if {@code nonNumeric.get(i)}, the value of the cell is
+     *     a string or an error, and {@code values[i]} is {@link Double#NaN};
+     *     use a {@link Cursor} to read it;</li>
+     * <li>otherwise, {@code values[i]} is the value of the cell.</li>
+     * </ul>
+     */
+    final class Page {
+        /** Values of the cells. */
+        public final double[] values;
+
+        /** Whether each cell is null. */
+        public final BitSet nulls;
+
+        /** Whether each non-null cell has a value that is not a number. */
+        public final BitSet nonNumeric;
+
+        /** Ordinal of the first cell in this page. */
+        public int firstOrdinal;
+
+        /** Number of cells in this page. */
+        public int count;
+
+        /**
+         * Creates a Page.
+         *
+         * @param capacity Maximum number of cells
+         */
+        public Page(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException(
+                    "capacity must be positive: " + capacity);
+            }
+            this.values = new double[capacity];
+            this.nulls = new BitSet(capacity);
+            this.nonNumeric = new BitSet(capacity);
+        }
+
+        /**
+         * Returns the maximum number of cells in this page.
+         */
+        public int capacity() {
+            return values.length;
+        }
+    }
+
+    /**
+     * Cell that can be moved from one cell of a cell set to another.
+     *
+     * <p>Methods of {@link Cell} return information about the current cell.
+     * The coordinate list returned by {@link #getCoordinateList()} is a copy.
+     */
+    interface Cursor extends Cell {
+        /**
+         * Moves this cursor to a cell.
+         *
+         * @param ordinal Ordinal of cell
+         * @return This cursor
+         * @throws IndexOutOfBoundsException if the ordinal is negative or not
+         *     less than the number of cells
+         */
+        Cursor moveTo(int ordinal);
+
+        /**
+         * Moves this cursor to the next cell.
+         *
+         * @return Whether there is a next cell; if false, the cursor has not
+         *     moved
+         */
+        boolean next();
+    }
+}
+
+// End CellSetExport.java
@@ -13,6 +13,7 @@ import mondrian.olap.Axis;
 import mondrian.olap.*;
 import mondrian.rolap.RolapAxis;
 import mondrian.rolap.RolapCell;
+import mondrian.rolap.RolapResult;
 import mondrian.server.Execution;
 import mondrian.spi.ProfileHandler;
 
@@ -34,12 +35,15 @@ import java.util.*;
  * <p>This class has sub-classes which implement JDBC 3.0 and JDBC 4.0 APIs;
  * it is instantiated using {@link Factory#newCellSet}.</p>
  *
+ * <p>It also implements {@link CellSetExport}, which clients can obtain by
+ * calling {@link #unwrap}.</p>
+ *
  * @author jhyde
  * @since May 24, 2007
  */
 abstract class MondrianOlap4jCellSet
     extends Execution
-    implements CellSet
+    implements CellSet, CellSetExport
 {
     final MondrianOlap4jStatement olap4jStatement;
     final Query query;
@@ -49,6 +53,7 @@ abstract class MondrianOlap4jCellSet
     private final List<CellSetAxis> axisList =
         new ArrayList<CellSetAxis>();
     private CellSetAxis filterAxis;
+    private int[] axisSizes;
 
     /**
      * Creates a MondrianOlap4jCellSet.
@@ -92,12 +97,14 @@ abstract class MondrianOlap4jCellSet
         mondrian.olap.Axis[] axes = result.getAxes();
         QueryAxis[] queryAxes = result.getQuery().getAxes();
         assert axes.length == queryAxes.length;
+        axisSizes = new int[axes.length];
         for (int i = 0; i < axes.length; i++) {
             Axis axis = axes[i];
             QueryAxis queryAxis = queryAxes[i];
             axisList.add(
                 new MondrianOlap4jCellSetAxis(
                     this, queryAxis, (RolapAxis) axis));
+            axisSizes[i] = axis.getPositions().size();
         }
 
         // initialize filter axis
@@ -140,12 +147,23 @@ abstract class MondrianOlap4jCellSet
     }
 
     private int[] ordinalToCoordinateArray(int ordinal) {
-        Axis[] axes = result.getAxes();
-        final int[] pos = new int[axes.length];
+        final int[] pos = new int[axisSizes.length];
+        ordinalToCoordinateArray(ordinal, pos);
+        return pos;
+    }
+
+    /**
+     * Converts a cell ordinal to coordinates, writing them into an existing
+     * array.
+     *
+     * @param ordinal Cell ordinal
+     * @param pos Array into which to write the coordinates
+     */
+    private void ordinalToCoordinateArray(int ordinal, int[] pos) {
         int modulo = 1;
-        for (int i = 0; i < axes.length; i++) {
+        for (int i = 0; i < axisSizes.length; i++) {
             int prevModulo = modulo;
-            modulo *= axes[i].getPositions().size();
+            modulo *= axisSizes[i];
             pos[i] = (ordinal % modulo) / prevModulo;
         }
         if (ordinal < 0 || ordinal >= modulo) {
@@ -154,7 +172,67 @@ abstract class MondrianOlap4jCellSet
                 + ") lies outside CellSet bounds ("
                 + getBoundsAsString() + ")");
         }
-        return pos;
+    }
+
+    /**
+     * Moves coordinates to those of the cell with the next ordinal.
+     *
+     * @param pos Coordinates
+     */
+    private void incrementCoordinates(int[] pos) {
+        for (int i = 0; i < pos.length; i++) {
+            if (++pos[i] < axisSizes[i]) {
+                return;
+            }
+            pos[i] = 0;
+        }
+    }
+
+    // implement CellSetExport
+
+    public int getCellCount() {
+        int cellCount = 1;
+        for (int axisSize : axisSizes) {
+            cellCount *= axisSize;
+        }
+        return cellCount;
+    }
+
+    public int read(int firstOrdinal, Page page) {
+        final int[] pos = ordinalToCoordinateArray(firstOrdinal);
+        // Read values without creating a cell object, unless the result
+        // has been wrapped (for example to remove empty rows).
+        final RolapResult rolapResult =
+            result instanceof RolapResult ? (RolapResult) result : null;
+        final int count =
+            Math.min(page.capacity(), getCellCount() - firstOrdinal);
+        page.firstOrdinal = firstOrdinal;
+        page.count = count;
+        page.nulls.clear();
+        page.nonNumeric.clear();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                incrementCoordinates(pos);
+            }
+            final Object value =
+                rolapResult != null
+                    ? rolapResult.getCellValue(pos)
+                    : result.getCell(pos).getValue();
+            if (value == null) {
+                page.values[i] = 0d;
+                page.nulls.set(i);
+            } else if (value instanceof Number) {
+                page.values[i] = ((Number) value).doubleValue();
+            } else {
+                page.values[i] = Double.NaN;
+                page.nonNumeric.set(i);
+            }
+        }
+        return count;
+    }
+
+    public Cursor createCursor() {
+        return new CursorImpl();
     }
 
     public Cell getCell(Position... positions) {
@@ -861,11 +939,141 @@ abstract class MondrianOlap4jCellSet
     // implement Wrapper
 
     public <T> T unwrap(Class<T> iface) throws SQLException {
-        throw new UnsupportedOperationException();
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw olap4jStatement.olap4jConnection.helper.createException(
+            "does not implement '" + iface + "'");
     }
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        throw new UnsupportedOperationException();
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Implementation of {@link CellSetExport.Cursor}.
+     *
+     * <p>Moving the cursor gets the cell from the result, but does not create
+     * a list of coordinates or a {@link MondrianOlap4jCell}.
+     *
+     * <p>If the cell set has no cells, the cursor is positioned before the
+     * first cell, with ordinal -1, and {@link #next()} returns false.
+     */
+    private class CursorImpl implements Cursor {
+        private final int[] pos = new int[axisSizes.length];
+        private int ordinal = -1;
+        private RolapCell cell;
+
+        CursorImpl() {
+            if (getCellCount() > 0) {
+                moveTo(0);
+            }
+        }
+
+        public Cursor moveTo(int ordinal) {
+            ordinalToCoordinateArray(ordinal, pos);
+            this.ordinal = ordinal;
+            this.cell = (RolapCell) result.getCell(pos);
+            return this;
+        }
+
+        public boolean next() {
+            if (ordinal + 1 >= getCellCount()) {
+                return false;
+            }
+            incrementCoordinates(pos);
+            ++ordinal;
+            this.cell = (RolapCell) result.getCell(pos);
+            return true;
+        }
+
+        /**
+         * Returns the current cell.
+         *
+         * @throws NoSuchElementException if the cell set has no cells
+         */
+        private RolapCell cell() {
+            if (cell == null) {
+                throw new NoSuchElementException("cell set has no cells");
+            }
+            return cell;
+        }
+
+        /**
+         * Returns a cell that is not affected when this cursor moves.
+         */
+        private MondrianOlap4jCell toCell() {
+            return new MondrianOlap4jCell(
+                pos.clone(), MondrianOlap4jCellSet.this, cell());
+        }
+
+        public CellSet getCellSet() {
+            return MondrianOlap4jCellSet.this;
+        }
+
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        public List<Integer> getCoordinateList() {
+            final List<Integer> list = new ArrayList<Integer>(pos.length);
+            for (int i : pos) {
+                list.add(i);
+            }
+            return list;
+        }
+
+        public Object getPropertyValue(
+            org.olap4j.metadata.Property property)
+        {
+            return cell().getPropertyValue(property.getName());
+        }
+
+        public boolean isEmpty() {
+            return cell().isNull();
+        }
+
+        public boolean isError() {
+            return cell().isError();
+        }
+
+        public boolean isNull() {
+            return cell().isNull();
+        }
+
+        public double getDoubleValue() throws OlapException {
+            final Object o = cell().getValue();
+            if (o instanceof Number) {
+                return ((Number) o).doubleValue();
+            }
+            throw olap4jStatement.olap4jConnection.helper.createException(
+                this, "not a number");
+        }
+
+        public String getErrorText() {
+            return toCell().getErrorText();
+        }
+
+        public Object getValue() {
+            return cell().getValue();
+        }
+
+        public String getFormattedValue() {
+            return cell().getFormattedValue();
+        }
+
+        public ResultSet drillThrough() throws OlapException {
+            return toCell().drillThrough();
+        }
+
+        public void setValue(
+            Object value,
+            AllocationPolicy allocationPolicy,
+            Object... allocationArgs)
+            throws OlapException
+        {
+            toCell().setValue(value, allocationPolicy, allocationArgs);
+        }
     }
 }
 
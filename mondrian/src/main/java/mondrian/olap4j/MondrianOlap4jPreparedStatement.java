@@ -36,6 +36,11 @@ import java.util.Calendar;
  * <p>This class has sub-classes which implement JDBC 3.0 and JDBC 4.0 APIs;
  * it is instantiated using {@link Factory#newPreparedStatement}.</p>
  *
+ * <p>The query is parsed, validated and compiled once, when the statement is
+ * prepared; calculated members and named sets are compiled the first time
+ * they are used. {@link #executeQuery()} executes the same query each time,
+ * so setting a parameter changes only the value in its slot.</p>
+ *
  * @author jhyde
  * @since Jun 12, 2007
  */
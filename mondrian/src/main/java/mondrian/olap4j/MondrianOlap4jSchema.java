@@ -61,17 +61,66 @@ class MondrianOlap4jSchema
     }
 
     public NamedList<Cube> getCubes() throws OlapException {
-        NamedList<MondrianOlap4jCube> list =
-            new NamedListImpl<MondrianOlap4jCube>();
-        final MondrianOlap4jConnection olap4jConnection =
-            olap4jCatalog.olap4jDatabaseMetaData.olap4jConnection;
-        for (mondrian.olap.Cube cube
-            : olap4jConnection.getMondrianConnection()
-                .getSchemaReader().getCubes())
-        {
-            list.add(olap4jConnection.toOlap4j(cube));
+        return Olap4jUtil.cast(new CubeList());
+    }
+
+    /**
+     * List of the cubes in this schema that the current role can see.
+     *
+     * <p>Looking up a cube by name builds only that cube, even if
+     * {@link mondrian.olap.MondrianProperties#LazyCubeLoading} is true;
+     * other methods build every cube on first use.
+     */
+    private class CubeList extends AbstractNamedList<MondrianOlap4jCube> {
+        private List<MondrianOlap4jCube> cubes;
+
+        public String getName(Object cube) {
+            return ((MondrianOlap4jCube) cube).getName();
+        }
+
+        public MondrianOlap4jCube get(String name) {
+            if (cubes != null) {
+                return super.get(name);
+            }
+            final MondrianOlap4jConnection olap4jConnection =
+                olap4jCatalog.olap4jDatabaseMetaData.olap4jConnection;
+            final mondrian.olap.SchemaReader schemaReader =
+                olap4jConnection.getMondrianConnection().getSchemaReader();
+            final mondrian.olap.Cube cube =
+                schemaReader.getSchema().lookupCube(name, false);
+            if (cube == null
+                || !cube.getName().equals(name)
+                || !schemaReader.getRole().canAccess(cube))
+            {
+                return null;
+            }
+            return olap4jConnection.toOlap4j(cube);
+        }
+
+        public MondrianOlap4jCube get(int index) {
+            return cubes().get(index);
+        }
+
+        public int size() {
+            return cubes().size();
+        }
+
+        private List<MondrianOlap4jCube> cubes() {
+            if (cubes == null) {
+                final List<MondrianOlap4jCube> list =
+                    new ArrayList<MondrianOlap4jCube>();
+                final MondrianOlap4jConnection olap4jConnection =
+                    olap4jCatalog.olap4jDatabaseMetaData.olap4jConnection;
+                for (mondrian.olap.Cube cube
+                    : olap4jConnection.getMondrianConnection()
+                        .getSchemaReader().getCubes())
+                {
+                    list.add(olap4jConnection.toOlap4j(cube));
+                }
+                cubes = list;
+            }
+            return cubes;
         }
-        return Olap4jUtil.cast(list);
     }
 
     public NamedList<Dimension> getSharedDimensions() throws OlapException {
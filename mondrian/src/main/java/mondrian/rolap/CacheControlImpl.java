@@ -198,11 +198,56 @@ public class CacheControlImpl implements CacheControl {
             throw MondrianResource.instance().CacheFlushRegionMustContainMembers
                 .ex();
         }
+        // Expression results computed from these cells are no longer valid.
+        for (RolapStar star : getStarList(region)) {
+            flushExpressionResults(star);
+        }
         final UnionCellRegion union = normalize((CellRegionImpl) region);
         for (CellRegionImpl cellRegion : union.regions) {
             // Figure out the bits.
             flushNonUnion(cellRegion);
         }
+        if (CacheWarmer.isEnabled()) {
+            // Reload the flushed cells of the most expensive queries.
+            final Set<RolapSchema> schemas =
+                Collections.newSetFromMap(
+                    new IdentityHashMap<RolapSchema, Boolean>());
+            for (RolapStar star : getStarList(region)) {
+                if (schemas.add(star.getSchema())) {
+                    CacheWarmer.instance().schedule(star.getSchema());
+                }
+            }
+        }
+    }
+
+    public void refresh(final CellRegion region, final long appendTime) {
+        Locus.execute(
+            connection,
+            "Refresh",
+            new Locus.Action<Void>() {
+                public Void execute() {
+                    refreshInternal(region, appendTime);
+                    return null;
+                }
+            });
+    }
+
+    private void refreshInternal(CellRegion region, long appendTime) {
+        if (region instanceof EmptyCellRegion) {
+            return;
+        }
+        if (!containsMeasures(region)) {
+            throw MondrianResource.instance().CacheFlushRegionMustContainMembers
+                .ex();
+        }
+        // Expression results computed from these cells are no longer valid.
+        for (RolapStar star : getStarList(region)) {
+            flushExpressionResults(star);
+        }
+        final UnionCellRegion union = normalize((CellRegionImpl) region);
+        for (CellRegionImpl cellRegion : union.regions) {
+            refreshNonUnion(cellRegion, appendTime);
+        }
     }
 
     /**
@@ -225,7 +270,7 @@ public class CacheControlImpl implements CacheControl {
             break;
         }
         if (!containsMeasures(cellRegion)) {
-            for (RolapCube cube : connection.getSchema().getCubeList()) {
+            for (RolapCube cube : connection.getSchema().getLoadedCubeList()) {
                 flush(
                     createCrossjoinRegion(
                         createMeasuresRegion(cube),
@@ -308,6 +353,10 @@ public class CacheControlImpl implements CacheControl {
         throw new UnsupportedOperationException();
     }
 
+    protected void refreshNonUnion(CellRegion region, long appendTime) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Normalizes a CellRegion into a union of crossjoins of member regions.
      *
@@ -537,6 +586,17 @@ public class CacheControlImpl implements CacheControl {
         return list.toArray(new SegmentColumn[list.size()]);
     }
 
+    /**
+     * Removes from the shared expression result cache of a star's schema the
+     * results that were computed from the star's cells.
+     *
+     * @param star Star
+     */
+    public static void flushExpressionResults(RolapStar star) {
+        star.getSchema().getSharedExpResultCache().flush(
+            Collections.singleton(star));
+    }
+
     public static List<RolapStar> getStarList(CellRegion region) {
         // Figure out which measure (therefore star) it belongs to.
         List<RolapStar> starList = new ArrayList<RolapStar>();
@@ -624,6 +684,7 @@ public class CacheControlImpl implements CacheControl {
         synchronized (MEMBER_CACHE_LOCK) {
             // firstly clear all cache associated with native sets
             connection.getSchema().getNativeRegistry().flushAllNativeSetCache();
+            connection.getSchema().getSharedExpResultCache().clear();
             final List<CellRegion> cellRegionList = new ArrayList<CellRegion>();
             ((MemberSetPlus) memberSet).accept(
                 new MemberSetVisitorImpl() {
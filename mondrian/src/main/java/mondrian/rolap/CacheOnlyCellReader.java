@@ -0,0 +1,85 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap;
+
+import mondrian.calc.impl.GenericCalc;
+import mondrian.olap.Util;
+import mondrian.rolap.agg.*;
+
+/**
+ * A <code>CellReader</code> that reads cells only from the cache, and does
+ * not record requests for cells that are missing.
+ *
+ * <p>Unlike {@link FastBatchingCellReader}, it can be used by a thread other
+ * than the one executing the statement. Segments that are found in the
+ * global cache are registered with the current thread; the caller is
+ * responsible for clearing them when the thread has finished its work (see
+ * {@link RolapCube#clearCachedAggregations(boolean)}).
+ *
+ * <p>When it does not know the answer, it returns
+ * {@link RolapUtil#valueNotReadyException} and increments its miss count.
+ *
+ * @see RolapEvaluator#pushCacheOnly()
+ */
+class CacheOnlyCellReader implements CellReader {
+    private final AggregationManager aggMgr;
+    private final boolean cacheEnabled;
+    private int missCount;
+
+    /**
+     * Creates a CacheOnlyCellReader.
+     *
+     * @param aggMgr Aggregation manager
+     * @param cacheEnabled Whether segments may be copied from the global cache
+     */
+    CacheOnlyCellReader(AggregationManager aggMgr, boolean cacheEnabled) {
+        this.aggMgr = aggMgr;
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public Object get(RolapEvaluator evaluator) {
+        final CellRequest request =
+            RolapAggregationManager.makeRequest(evaluator);
+        if (request == null || request.isUnsatisfiable()) {
+            return Util.nullValue; // request not satisfiable.
+        }
+        final Object o = aggMgr.getCellFromCache(request);
+        if (o != null) {
+            return o;
+        }
+        if (cacheEnabled) {
+            final SegmentWithData segmentWithData =
+                aggMgr.cacheMgr.peek(request);
+            if (segmentWithData != null) {
+                segmentWithData.getStar().register(segmentWithData);
+                final Object o2 = aggMgr.getCellFromCache(request);
+                if (o2 != null) {
+                    return o2;
+                }
+            }
+        }
+        ++missCount;
+        return RolapUtil.valueNotReadyException;
+    }
+
+    public double getDouble(RolapEvaluator evaluator) {
+        return GenericCalc.toDouble(evaluator, get(evaluator));
+    }
+
+    public int getMissCount() {
+        return missCount;
+    }
+
+    public boolean isDirty() {
+        return missCount > 0;
+    }
+}
+
+// End CacheOnlyCellReader.java
@@ -0,0 +1,474 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.server.monitor.CacheWarmupEvent;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Records the MDX statements executed against each schema, and replays the
+ * most expensive of them to warm up the cell cache after the schema is
+ * loaded or its cells are flushed.
+ *
+ * <p>Statements are ranked by their total execution time, that is, how often
+ * they were executed times how long they took. If
+ * {@link MondrianProperties#CacheWarmupFile} is set, the statements are
+ * saved to that file after each replay and at most once a minute while
+ * recording, and read from it when the warmer is created, so that they
+ * survive a restart.
+ *
+ * <p>Statements are recorded by schema content key (see {@link #key}), which
+ * is derived from the catalog URL, or from the schema XML if the schema was
+ * given as content. Schemas that have the same name but different catalogs
+ * are kept apart, and a new version of a schema read from the same URL
+ * replays the statements of the previous version.
+ *
+ * <p>Replays run one statement at a time, in a single low-priority thread,
+ * using the schema's internal connection. Before each statement, the warmer
+ * waits while half or more of the SQL threads are in use, so that warm-up
+ * does not delay users' queries.
+ *
+ * @see MondrianProperties#CacheWarmupQueryCount
+ */
+class CacheWarmer {
+    private static final Logger LOGGER = Logger.getLogger(CacheWarmer.class);
+
+    private static CacheWarmer instance;
+
+    private static final long SAVE_INTERVAL_MILLIS = 60000;
+    private static final long THROTTLE_SLEEP_MILLIS = 100;
+    private static final long THROTTLE_MAX_MILLIS = 30000;
+
+    private final File file;
+
+    /**
+     * Statistics of each statement, by schema key and MDX. Guarded by this.
+     */
+    private final Map<String, Map<String, QueryStats>> schemaQueries =
+        new HashMap<String, Map<String, QueryStats>>();
+
+    /**
+     * Schemas for which a replay has been scheduled but has not started.
+     * Guarded by this.
+     */
+    private final Set<RolapSchema> pendingSchemas =
+        Collections.newSetFromMap(new IdentityHashMap<RolapSchema, Boolean>());
+
+    private final ExecutorService executor =
+        Util.getExecutorService(
+            1, 1, 1, "mondrian.rolap.CacheWarmer$executor", null);
+
+    private boolean dirty;
+    private long lastSaveMillis = System.currentTimeMillis();
+
+    /**
+     * Creates a CacheWarmer.
+     *
+     * @param file File in which to save statements, or null
+     */
+    CacheWarmer(File file) {
+        this.file = file;
+        if (file != null && file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * Returns the warmer, creating it if necessary.
+     */
+    static synchronized CacheWarmer instance() {
+        if (instance == null) {
+            final String fileName =
+                MondrianProperties.instance().CacheWarmupFile.get();
+            instance =
+                new CacheWarmer(
+                    fileName == null || fileName.length() == 0
+                        ? null
+                        : new File(fileName));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the key under which the statements of a schema are recorded.
+     * It does not depend on the JVM, so it can be saved to a file.
+     *
+     * @param schema Schema
+     * @return Key of schema's content
+     */
+    static String key(RolapSchema schema) {
+        return schema.key.left.toString();
+    }
+
+    /**
+     * Returns whether statements are recorded and replayed.
+     */
+    static boolean isEnabled() {
+        return MondrianProperties.instance().CacheWarmupQueryCount.get() > 0;
+    }
+
+    /**
+     * Records that a statement has been executed. Statements executed by the
+     * schema's internal connection, including replays, are not recorded.
+     *
+     * @param connection Connection
+     * @param mdx MDX statement
+     * @param elapsedMillis Time taken to execute the statement
+     */
+    void record(
+        RolapConnection connection,
+        String mdx,
+        long elapsedMillis)
+    {
+        final RolapSchema schema = connection.getSchema();
+        if (mdx == null || connection == schema.getInternalConnection()) {
+            return;
+        }
+        final String key = key(schema);
+        final boolean save;
+        synchronized (this) {
+            Map<String, QueryStats> queries = schemaQueries.get(key);
+            if (queries == null) {
+                queries = new HashMap<String, QueryStats>();
+                schemaQueries.put(key, queries);
+            }
+            QueryStats stats = queries.get(mdx);
+            if (stats == null) {
+                trim(queries);
+                stats = new QueryStats();
+                queries.put(mdx, stats);
+            }
+            ++stats.count;
+            stats.totalMillis += elapsedMillis;
+            dirty = true;
+            save = file != null
+                && System.currentTimeMillis() - lastSaveMillis
+                > SAVE_INTERVAL_MILLIS;
+            if (save) {
+                lastSaveMillis = System.currentTimeMillis();
+            }
+        }
+        if (save) {
+            executor.execute(
+                new Runnable() {
+                    public void run() {
+                        save();
+                    }
+                });
+        }
+    }
+
+    /**
+     * Removes the cheaper half of the statements of a schema if it has
+     * reached the maximum number of statements to remember.
+     */
+    private void trim(Map<String, QueryStats> queries) {
+        final int max =
+            Math.max(
+                100,
+                10 * MondrianProperties.instance().CacheWarmupQueryCount.get());
+        if (queries.size() < max) {
+            return;
+        }
+        final List<Map.Entry<String, QueryStats>> entries = sort(queries);
+        for (Map.Entry<String, QueryStats> entry
+            : entries.subList(max / 2, entries.size()))
+        {
+            queries.remove(entry.getKey());
+        }
+    }
+
+    /**
+     * Returns the statements of a schema with the greatest total execution
+     * time, most expensive first.
+     *
+     * @param schemaKey Schema key, as returned by {@link #key}
+     * @param count Maximum number of statements
+     * @return List of MDX statements
+     */
+    synchronized List<String> topQueries(String schemaKey, int count) {
+        final Map<String, QueryStats> queries = schemaQueries.get(schemaKey);
+        if (queries == null) {
+            return Collections.emptyList();
+        }
+        final List<String> list = new ArrayList<String>();
+        for (Map.Entry<String, QueryStats> entry : sort(queries)) {
+            if (list.size() >= count) {
+                break;
+            }
+            list.add(entry.getKey());
+        }
+        return list;
+    }
+
+    private static List<Map.Entry<String, QueryStats>> sort(
+        Map<String, QueryStats> queries)
+    {
+        final List<Map.Entry<String, QueryStats>> entries =
+            new ArrayList<Map.Entry<String, QueryStats>>(queries.entrySet());
+        Collections.sort(
+            entries,
+            new Comparator<Map.Entry<String, QueryStats>>() {
+                public int compare(
+                    Map.Entry<String, QueryStats> o1,
+                    Map.Entry<String, QueryStats> o2)
+                {
+                    final long t1 = o1.getValue().totalMillis;
+                    final long t2 = o2.getValue().totalMillis;
+                    return t1 > t2 ? -1 : t1 < t2 ? 1 : 0;
+                }
+            });
+        return entries;
+    }
+
+    /**
+     * Schedules a replay of the statements of a schema, unless one is
+     * already scheduled and has not started.
+     *
+     * <p>Called when a schema has been loaded, and when its cells have been
+     * flushed.
+     *
+     * @param schema Schema
+     */
+    void schedule(final RolapSchema schema) {
+        synchronized (this) {
+            if (!schemaQueries.containsKey(key(schema))
+                || !pendingSchemas.add(schema))
+            {
+                return;
+            }
+        }
+        executor.execute(
+            new Runnable() {
+                public void run() {
+                    synchronized (CacheWarmer.this) {
+                        pendingSchemas.remove(schema);
+                    }
+                    final Thread thread = Thread.currentThread();
+                    final int priority = thread.getPriority();
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    try {
+                        replay(schema);
+                        save();
+                    } catch (Throwable e) {
+                        LOGGER.warn(
+                            "Error while warming up cache of schema "
+                            + schema.getName(), e);
+                    } finally {
+                        thread.setPriority(priority);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Replays the most expensive statements of a schema, in the current
+     * thread, and reports the replay to the monitor.
+     *
+     * @param schema Schema
+     * @return Number of statements replayed successfully
+     */
+    int replay(RolapSchema schema) {
+        final long start = System.currentTimeMillis();
+        final RolapConnection connection = schema.getInternalConnection();
+        final List<String> queries =
+            topQueries(
+                key(schema),
+                MondrianProperties.instance().CacheWarmupQueryCount.get());
+        int queryCount = 0;
+        int failureCount = 0;
+        for (String mdx : queries) {
+            throttle(connection.getServer());
+            try {
+                final Query query = connection.parseQuery(mdx);
+                connection.execute(query).close();
+                ++queryCount;
+            } catch (RuntimeException e) {
+                ++failureCount;
+                LOGGER.debug(
+                    "Error while replaying statement to warm up cache: "
+                    + mdx, e);
+            }
+        }
+        connection.getServer().getMonitor().sendEvent(
+            new CacheWarmupEvent(
+                System.currentTimeMillis(),
+                connection.getServer().getId(),
+                schema.getName(),
+                queryCount,
+                failureCount,
+                System.currentTimeMillis() - start));
+        return queryCount;
+    }
+
+    /**
+     * Waits, for a limited time, while half or more of the server's SQL
+     * threads are in use.
+     */
+    private void throttle(MondrianServer server) {
+        final ExecutorService sqlExecutor =
+            server.getAggregationManager().cacheMgr.sqlExecutor;
+        if (!(sqlExecutor instanceof ThreadPoolExecutor)) {
+            return;
+        }
+        final ThreadPoolExecutor pool = (ThreadPoolExecutor) sqlExecutor;
+        final int limit = Math.max(1, pool.getMaximumPoolSize() / 2);
+        for (long waited = 0; waited < THROTTLE_MAX_MILLIS;
+            waited += THROTTLE_SLEEP_MILLIS)
+        {
+            if (pool.getActiveCount() < limit && pool.getQueue().isEmpty()) {
+                return;
+            }
+            try {
+                Thread.sleep(THROTTLE_SLEEP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Saves the statements to the file, if there is a file and statements
+     * have been recorded since the last save.
+     *
+     * <p>Each line holds the schema key, execution count, total execution
+     * time and MDX, separated by tabs.
+     */
+    void save() {
+        if (file == null) {
+            return;
+        }
+        final StringBuilder buf = new StringBuilder();
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            for (Map.Entry<String, Map<String, QueryStats>> schemaEntry
+                : schemaQueries.entrySet())
+            {
+                for (Map.Entry<String, QueryStats> entry
+                    : schemaEntry.getValue().entrySet())
+                {
+                    buf.append(escape(schemaEntry.getKey()))
+                        .append('\t')
+                        .append(entry.getValue().count)
+                        .append('\t')
+                        .append(entry.getValue().totalMillis)
+                        .append('\t')
+                        .append(escape(entry.getKey()))
+                        .append('\n');
+                }
+            }
+            dirty = false;
+            lastSaveMillis = System.currentTimeMillis();
+        }
+        Writer writer = null;
+        try {
+            writer =
+                new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(buf.toString());
+        } catch (IOException e) {
+            LOGGER.warn("Error while saving warm-up queries to " + file, e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void load() {
+        BufferedReader reader = null;
+        try {
+            reader =
+                new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            for (String line; (line = reader.readLine()) != null;) {
+                final String[] fields = line.split("\t", -1);
+                if (fields.length != 4) {
+                    continue;
+                }
+                final String schemaKey = unescape(fields[0]);
+                Map<String, QueryStats> queries =
+                    schemaQueries.get(schemaKey);
+                if (queries == null) {
+                    queries = new HashMap<String, QueryStats>();
+                    schemaQueries.put(schemaKey, queries);
+                }
+                final QueryStats stats = new QueryStats();
+                stats.count = Integer.parseInt(fields[1]);
+                stats.totalMillis = Long.parseLong(fields[2]);
+                queries.put(unescape(fields[3]), stats);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error while reading warm-up queries from " + file, e);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid warm-up queries file " + file, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\")
+            .replace("\t", "\\t")
+            .replace("\n", "\\n")
+            .replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        final StringBuilder buf = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                switch (c) {
+                case 't':
+                    c = '\t';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                }
+            }
+            buf.append(c);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * How often a statement has been executed, and for how long in total.
+     */
+    private static class QueryStats {
+        int count;
+        long totalMillis;
+    }
+}
+
+// End CacheWarmer.java
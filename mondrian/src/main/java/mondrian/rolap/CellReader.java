@@ -51,6 +51,19 @@ interface CellReader {
      */
     Object get(RolapEvaluator evaluator);
 
+    /**
+     * Returns the value of the cell which has the context described by the
+     * evaluator, as a <code>double</code>.
+     *
+     * <p>Returns the same value as {@link #get(RolapEvaluator)}, converted to
+     * a double; but if the cell is held in a segment of native values, the
+     * value is not boxed.
+     *
+     * @return Cell value, or {@link mondrian.olap.fun.FunUtil#DoubleNull} if
+     * the value is null or no aggregation contains the cell
+     */
+    double getDouble(RolapEvaluator evaluator);
+
     /**
      * Returns the number of times this cell reader has told a lie
      * (since creation), because the required cell value is not in the
@@ -10,7 +10,9 @@
 */
 package mondrian.rolap;
 
+import mondrian.calc.impl.GenericCalc;
 import mondrian.olap.*;
+import mondrian.olap.fun.FunUtil;
 import mondrian.rolap.agg.*;
 import mondrian.rolap.aggmatcher.AggGen;
 import mondrian.rolap.aggmatcher.AggStar;
@@ -18,6 +20,7 @@ import mondrian.rolap.cache.SegmentCacheIndex;
 import mondrian.rolap.cache.SegmentCacheIndexImpl;
 import mondrian.server.Execution;
 import mondrian.server.Locus;
+import mondrian.server.monitor.CellCacheRollupEvent;
 import mondrian.spi.*;
 import mondrian.util.*;
 
@@ -84,6 +87,12 @@ public class FastBatchingCellReader implements CellReader {
 
     private final Execution execution;
 
+    /**
+     * Receives the value of a cell read by {@link #getDouble}, so that the
+     * value does not need to be boxed.
+     */
+    private final double[] cellValue = new double[1];
+
     /**
      * Creates a FastBatchingCellReader.
      *
@@ -155,6 +164,57 @@ public class FastBatchingCellReader implements CellReader {
         return RolapUtil.valueNotReadyException;
     }
 
+    public double getDouble(RolapEvaluator evaluator) {
+        final CellRequest request =
+            RolapAggregationManager.makeRequest(evaluator);
+
+        if (request == null || request.isUnsatisfiable()) {
+            return FunUtil.DoubleNull; // request not satisfiable.
+        }
+
+        // Same as get, but reads the value without boxing it.
+        try {
+            if (aggMgr.getCellDoubleFromCache(
+                    request, pinnedSegments, cellValue))
+            {
+                ++hitCount;
+                return cellValue[0];
+            }
+            if (cacheEnabled
+                && missCount == 0)
+            {
+                SegmentWithData segmentWithData = cacheMgr.peek(request);
+                if (segmentWithData != null) {
+                    segmentWithData.getStar().register(segmentWithData);
+                    if (aggMgr.getCellDoubleFromCache(
+                            request, pinnedSegments, cellValue))
+                    {
+                        ++hitCount;
+                        return cellValue[0];
+                    }
+                }
+            }
+        } catch (ClassCastException e) {
+            // The cell value is not numeric. Read it as an object, so that
+            // the error is the same as if the cell had been read by get.
+            return GenericCalc.toDouble(evaluator, get(evaluator));
+        }
+
+        // if there is no such cell, record that we need to fetch it, and
+        // return the same value as RolapUtil.valueNotReadyException
+        recordCellRequest(request);
+        return 0d;
+    }
+
+    /**
+     * Releases the segments that this reader has pinned in the local segment
+     * cache, so that they can be evicted. Called when the query has finished
+     * reading cells.
+     */
+    void releasePinnedSegments() {
+        ((AggregationManager.PinSetImpl) pinnedSegments).clear();
+    }
+
     public int getMissCount() {
         return missCount;
     }
@@ -651,7 +711,7 @@ class BatchLoader {
         final List<SegmentHeader> headersInCache =
             index.locate(
                 schema.getName(),
-                schema.getChecksum(),
+                star.getChecksum(),
                 measure.getCubeName(),
                 measure.getName(),
                 star.getFactTable().getAlias(),
@@ -716,16 +776,29 @@ class BatchLoader {
         {
             // Don't even bother doing a segment lookup if we can't
             // rollup that measure.
+            final long start = System.nanoTime();
             final List<List<SegmentHeader>> rollup =
                 index.findRollupCandidates(
                     schema.getName(),
-                    schema.getChecksum(),
+                    star.getChecksum(),
                     measure.getCubeName(),
                     measure.getName(),
                     star.getFactTable().getAlias(),
                     request.getConstrainedColumnsBitKey(),
                     mappedCellValues,
                     request.getCompoundPredicateStrings());
+            locus.getServer().getMonitor().sendEvent(
+                new CellCacheRollupEvent(
+                    System.currentTimeMillis(),
+                    locus.getServer().getId(),
+                    locus.execution.getMondrianStatement()
+                        .getMondrianConnection().getId(),
+                    locus.execution.getMondrianStatement().getId(),
+                    locus.execution.getId(),
+                    mappedCellValues.size(),
+                    rollup.size(),
+                    rollup.isEmpty() ? 0 : rollup.get(0).size(),
+                    System.nanoTime() - start));
             if (!rollup.isEmpty()) {
                 rollups.add(
                     new RollupInfo(
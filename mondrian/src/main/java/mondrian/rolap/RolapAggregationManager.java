@@ -12,6 +12,7 @@
 */
 package mondrian.rolap;
 
+import mondrian.calc.impl.GenericCalc;
 import mondrian.olap.*;
 import mondrian.olap.fun.VisualTotalsFunDef.VisualTotalMember;
 import mondrian.resource.MondrianResource;
@@ -901,6 +902,10 @@ public abstract class RolapAggregationManager {
                 return getCellFromCache(request);
             }
 
+            public double getDouble(RolapEvaluator evaluator) {
+                return GenericCalc.toDouble(evaluator, get(evaluator));
+            }
+
             public int getMissCount() {
                 return 0; // RolapAggregationManager never lies
             }
@@ -161,6 +161,30 @@ public class RolapCell implements Cell {
         final RolapConnection connection =
             result.getExecution().getMondrianStatement()
                 .getMondrianConnection();
+
+        // If the slicer is compound, the rows are not those of a cell, so
+        // neither the cache nor an estimate can tell how many there are.
+        final DrillThroughCountMethod method =
+            Util.lookup(
+                DrillThroughCountMethod.class,
+                MondrianProperties.instance().DrillThroughCount.get()
+                    .toUpperCase(),
+                DrillThroughCountMethod.SQL);
+        if (method != DrillThroughCountMethod.SQL
+            && starPredicateSlicer == null)
+        {
+            final int count = getCachedFactCount(connection, currentMembers);
+            if (count >= 0) {
+                return count;
+            }
+            if (method == DrillThroughCountMethod.ESTIMATE) {
+                final int estimate = estimateDrillThroughCount(cellRequest);
+                if (estimate >= 0) {
+                    return estimate;
+                }
+            }
+        }
+
         final RolapAggregationManager aggMgr =
             connection.getServer().getAggregationManager();
         final String sql =
@@ -191,6 +215,132 @@ public class RolapCell implements Cell {
         }
     }
 
+    /**
+     * Returns the number of fact table rows in this cell, if the value of the
+     * cube's fact count measure at the cell's coordinates is in the segment
+     * cache.
+     *
+     * @param connection Connection
+     * @param members Members of the cell, as returned by
+     *     {@link #getMembersForDrillThrough()}
+     * @return Number of rows, or -1 if not known
+     */
+    private int getCachedFactCount(
+        RolapConnection connection,
+        Member[] members)
+    {
+        if (result.getCube().isVirtual()) {
+            return -1;
+        }
+        final Member[] countMembers = members.clone();
+        boolean found = false;
+        for (int i = 0; i < countMembers.length; i++) {
+            final Member member = countMembers[i];
+            if (member instanceof RolapStoredMeasure) {
+                countMembers[i] =
+                    ((RolapStoredMeasure) member).getCube()
+                        .getFactCountMeasure();
+                found = true;
+            }
+        }
+        if (!found) {
+            return -1;
+        }
+        final CellRequest request =
+            RolapAggregationManager.makeRequest(countMembers);
+        if (request == null || request.isUnsatisfiable()) {
+            return -1;
+        }
+        final Object value =
+            Locus.execute(
+                connection,
+                "RolapCell.getDrillThroughCount",
+                new Locus.Action<Object>() {
+                    public Object execute() {
+                        return request.getMeasure().getStar()
+                            .getCellFromAllCaches(request);
+                    }
+                });
+        if (value == null) {
+            return -1;
+        }
+        if (value == Util.nullValue) {
+            // The cell is in the cache but has no fact rows.
+            return 0;
+        }
+        return value instanceof Number
+            ? ((Number) value).intValue()
+            : -1;
+    }
+
+    /**
+     * Estimates the number of rows that a drill-through request would
+     * return, without executing SQL, from the number of rows in the fact
+     * table and the cardinality of each constrained column.
+     *
+     * <p>Assumes that values are uniformly distributed and that columns are
+     * independent, so the estimate may be far from the actual count.
+     * Cardinalities are read from the star's statistics cache, and obtained
+     * from the JDBC driver or by a query the first time a column is used.
+     *
+     * @param request Drill-through request
+     * @return Estimated number of rows, or -1 if no estimate is available
+     */
+    private static int estimateDrillThroughCount(
+        DrillThroughCellRequest request)
+    {
+        final RolapStar star = request.getMeasure().getStar();
+        final RolapStar.Table factTable = star.getFactTable();
+        final long rowCount =
+            star.getStatisticsCache().getRelationCardinality(
+                factTable.getRelation(), factTable.getAlias(), -1);
+        if (rowCount < 0) {
+            return -1;
+        }
+        double estimate = rowCount;
+        final RolapStar.Column[] columns = request.getConstrainedColumns();
+        for (int i = 0; i < columns.length; i++) {
+            final StarColumnPredicate predicate = request.getValueAt(i);
+            final int valueCount;
+            if (predicate instanceof ValueColumnPredicate) {
+                valueCount = 1;
+            } else if (predicate instanceof ListColumnPredicate) {
+                valueCount =
+                    ((ListColumnPredicate) predicate).getPredicates().size();
+            } else {
+                continue;
+            }
+            final long cardinality = columns[i].getCardinality();
+            if (cardinality > 0) {
+                estimate *= Math.min(1d, (double) valueCount / cardinality);
+            }
+        }
+        return (int) Math.min(Math.round(estimate), Integer.MAX_VALUE);
+    }
+
+    /**
+     * How {@link RolapCell#getDrillThroughCount()} computes the number of
+     * rows; see {@link MondrianProperties#DrillThroughCount}.
+     */
+    public enum DrillThroughCountMethod {
+        /**
+         * Executes a <code>SELECT COUNT(*)</code> query.
+         */
+        SQL,
+
+        /**
+         * Uses the cell's fact count if it is cached, otherwise executes a
+         * query.
+         */
+        CACHE,
+
+        /**
+         * Uses the cell's fact count if it is cached, otherwise estimates
+         * the count from cardinalities.
+         */
+        ESTIMATE
+    }
+
     /**
      * This method handles the case of a compound slicer with more than one
      * {@link Position}. In this case, a simple array of {@link Member}s is not
@@ -488,7 +638,18 @@ public class RolapCell implements Cell {
         // essential.
         final Statement statement =
             result.getExecution().getMondrianStatement();
-        final Execution execution = new Execution(statement, 0);
+        // Make the drill-through a child of the query's execution, so that
+        // canceling the query's statement also stops a client that is still
+        // reading drill-through rows.
+        final Execution execution =
+            Locus.execute(
+                result.getExecution(),
+                "RolapCell.drillThrough",
+                new Locus.Action<Execution>() {
+                    public Execution execute() {
+                        return new Execution(statement, 0);
+                    }
+                });
         final Connection connection = statement.getMondrianConnection();
         int resultSetType = ResultSet.TYPE_SCROLL_INSENSITIVE;
         int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
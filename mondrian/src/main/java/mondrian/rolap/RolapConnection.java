@@ -672,6 +672,10 @@ public class RolapConnection extends ConnectionBase {
                 ((RolapCube) query.getCube()).clearCachedAggregations(true);
             }
             statement.end(execution);
+            if (CacheWarmer.isEnabled()) {
+                CacheWarmer.instance().record(
+                    this, Util.unparse(query), execution.getElapsedMillis());
+            }
             return result;
         } catch (ResultLimitExceededException e) {
             // query has been punted
@@ -13,9 +13,11 @@
 package mondrian.rolap;
 
 import mondrian.calc.Calc;
+import mondrian.calc.DoubleCalc;
 import mondrian.calc.ParameterSlot;
 import mondrian.calc.TupleList;
 import mondrian.calc.impl.DelegatingTupleList;
+import mondrian.calc.impl.GenericCalc;
 import mondrian.olap.*;
 import mondrian.olap.fun.*;
 import mondrian.server.Statement;
@@ -435,6 +437,26 @@ public class RolapEvaluator implements Evaluator {
         return _push(null);
     }
 
+    /**
+     * Creates a child evaluator that reads cells only from the cache, and
+     * may be used by a thread other than the one executing the statement.
+     *
+     * <p>If a cell is not in the cache, the child evaluator does not record
+     * a request to load it; {@link #getMissCount()} increases, and the cell
+     * evaluates to {@link RolapUtil#valueNotReadyException}. The caller must
+     * then discard the results and evaluate using this evaluator.
+     *
+     * @return Child evaluator that reads only from the cache
+     */
+    public final RolapEvaluator pushCacheOnly() {
+        final RolapEvaluator evaluator = _push(null);
+        evaluator.cellReader =
+            new CacheOnlyCellReader(
+                root.connection.getServer().getAggregationManager(),
+                !MondrianProperties.instance().DisableCaching.get());
+        return evaluator;
+    }
+
     private void ensureCommandCapacity(int minCapacity) {
         if (minCapacity > commands.length) {
             int newCapacity = commands.length * 2;
@@ -790,31 +812,14 @@ public class RolapEvaluator implements Evaluator {
         // Get the member in the current context which is (a) calculated, and
         // (b) has the highest solve order. If there are no calculated members,
         // go ahead and compute the cell.
-        RolapCalculation maxSolveMember;
-        switch (calculationCount) {
-        case 0:
+        if (calculationCount == 0) {
             final Object o = cellReader.get(this);
             if (o == Util.nullValue) {
                 return null;
             }
             return o;
-
-        case 1:
-            maxSolveMember = calculations[0];
-            break;
-
-        default:
-            switch (root.solveOrderMode) {
-            case ABSOLUTE:
-                maxSolveMember = getAbsoluteMaxSolveOrder();
-                break;
-            case SCOPED:
-                maxSolveMember = getScopedMaxSolveOrder();
-                break;
-            default:
-                throw Util.unexpected(root.solveOrderMode);
-            }
         }
+        final RolapCalculation maxSolveMember = getMaxSolveMember();
         final int savepoint = savepoint();
         maxSolveMember.setContextIn(this);
         final Calc calc = maxSolveMember.getCompiledExpression(root);
@@ -830,6 +835,56 @@ public class RolapEvaluator implements Evaluator {
         return o;
     }
 
+    /**
+     * Returns the calculation with the highest solve order in the current
+     * context. There must be at least one calculation.
+     */
+    private RolapCalculation getMaxSolveMember() {
+        if (calculationCount == 1) {
+            return calculations[0];
+        }
+        switch (root.solveOrderMode) {
+        case ABSOLUTE:
+            return getAbsoluteMaxSolveOrder();
+        case SCOPED:
+            return getScopedMaxSolveOrder();
+        default:
+            throw Util.unexpected(root.solveOrderMode);
+        }
+    }
+
+    /**
+     * Evaluates the current cell as a <code>double</code>.
+     *
+     * <p>Returns the same value as {@link #evaluateCurrent()}, converted as
+     * by {@link GenericCalc#toDouble(Evaluator, Object)}, but the value is
+     * not boxed if it is read from a segment of native values, or computed by
+     * a calculated member whose expression compiles to a {@link DoubleCalc}
+     * (for example, a ratio of two measures).
+     *
+     * @return Value of the current cell, or {@link FunUtil#DoubleNull} if
+     *     the cell is empty
+     */
+    public final double evaluateCurrentDouble() {
+        if (calculationCount == 0) {
+            return cellReader.getDouble(this);
+        }
+        final RolapCalculation maxSolveMember = getMaxSolveMember();
+        final int savepoint = savepoint();
+        maxSolveMember.setContextIn(this);
+        final Calc calc = maxSolveMember.getCompiledExpression(root);
+        final Object o;
+        try {
+            if (calc instanceof DoubleCalc) {
+                return ((DoubleCalc) calc).evaluateDouble(this);
+            }
+            o = calc.evaluate(this);
+        } finally {
+            restore(savepoint);
+        }
+        return GenericCalc.toDouble(this, o);
+    }
+
     void setExpanding(Member member) {
         assert member != null;
         ensureCommandCapacity(commandCount + 3);
@@ -1079,12 +1134,63 @@ public class RolapEvaluator implements Evaluator {
         return key;
     }
 
+    /**
+     * Creates a key in the schema's shared expression result cache from a
+     * key in this query's expression result cache, or returns null if the
+     * result cannot be shared.
+     *
+     * <p>The key is the query's key (the expression and the members it
+     * depends on) with the expression converted to MDX, so that it matches
+     * the same expression in other queries, plus the cube, the role, and the
+     * definitions of the query's calculated members and named sets. Results
+     * that depend on a compound slicer or an aggregation are not shared.
+     *
+     * @see SharedExpResultCache
+     */
+    private Object getSharedExpResultCacheKey(Object key) {
+        if (!SharedExpResultCache.isEnabled()
+            || slicerTuples != null
+            || !aggregationLists.isEmpty())
+        {
+            return null;
+        }
+        final List<Object> prefix = root.getSharedKeyPrefix();
+        if (prefix == null) {
+            return null;
+        }
+        final List<?> list = (List<?>) key;
+        final List<Object> sharedKey =
+            new ArrayList<Object>(prefix.size() + list.size() + 1);
+        sharedKey.addAll(prefix);
+        sharedKey.add(nonEmpty);
+        sharedKey.add(Util.unparse((Exp) list.get(0)));
+        for (Object member : list.subList(1, list.size())) {
+            if (member instanceof RolapResult.CompoundSlicerRolapMember) {
+                return null;
+            }
+            sharedKey.add(member);
+        }
+        return sharedKey;
+    }
+
     public final Object getCachedResult(ExpCacheDescriptor cacheDescriptor) {
         // Look up a cached result, and if not present, compute one and add to
         // cache. Use a dummy value to represent nulls.
         final Object key = getExpResultCacheKey(cacheDescriptor);
         Object result = root.getCacheResult(key);
         if (result == null) {
+            final Object sharedKey = getSharedExpResultCacheKey(key);
+            final SharedExpResultCache sharedCache =
+                root.cube.getSchema().getSharedExpResultCache();
+            long generation = 0;
+            if (sharedKey != null) {
+                result = sharedCache.get(sharedKey);
+                if (result != null) {
+                    root.putCacheResult(key, result, true);
+                    return result;
+                }
+                generation = sharedCache.generation();
+            }
             boolean aggCacheDirty = cellReader.isDirty();
             int aggregateCacheMissCountBefore = cellReader.getMissCount();
             result = cacheDescriptor.evaluate(this);
@@ -1110,6 +1216,10 @@ public class RolapEvaluator implements Evaluator {
                 key,
                 result == null ? nullResult : result,
                 isValidResult);
+            if (sharedKey != null && isValidResult) {
+                sharedCache.put(
+                    sharedKey, result, root.getSharedStars(), generation);
+            }
         } else if (result == nullResult) {
             result = null;
         }
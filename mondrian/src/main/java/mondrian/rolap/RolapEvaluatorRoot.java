@@ -16,6 +16,8 @@ import mondrian.server.Statement;
 import mondrian.spi.Dialect;
 import mondrian.spi.DialectManager;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.*;
 
 /**
@@ -24,6 +26,9 @@ import java.util.*;
  * <p>Contains the context that does not change as evaluation context is
  * pushed/popped.
  *
+ * <p>Evaluators created by {@link RolapEvaluator#pushCacheOnly()} may run
+ * in other threads, so the caches held here are synchronized.
+ *
  * @author jhyde
  * @since Nov 11, 2008
  */
@@ -34,8 +39,6 @@ class RolapEvaluatorRoot {
     final RolapCube cube;
     final RolapConnection connection;
     final SchemaReader schemaReader;
-    final Map<CompiledExpKey, Calc> compiledExps =
-        new HashMap<CompiledExpKey, Calc>();
     final Statement statement;
     final Query query;
     private final Date queryStartTime;
@@ -56,7 +59,8 @@ class RolapEvaluatorRoot {
             MondrianProperties.instance().SolveOrderMode.get().toUpperCase(),
             SolveOrderMode.ABSOLUTE);
 
-    final Set<Exp> activeNativeExpansions = new HashSet<Exp>();
+    final Set<Exp> activeNativeExpansions =
+        Collections.synchronizedSet(new HashSet<Exp>());
 
     /**
      * The size of the command stack at which we will next check for recursion.
@@ -64,6 +68,10 @@ class RolapEvaluatorRoot {
     int recursionCheckCommandCount;
     public final Execution execution;
 
+    private boolean sharedKeyPrefixComputed;
+    private List<Object> sharedKeyPrefix;
+    private Set<RolapStar> sharedStars;
+
     /**
      * Creates a RolapEvaluatorRoot.
      *
@@ -126,10 +134,10 @@ class RolapEvaluatorRoot {
     }
 
     /**
-     * Implements a cheap-and-cheerful mapping from expressions to compiled
-     * expressions.
+     * Returns the compiled form of an expression.
      *
-     * <p>TODO: Save compiled expressions somewhere better.
+     * <p>The query keeps compiled expressions, so that they are compiled only
+     * once however many times the query is executed.
      *
      * @param exp Expression
      * @param scalar Whether expression is scalar
@@ -142,64 +150,8 @@ class RolapEvaluatorRoot {
         boolean scalar,
         ResultStyle resultStyle)
     {
-        CompiledExpKey key = new CompiledExpKey(exp, scalar, resultStyle);
-        Calc calc = compiledExps.get(key);
-        if (calc == null) {
-            calc =
-                statement.getQuery().compileExpression(
-                    exp, scalar, resultStyle);
-            compiledExps.put(key, calc);
-        }
-        return calc;
-    }
-
-    /**
-     * Just a simple key of Exp/scalar/resultStyle, used for keeping
-     * compiled expressions.  Previous to the introduction of this
-     * class, the key was a list constructed as Arrays.asList(exp, scalar,
-     * resultStyle) and having poorer performance on equals, hashCode,
-     * and construction.
-     */
-    private static class CompiledExpKey {
-        private final Exp exp;
-        private final boolean scalar;
-        private final ResultStyle resultStyle;
-        private int hashCode = Integer.MIN_VALUE;
-
-        private CompiledExpKey(
-            Exp exp,
-            boolean scalar,
-            ResultStyle resultStyle)
-        {
-            this.exp = exp;
-            this.scalar = scalar;
-            this.resultStyle = resultStyle;
-        }
-
-        public boolean equals(Object other) {
-            if (this == other) {
-                return true;
-            }
-            if (!(other instanceof CompiledExpKey)) {
-                return false;
-            }
-            CompiledExpKey otherKey = (CompiledExpKey)other;
-            return this.scalar == otherKey.scalar
-                   && this.resultStyle == otherKey.resultStyle
-                   && this.exp.equals(otherKey.exp);
-        }
-
-        public int hashCode() {
-            if (hashCode != Integer.MIN_VALUE) {
-                return hashCode;
-            } else {
-                int hash = 0;
-                hash = Util.hash(hash, scalar);
-                hash = Util.hash(hash, resultStyle);
-                this.hashCode = Util.hash(hash, exp);
-            }
-            return this.hashCode;
-        }
+        return statement.getQuery().compileExpression(
+            exp, scalar, resultStyle);
     }
 
     /**
@@ -254,7 +206,7 @@ class RolapEvaluatorRoot {
      * @param result value to be cached
      * @param isValidResult indicate if this result is valid
      */
-    public final void putCacheResult(
+    public final synchronized void putCacheResult(
         Object key,
         Object result,
         boolean isValidResult)
@@ -272,7 +224,7 @@ class RolapEvaluatorRoot {
      * @param key cache key
      * @return cached expression
      */
-    public final Object getCacheResult(Object key) {
+    public final synchronized Object getCacheResult(Object key) {
         Object result = expResultCache.get(key);
         if (result == null) {
             result = tmpExpResultCache.get(key);
@@ -285,13 +237,62 @@ class RolapEvaluatorRoot {
      *
      * @param clearValidResult whether to clear valid expression results
      */
-    public final void clearResultCache(boolean clearValidResult) {
+    public final synchronized void clearResultCache(boolean clearValidResult) {
         if (clearValidResult) {
             expResultCache.clear();
         }
         tmpExpResultCache.clear();
     }
 
+    /**
+     * Returns the part of the key in the schema's shared expression result
+     * cache that is the same for all expressions in this query: the cube,
+     * the role, and the definitions of the query's calculated members and
+     * named sets. Returns null if the results of this query cannot be shared,
+     * because the query has parameters or the connection has a scenario.
+     *
+     * @see SharedExpResultCache
+     */
+    final synchronized List<Object> getSharedKeyPrefix() {
+        if (!sharedKeyPrefixComputed) {
+            sharedKeyPrefixComputed = true;
+            if (query != null
+                && query.getParameters().length == 0
+                && connection.getScenario() == null)
+            {
+                final StringWriter sw = new StringWriter();
+                final PrintWriter pw = new PrintWriter(sw);
+                for (Formula formula : query.getFormulas()) {
+                    formula.unparse(pw);
+                    pw.println();
+                }
+                pw.flush();
+                sharedKeyPrefix =
+                    Arrays.<Object>asList(
+                        cube, schemaReader.getRole(), sw.toString());
+                sharedStars = new HashSet<RolapStar>();
+                for (RolapMember measure : cube.getMeasuresMembers()) {
+                    if (measure instanceof RolapStoredMeasure) {
+                        sharedStars.add(
+                            ((RolapStar.Measure)
+                                ((RolapStoredMeasure) measure)
+                                    .getStarMeasure()).getStar());
+                    }
+                }
+            }
+        }
+        return sharedKeyPrefix;
+    }
+
+    /**
+     * Returns the stars whose cells the results of this query depend on.
+     * Valid after {@link #getSharedKeyPrefix()} has returned a non-null
+     * value.
+     */
+    final synchronized Set<RolapStar> getSharedStars() {
+        return sharedStars;
+    }
+
     /**
      * Get query start time.
      *
@@ -40,6 +40,8 @@ public class RolapNativeRegistry extends RolapNative {
         register("CrossJoin".toUpperCase(), new RolapNativeCrossJoin());
         register("TopCount".toUpperCase(), new RolapNativeTopCount());
         register("Filter".toUpperCase(), new RolapNativeFilter());
+        register("Head".toUpperCase(), new RolapNativeSubset());
+        register("Subset".toUpperCase(), new RolapNativeSubset());
     }
 
     /**
@@ -159,6 +159,8 @@ public abstract class RolapNativeSet extends RolapNative {
         private final SchemaReaderWithMemberReaderAvailable schemaReader;
         private final TupleConstraint constraint;
         private int maxRows = 0;
+        private int offset = 0;
+        private boolean nullsFirst;
         private boolean completeWithNullValues;
 
         public SetEvaluator(
@@ -207,6 +209,8 @@ public abstract class RolapNativeSet extends RolapNative {
 
         protected TupleList executeList(final SqlTupleReader tr) {
             tr.setMaxRows(maxRows);
+            tr.setOffset(offset);
+            tr.setNullsFirst(nullsFirst);
             for (CrossJoinArg arg : args) {
                 addLevel(tr, arg);
             }
@@ -230,6 +234,8 @@ public abstract class RolapNativeSet extends RolapNative {
             key.add(tr.getCacheKey());
             key.addAll(Arrays.asList(args));
             key.add(maxRows);
+            key.add(offset);
+            key.add(nullsFirst);
             key.add(schemaReader.getRole());
 
             TupleList result = cache.get(key);
@@ -427,6 +433,14 @@ public abstract class RolapNativeSet extends RolapNative {
         void setMaxRows(int maxRows) {
             this.maxRows = maxRows;
         }
+
+        void setOffset(int offset) {
+            this.offset = offset;
+        }
+
+        void setNullsFirst(boolean nullsFirst) {
+            this.nullsFirst = nullsFirst;
+        }
     }
 
     /**
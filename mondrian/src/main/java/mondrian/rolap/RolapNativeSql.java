@@ -20,12 +20,21 @@ import mondrian.rolap.sql.SqlQuery;
 import mondrian.spi.Dialect;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
- * Creates SQL from parse tree nodes. Currently it creates the SQL that
- * accesses a measure for the ORDER BY that is generated for a TopCount.<p/>
+ * Creates SQL from parse tree nodes. It creates the SQL that accesses a
+ * measure for the ORDER BY that is generated for a TopCount, and the
+ * condition that is generated for a Filter.
+ *
+ * <p>Stored measures are aggregated, e.g. <code>sum(unit_sales)</code>, and
+ * calculated measures are expanded into their formula, so long as all of the
+ * stored measures they use are in the same star. Arithmetic,
+ * <code>IIf</code>, <code>CoalesceEmpty</code> and <code>Case When</code> are
+ * translated into their SQL equivalents.<p/>
  *
  * @author av
  * @since Nov 17, 2005
@@ -35,6 +44,9 @@ public class RolapNativeSql {
     private static final Pattern DECIMAL =
         Pattern.compile("[+-]?((\\d+(\\.\\d*)?)|(\\.\\d+))");
 
+    /** Value of an expression that cannot be determined. */
+    private static final Object UNKNOWN = new Object();
+
     private SqlQuery sqlQuery;
     private Dialect dialect;
 
@@ -42,6 +54,14 @@ public class RolapNativeSql {
     CompositeSqlCompiler booleanCompiler;
 
     RolapStoredMeasure storedMeasure;
+
+    /**
+     * Whether a <code>CoalesceEmpty</code> has been compiled. Such an
+     * expression may have a value for a tuple that has no fact rows, but the
+     * SQL joins to the fact table and so never sees that tuple.
+     */
+    private boolean coalesced;
+
     final AggStar aggStar;
     final Evaluator evaluator;
     final RolapLevel rolapLevel;
@@ -379,6 +399,12 @@ public class RolapNativeSql {
     class CalculatedMemberSqlCompiler extends MemberSqlCompiler {
         SqlCompiler compiler;
 
+        /**
+         * Members whose formula is being compiled. A member that refers to
+         * itself, directly or indirectly, is not compiled.
+         */
+        private final Set<Member> activeMembers = new HashSet<Member>();
+
         CalculatedMemberSqlCompiler(SqlCompiler argumentCompiler) {
             this.compiler = argumentCompiler;
         }
@@ -393,10 +419,14 @@ public class RolapNativeSql {
                 return null;
             }
             exp = member.getExpression();
-            if (exp == null) {
+            if (exp == null || !activeMembers.add(member)) {
                 return null;
             }
-            return compiler.compile(exp);
+            try {
+                return compiler.compile(exp);
+            } finally {
+                activeMembers.remove(member);
+            }
         }
 
         public String toString() {
@@ -410,6 +440,7 @@ public class RolapNativeSql {
     abstract class FunCallSqlCompilerBase implements SqlCompiler {
         int category;
         String mdx;
+        /** Number of arguments, or -1 if any number is allowed */
         int argCount;
 
         FunCallSqlCompilerBase(int category, String mdx, int argCount) {
@@ -433,7 +464,7 @@ public class RolapNativeSql {
                 return false;
             }
             Exp[] args = fc.getArgs();
-            if (args.length != argCount) {
+            if (argCount >= 0 && args.length != argCount) {
                 return false;
             }
             return true;
@@ -618,6 +649,141 @@ public class RolapNativeSql {
         }
     }
 
+    /**
+     * Compiles a division <code>a / b</code> into SQL, if <code>b</code> is
+     * a non-zero numeric literal.
+     *
+     * <p>In MDX, <code>a / 0</code> is infinity, or null if
+     * {@link MondrianProperties#NullDenominatorProducesNull} is true, whereas
+     * in SQL it is an error or null, depending on the database. Only a null
+     * operand gives null in both. So a division by any other expression is
+     * not compiled.
+     */
+    class DivideSqlCompiler extends FunCallSqlCompilerBase {
+        private final SqlCompiler compiler;
+
+        DivideSqlCompiler(SqlCompiler argumentCompiler) {
+            super(Category.Numeric, "/", 2);
+            this.compiler = argumentCompiler;
+        }
+
+        public String compile(Exp exp) {
+            if (!match(exp)) {
+                return null;
+            }
+            if (!isNonZeroLiteral(((FunCall) exp).getArg(1))) {
+                return null;
+            }
+            String[] args = compileArgs(exp, compiler);
+            if (args == null) {
+                return null;
+            }
+            return "(" + args[0] + " / " + args[1] + ")";
+        }
+
+        private boolean isNonZeroLiteral(Exp exp) {
+            if (!(exp instanceof Literal)) {
+                return false;
+            }
+            final Object value = ((Literal) exp).getValue();
+            return value instanceof Number
+                && ((Number) value).doubleValue() != 0d;
+        }
+
+        public String toString() {
+            return "DivideSqlCompiler";
+        }
+    }
+
+    /**
+     * Compiles a <code>CoalesceEmpty(a, b, ...)</code> expression into SQL
+     * <code>COALESCE(a, b, ...)</code>.
+     *
+     * <p>Tuples that have no fact rows are not read by the SQL, so the
+     * expression is only valid in a filter condition that is false for such
+     * tuples; see {@link #generateFilterCondition(Exp)}.
+     */
+    class CoalesceEmptySqlCompiler extends FunCallSqlCompilerBase {
+        private final SqlCompiler compiler;
+
+        CoalesceEmptySqlCompiler(int category, SqlCompiler argumentCompiler) {
+            super(category, "CoalesceEmpty", -1);
+            this.compiler = argumentCompiler;
+        }
+
+        public String compile(Exp exp) {
+            String[] args = compileArgs(exp, compiler);
+            if (args == null) {
+                return null;
+            }
+            coalesced = true;
+            if (args.length == 1) {
+                return args[0];
+            }
+            StringBuilder buf = new StringBuilder("COALESCE(");
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) {
+                    buf.append(", ");
+                }
+                buf.append(args[i]);
+            }
+            return buf.append(")").toString();
+        }
+
+        public String toString() {
+            return "CoalesceEmptySqlCompiler";
+        }
+    }
+
+    /**
+     * Compiles a <code>Case When cond Then val ... [Else val] End</code>
+     * expression into SQL <code>CASE WHEN cond THEN val ... [ELSE val]
+     * END</code>. A missing ELSE returns null, as in MDX.
+     *
+     * <p>The form <code>Case x When y ...</code> is not compiled: MDX
+     * compares <code>x</code> and <code>y</code> using
+     * {@link Object#equals(Object)}, which for numbers depends on their
+     * type, so a SQL comparison would not give the same result.
+     */
+    class CaseSqlCompiler extends FunCallSqlCompilerBase {
+        private final SqlCompiler valueCompiler;
+
+        CaseSqlCompiler(int category, SqlCompiler valueCompiler) {
+            super(category, "_CaseTest", -1);
+            this.valueCompiler = valueCompiler;
+        }
+
+        public String compile(Exp exp) {
+            if (!match(exp)) {
+                return null;
+            }
+            Exp[] args = ((FunCall) exp).getArgs();
+            StringBuilder buf = new StringBuilder("CASE");
+            int j = 0;
+            while (j + 1 < args.length) {
+                final String cond = booleanCompiler.compile(args[j++]);
+                final String result = valueCompiler.compile(args[j++]);
+                if (cond == null || result == null) {
+                    return null;
+                }
+                buf.append(" WHEN ").append(cond)
+                    .append(" THEN ").append(result);
+            }
+            if (j < args.length) {
+                final String result = valueCompiler.compile(args[j]);
+                if (result == null) {
+                    return null;
+                }
+                buf.append(" ELSE ").append(result);
+            }
+            return buf.append(" END").toString();
+        }
+
+        public String toString() {
+            return "CaseSqlCompiler";
+        }
+    }
+
     /**
      * Creates a RolapNativeSql.
      *
@@ -650,14 +816,16 @@ public class RolapNativeSql {
         numericCompiler.add(
             new InfixOpSqlCompiler(
                 Category.Numeric, "-", "-", numericCompiler));
-        numericCompiler.add(
-            new InfixOpSqlCompiler(
-                Category.Numeric, "/", "/", numericCompiler));
+        numericCompiler.add(new DivideSqlCompiler(numericCompiler));
         numericCompiler.add(
             new InfixOpSqlCompiler(
                 Category.Numeric, "*", "*", numericCompiler));
         numericCompiler.add(
             new IifSqlCompiler(Category.Numeric, numericCompiler));
+        numericCompiler.add(
+            new CoalesceEmptySqlCompiler(Category.Numeric, numericCompiler));
+        numericCompiler.add(
+            new CaseSqlCompiler(Category.Numeric, numericCompiler));
 
         booleanCompiler.add(
             new InfixOpSqlCompiler(
@@ -696,6 +864,8 @@ public class RolapNativeSql {
             new ParenthesisSqlCompiler(Category.Logical, booleanCompiler));
         booleanCompiler.add(
             new IifSqlCompiler(Category.Logical, booleanCompiler));
+        booleanCompiler.add(
+            new CaseSqlCompiler(Category.Logical, booleanCompiler));
     }
 
     /**
@@ -704,11 +874,152 @@ public class RolapNativeSql {
      * order by clause.
      */
     public String generateTopCountOrderBy(Exp exp) {
-        return numericCompiler.compile(exp);
+        coalesced = false;
+        final String sql = numericCompiler.compile(exp);
+        // Tuples with no fact rows are sorted after the others, whatever
+        // value CoalesceEmpty would give them.
+        return coalesced ? null : sql;
     }
 
+    /**
+     * Generates the condition of a Filter.
+     *
+     * <p>If the condition contains <code>CoalesceEmpty</code>, it is
+     * generated only if it is false for a tuple whose measures are all
+     * empty. Otherwise such a tuple, which is dropped by the join to the fact
+     * table, would belong in the result.
+     */
     public String generateFilterCondition(Exp exp) {
-        return booleanCompiler.compile(exp);
+        coalesced = false;
+        final String sql = booleanCompiler.compile(exp);
+        if (sql != null
+            && coalesced
+            && emptyValue(exp, new HashSet<Member>()) != Boolean.FALSE)
+        {
+            return null;
+        }
+        return sql;
+    }
+
+    /**
+     * Returns the value of an expression for a tuple whose stored measures
+     * are all empty, or {@link #UNKNOWN} if it cannot be determined. A value
+     * is null (empty), a {@link Double} or a {@link Boolean}.
+     *
+     * @param exp Expression
+     * @param activeMembers Calculated members being expanded
+     * @return Value, or UNKNOWN
+     */
+    private static Object emptyValue(Exp exp, Set<Member> activeMembers) {
+        if (exp instanceof Literal) {
+            final Object value = ((Literal) exp).getValue();
+            return value instanceof Number
+                ? (Object) ((Number) value).doubleValue()
+                : UNKNOWN;
+        }
+        if (exp instanceof MemberExpr) {
+            final Member member = ((MemberExpr) exp).getMember();
+            if (member instanceof RolapStoredMeasure) {
+                return null;
+            }
+            if (member instanceof RolapCalculatedMember
+                && member.getExpression() != null
+                && activeMembers.add(member))
+            {
+                try {
+                    return emptyValue(member.getExpression(), activeMembers);
+                } finally {
+                    activeMembers.remove(member);
+                }
+            }
+            return UNKNOWN;
+        }
+        if (!(exp instanceof FunCall)) {
+            return UNKNOWN;
+        }
+        final String name = ((FunCall) exp).getFunName();
+        final Exp[] args = ((FunCall) exp).getArgs();
+        final Object[] values = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = emptyValue(args[i], activeMembers);
+        }
+        if (name.equals("()") && args.length == 1) {
+            return values[0];
+        }
+        if (name.equalsIgnoreCase("CoalesceEmpty")) {
+            for (Object value : values) {
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+        if (name.equalsIgnoreCase("not") && args.length == 1) {
+            return values[0] instanceof Boolean
+                ? (Object) !(Boolean) values[0]
+                : UNKNOWN;
+        }
+        if (args.length != 2) {
+            return UNKNOWN;
+        }
+        if (name.equalsIgnoreCase("and")) {
+            if (values[0] == Boolean.FALSE || values[1] == Boolean.FALSE) {
+                return Boolean.FALSE;
+            }
+            return values[0] == Boolean.TRUE && values[1] == Boolean.TRUE
+                ? Boolean.TRUE
+                : UNKNOWN;
+        }
+        if (name.equalsIgnoreCase("or")) {
+            if (values[0] == Boolean.TRUE || values[1] == Boolean.TRUE) {
+                return Boolean.TRUE;
+            }
+            return values[0] == Boolean.FALSE && values[1] == Boolean.FALSE
+                ? Boolean.FALSE
+                : UNKNOWN;
+        }
+        for (Object value : values) {
+            if (value != null && !(value instanceof Double)) {
+                return UNKNOWN;
+            }
+        }
+        final Double x = (Double) values[0];
+        final Double y = (Double) values[1];
+        // Arithmetic treats empty values as the MDX operators do.
+        if (name.equals("+")) {
+            return x == null ? y : y == null ? x : (Object) (x + y);
+        } else if (name.equals("-")) {
+            return x == null
+                ? (y == null ? null : (Object) (-y))
+                : y == null ? x : (Object) (x - y);
+        } else if (name.equals("*")) {
+            return x == null || y == null ? null : (Object) (x * y);
+        } else if (name.equals("/")) {
+            if (x == null) {
+                return null;
+            }
+            return y == null || y == 0d ? UNKNOWN : (Object) (x / y);
+        }
+        if (x == null || y == null) {
+            // An empty value compares as MDX compares it, which is not
+            // evaluated here.
+            return UNKNOWN;
+        }
+        final int c = x.compareTo(y);
+        if (name.equals("<")) {
+            return c < 0;
+        } else if (name.equals("<=")) {
+            return c <= 0;
+        } else if (name.equals(">")) {
+            return c > 0;
+        } else if (name.equals(">=")) {
+            return c >= 0;
+        } else if (name.equals("=")) {
+            return c == 0;
+        } else if (name.equals("<>")) {
+            return c != 0;
+        }
+        return UNKNOWN;
     }
 
     public RolapStoredMeasure getStoredMeasure() {
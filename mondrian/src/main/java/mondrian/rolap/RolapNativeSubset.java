@@ -0,0 +1,269 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.rolap.aggmatcher.AggStar;
+import mondrian.rolap.sql.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes <code>Head</code> and <code>Subset</code> in SQL, reading only
+ * the rows requested.
+ *
+ * <p>Like the two-argument form of <code>TopCount</code> (see
+ * {@link RolapNativeTopCount}), the result is a range of the set in its
+ * natural order, so the set must be a single level's members (or a member's
+ * children or descendants), and the query does not join to the fact table.
+ * If the dialect supports it (see
+ * {@link mondrian.spi.Dialect#supportsLimitOffset()}), the range is
+ * applied in SQL; otherwise the rows before the range are skipped as they
+ * are read, and JDBC stops reading after the range.
+ *
+ * <p>The null member of a level comes first in the natural order, so the
+ * rows are sorted with the null key first. This is only the natural order
+ * if all members of the set have the same parent. So a level's members are
+ * evaluated natively only if the level is just below the 'all' level; to
+ * page through a deeper level, page through the children of each of its
+ * parents. For example,
+ *
+ * <blockquote><pre>Subset([Customers].[USA].[CA].[Los Angeles].Children,
+ *     100, 50)</pre></blockquote>
+ *
+ * reads 50 rows, but <code>Subset([Customers].[Name].Members, 1000,
+ * 50)</code> is not evaluated natively.
+ *
+ * <p>Nor is a set that has been sorted or filtered, such as
+ * <code>Head(Order(NonEmpty(...), ...), 100)</code>: its range is not a
+ * range of rows. For the first members of a set sorted by a measure, use
+ * the three-argument form of <code>TopCount</code>.
+ */
+public class RolapNativeSubset extends RolapNativeSet {
+
+    public RolapNativeSubset() {
+        super.setEnabled(
+            MondrianProperties.instance().EnableNativeSubset.get());
+    }
+
+    static class SubsetConstraint extends SetConstraint {
+        private final int offset;
+        private final int count;
+
+        SubsetConstraint(
+            CrossJoinArg[] args,
+            RolapEvaluator evaluator,
+            int offset,
+            int count)
+        {
+            super(args, evaluator, true);
+            this.offset = offset;
+            this.count = count;
+        }
+
+        /**
+         * Returns whether the constraint can be used. A join to the fact
+         * table could eliminate tuples that precede the range, so only a
+         * single argument, which is read without a join, is valid.
+         */
+        protected boolean isValid() {
+            return args.length == 1
+                && canApplyCrossJoinArgConstraint(args[0]);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Head and Subset return a range of the set in its natural order,
+         * empty or not, so never join to the fact table.
+         */
+        protected boolean isJoinRequired() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsAggTables() {
+            return false;
+        }
+
+        public void addConstraint(
+            SqlQuery sqlQuery,
+            RolapCube baseCube,
+            AggStar aggStar)
+        {
+            assert isValid();
+            args[0].addConstraint(sqlQuery, baseCube, null);
+        }
+
+        public Object getCacheKey() {
+            List<Object> key = new ArrayList<Object>();
+            key.add(super.getCacheKey());
+            key.add(offset);
+            key.add(count);
+            return key;
+        }
+    }
+
+    protected boolean restrictMemberTypes() {
+        return true;
+    }
+
+    NativeEvaluator createEvaluator(
+        RolapEvaluator evaluator,
+        FunDef fun,
+        Exp[] args)
+    {
+        if (!isEnabled()
+            || !SubsetConstraint.isValidContext(
+                evaluator, restrictMemberTypes()))
+        {
+            return null;
+        }
+
+        // "Head(<set>[, <count>])" or "Subset(<set>, <start>[, <count>])"
+        // A count of 0 means that all rows after the offset are read.
+        final String funName = fun.getName();
+        final int offset;
+        final int count;
+        if ("Head".equalsIgnoreCase(funName)) {
+            if (args.length < 1 || args.length > 2) {
+                return null;
+            }
+            offset = 0;
+            count = args.length == 2 ? literalInt(args[1]) : 1;
+            if (count <= 0) {
+                alertNonNativeSubset(funName, "Count cannot be determined.");
+                return null;
+            }
+        } else if ("Subset".equalsIgnoreCase(funName)) {
+            if (args.length < 2 || args.length > 3) {
+                return null;
+            }
+            offset = literalInt(args[1]);
+            count = args.length == 3 ? literalInt(args[2]) : 0;
+            if (offset < 0
+                || args.length == 3 && count <= 0
+                || offset == 0 && count == 0)
+            {
+                alertNonNativeSubset(funName, "Range cannot be determined.");
+                return null;
+            }
+        } else {
+            return null;
+        }
+
+        // extract the set expression
+        List<CrossJoinArg[]> allArgs =
+            crossJoinArgFactory().checkCrossJoinArg(evaluator, args[0]);
+        if (allArgs == null || allArgs.isEmpty() || allArgs.get(0) == null) {
+            alertNonNativeSubset(
+                funName, "Set in 1st argument does not support native eval.");
+            return null;
+        }
+        if (allArgs.size() > 1) {
+            // Predicates on the set are applied after the rows are read,
+            // which would shift the range.
+            alertNonNativeSubset(
+                funName, "Set in 1st argument has additional predicates.");
+            return null;
+        }
+        CrossJoinArg[] cjArgs = allArgs.get(0);
+        if (isPreferInterpreter(cjArgs, false)) {
+            alertNonNativeSubset(
+                funName, "One or more args prefer non-native.");
+            return null;
+        }
+        if (!isExactRange(evaluator, cjArgs)) {
+            alertNonNativeSubset(
+                funName, "Members may be filtered after they are read.");
+            return null;
+        }
+
+        SubsetConstraint constraint =
+            new SubsetConstraint(cjArgs, evaluator, offset, count);
+        if (!constraint.isValid()) {
+            alertNonNativeSubset(
+                funName,
+                "Constraint constructed cannot be used for native eval.");
+            return null;
+        }
+        LOGGER.debug("using native subset");
+        SetEvaluator sev =
+            new SetEvaluator(cjArgs, evaluator.getSchemaReader(), constraint);
+        sev.setMaxRows(count);
+        sev.setOffset(offset);
+        sev.setNullsFirst(true);
+        return sev;
+    }
+
+    /**
+     * Returns whether the rows read for a set are exactly the members of the
+     * set, in order.
+     *
+     * <p>Members of a parent-child or ragged level, or of a hierarchy with
+     * custom access, are filtered after they are read, so a range of rows is
+     * not the same range of members. The null member is moved to the front
+     * of the set only if it is the last member read; the rows are sorted
+     * with the null key first, which gives the same order only if the
+     * members all have the same parent and are sorted by their key.
+     */
+    private boolean isExactRange(
+        RolapEvaluator evaluator,
+        CrossJoinArg[] cjArgs)
+    {
+        for (CrossJoinArg arg : cjArgs) {
+            if (!(arg instanceof DescendantsCrossJoinArg)) {
+                // The rows of an enumerated set are read in key order, not
+                // in the order in which the members were enumerated.
+                return false;
+            }
+            final RolapLevel level = arg.getLevel();
+            if (level == null) {
+                continue;
+            }
+            final List<RolapMember> parents = arg.getMembers();
+            final boolean sameParent =
+                parents == null
+                    ? level.getParentLevel() == null
+                        || level.getParentLevel().isAll()
+                    : level.getDepth() <= parents.get(0).getDepth() + 1;
+            if (!sameParent
+                || !level.getKeyExp().equals(level.getOrdinalExp()))
+            {
+                return false;
+            }
+            if (level.isParentChild()
+                || level.getHideMemberCondition()
+                != RolapLevel.HideMemberCondition.Never
+                || evaluator.getSchemaReader().getRole()
+                .getAccess(level.getHierarchy()) != Access.ALL)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int literalInt(Exp exp) {
+        if (exp instanceof Literal
+            && ((Literal) exp).getValue() instanceof Number)
+        {
+            return ((Literal) exp).getIntValue();
+        }
+        return -1;
+    }
+
+    private void alertNonNativeSubset(String funName, String msg) {
+        RolapUtil.alertNonNative(funName, msg);
+    }
+}
+
+// End RolapNativeSubset.java
@@ -25,7 +25,7 @@ import java.util.*;
  * <p>1. Obsolete AbstractCalc.calcs member, AbstractCalc.getCalcs(), and
  *     Calc[] constructor parameter to many Calc subclasses. Store the
  *     tree structure (children of a calc, parent of a calc) in
- *     RolapEvaluatorRoot.compiledExps.
+ *     Query.compiledExps.
  *
  * <p>Rationale: Children calcs are
  *     used in about 50 places, but mostly for dependency-checking (e.g.
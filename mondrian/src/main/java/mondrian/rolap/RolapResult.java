@@ -225,8 +225,9 @@ public class RolapResult extends ResultBase {
             loadSpecialMembers(
                 nonDefaultAllMembers, nonAllMembers, measureMembers);
 
-            // clear evaluation cache
+            // clear evaluation cache and members seen by earlier executions
             query.clearEvalCache();
+            query.clearMemberDictionary();
 
             // Save, may be needed by some Expression Calc's
             query.putEvalCache("ALL_MEMBER_LIST", nonDefaultAllMembers);
@@ -545,6 +546,9 @@ public class RolapResult extends ResultBase {
                 // clear out the whole expression cache at the end of a query.
                 evaluator.clearExpResultCache(true);
             }
+            if (batchingReader != null) {
+                batchingReader.releasePinnedSegments();
+            }
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("RolapResult<init>: " + Util.printMemory());
             }
@@ -673,6 +677,9 @@ public class RolapResult extends ResultBase {
     @Override
     public void close() {
         super.close();
+        if (batchingReader != null) {
+            batchingReader.releasePinnedSegments();
+        }
     }
 
     protected boolean removeDimension(
@@ -926,6 +933,23 @@ public class RolapResult extends ResultBase {
      * @return the Cell associated with the Cell position.
      */
     public Cell getCell(int[] pos) {
+        return new RolapCell(this, pos.clone(), lookupCellInfo(pos));
+    }
+
+    /**
+     * Returns the value of the cell at a given set of coordinates. Unlike
+     * {@link #getCell(int[])}, does not create a {@link Cell}, so is suitable
+     * for reading a large number of cells.
+     *
+     * @param pos Coordinates of cell
+     * @return Value of cell, or null if the cell is empty
+     */
+    public Object getCellValue(int[] pos) {
+        final Object value = lookupCellInfo(pos).value;
+        return value == Util.nullValue ? null : value;
+    }
+
+    private CellInfo lookupCellInfo(int[] pos) {
         if (pos.length != point.size()) {
             throw Util.newError(
                 "coordinates should have dimension " + point.size());
@@ -954,8 +978,7 @@ public class RolapResult extends ResultBase {
             }
             ci.value = Util.nullValue;
         }
-
-        return new RolapCell(this, pos.clone(), ci);
+        return ci;
     }
 
     private TupleIterable executeAxis(
@@ -1664,7 +1687,7 @@ public class RolapResult extends ResultBase {
             this.result = result;
         }
 
-        protected Evaluator.NamedSetEvaluator evaluateNamedSet(
+        protected synchronized Evaluator.NamedSetEvaluator evaluateNamedSet(
             final NamedSet namedSet,
             boolean create)
         {
@@ -1682,7 +1705,7 @@ public class RolapResult extends ResultBase {
             return value;
         }
 
-        protected Evaluator.SetEvaluator evaluateSet(
+        protected synchronized Evaluator.SetEvaluator evaluateSet(
             final Exp exp,
             boolean create)
         {
@@ -15,6 +15,7 @@ import mondrian.olap.fun.*;
 import mondrian.olap.type.*;
 import mondrian.resource.MondrianResource;
 import mondrian.rolap.aggmatcher.AggTableManager;
+import mondrian.server.monitor.CubeLoadEvent;
 import mondrian.spi.*;
 import mondrian.spi.impl.Scripts;
 import mondrian.util.ByteString;
@@ -75,10 +76,48 @@ public class RolapSchema implements Schema {
     private RolapConnection internalConnection;
 
     /**
-     * Holds cubes in this schema.
+     * Holds cubes in this schema that have been built.
      */
     private final Map<String, RolapCube> mapNameToCube =
-        new HashMap<String, RolapCube>();
+        Collections.synchronizedMap(new HashMap<String, RolapCube>());
+
+    /**
+     * Holds definitions of cubes that have not been built yet, if
+     * {@link MondrianProperties#LazyCubeLoading} is true. Guarded by
+     * {@link #cubeLoadLock}.
+     */
+    private final Map<String, LazyCube> mapNameToLazyCube =
+        new HashMap<String, LazyCube>();
+
+    /**
+     * Lock that guards the lazily built cubes. It is not held while a cube
+     * is built: each {@link LazyCube} is locked while its cube is built, so
+     * threads that need other cubes are not blocked.
+     */
+    private final Object cubeLoadLock = new Object();
+
+    /**
+     * Whether aggregate tables have been recognized for the stars that
+     * existed when the schema was loaded. Cubes built after that need their
+     * stars' aggregate tables to be recognized separately.
+     */
+    private volatile boolean aggTablesInitialized;
+
+    /**
+     * Stars whose aggregate tables have been recognized. Recognizing a
+     * star's aggregate tables replaces its aggregate stars, which queries
+     * may be using, so it is done at most once for each star. Guarded by
+     * {@link #cubeLoadLock}.
+     */
+    private final Set<RolapStar> aggTableStars = new HashSet<RolapStar>();
+
+    /**
+     * Checksums of the definitions that determine the SQL generated for
+     * each star, keyed by fact table alias. See
+     * {@link #getStarChecksum(String)}.
+     */
+    private final Map<String, ByteString> mapFactTableToChecksum =
+        new HashMap<String, ByteString>();
 
     /**
      * Maps {@link String shared hierarchy name} to {@link MemberReader}.
@@ -235,7 +274,7 @@ public class RolapSchema implements Schema {
         final RolapConnection internalConnection = getInternalConnection();
         if (internalConnection != null) {
             final CacheControl cc = internalConnection.getCacheControl(null);
-            for (RolapCube cube : getCubeList()) {
+            for (RolapCube cube : getLoadedCubeList()) {
                 cc.flush(cc.createMeasuresRegion(cube));
             }
         }
@@ -371,6 +410,10 @@ public class RolapSchema implements Schema {
         }
 
         aggTableManager.initialize();
+        synchronized (cubeLoadLock) {
+            aggTableStars.addAll(getStars());
+            aggTablesInitialized = true;
+        }
         setSchemaLoadDate();
     }
 
@@ -504,6 +547,8 @@ public class RolapSchema implements Schema {
         funTable.init();
         this.funTable = funTable;
 
+        computeStarChecksums(xmlSchema);
+
         // Validate public dimensions.
         for (MondrianDef.Dimension xmlDimension : xmlSchema.dimensions) {
             if (xmlDimension.foreignKey != null) {
@@ -538,20 +583,39 @@ public class RolapSchema implements Schema {
             Util.discard(param);
         }
 
-        // Create cubes.
+        // Create cubes, or if cubes are loaded lazily, remember their
+        // definitions until they are first accessed.
+        final boolean lazy =
+            MondrianProperties.instance().LazyCubeLoading.get();
         for (MondrianDef.Cube xmlCube : xmlSchema.cubes) {
             if (xmlCube.isEnabled()) {
-                RolapCube cube = new RolapCube(this, xmlSchema, xmlCube, true);
-                Util.discard(cube);
+                final LazyCube lazyCube =
+                    new LazyCube(xmlSchema, xmlCube, null);
+                if (lazy) {
+                    synchronized (cubeLoadLock) {
+                        mapNameToLazyCube.put(
+                            Util.normalizeName(xmlCube.name), lazyCube);
+                    }
+                } else {
+                    Util.discard(lazyCube.build());
+                }
             }
         }
 
         // Create virtual cubes.
         for (MondrianDef.VirtualCube xmlVirtualCube : xmlSchema.virtualCubes) {
             if (xmlVirtualCube.isEnabled()) {
-                RolapCube cube =
-                    new RolapCube(this, xmlSchema, xmlVirtualCube, true);
-                Util.discard(cube);
+                final LazyCube lazyCube =
+                    new LazyCube(xmlSchema, null, xmlVirtualCube);
+                if (lazy) {
+                    synchronized (cubeLoadLock) {
+                        mapNameToLazyCube.put(
+                            Util.normalizeName(xmlVirtualCube.name),
+                            lazyCube);
+                    }
+                } else {
+                    Util.discard(lazyCube.build());
+                }
             }
         }
 
@@ -914,7 +978,34 @@ public class RolapSchema implements Schema {
      * cube exists.
      */
     protected RolapCube lookupCube(final String cubeName) {
-        return mapNameToCube.get(Util.normalizeName(cubeName));
+        final String normalizedName = Util.normalizeName(cubeName);
+        final RolapCube cube = mapNameToCube.get(normalizedName);
+        if (cube != null) {
+            return cube;
+        }
+        final LazyCube lazyCube;
+        synchronized (cubeLoadLock) {
+            lazyCube = mapNameToLazyCube.get(normalizedName);
+            if (lazyCube == null) {
+                // Not found, or built by another thread while we were
+                // waiting for the lock.
+                return mapNameToCube.get(normalizedName);
+            }
+        }
+        return lazyCube.get(normalizedName);
+    }
+
+    /**
+     * Builds every cube that has not been built yet.
+     */
+    private void loadAllCubes() {
+        final Map<String, LazyCube> lazyCubes;
+        synchronized (cubeLoadLock) {
+            lazyCubes = new HashMap<String, LazyCube>(mapNameToLazyCube);
+        }
+        for (Map.Entry<String, LazyCube> entry : lazyCubes.entrySet()) {
+            entry.getValue().get(entry.getKey());
+        }
     }
 
     /**
@@ -963,7 +1054,7 @@ public class RolapSchema implements Schema {
 
     public List<RolapCube> getCubesWithStar(RolapStar star) {
         List<RolapCube> list = new ArrayList<RolapCube>();
-        for (RolapCube cube : mapNameToCube.values()) {
+        for (RolapCube cube : getLoadedCubeList()) {
             if (star == cube.getStar()) {
                 list.add(cube);
             }
@@ -976,24 +1067,208 @@ public class RolapSchema implements Schema {
      * @see #lookupCube(String)
      */
     protected void addCube(final RolapCube cube) {
-        mapNameToCube.put(
-            Util.normalizeName(cube.getName()),
-            cube);
+        final String normalizedName = Util.normalizeName(cube.getName());
+        synchronized (cubeLoadLock) {
+            final LazyCube lazyCube = mapNameToLazyCube.get(normalizedName);
+            if (lazyCube != null && lazyCube.building) {
+                // The cube is being built on first access. It will be added
+                // to the map when it is complete, so that other threads
+                // never see a partially built cube.
+                lazyCube.cube = cube;
+                return;
+            }
+            mapNameToCube.put(normalizedName, cube);
+        }
     }
 
     public boolean removeCube(final String cubeName) {
-        final RolapCube cube =
-            mapNameToCube.remove(Util.normalizeName(cubeName));
-        return cube != null;
+        final String normalizedName = Util.normalizeName(cubeName);
+        synchronized (cubeLoadLock) {
+            final LazyCube lazyCube = mapNameToLazyCube.remove(normalizedName);
+            final RolapCube cube = mapNameToCube.remove(normalizedName);
+            return cube != null || lazyCube != null;
+        }
     }
 
     public Cube[] getCubes() {
-        Collection<RolapCube> cubes = mapNameToCube.values();
+        List<RolapCube> cubes = getCubeList();
         return cubes.toArray(new RolapCube[cubes.size()]);
     }
 
+    /**
+     * Returns a list of all cubes in this schema.
+     *
+     * <p>If {@link MondrianProperties#LazyCubeLoading} is true, builds any
+     * cubes that have not been built yet. Use {@link #getLoadedCubeList()} if
+     * you are only interested in cubes that may hold state, such as cached
+     * cells.
+     *
+     * @return List of cubes
+     */
     public List<RolapCube> getCubeList() {
-        return new ArrayList<RolapCube>(mapNameToCube.values());
+        loadAllCubes();
+        return getLoadedCubeList();
+    }
+
+    /**
+     * Returns a list of the cubes in this schema that have been built.
+     * Unlike {@link #getCubeList()}, does not cause cubes to be built.
+     *
+     * @return List of cubes that have been built
+     */
+    public List<RolapCube> getLoadedCubeList() {
+        synchronized (mapNameToCube) {
+            return new ArrayList<RolapCube>(mapNameToCube.values());
+        }
+    }
+
+    /**
+     * Returns the names of all cubes in this schema, including cubes that
+     * have not been built yet. Does not cause cubes to be built.
+     *
+     * <p>To list the cubes of a large schema (for example, to answer an XMLA
+     * discovery request) call this method, then {@link #lookupCube(String)}
+     * for the cubes that are actually needed.
+     *
+     * @return Names of cubes
+     */
+    public List<String> getCubeNames() {
+        final List<String> names = new ArrayList<String>();
+        synchronized (cubeLoadLock) {
+            for (RolapCube cube : getLoadedCubeList()) {
+                names.add(cube.getName());
+            }
+            for (LazyCube lazyCube : mapNameToLazyCube.values()) {
+                names.add(lazyCube.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Sends an event to the monitor saying that a cube has been built.
+     */
+    private void sendCubeLoadEvent(RolapCube cube, long loadMillis) {
+        final RolapConnection connection = getInternalConnection();
+        if (connection == null) {
+            return;
+        }
+        final MondrianServer server = connection.getServer();
+        server.getMonitor().sendEvent(
+            new CubeLoadEvent(
+                System.currentTimeMillis(),
+                server.getId(),
+                connection.getId(),
+                getName(),
+                cube.getName(),
+                cube.isVirtual(),
+                loadMillis));
+    }
+
+    /**
+     * Definition of a cube, from which the cube is built, either when the
+     * schema is loaded or, if {@link MondrianProperties#LazyCubeLoading} is
+     * true, when the cube is first accessed.
+     *
+     * <p>Fields are guarded by the LazyCube, which is locked while the cube
+     * is built. Building a virtual cube builds its base cubes, and a cube
+     * may refer to itself while it is being built.
+     */
+    private class LazyCube {
+        private final MondrianDef.Schema xmlSchema;
+        private final MondrianDef.Cube xmlCube;
+        private final MondrianDef.VirtualCube xmlVirtualCube;
+
+        /**
+         * Whether the cube is being built.
+         */
+        volatile boolean building;
+
+        /**
+         * The cube, set when its constructor calls
+         * {@link RolapSchema#addCube}; null until then, or if the build
+         * failed.
+         */
+        volatile RolapCube cube;
+
+        LazyCube(
+            MondrianDef.Schema xmlSchema,
+            MondrianDef.Cube xmlCube,
+            MondrianDef.VirtualCube xmlVirtualCube)
+        {
+            this.xmlSchema = xmlSchema;
+            this.xmlCube = xmlCube;
+            this.xmlVirtualCube = xmlVirtualCube;
+        }
+
+        /**
+         * Returns the name of the cube, as given in the schema.
+         */
+        String getName() {
+            return xmlCube != null ? xmlCube.name : xmlVirtualCube.name;
+        }
+
+        /**
+         * Builds the cube, and tells the monitor how long it took.
+         */
+        RolapCube build() {
+            final long start = System.currentTimeMillis();
+            final RolapCube cube =
+                xmlCube != null
+                    ? new RolapCube(RolapSchema.this, xmlSchema, xmlCube, true)
+                    : new RolapCube(
+                        RolapSchema.this, xmlSchema, xmlVirtualCube, true);
+            sendCubeLoadEvent(cube, System.currentTimeMillis() - start);
+            return cube;
+        }
+
+        /**
+         * Builds the cube on first access, adds it to the schema, and
+         * recognizes the aggregate tables of its star. If another thread is
+         * building the cube, waits for it. The caller must not hold
+         * {@link RolapSchema#cubeLoadLock}.
+         *
+         * @param normalizedName Normalized name of the cube
+         * @return Cube
+         */
+        synchronized RolapCube get(String normalizedName) {
+            if (building || cube != null) {
+                // The cube is referring to itself while it is being built,
+                // or another thread built it while we were waiting.
+                return cube;
+            }
+            final RolapCube cube;
+            building = true;
+            try {
+                cube = build();
+            } catch (RuntimeException e) {
+                // Leave the definition in place; the next access will fail
+                // in the same way.
+                this.cube = null;
+                throw e;
+            } finally {
+                building = false;
+            }
+            this.cube = cube;
+            final boolean initializeAggTables;
+            synchronized (cubeLoadLock) {
+                mapNameToCube.put(normalizedName, cube);
+                mapNameToLazyCube.remove(normalizedName);
+                // A star shared with a cube that was built earlier keeps the
+                // aggregate tables recognized then; a cube that adds columns
+                // to the star reads them from the fact table.
+                initializeAggTables =
+                    aggTablesInitialized
+                    && aggTableManager != null
+                    && cube.getStar() != null
+                    && aggTableStars.add(cube.getStar());
+            }
+            if (initializeAggTables) {
+                aggTableManager.initialize(
+                    Collections.singletonList(cube.getStar()));
+            }
+            return cube;
+        }
     }
 
     public Hierarchy[] getSharedHierarchies() {
@@ -1317,6 +1592,78 @@ System.out.println("RolapSchema.createMemberReader: CONTAINS NAME");
         return md5Bytes;
     }
 
+    /**
+     * Returns the checksum that identifies the cached segments of the star
+     * with a given fact table.
+     *
+     * <p>If {@link MondrianProperties#ShareSegmentsAcrossSchemas} is true,
+     * this is a checksum of the definitions of the cubes based on that fact
+     * table and the shared dimensions they use, so that schemas that differ
+     * only in other cubes can share segments. Otherwise, and for stars of
+     * cubes added after the schema was loaded, it is the checksum of the
+     * whole schema.
+     *
+     * @param factTableAlias Alias of fact table
+     * @return Checksum that identifies the star's segments
+     */
+    ByteString getStarChecksum(String factTableAlias) {
+        if (MondrianProperties.instance().ShareSegmentsAcrossSchemas.get()) {
+            final ByteString checksum =
+                mapFactTableToChecksum.get(factTableAlias);
+            if (checksum != null) {
+                return checksum;
+            }
+        }
+        return getChecksum();
+    }
+
+    /**
+     * Computes, for each fact table, a checksum of the definitions of the
+     * cubes based on that fact table and of the shared dimensions they use.
+     */
+    private void computeStarChecksums(MondrianDef.Schema xmlSchema) {
+        final Map<String, MondrianDef.Dimension> sharedDimensions =
+            new HashMap<String, MondrianDef.Dimension>();
+        for (MondrianDef.Dimension xmlDimension : xmlSchema.dimensions) {
+            sharedDimensions.put(xmlDimension.name, xmlDimension);
+        }
+        final Map<String, StringWriter> definitions =
+            new HashMap<String, StringWriter>();
+        for (MondrianDef.Cube xmlCube : xmlSchema.cubes) {
+            if (!xmlCube.isEnabled() || xmlCube.fact == null) {
+                continue;
+            }
+            final String factTableAlias = xmlCube.fact.getAlias();
+            StringWriter sw = definitions.get(factTableAlias);
+            if (sw == null) {
+                sw = new StringWriter(4096);
+                definitions.put(factTableAlias, sw);
+            }
+            final PrintWriter pw = new PrintWriter(sw);
+            xmlCube.display(pw, 0);
+            for (MondrianDef.CubeDimension xmlCubeDimension
+                : xmlCube.dimensions)
+            {
+                if (xmlCubeDimension instanceof MondrianDef.DimensionUsage) {
+                    final MondrianDef.Dimension xmlDimension =
+                        sharedDimensions.get(
+                            ((MondrianDef.DimensionUsage) xmlCubeDimension)
+                                .source);
+                    if (xmlDimension != null) {
+                        xmlDimension.display(pw, 0);
+                    }
+                }
+            }
+            pw.flush();
+        }
+        mapFactTableToChecksum.clear();
+        for (Map.Entry<String, StringWriter> entry : definitions.entrySet()) {
+            mapFactTableToChecksum.put(
+                entry.getKey(),
+                new ByteString(Util.digestMd5(entry.getValue().toString())));
+        }
+    }
+
     /**
      * Connection for purposes of parsing and validation. Careful! It won't
      * have the correct locale or access-control profile.
@@ -1367,7 +1714,9 @@ System.out.println("RolapSchema.createMemberReader: CONTAINS NAME");
         }
 
         synchronized Collection<RolapStar> getStars() {
-            return stars.values();
+            // Return a copy; stars may be created by cubes that are built
+            // on first access while the caller is iterating.
+            return new ArrayList<RolapStar>(stars.values());
         }
     }
 
@@ -1416,6 +1765,17 @@ System.out.println("RolapSchema.createMemberReader: CONTAINS NAME");
         return nativeRegistry;
     }
 
+    final SharedExpResultCache sharedExpResultCache =
+        new SharedExpResultCache();
+
+    /**
+     * Returns the cache of expression results shared by all queries on this
+     * schema.
+     */
+    SharedExpResultCache getSharedExpResultCache() {
+        return sharedExpResultCache;
+    }
+
     /**
      * @return Returns the dataSourceChangeListener.
      */
@@ -10,6 +10,7 @@
 */
 package mondrian.rolap;
 
+import mondrian.olap.MondrianProperties;
 import mondrian.olap.Util;
 import mondrian.resource.MondrianResource;
 import mondrian.rolap.aggmatcher.JdbcSchema;
@@ -21,7 +22,7 @@ import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.lang.ref.*;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.*;
 
 import javax.sql.DataSource;
 
@@ -35,6 +36,11 @@ import static mondrian.rolap.RolapConnectionProperties.UseSchemaPool;
  *
  * <p>To lookup a schema, call
  * <code>RolapSchemaPool.{@link #instance}().{@link #get}</code>.</p>
+ *
+ * <p>The pool does not hold a lock while a schema is loading. If several
+ * threads ask for a schema that is not in the pool, one of them loads it and
+ * the others wait for it; threads asking for other schemas are not
+ * blocked.</p>
  */
 class RolapSchemaPool {
     static final Logger LOGGER = Logger.getLogger(RolapSchemaPool.class);
@@ -43,7 +49,7 @@ class RolapSchemaPool {
 
     private final Map<SchemaKey, ExpiringReference<RolapSchema>>
         mapKeyToSchema =
-            new HashMap<SchemaKey, ExpiringReference<RolapSchema>>();
+            new ConcurrentHashMap<SchemaKey, ExpiringReference<RolapSchema>>();
 
     // REVIEW: This map is now considered unsafe. If two schemas have identical
     // metadata but a different underlying database connection, we should not
@@ -51,9 +57,35 @@ class RolapSchemaPool {
     // definition, this field can probably be removed.
     private final Map<ByteString, ExpiringReference<RolapSchema>>
         mapMd5ToSchema =
-            new HashMap<ByteString, ExpiringReference<RolapSchema>>();
+            new ConcurrentHashMap<ByteString, ExpiringReference<RolapSchema>>();
 
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Schemas that are being loaded, keyed by {@link SchemaKey} or, if the
+     * content checksum is used, by checksum. A thread that needs a schema
+     * that is being loaded waits for that load rather than starting another.
+     */
+    private final ConcurrentMap<Object, Future<RolapSchema>> mapKeyToLoad =
+        new ConcurrentHashMap<Object, Future<RolapSchema>>();
+
+    /**
+     * Checksums of schema content whose load in the background failed. While
+     * the content is unchanged, the previous version of the schema is served
+     * and the load is not retried; flushing the pool forgets the failures.
+     */
+    private final Set<ByteString> failedRefreshes =
+        Collections.newSetFromMap(new ConcurrentHashMap<ByteString, Boolean>());
+
+    /**
+     * Executor that loads new versions of schemas, if
+     * {@link MondrianProperties#SchemaRefreshInBackground} is true.
+     */
+    private static final ExecutorService refreshExecutor =
+        Util.getExecutorService(
+            2,
+            2,
+            1,
+            "mondrian.rolap.RolapSchemaPool$refreshExecutor",
+            null);
 
     private RolapSchemaPool() {
     }
@@ -173,23 +205,17 @@ class RolapSchemaPool {
         T key,
         String pinSchemaTimeout)
     {
-        lock.readLock().lock();
-        try {
-            ExpiringReference<RolapSchema> ref = map.get(key);
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("get(key=" + key + ") returned " + toString(ref));
-            }
+        ExpiringReference<RolapSchema> ref = map.get(key);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("get(key=" + key + ") returned " + toString(ref));
+        }
 
-            if (ref != null) {
-                RolapSchema schema = ref.get(pinSchemaTimeout);
-                if (schema != null) {
-                    return schema;
-                }
+        if (ref != null) {
+            RolapSchema schema = ref.get(pinSchemaTimeout);
+            if (schema != null) {
+                return schema;
             }
-        } finally {
-            lock.readLock().unlock();
         }
-
         return null;
     }
 
@@ -205,35 +231,10 @@ class RolapSchemaPool {
         if (schema != null) {
             return schema;
         }
-
-        lock.writeLock().lock();
-        try {
-            // We need to check once again, now under
-            // write lock's protection, because it is possible,
-            // that another thread has already replaced old ref
-            // with a new one, having the same key.
-            // If the condition were not checked, then this thread
-            // would remove the newborn schema
-            ExpiringReference<RolapSchema> ref = mapKeyToSchema.get(key);
-            if (ref != null) {
-                schema = ref.get(pinSchemaTimeout);
-                if (schema == null) {
-                    mapKeyToSchema.remove(key);
-                } else {
-                    return schema;
-                }
-            }
-
-            schema = createRolapSchema(
-                catalogUrl, dataSource, connectInfo, catalogStr, key, null);
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("create: " + schema);
-            }
-            putSchema(schema, null, pinSchemaTimeout);
-            return schema;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        return await(
+            load(
+                key, catalogUrl, dataSource, connectInfo, pinSchemaTimeout,
+                catalogStr, key, null, null, false));
     }
 
     private RolapSchema getByChecksum(
@@ -250,35 +251,183 @@ class RolapSchemaPool {
             return schema;
         }
 
-        lock.writeLock().lock();
-        try {
-            // The motivation for repeating lookup attempt is the same
-            // as described in getByKey()
-            ExpiringReference<RolapSchema> ref = mapMd5ToSchema.get(md5Bytes);
-            if (ref != null) {
-                schema = ref.get(pinSchemaTimeout);
-                if (schema == null) {
-                    // clear out the reference since schema is null
-                    mapKeyToSchema.remove(key);
-                    mapMd5ToSchema.remove(md5Bytes);
-                } else {
-                    // someone has updated the schema for us
-                    return schema;
+        // The content has changed (or the schema has never been loaded). If
+        // there is a previous version of the schema with the same key, and
+        // we are allowed to, keep serving it while the new version loads.
+        // Schemas produced by a DynamicSchemaProcessor or given as
+        // CatalogContent have a key based on their content, so a previous
+        // version is never found for them.
+        if (MondrianProperties.instance().SchemaRefreshInBackground.get()) {
+            final RolapSchema previousSchema =
+                lookUp(mapKeyToSchema, key, pinSchemaTimeout);
+            if (previousSchema != null) {
+                if (!failedRefreshes.contains(md5Bytes)) {
+                    load(
+                        md5Bytes, catalogUrl, dataSource, connectInfo,
+                        pinSchemaTimeout, catalogStr, key, md5Bytes,
+                        previousSchema, true);
                 }
+                return previousSchema;
             }
+        }
+        return await(
+            load(
+                md5Bytes, catalogUrl, dataSource, connectInfo,
+                pinSchemaTimeout, catalogStr, key, md5Bytes, null, false));
+    }
 
-            schema = createRolapSchema(
-                catalogUrl, dataSource, connectInfo, catalogStr,
-                key, md5Bytes);
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug(
-                    "create: schema-name=" + schema.getName()
-                    + ", schema-id=" + System.identityHashCode(schema));
-            }
-            putSchema(schema, md5Bytes, pinSchemaTimeout);
+    /**
+     * Loads a schema and adds it to the pool, unless another thread is
+     * already loading it, in which case returns that thread's load.
+     *
+     * @param loadKey Key that identifies the load: the schema key, or the
+     *     checksum if the content checksum is used
+     * @param catalogUrl Catalog URL
+     * @param dataSource Data source
+     * @param connectInfo Connect string properties
+     * @param pinSchemaTimeout Pin timeout
+     * @param catalogStr Schema content
+     * @param key Schema key
+     * @param md5Bytes Checksum of schema content, or null
+     * @param previousSchema Previous version of the schema, whose cubes to
+     *     build in the new version once it has loaded; or null
+     * @param background Whether to load in a background thread; if false,
+     *     loads in the current thread. A background load that fails is
+     *     logged, and is not retried until the schema content changes or
+     *     the pool is flushed
+     * @return Future that holds the schema when it is loaded
+     */
+    private Future<RolapSchema> load(
+        final Object loadKey,
+        final String catalogUrl,
+        final DataSource dataSource,
+        final Util.PropertyList connectInfo,
+        final String pinSchemaTimeout,
+        final String catalogStr,
+        final SchemaKey key,
+        final ByteString md5Bytes,
+        final RolapSchema previousSchema,
+        final boolean background)
+    {
+        final FutureTask<RolapSchema> task =
+            new FutureTask<RolapSchema>(
+                new Callable<RolapSchema>() {
+                    public RolapSchema call() {
+                        try {
+                            return create(
+                                catalogUrl, dataSource, connectInfo,
+                                pinSchemaTimeout, catalogStr, key, md5Bytes,
+                                previousSchema);
+                        } catch (RuntimeException e) {
+                            if (background) {
+                                // Nobody waits for a background load, so
+                                // this is the only place to report it.
+                                LOGGER.error(
+                                    "Error while loading new version of schema "
+                                    + key + " in background; will keep"
+                                    + " serving the previous version",
+                                    e);
+                                failedRefreshes.add(md5Bytes);
+                            }
+                            throw e;
+                        } finally {
+                            mapKeyToLoad.remove(loadKey);
+                        }
+                    }
+                });
+        final Future<RolapSchema> existingTask =
+            mapKeyToLoad.putIfAbsent(loadKey, task);
+        if (existingTask != null) {
+            return existingTask;
+        }
+        if (background) {
+            refreshExecutor.execute(task);
+        } else {
+            task.run();
+        }
+        return task;
+    }
+
+    private RolapSchema create(
+        String catalogUrl,
+        DataSource dataSource,
+        Util.PropertyList connectInfo,
+        String pinSchemaTimeout,
+        String catalogStr,
+        SchemaKey key,
+        ByteString md5Bytes,
+        RolapSchema previousSchema)
+    {
+        // We need to check once again, because another thread may have
+        // finished loading the schema between our lookup and the start of
+        // this load.
+        RolapSchema schema =
+            md5Bytes == null
+                ? lookUp(mapKeyToSchema, key, pinSchemaTimeout)
+                : lookUp(mapMd5ToSchema, md5Bytes, pinSchemaTimeout);
+        if (schema != null) {
             return schema;
-        } finally {
-            lock.writeLock().unlock();
+        }
+
+        schema = createRolapSchema(
+            catalogUrl, dataSource, connectInfo, catalogStr, key, md5Bytes);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "create: schema-name=" + schema.getName()
+                + ", schema-id=" + System.identityHashCode(schema));
+        }
+        if (previousSchema != null) {
+            prepare(schema, previousSchema);
+        }
+        putSchema(schema, md5Bytes, pinSchemaTimeout);
+        if (CacheWarmer.isEnabled()) {
+            CacheWarmer.instance().schedule(schema);
+        }
+        return schema;
+    }
+
+    /**
+     * Builds in a newly loaded schema the cubes that had been built in the
+     * previous version of the schema, so that the first queries against the
+     * new version are not slower than those against the old one.
+     */
+    private static void prepare(
+        RolapSchema schema,
+        RolapSchema previousSchema)
+    {
+        for (RolapCube cube : previousSchema.getLoadedCubeList()) {
+            try {
+                schema.lookupCube(cube.getName(), false);
+            } catch (RuntimeException e) {
+                LOGGER.warn(
+                    "Error while building cube " + cube.getName()
+                    + " in new version of schema " + schema.getName(),
+                    e);
+            }
+        }
+    }
+
+    /**
+     * Waits for a schema to load.
+     *
+     * @param future Load
+     * @return Schema
+     */
+    private static RolapSchema await(Future<RolapSchema> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Util.newError(e, "while waiting for schema to load");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw Util.newError(cause, "while loading schema");
         }
     }
 
@@ -302,9 +451,6 @@ class RolapSchemaPool {
 
     /**
      * Adds <tt>schema</tt> to the pool.
-     * <b>Attention!</b> This method is not doing any synchronization
-     * internally and relies on the assumption that it is invoked
-     * inside a critical section
      * @param schema        schema to be stored
      * @param md5Bytes      md5 hash, can be <tt>null</tt>
      * @param pinTimeout    timeout mark
@@ -464,19 +610,14 @@ class RolapSchemaPool {
     }
 
     private void remove(SchemaKey key) {
-        lock.writeLock().lock();
+        failedRefreshes.clear();
         RolapSchema schema = null;
-        try {
-            Reference<RolapSchema> ref = mapKeyToSchema.get(key);
-            if (ref != null) {
-                schema = ref.get();
-                if (schema != null) {
-                    mapMd5ToSchema.remove(schema.getChecksum());
-                }
+        Reference<RolapSchema> ref = mapKeyToSchema.remove(key);
+        if (ref != null) {
+            schema = ref.get();
+            if (schema != null && schema.getChecksum() != null) {
+                mapMd5ToSchema.remove(schema.getChecksum());
             }
-            mapKeyToSchema.remove(key);
-        } finally {
-            lock.writeLock().unlock();
         }
 
         if (schema != null) {
@@ -485,27 +626,24 @@ class RolapSchemaPool {
     }
 
     void clear() {
-        lock.writeLock().lock();
         List<RolapSchema> schemas = new ArrayList<RolapSchema>();
-        try {
-            if (RolapSchema.LOGGER.isDebugEnabled()) {
-                RolapSchema.LOGGER.debug(
-                    "Pool.clear: clearing all RolapSchemas");
-            }
+        if (RolapSchema.LOGGER.isDebugEnabled()) {
+            RolapSchema.LOGGER.debug(
+                "Pool.clear: clearing all RolapSchemas");
+        }
 
-            for (Reference<RolapSchema> ref : mapKeyToSchema.values()) {
-                if (ref != null) {
-                    RolapSchema schema = ref.get();
-                    if (schema != null) {
-                        schemas.add(schema);
-                    }
+        for (SchemaKey key : new ArrayList<SchemaKey>(mapKeyToSchema.keySet()))
+        {
+            Reference<RolapSchema> ref = mapKeyToSchema.remove(key);
+            if (ref != null) {
+                RolapSchema schema = ref.get();
+                if (schema != null) {
+                    schemas.add(schema);
                 }
             }
-            mapKeyToSchema.clear();
-            mapMd5ToSchema.clear();
-        } finally {
-            lock.writeLock().unlock();
         }
+        mapMd5ToSchema.clear();
+        failedRefreshes.clear();
 
         for (RolapSchema schema : schemas) {
             schema.finalCleanUp();
@@ -519,27 +657,17 @@ class RolapSchemaPool {
      * @return List of schemas in this pool
      */
     List<RolapSchema> getRolapSchemas() {
-        lock.readLock().lock();
-        try {
-            List<RolapSchema> list = new ArrayList<RolapSchema>();
-            for (RolapSchema schema : Util.GcIterator
-                .over(mapKeyToSchema.values()))
-            {
-                list.add(schema);
-            }
-            return list;
-        } finally {
-            lock.readLock().unlock();
+        List<RolapSchema> list = new ArrayList<RolapSchema>();
+        for (RolapSchema schema : Util.GcIterator
+            .over(mapKeyToSchema.values()))
+        {
+            list.add(schema);
         }
+        return list;
     }
 
     boolean contains(RolapSchema rolapSchema) {
-        lock.readLock().lock();
-        try {
-            return mapKeyToSchema.containsKey(rolapSchema.key);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return mapKeyToSchema.containsKey(rolapSchema.key);
     }
 
     private static <T> String toString(Reference<T> ref) {
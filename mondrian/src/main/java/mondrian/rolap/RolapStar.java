@@ -20,6 +20,7 @@ import mondrian.rolap.sql.SqlQuery;
 import mondrian.server.Locus;
 import mondrian.spi.*;
 import mondrian.util.Bug;
+import mondrian.util.ByteString;
 
 import org.apache.commons.collections.map.ReferenceMap;
 import org.apache.log4j.Logger;
@@ -30,6 +31,7 @@ import java.lang.ref.SoftReference;
 import java.sql.Connection;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
@@ -76,8 +78,11 @@ public class RolapStar {
     /**
      * Partially ordered list of AggStars associated with this RolapStar's fact
      * table.
+     *
+     * <p>Copy-on-write, because aggregate tables may be recognized in a
+     * background thread while queries are iterating over the list.
      */
-    private final List<AggStar> aggStars = new LinkedList<AggStar>();
+    private final List<AggStar> aggStars = new CopyOnWriteArrayList<AggStar>();
 
     private DataSourceChangeListener changeListener;
 
@@ -89,6 +94,18 @@ public class RolapStar {
 
     private final RolapStatisticsCache statisticsCache;
 
+    /**
+     * Chooses among this star's aggregate tables by estimated cost, and
+     * caches its decisions. Must be cleared whenever {@link #aggStars}
+     * changes.
+     */
+    private final AggStarChooser aggStarChooser;
+
+    /**
+     * Checksum that identifies this star's segments in the cache.
+     */
+    private final ByteString checksum;
+
     /**
      * Creates a RolapStar. Please use
      * {@link RolapSchema.RolapStarRegistry#getOrCreateStar} to create a
@@ -111,6 +128,8 @@ public class RolapStar {
         this.sqlQueryDialect = schema.getDialect();
         this.changeListener = schema.getDataSourceChangeListener();
         this.statisticsCache = new RolapStatisticsCache(this);
+        this.aggStarChooser = new AggStarChooser(this);
+        this.checksum = schema.getStarChecksum(factTable.getAlias());
     }
 
     /**
@@ -167,6 +186,49 @@ public class RolapStar {
         return null;
     }
 
+    /**
+     * Looks for an existing cell value in the local cache, and reads it as a
+     * <code>double</code>. Like
+     * {@link #getCellFromCache(CellRequest, RolapAggregationManager.PinSet)},
+     * but does not box the value if the segment holds native values.
+     *
+     * @param request Cell request
+     * @param pinSet Set into which to pin the segment; or null
+     * @param value Array whose first element receives the cell value, or
+     *     {@link mondrian.olap.fun.FunUtil#DoubleNull} if the value is null
+     * @return Whether the cell is in a segment in the local cache
+     * @throws ClassCastException if the value is not numeric
+     */
+    public boolean getCellDoubleFromCache(
+        CellRequest request,
+        RolapAggregationManager.PinSet pinSet,
+        double[] value)
+    {
+        AggregationKey aggregationKey = new AggregationKey(request);
+
+        final Bar bar = localBars.get();
+        for (SegmentWithData segment : Util.GcIterator.over(bar.segmentRefs)) {
+            if (!segment.getConstrainedColumnsBitKey().equals(
+                    request.getConstrainedColumnsBitKey()))
+            {
+                continue;
+            }
+
+            if (!segment.matches(aggregationKey, request.getMeasure())) {
+                continue;
+            }
+
+            if (segment.getCellDouble(request.getSingleValues(), value)) {
+                if (pinSet != null) {
+                    ((AggregationManager.PinSetImpl) pinSet).add(segment);
+                }
+                return true;
+            }
+        }
+        // No segment contains the requested cell.
+        return false;
+    }
+
     public Object getCellFromAllCaches(final CellRequest request) {
         // First, try the local/thread cache.
         Object result = getCellFromCache(request, null);
@@ -422,6 +484,7 @@ public class RolapStar {
      */
     public void prepareToLoadAggregates() {
         aggStars.clear();
+        aggStarChooser.clear();
     }
 
     /**
@@ -432,20 +495,23 @@ public class RolapStar {
      * ties do not matter.
      */
     public void addAggStar(AggStar aggStar) {
+        aggStarChooser.clear();
+
         // Add it before the first AggStar which is larger, if there is one.
         long size = aggStar.getSize();
-        ListIterator<AggStar> lit = aggStars.listIterator();
-        while (lit.hasNext()) {
-            AggStar as = lit.next();
-            if (as.getSize() >= size) {
-                lit.previous();
-                lit.add(aggStar);
-                return;
+        synchronized (aggStars) {
+            int i = 0;
+            for (AggStar as : aggStars) {
+                if (as.getSize() >= size) {
+                    aggStars.add(i, aggStar);
+                    return;
+                }
+                ++i;
             }
-        }
 
-        // There is no larger star. Add at the end of the list.
-        aggStars.add(aggStar);
+            // There is no larger star. Add at the end of the list.
+            aggStars.add(aggStar);
+        }
     }
 
     /**
@@ -453,6 +519,7 @@ public class RolapStar {
      */
     void clearAggStarList() {
         aggStars.clear();
+        aggStarChooser.clear();
     }
 
     /**
@@ -475,6 +542,25 @@ public class RolapStar {
         return aggStars;
     }
 
+    /**
+     * Returns the object that chooses among this RolapStar's aggregate
+     * tables by estimated cost.
+     */
+    public AggStarChooser getAggStarChooser() {
+        return aggStarChooser;
+    }
+
+    /**
+     * Returns the checksum that identifies this star's segments in the
+     * cache. It is the checksum of the schema unless
+     * {@link MondrianProperties#ShareSegmentsAcrossSchemas} is true.
+     *
+     * @see RolapSchema#getStarChecksum(String)
+     */
+    public ByteString getChecksum() {
+        return checksum;
+    }
+
     /**
      * Returns the fact table at the center of this RolapStar.
      *
@@ -1011,6 +1097,17 @@ public class RolapStar {
             return getExpression().getExpression(query);
         }
 
+        /**
+         * Returns the cardinality of this column if it was given in the
+         * schema or has already been computed, or -1 otherwise. Unlike
+         * {@link #getCardinality()}, never queries the database.
+         *
+         * @return Column cardinality, or -1 if not known
+         */
+        public long getCachedCardinality() {
+            return approxCardinality.get();
+        }
+
         /**
          * Get column cardinality from the schema cache if possible;
          * otherwise issue a select count(distinct) query to retrieve
@@ -0,0 +1,206 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap;
+
+import mondrian.calc.TupleCollections;
+import mondrian.calc.TupleList;
+import mondrian.olap.*;
+
+import java.util.*;
+
+/**
+ * Cache of expression results that is shared by all queries on a schema.
+ *
+ * <p>The evaluator stores the result of a cached expression (see
+ * {@link RolapEvaluator#getCachedResult(ExpCacheDescriptor)}) here if it is
+ * valid, that is, if all of the cells it used were in the cache. The key must
+ * identify the expression, the definitions it refers to, the role and the
+ * relevant context; see {@link RolapEvaluator}.
+ *
+ * <p>The cache is bounded by the property
+ * {@link MondrianProperties#SharedExpCacheSize}. Each entry has a weight, the
+ * number of members in a list or 1 for other values, and when the total
+ * weight exceeds the limit, the least recently used entries are removed.
+ *
+ * <p>Each entry remembers the stars of the cube it was computed for, and is
+ * removed when cells of one of those stars are flushed (see
+ * {@link CacheControlImpl}). Because a result may be computed while a flush
+ * is in progress, {@link #put} ignores results that were computed before the
+ * most recent flush.
+ *
+ * <p>Lists are stored as unmodifiable views, because several queries may
+ * read the same list at once.
+ */
+class SharedExpResultCache {
+    private final Map<Object, Entry> map =
+        new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    private long weight;
+
+    /**
+     * Number of flushes so far. A result computed before a flush is not
+     * added to the cache.
+     */
+    private long generation;
+
+    /**
+     * Number of calls to {@link #get} that found a result.
+     */
+    private long hitCount;
+
+    /**
+     * Returns whether the cache is enabled.
+     */
+    static boolean isEnabled() {
+        return MondrianProperties.instance().SharedExpCacheSize.get() > 0;
+    }
+
+    /**
+     * Returns the current generation. The caller should call this method
+     * before it starts computing a result, and pass the value to
+     * {@link #put}.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Returns the number of results in the cache.
+     */
+    synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the result for a key, or null if not present.
+     *
+     * @param key Key
+     * @return Result, or null
+     */
+    synchronized Object get(Object key) {
+        final Entry entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        ++hitCount;
+        return entry.value;
+    }
+
+    /**
+     * Returns the number of calls to {@link #get} that found a result.
+     */
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Adds a result to the cache, if the result can be shared and there has
+     * been no flush since it started to be computed.
+     *
+     * @param key Key
+     * @param value Result
+     * @param stars Stars whose cells the result depends on
+     * @param generation Generation when computation started
+     */
+    synchronized void put(
+        Object key,
+        Object value,
+        Set<RolapStar> stars,
+        long generation)
+    {
+        if (generation != this.generation) {
+            return;
+        }
+        final int maxWeight =
+            MondrianProperties.instance().SharedExpCacheSize.get();
+        final int entryWeight = weigh(value);
+        if (entryWeight <= 0 || entryWeight > maxWeight) {
+            return;
+        }
+        // The producer may still modify its list, so share a copy of it.
+        final Object sharedValue =
+            value instanceof TupleList
+                ? TupleCollections.unmodifiableList(
+                    ((TupleList) value).cloneList(-1))
+                : value;
+        final Entry previous =
+            map.put(key, new Entry(sharedValue, entryWeight, stars));
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entryWeight;
+        final Iterator<Entry> iterator = map.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes the results that depend on any of the given stars.
+     *
+     * @param stars Stars whose cells have been flushed
+     */
+    synchronized void flush(Collection<RolapStar> stars) {
+        ++generation;
+        for (Iterator<Entry> iterator = map.values().iterator();
+            iterator.hasNext();)
+        {
+            final Entry entry = iterator.next();
+            if (!Collections.disjoint(entry.stars, stars)) {
+                weight -= entry.weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all results.
+     */
+    synchronized void clear() {
+        ++generation;
+        map.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the weight of a result, or 0 if the result cannot be shared.
+     * Only lists of members and simple values are shared; other results,
+     * such as the intermediate results of the <code>Rank</code> function,
+     * may refer to the query that created them.
+     */
+    static int weigh(Object value) {
+        if (value instanceof TupleList) {
+            final TupleList list = (TupleList) value;
+            return Math.max(1, list.size() * list.getArity());
+        }
+        if (value instanceof Number
+            || value instanceof String
+            || value instanceof Boolean
+            || value instanceof Member)
+        {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static class Entry {
+        final Object value;
+        final int weight;
+        final Set<RolapStar> stars;
+
+        Entry(Object value, int weight, Set<RolapStar> stars) {
+            this.value = value;
+            this.weight = weight;
+            this.stars = stars;
+        }
+    }
+}
+
+// End SharedExpResultCache.java
@@ -179,6 +179,15 @@ public class SqlStatement {
             if (maxRows > 0) {
                 statement.setMaxRows(maxRows);
             }
+            if (getPurpose() == Purpose.DRILL_THROUGH) {
+                // Drill-through results can be large. Ask the driver to
+                // fetch them in batches, as the client reads them.
+                final int fetchSize =
+                    MondrianProperties.instance().DrillThroughFetchSize.get();
+                if (fetchSize != 0) {
+                    statement.setFetchSize(fetchSize);
+                }
+            }
 
             // First make sure to register with the execution instance.
             if (getPurpose() != Purpose.CELL_SEGMENT) {
@@ -556,6 +565,11 @@ public class SqlStatement {
     public static class MyDelegatingInvocationHandler
         extends DelegatingInvocationHandler
     {
+        /**
+         * Number of rows between checks for cancellation.
+         */
+        private static final int CANCEL_CHECK_INTERVAL = 1000;
+
         private final SqlStatement sqlStatement;
 
         /**
@@ -585,6 +599,37 @@ public class SqlStatement {
         public void close() throws SQLException {
             sqlStatement.close();
         }
+
+        /**
+         * Helper method to implement {@link java.sql.ResultSet#next()}.
+         *
+         * <p>Counts the rows, and every {@link #CANCEL_CHECK_INTERVAL} rows
+         * checks whether the execution has been canceled or has timed out,
+         * so that a client reading a long result can be stopped between
+         * rows.
+         *
+         * @return whether there is another row
+         * @throws SQLException on error, or if canceled
+         */
+        public boolean next() throws SQLException {
+            final ResultSet resultSet = sqlStatement.getResultSet();
+            if (resultSet == null) {
+                throw new SQLException(
+                    "Invalid operation. Statement is closed.");
+            }
+            if (sqlStatement.rowCount % CANCEL_CHECK_INTERVAL == 0) {
+                try {
+                    sqlStatement.locus.execution.checkCancelOrTimeout();
+                } catch (MondrianException e) {
+                    throw new SQLException(e.getMessage(), e);
+                }
+            }
+            if (!resultSet.next()) {
+                return false;
+            }
+            ++sqlStatement.rowCount;
+            return true;
+        }
     }
 
     private enum State {
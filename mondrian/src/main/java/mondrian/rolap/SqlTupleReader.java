@@ -29,6 +29,7 @@ import mondrian.rolap.sql.*;
 import mondrian.server.Execution;
 import mondrian.server.Locus;
 import mondrian.server.monitor.SqlStatementEvent;
+import mondrian.spi.Dialect;
 import mondrian.util.CancellationChecker;
 import mondrian.util.Pair;
 
@@ -85,6 +86,8 @@ public class SqlTupleReader implements TupleReader {
     protected final TupleConstraint constraint;
     List<TargetBase> targets = new ArrayList<TargetBase>();
     int maxRows = 0;
+    int offset = 0;
+    boolean nullsFirst = false;
 
     /**
      * How many members could not be instantiated in this iteration. This
@@ -444,6 +447,7 @@ public class SqlTupleReader implements TupleReader {
         SqlStatement stmt = null;
         final ResultSet resultSet;
         boolean execQuery = (partialResult == null);
+        int skipCount = 0;
         try {
             if (execQuery) {
                 // we're only reading tuples from the targets that are
@@ -459,8 +463,27 @@ public class SqlTupleReader implements TupleReader {
                 String sql = pair.left;
                 List<SqlStatement.Type> types = pair.right;
                 assert sql != null && !sql.equals("");
+                int jdbcMaxRows = maxRows;
+                if (offset > 0) {
+                    // Skip the first rows in SQL if the dialect can,
+                    // otherwise skip them as they are read.
+                    final Dialect dialect =
+                        targetGroup.get(0).getLevel().getHierarchy()
+                            .getRolapSchema().getDialect();
+                    if (maxRows > 0 && dialect.supportsLimitOffset()) {
+                        sql += dialect.generateLimitOffset(offset, maxRows);
+                    } else {
+                        skipCount = offset;
+                        if (maxRows > 0) {
+                            jdbcMaxRows =
+                                (int) Math.min(
+                                    (long) offset + maxRows,
+                                    Integer.MAX_VALUE);
+                        }
+                    }
+                }
                 stmt = RolapUtil.executeQuery(
-                    dataSource, sql, types, maxRows, 0,
+                    dataSource, sql, types, jdbcMaxRows, 0,
                     new SqlStatement.StatementLocus(
                         Locus.peek().execution,
                         "SqlTupleReader.readTuples " + partialTargets,
@@ -493,6 +516,12 @@ public class SqlTupleReader implements TupleReader {
                 if (moreRows) {
                     ++stmt.rowCount;
                 }
+                for (int i = 0; moreRows && i < skipCount; i++) {
+                    moreRows = resultSet.next();
+                    if (moreRows) {
+                        ++stmt.rowCount;
+                    }
+                }
             } else {
                 moreRows = currPartialResultIdx < partialResult.size();
             }
@@ -1467,7 +1496,8 @@ public class SqlTupleReader implements TupleReader {
             } else {
                 if (whichSelect == WhichSelect.ONLY) {
                     sqlQuery.addOrderBy(
-                        keySql, keyAlias, true, false, true, true);
+                        keySql, keyAlias, true, false, true,
+                        !(nullsFirst && i == levelDepth));
                 }
             }
 
@@ -1836,6 +1866,35 @@ public class SqlTupleReader implements TupleReader {
         this.maxRows = maxRows;
     }
 
+    int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Sets the number of rows to skip before reading tuples. Used with
+     * {@link #setMaxRows(int)} to read a range of tuples.
+     *
+     * @param offset Number of rows to skip
+     */
+    void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Sets whether to sort the null key of the target level before the other
+     * keys, rather than after.
+     *
+     * <p>When reading all members, the null member is read last and then
+     * moved to the front (see {@link #bumpNullMember(List)}). When reading
+     * a range, it must be read first, otherwise the range is cut before the
+     * null member is moved, and the range is off by one.
+     *
+     * @param nullsFirst Whether to sort the null key first
+     */
+    void setNullsFirst(boolean nullsFirst) {
+        this.nullsFirst = nullsFirst;
+    }
+
     /**
      * Description of the position of a SELECT statement in a UNION. Queries
      * on virtual cubes tend to generate unions.
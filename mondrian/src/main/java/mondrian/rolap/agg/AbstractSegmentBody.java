@@ -24,6 +24,7 @@ abstract class AbstractSegmentBody implements SegmentBody {
 
     protected final SortedSet<Comparable>[] axisValueSets;
     private final boolean[] nullAxisFlags;
+    private long loadTime;
 
     public AbstractSegmentBody(
         List<Pair<SortedSet<Comparable>, Boolean>> axes)
@@ -47,6 +48,22 @@ abstract class AbstractSegmentBody implements SegmentBody {
         return nullAxisFlags;
     }
 
+    /**
+     * Returns the time, as given by {@link System#currentTimeMillis()}, at
+     * which the statement that read the data of this body started, or 0 if
+     * not known.
+     *
+     * <p>A body contains every row that was committed to the fact table
+     * before that time. Rows committed later may or may not be included.
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    void setLoadTime(long loadTime) {
+        this.loadTime = loadTime;
+    }
+
     public Map<CellKey, Object> getValueMap() {
         return new AbstractMap<CellKey, Object>() {
             public Set<Entry<CellKey, Object>> entrySet() {
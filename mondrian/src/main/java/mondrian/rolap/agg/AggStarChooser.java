@@ -0,0 +1,350 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.Util;
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.StarColumnPredicate;
+import mondrian.rolap.aggmatcher.AggStar;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses, among the aggregate tables of a {@link RolapStar} that can
+ * satisfy a request, the one that is estimated to be cheapest to query.
+ *
+ * <p>The cost of a candidate is an estimate of the number of rows the
+ * database must read from it. It starts from the row count of the
+ * aggregate table, and is reduced by the selectivity of each predicate
+ * whose column is held in the aggregate table itself (and hence can be
+ * used to prune partitions or probe an index). The selectivity of a
+ * predicate is the number of values it allows divided by the cardinality
+ * of its column. Only cardinalities that are already known (given in the
+ * schema, or computed while loading earlier requests) are used, so that
+ * choosing never queries the database; a predicate on a column whose
+ * cardinality is not known yet is assumed to select every row. Predicates
+ * that can only be evaluated after joining to a dimension table do not
+ * reduce the number of rows scanned, and each such join adds a penalty. A
+ * candidate that must be rolled up (grouped) is more expensive than one that
+ * matches exactly.
+ *
+ * <p>Decisions are cached per request shape: the level and measure bit
+ * keys, plus, for each constrained column, the order of magnitude of the
+ * number of values in its predicate and whether its cardinality is known.
+ * The cache is cleared whenever the list of aggregate tables of the star
+ * changes; a decision that was being made while the cache was cleared is
+ * not cached.
+ *
+ * <p>Used by {@link AggregationManager#findAgg} if
+ * {@link MondrianProperties#ChooseAggregateByCost} is true.
+ */
+public class AggStarChooser {
+    private static final Logger LOGGER =
+        Logger.getLogger(AggStarChooser.class);
+
+    /**
+     * Cost multiplier for each dimension table that must be joined to the
+     * aggregate table in order to evaluate the request.
+     */
+    private static final double JOIN_FACTOR = 1.1;
+
+    /**
+     * Cost multiplier for an aggregate table that needs to be rolled up.
+     */
+    private static final double ROLLUP_FACTOR = 1.5;
+
+    /**
+     * Maximum number of request shapes remembered. When exceeded, the cache
+     * is cleared; request shapes are usually few, so this only happens if
+     * predicates vary wildly.
+     */
+    private static final int MAX_CACHE_SIZE = 1000;
+
+    private final RolapStar star;
+
+    private final Map<List<Object>, Choice> cache =
+        new ConcurrentHashMap<List<Object>, Choice>();
+
+    /**
+     * Incremented each time the cache is cleared.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Creates an AggStarChooser.
+     *
+     * @param star Star whose aggregate tables to choose among
+     */
+    public AggStarChooser(RolapStar star) {
+        this.star = star;
+    }
+
+    /**
+     * Forgets all cached decisions. Called when the list of aggregate
+     * tables of the star changes.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * Returns the generation of the cache. A caller reads the generation
+     * before it reads the star's aggregate tables, and passes it to
+     * {@link #choose}.
+     *
+     * @return Generation
+     */
+    int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Returns the cached decision for a request shape, or null if the request
+     * has not been seen before.
+     *
+     * @param key Request shape, as returned by {@link #key}
+     * @return Cached decision, or null
+     */
+    Choice lookup(List<Object> key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Computes the key that identifies the shape of a request.
+     *
+     * @param levelBitKey Levels
+     * @param measureBitKey Measures
+     * @param predicates Predicates, or null
+     * @return Key
+     */
+    List<Object> key(
+        BitKey levelBitKey,
+        BitKey measureBitKey,
+        List<StarColumnPredicate> predicates)
+    {
+        final List<Object> key = new ArrayList<Object>();
+        key.add(levelBitKey);
+        key.add(measureBitKey);
+        if (predicates != null) {
+            for (StarColumnPredicate predicate : predicates) {
+                final RolapStar.Column column =
+                    predicate.getConstrainedColumn();
+                if (column == null) {
+                    continue;
+                }
+                final int valueCount = valueCount(predicate);
+                key.add(column.getBitPosition());
+                key.add(
+                    valueCount < 0
+                        ? -1
+                        : 32 - Integer.numberOfLeadingZeros(valueCount));
+                key.add(column.getCachedCardinality() >= 0);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Chooses the cheapest of a list of candidate aggregate tables, and
+     * records the decision in the cache.
+     *
+     * @param key Request shape, as returned by {@link #key}
+     * @param generation Generation of the cache when the candidates were
+     *     read, as returned by {@link #getGeneration()}; if the cache has
+     *     been cleared since, the decision is not cached
+     * @param candidates Aggregate tables that can satisfy the request, with
+     *     a flag saying whether they need to be rolled up; in the order of
+     *     {@link RolapStar#getAggStars()}
+     * @param levelBitKey Levels
+     * @param predicates Predicates, or null
+     * @return Chosen aggregate table, or {@link Choice#NONE} if there are no
+     *     candidates
+     */
+    Choice choose(
+        List<Object> key,
+        int generation,
+        List<Choice> candidates,
+        BitKey levelBitKey,
+        List<StarColumnPredicate> predicates)
+    {
+        Choice best = null;
+        double bestCost = Double.MAX_VALUE;
+        final StringBuilder buf =
+            LOGGER.isDebugEnabled() ? new StringBuilder() : null;
+        for (Choice candidate : candidates) {
+            final double cost =
+                cost(candidate.aggStar, candidate.rollup, levelBitKey,
+                    predicates);
+            if (buf != null) {
+                buf.append(Util.nl)
+                    .append("   ")
+                    .append(candidate.aggStar.getFactTable().getName())
+                    .append(" rollup=")
+                    .append(candidate.rollup)
+                    .append(" cost=")
+                    .append(cost);
+            }
+            // Strict comparison, so that ties are resolved by the order of
+            // the candidates, which is the order of getAggStars().
+            if (best == null || cost < bestCost) {
+                best = candidate;
+                bestCost = cost;
+            }
+        }
+        if (best == null) {
+            best = Choice.NONE;
+        }
+        if (buf != null) {
+            LOGGER.debug(
+                "Choosing aggregate table for "
+                + star.getFactTable().getAlias()
+                + " levels=" + levelBitKey
+                + ", shape=" + key
+                + buf
+                + Util.nl
+                + "   chose "
+                + (best.aggStar == null
+                    ? "fact table"
+                    : best.aggStar.getFactTable().getName()));
+        }
+        if (cache.size() >= MAX_CACHE_SIZE) {
+            cache.clear();
+        }
+        cache.put(key, best);
+        if (this.generation.get() != generation) {
+            // The aggregate tables changed while we were choosing. clear()
+            // increments the generation before it clears the cache, so
+            // either it removed our entry or we see the new generation.
+            cache.remove(key, best);
+        }
+        return best;
+    }
+
+    /**
+     * Estimates the cost of reading a request from an aggregate table.
+     *
+     * @param aggStar Aggregate table
+     * @param rollup Whether the aggregate table must be rolled up
+     * @param levelBitKey Levels
+     * @param predicates Predicates, or null
+     * @return Estimated cost
+     */
+    double cost(
+        AggStar aggStar,
+        boolean rollup,
+        BitKey levelBitKey,
+        List<StarColumnPredicate> predicates)
+    {
+        final AggStar.FactTable factTable = aggStar.getFactTable();
+        final long rowCount = factTable.getNumberOfRows();
+        if (rowCount < 0) {
+            // Unknown size. Rank after every candidate whose size is known.
+            return Double.MAX_VALUE / 2;
+        }
+        double rows = rowCount;
+        if (MondrianProperties.instance().ChooseAggregateByVolume.get()) {
+            rows *= Math.max(1L, factTable.getTotalColumnSize());
+        }
+        if (predicates != null) {
+            for (StarColumnPredicate predicate : predicates) {
+                final RolapStar.Column column =
+                    predicate.getConstrainedColumn();
+                if (column == null) {
+                    continue;
+                }
+                final AggStar.Table.Column aggColumn =
+                    aggStar.lookupColumn(column.getBitPosition());
+                if (aggColumn != null && aggColumn.getTable() == factTable) {
+                    rows *= selectivity(column, predicate);
+                }
+            }
+        }
+        double cost = rows;
+        final Set<AggStar.Table> joinedTables = new HashSet<AggStar.Table>();
+        for (int bitPos = levelBitKey.nextSetBit(0); bitPos >= 0;
+            bitPos = levelBitKey.nextSetBit(bitPos + 1))
+        {
+            final AggStar.Table.Column aggColumn =
+                aggStar.lookupColumn(bitPos);
+            if (aggColumn != null
+                && aggColumn.getTable() != factTable
+                && joinedTables.add(aggColumn.getTable()))
+            {
+                cost *= JOIN_FACTOR;
+            }
+        }
+        if (rollup) {
+            cost *= ROLLUP_FACTOR;
+        }
+        return cost;
+    }
+
+    /**
+     * Estimates the fraction of rows of a table that satisfy a predicate.
+     * Returns 1 if the predicate's values cannot be enumerated or the
+     * column's cardinality is not known yet.
+     */
+    private static double selectivity(
+        RolapStar.Column column,
+        StarColumnPredicate predicate)
+    {
+        final int valueCount = valueCount(predicate);
+        if (valueCount < 0) {
+            return 1d;
+        }
+        final long cardinality = column.getCachedCardinality();
+        if (cardinality <= 0) {
+            return 1d;
+        }
+        return Math.min(1d, (double) Math.max(1, valueCount) / cardinality);
+    }
+
+    /**
+     * Returns the number of values allowed by a predicate, or -1 if the
+     * predicate does not constrain its column to a list of values.
+     */
+    private static int valueCount(StarColumnPredicate predicate) {
+        if (predicate instanceof LiteralStarPredicate) {
+            return -1;
+        }
+        if (predicate instanceof ValueColumnPredicate) {
+            return 1;
+        }
+        if (predicate instanceof ListColumnPredicate) {
+            return ((ListColumnPredicate) predicate).getPredicates().size();
+        }
+        return -1;
+    }
+
+    /**
+     * Decision of the chooser: an aggregate table, and whether it needs to
+     * be rolled up.
+     */
+    static class Choice {
+        static final Choice NONE = new Choice(null, false);
+
+        final AggStar aggStar;
+        final boolean rollup;
+
+        Choice(AggStar aggStar, boolean rollup) {
+            this.aggStar = aggStar;
+            this.rollup = rollup;
+        }
+    }
+}
+
+// End AggStarChooser.java
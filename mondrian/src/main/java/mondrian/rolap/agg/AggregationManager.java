@@ -16,6 +16,7 @@ import mondrian.olap.*;
 import mondrian.rolap.*;
 import mondrian.rolap.SqlStatement.Type;
 import mondrian.rolap.aggmatcher.AggStar;
+import mondrian.rolap.cache.MemorySegmentCache;
 import mondrian.server.Locus;
 import mondrian.util.Pair;
 
@@ -143,6 +144,28 @@ public class AggregationManager extends RolapAggregationManager {
                 }
             }
 
+            protected void refreshNonUnion(
+                final CellRegion region,
+                long appendTime)
+            {
+                final SegmentCacheManager.RefreshResult result =
+                    cacheMgr.execute(
+                        new SegmentCacheManager.RefreshCommand(
+                            Locus.peek(),
+                            cacheMgr,
+                            region,
+                            this));
+                final List<Future<Boolean>> futures =
+                    new ArrayList<Future<Boolean>>();
+                for (Callable<Boolean> task : result.tasks) {
+                    futures.add(cacheMgr.cacheExecutor.submit(task));
+                }
+                for (Future<Boolean> future : futures) {
+                    Util.discard(Util.safeGet(future, "Refresh cache"));
+                }
+                cacheMgr.mergeAppended(result, appendTime);
+            }
+
             public void flush(final CellRegion region) {
                 if (pw != null) {
                     pw.println("Cache state before flush:");
@@ -184,6 +207,27 @@ public class AggregationManager extends RolapAggregationManager {
         return measure.getStar().getCellFromCache(request, pinSet);
     }
 
+    /**
+     * Reads a cell from the local cache as a <code>double</code>, without
+     * boxing it.
+     *
+     * @param request Cell request
+     * @param pinSet Set into which to pin the segment; or null
+     * @param value Array whose first element receives the cell value
+     * @return Whether the cell is in the local cache
+     *
+     * @see RolapStar#getCellDoubleFromCache
+     */
+    public boolean getCellDoubleFromCache(
+        CellRequest request,
+        PinSet pinSet,
+        double[] value)
+    {
+        final RolapStar.Measure measure = request.getMeasure();
+        return measure.getStar().getCellDoubleFromCache(
+            request, pinSet, value);
+    }
+
     public Object getCellFromAllCaches(CellRequest request) {
         final RolapStar.Measure measure = request.getMeasure();
         return measure.getStar().getCellFromAllCaches(request);
@@ -238,7 +282,11 @@ public class AggregationManager extends RolapAggregationManager {
              && !hasCompoundPredicates)
         {
             final boolean[] rollup = {false};
-            AggStar aggStar = findAgg(star, levelBitKey, measureBitKey, rollup);
+            AggStar aggStar =
+                findAgg(
+                    star, levelBitKey, measureBitKey,
+                    Arrays.asList(groupingSetsList.getDefaultPredicates()),
+                    rollup);
 
             if (aggStar != null) {
                 // Got a match, hot damn
@@ -344,6 +392,36 @@ public class AggregationManager extends RolapAggregationManager {
         final BitKey levelBitKey,
         final BitKey measureBitKey,
         boolean[] rollup)
+    {
+        return findAgg(star, levelBitKey, measureBitKey, null, rollup);
+    }
+
+    /**
+     * Finds an aggregate table in the given star which has the desired levels
+     * and measures, taking into account the predicates of the request.
+     * Returns null if no aggregate table is suitable.
+     *
+     * <p>If {@link MondrianProperties#ChooseAggregateByCost} is false, returns
+     * the first suitable aggregate table, in the order of
+     * {@link RolapStar#getAggStars()}. Otherwise, returns the suitable
+     * aggregate table with the lowest estimated cost, as determined by the
+     * star's {@link AggStarChooser}; the predicates are used to estimate how
+     * many rows of each aggregate table need to be read.
+     *
+     * @param star Star
+     * @param levelBitKey Set of levels
+     * @param measureBitKey Set of measures
+     * @param predicates Predicates on the columns of the request, or null
+     * @param rollup Out parameter, is set to true if the aggregate is not
+     *   an exact match
+     * @return An aggregate, or null if none is suitable.
+     */
+    public static AggStar findAgg(
+        RolapStar star,
+        final BitKey levelBitKey,
+        final BitKey measureBitKey,
+        List<StarColumnPredicate> predicates,
+        boolean[] rollup)
     {
         // If there is no distinct count measure, isDistinct == false,
         // then all we want is an AggStar whose BitKey is a superset
@@ -361,149 +439,208 @@ public class AggregationManager extends RolapAggregationManager {
         final BitKey expandedLevelBitKey = expandLevelBitKey(
             star, levelBitKey.copy());
 
-        // The AggStars are already ordered from smallest to largest so
-        // we need only find the first one and return it.
-        for (AggStar aggStar : star.getAggStars()) {
-            // superset match
-            if (!aggStar.superSetMatch(fullBitKey)) {
-                continue;
-            }
-            boolean isDistinct = measureBitKey.intersects(
-                aggStar.getDistinctMeasureBitKey());
-
-            // The AggStar has no "distinct count" measures so
-            // we can use it without looking any further.
-            if (!isDistinct) {
-                // Need to use SUM if the query levels don't match
-                // the agg stars levels, or if the agg star is not
-                // fully collapsed.
-                rollup[0] = !aggStar.isFullyCollapsed()
-                    || aggStar.hasIgnoredColumns()
-                    || (levelBitKey.isEmpty()
-                    || !aggStar.getLevelBitKey().equals(levelBitKey));
-                return aggStar;
-            } else if (aggStar.hasIgnoredColumns()) {
-                // we cannot safely pull a distinct count from an agg
-                // table if ignored columns are present since granularity
-                // may not be at the level of the dc measure
-                LOGGER.info(
-                    aggStar.getFactTable().getName()
-                    + " cannot be used for distinct-count measures since it has"
-                    + " unused or ignored columns.");
-                continue;
+        if (!properties.ChooseAggregateByCost.get()) {
+            // The AggStars are already ordered from smallest to largest so
+            // we need only find the first one and return it.
+            for (AggStar aggStar : star.getAggStars()) {
+                if (matches(
+                        aggStar, levelBitKey, measureBitKey, fullBitKey,
+                        expandedLevelBitKey, rollup))
+                {
+                    return aggStar;
+                }
             }
+            return null;
+        }
 
-            // If there are distinct measures, we can only rollup in limited
-            // circumstances.
-
-            // No foreign keys (except when its used as a distinct count
-            //   measure).
-            // Level key exact match.
-            // Measure superset match.
-
-            // Compute the core levels -- those which can be safely
-            // rolled up to. For example,
-            // if the measure is 'distinct customer count',
-            // and the agg table has levels customer_id,
-            // then gender is a core level.
-            final BitKey distinctMeasuresBitKey =
-                measureBitKey.and(aggStar.getDistinctMeasureBitKey());
-            final BitSet distinctMeasures = distinctMeasuresBitKey.toBitSet();
-            BitKey combinedLevelBitKey = null;
-            for (int k = distinctMeasures.nextSetBit(0); k >= 0;
-                k = distinctMeasures.nextSetBit(k + 1))
-            {
-                final AggStar.FactTable.Measure distinctMeasure =
-                    aggStar.lookupMeasure(k);
-                BitKey rollableLevelBitKey =
-                    distinctMeasure.getRollableLevelBitKey();
-                if (combinedLevelBitKey == null) {
-                    combinedLevelBitKey = rollableLevelBitKey;
-                } else {
-                    // TODO use '&=' to remove unnecessary copy
-                    combinedLevelBitKey =
-                        combinedLevelBitKey.and(rollableLevelBitKey);
+        // Choose among all matching AggStars by estimated cost. Decisions
+        // are cached per request shape.
+        final AggStarChooser chooser = star.getAggStarChooser();
+        final int generation = chooser.getGeneration();
+        final List<Object> key =
+            chooser.key(levelBitKey, measureBitKey, predicates);
+        AggStarChooser.Choice choice = chooser.lookup(key);
+        if (choice == null) {
+            final List<AggStarChooser.Choice> candidates =
+                new ArrayList<AggStarChooser.Choice>();
+            for (AggStar aggStar : star.getAggStars()) {
+                final boolean[] candidateRollup = {false};
+                if (matches(
+                        aggStar, levelBitKey, measureBitKey, fullBitKey,
+                        expandedLevelBitKey, candidateRollup))
+                {
+                    candidates.add(
+                        new AggStarChooser.Choice(
+                            aggStar, candidateRollup[0]));
                 }
             }
+            choice =
+                chooser.choose(
+                    key, generation, candidates, levelBitKey, predicates);
+        }
+        rollup[0] = choice.rollup;
+        return choice.aggStar;
+    }
+
+    /**
+     * Returns whether an aggregate table can satisfy a request for the given
+     * levels and measures.
+     *
+     * @param aggStar Aggregate table
+     * @param levelBitKey Set of levels
+     * @param measureBitKey Set of measures
+     * @param fullBitKey Union of levels and measures
+     * @param expandedLevelBitKey Set of levels, with parent levels added
+     * @param rollup Out parameter, is set to true if the aggregate is not
+     *   an exact match
+     * @return Whether the aggregate table is suitable
+     */
+    private static boolean matches(
+        AggStar aggStar,
+        BitKey levelBitKey,
+        BitKey measureBitKey,
+        BitKey fullBitKey,
+        BitKey expandedLevelBitKey,
+        boolean[] rollup)
+    {
+        // superset match
+        if (!aggStar.superSetMatch(fullBitKey)) {
+            return false;
+        }
+        boolean isDistinct = measureBitKey.intersects(
+            aggStar.getDistinctMeasureBitKey());
+
+        // The AggStar has no "distinct count" measures so
+        // we can use it without looking any further.
+        if (!isDistinct) {
+            // Need to use SUM if the query levels don't match
+            // the agg stars levels, or if the agg star is not
+            // fully collapsed.
+            rollup[0] = !aggStar.isFullyCollapsed()
+                || aggStar.hasIgnoredColumns()
+                || (levelBitKey.isEmpty()
+                || !aggStar.getLevelBitKey().equals(levelBitKey));
+            return true;
+        } else if (aggStar.hasIgnoredColumns()) {
+            // we cannot safely pull a distinct count from an agg
+            // table if ignored columns are present since granularity
+            // may not be at the level of the dc measure
+            LOGGER.info(
+                aggStar.getFactTable().getName()
+                + " cannot be used for distinct-count measures since it has"
+                + " unused or ignored columns.");
+            return false;
+        }
+
+        // If there are distinct measures, we can only rollup in limited
+        // circumstances.
+
+        // No foreign keys (except when its used as a distinct count
+        //   measure).
+        // Level key exact match.
+        // Measure superset match.
+
+        // Compute the core levels -- those which can be safely
+        // rolled up to. For example,
+        // if the measure is 'distinct customer count',
+        // and the agg table has levels customer_id,
+        // then gender is a core level.
+        final BitKey distinctMeasuresBitKey =
+            measureBitKey.and(aggStar.getDistinctMeasureBitKey());
+        final BitSet distinctMeasures = distinctMeasuresBitKey.toBitSet();
+        BitKey combinedLevelBitKey = null;
+        for (int k = distinctMeasures.nextSetBit(0); k >= 0;
+            k = distinctMeasures.nextSetBit(k + 1))
+        {
+            final AggStar.FactTable.Measure distinctMeasure =
+                aggStar.lookupMeasure(k);
+            BitKey rollableLevelBitKey =
+                distinctMeasure.getRollableLevelBitKey();
+            if (combinedLevelBitKey == null) {
+                combinedLevelBitKey = rollableLevelBitKey;
+            } else {
+                // TODO use '&=' to remove unnecessary copy
+                combinedLevelBitKey =
+                    combinedLevelBitKey.and(rollableLevelBitKey);
+            }
+        }
 
-            if (aggStar.hasForeignKeys()) {
+        if (aggStar.hasForeignKeys()) {
 /*
-                    StringBuilder buf = new StringBuilder(256);
-                    buf.append("");
-                    buf.append(star.getFactTable().getAlias());
-                    buf.append(Util.nl);
-                    buf.append("foreign =");
-                    buf.append(levelBitKey);
-                    buf.append(Util.nl);
-                    buf.append("measure =");
-                    buf.append(measureBitKey);
-                    buf.append(Util.nl);
-                    buf.append("aggstar =");
-                    buf.append(aggStar.getBitKey());
-                    buf.append(Util.nl);
-                    buf.append("distinct=");
-                    buf.append(aggStar.getDistinctMeasureBitKey());
-                    buf.append(Util.nl);
-                    buf.append("AggStar=");
-                    buf.append(aggStar.getFactTable().getName());
+                StringBuilder buf = new StringBuilder(256);
+                buf.append("");
+                buf.append(star.getFactTable().getAlias());
+                buf.append(Util.nl);
+                buf.append("foreign =");
+                buf.append(levelBitKey);
+                buf.append(Util.nl);
+                buf.append("measure =");
+                buf.append(measureBitKey);
+                buf.append(Util.nl);
+                buf.append("aggstar =");
+                buf.append(aggStar.getBitKey());
+                buf.append(Util.nl);
+                buf.append("distinct=");
+                buf.append(aggStar.getDistinctMeasureBitKey());
+                buf.append(Util.nl);
+                buf.append("AggStar=");
+                buf.append(aggStar.getFactTable().getName());
+                buf.append(Util.nl);
+                for (Iterator columnIter =
+                        aggStar.getFactTable().getColumns().iterator();
+                     columnIter.hasNext();) {
+                    AggStar.Table.Column column =
+                            (AggStar.Table.Column) columnIter.next();
+                    buf.append("   ");
+                    buf.append(column);
                     buf.append(Util.nl);
-                    for (Iterator columnIter =
-                            aggStar.getFactTable().getColumns().iterator();
-                         columnIter.hasNext();) {
-                        AggStar.Table.Column column =
-                                (AggStar.Table.Column) columnIter.next();
-                        buf.append("   ");
-                        buf.append(column);
-                        buf.append(Util.nl);
-                    }
+                }
 System.out.println(buf.toString());
 */
-                // This is a little pessimistic. If the measure is
-                // 'count(distinct customer_id)' and one of the foreign keys is
-                // 'customer_id' then it is OK to roll up.
-
-                // Some of the measures in this query are distinct count.
-                // Get all of the foreign key columns.
-                // For each such measure, is it based upon a foreign key.
-                // Are there any foreign keys left over. No, can use AggStar.
-                BitKey fkBitKey = aggStar.getForeignKeyBitKey().copy();
-                for (AggStar.FactTable.Measure measure
-                    : aggStar.getFactTable().getMeasures())
-                {
-                    if (measure.isDistinct()) {
-                        if (measureBitKey.get(measure.getBitPosition())) {
-                            fkBitKey.clear(measure.getBitPosition());
-                        }
+            // This is a little pessimistic. If the measure is
+            // 'count(distinct customer_id)' and one of the foreign keys is
+            // 'customer_id' then it is OK to roll up.
+
+            // Some of the measures in this query are distinct count.
+            // Get all of the foreign key columns.
+            // For each such measure, is it based upon a foreign key.
+            // Are there any foreign keys left over. No, can use AggStar.
+            BitKey fkBitKey = aggStar.getForeignKeyBitKey().copy();
+            for (AggStar.FactTable.Measure measure
+                : aggStar.getFactTable().getMeasures())
+            {
+                if (measure.isDistinct()) {
+                    if (measureBitKey.get(measure.getBitPosition())) {
+                        fkBitKey.clear(measure.getBitPosition());
                     }
                 }
-                if (!fkBitKey.isEmpty()) {
-                    // there are foreign keys left so we can not use this
-                    // AggStar.
-                    continue;
-                }
             }
-
-            // We can use the expandedLevelBitKey here because
-            // presence of parent level columns won't effect granularity,
-            // so will still be an allowable agg match
-            if (!aggStar.select(
-                    expandedLevelBitKey, combinedLevelBitKey, measureBitKey))
-            {
-                continue;
+            if (!fkBitKey.isEmpty()) {
+                // there are foreign keys left so we can not use this
+                // AggStar.
+                return false;
             }
+        }
 
-            if (expandedLevelBitKey.isEmpty()) {
-                // We won't be able to resolve a distinct count measure like
-                // this. We need to resolve the distinct values but we don't
-                // have any levels for which we constraint on. This would
-                // result in either a bloated value (non-distinct) or
-                // only the first (non-rolled-up) to be returned.
-                continue;
-            }
-            rollup[0] = !aggStar.getLevelBitKey().equals(expandedLevelBitKey);
-            return aggStar;
+        // We can use the expandedLevelBitKey here because
+        // presence of parent level columns won't effect granularity,
+        // so will still be an allowable agg match
+        if (!aggStar.select(
+                expandedLevelBitKey, combinedLevelBitKey, measureBitKey))
+        {
+            return false;
+        }
+
+        if (expandedLevelBitKey.isEmpty()) {
+            // We won't be able to resolve a distinct count measure like
+            // this. We need to resolve the distinct values but we don't
+            // have any levels for which we constraint on. This would
+            // result in either a bloated value (non-distinct) or
+            // only the first (non-rolled-up) to be returned.
+            return false;
         }
-        return null;
+        rollup[0] = !aggStar.getLevelBitKey().equals(expandedLevelBitKey);
+        return true;
     }
 
     /**
@@ -532,7 +669,7 @@ System.out.println(buf.toString());
     }
 
     public PinSet createPinSet() {
-        return new PinSetImpl();
+        return new PinSetImpl(cacheMgr.localCache);
     }
 
     public void shutdown() {
@@ -547,11 +684,49 @@ System.out.println(buf.toString());
     /**
      * Implementation of {@link mondrian.rolap.RolapAggregationManager.PinSet}
      * using a {@link HashSet}.
+     *
+     * <p>Segments in the set are also pinned in the local segment cache, so
+     * that they are not evicted until the set is cleared or becomes
+     * unreachable.
      */
     public static class PinSetImpl
         extends HashSet<Segment>
         implements RolapAggregationManager.PinSet
     {
+        private final MemorySegmentCache.Pins pins;
+
+        /**
+         * Creates a PinSetImpl.
+         *
+         * @param cache Local segment cache, or null
+         */
+        public PinSetImpl(MemorySegmentCache cache) {
+            this.pins = cache == null ? null : cache.createPins(this);
+        }
+
+        @Override
+        public boolean add(Segment segment) {
+            if (!super.add(segment)) {
+                return false;
+            }
+            if (pins != null) {
+                pins.pin(segment.getHeader());
+            }
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Also releases the segments' pins in the local segment cache.
+         */
+        @Override
+        public void clear() {
+            super.clear();
+            if (pins != null) {
+                pins.release();
+            }
+        }
     }
 }
 
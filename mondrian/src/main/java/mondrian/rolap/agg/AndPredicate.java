@@ -150,6 +150,32 @@ public class AndPredicate extends ListPredicate {
         if (multiValueInList) {
             buf.append("(");
         }
+        for (ValueColumnPredicate predicate
+            : getInListPredicates(inListRHSBitKey))
+        {
+            if (firstValue) {
+                firstValue = false;
+            } else {
+                buf.append(", ");
+            }
+            sqlQuery.getDialect().quote(
+                buf, predicate.getValue(),
+                predicate.getConstrainedColumn().getDatatype());
+        }
+        if (multiValueInList) {
+            buf.append(")");
+        }
+    }
+
+    /**
+     * Returns the children of this predicate whose columns are in an IN
+     * list, sorted by the bit position of their column.
+     *
+     * @param inListRHSBitKey Columns in the IN list
+     * @return Predicates, in the order in which the columns of the IN list
+     *     are generated
+     */
+    Set<ValueColumnPredicate> getInListPredicates(BitKey inListRHSBitKey) {
          // Arranging children according to the bit position. This is required
          // as RHS of IN list needs to list the column values in the same order.
         Set<ValueColumnPredicate> sortedPredicates =
@@ -166,20 +192,7 @@ public class AndPredicate extends ListPredicate {
                 sortedPredicates.add((ValueColumnPredicate)predicate);
             }
         }
-
-        for (ValueColumnPredicate predicate : sortedPredicates) {
-            if (firstValue) {
-                firstValue = false;
-            } else {
-                buf.append(", ");
-            }
-            sqlQuery.getDialect().quote(
-                buf, predicate.getValue(),
-                predicate.getConstrainedColumn().getDatatype());
-        }
-        if (multiValueInList) {
-            buf.append(")");
-        }
+        return sortedPredicates;
     }
 
     protected String getOp() {
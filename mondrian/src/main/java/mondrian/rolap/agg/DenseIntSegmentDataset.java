@@ -10,6 +10,7 @@
 package mondrian.rolap.agg;
 
 import mondrian.olap.Util;
+import mondrian.olap.fun.FunUtil;
 import mondrian.rolap.CellKey;
 import mondrian.rolap.SqlStatement;
 import mondrian.spi.SegmentBody;
@@ -80,6 +81,18 @@ class DenseIntSegmentDataset extends DenseNativeSegmentDataset {
         return value;
     }
 
+    double getDoubleOrNull(CellKey pos) {
+        if (values.length == 0) {
+            return FunUtil.DoubleNull;
+        }
+        final int offset = pos.getOffset(axisMultipliers);
+        final int value = values[offset];
+        if (value == 0 && isNull(offset)) {
+            return FunUtil.DoubleNull;
+        }
+        return value;
+    }
+
     public boolean exists(CellKey pos) {
         return true;
     }
@@ -13,6 +13,7 @@
 
 package mondrian.rolap.agg;
 
+import mondrian.olap.fun.FunUtil;
 import mondrian.rolap.CellKey;
 
 import java.util.BitSet;
@@ -60,6 +61,15 @@ abstract class DenseNativeSegmentDataset extends DenseSegmentDataset {
     protected final boolean isNull(int offset) {
         return nullValues.get(offset);
     }
+
+    /**
+     * Returns the value at a given coordinate as a <code>double</code>,
+     * without boxing it.
+     *
+     * @param pos Coordinate position
+     * @return Value, or {@link FunUtil#DoubleNull} if the value is null
+     */
+    abstract double getDoubleOrNull(CellKey pos);
 }
 
 // End DenseNativeSegmentDataset.java
@@ -9,8 +9,10 @@
 
 package mondrian.rolap.agg;
 
+import mondrian.olap.MondrianProperties;
 import mondrian.rolap.*;
 import mondrian.rolap.sql.SqlQuery;
+import mondrian.spi.Dialect;
 
 import java.util.*;
 
@@ -193,6 +195,14 @@ public class OrPredicate extends ListPredicate {
         }
         buf.append(" in (");
 
+        if (useInlineTable(sqlQuery, predicateList.size())) {
+            toInlineTableSql(
+                sqlQuery, buf, inListRhsBitKey, columnMap, predicateList);
+            buf.append(")");
+            buf.append(")");
+            return;
+        }
+
         boolean firstPredicate = true;
         for (StarPredicate predicate : predicateList) {
             if (firstPredicate) {
@@ -213,6 +223,93 @@ public class OrPredicate extends ListPredicate {
         buf.append(")");
     }
 
+    /**
+     * Returns whether to generate the right-hand side of an IN list as an
+     * inline table. We do this if the list is longer than the DBMS allows
+     * and large sets are being pushed down to SQL (see
+     * {@link MondrianProperties#AggregatePushdownThreshold}).
+     *
+     * @param sqlQuery Query
+     * @param valueCount Number of values (or tuples of values) in the list
+     * @return Whether to generate an inline table
+     */
+    private static boolean useInlineTable(SqlQuery sqlQuery, int valueCount) {
+        final MondrianProperties properties = MondrianProperties.instance();
+        return properties.AggregatePushdownThreshold.get() > 0
+            && valueCount > properties.MaxConstraints.get()
+            && !sqlQuery.getDialect().supportsUnlimitedValueList();
+    }
+
+    /**
+     * Generates the right-hand side of an IN list as an inline table, for
+     * example <code>SELECT * FROM (VALUES (1, 'a'), (2, 'b')) AS t (c0,
+     * c1)</code>. The syntax depends on the dialect; see
+     * {@link mondrian.spi.Dialect#generateInline}.
+     */
+    private void toInlineTableSql(
+        SqlQuery sqlQuery,
+        StringBuilder buf,
+        BitKey inListRhsBitKey,
+        Map<Integer, RolapStar.Column> columnMap,
+        List<StarPredicate> predicateList)
+    {
+        final List<String> columnNames = new ArrayList<String>();
+        final List<String> columnTypes = new ArrayList<String>();
+        for (Integer colPos : inListRhsBitKey) {
+            final Dialect.Datatype datatype =
+                columnMap.get(colPos).getDatatype();
+            columnNames.add("c" + columnNames.size());
+            columnTypes.add(
+                datatype == null
+                    ? Dialect.Datatype.String.name()
+                    : datatype.name());
+        }
+        final List<String[]> valueList =
+            new ArrayList<String[]>(predicateList.size());
+        for (StarPredicate predicate : predicateList) {
+            final String[] values = new String[columnNames.size()];
+            if (predicate instanceof AndPredicate) {
+                int i = 0;
+                for (ValueColumnPredicate valuePredicate
+                    : ((AndPredicate) predicate).getInListPredicates(
+                        inListRhsBitKey))
+                {
+                    values[i++] =
+                        toInlineValue(sqlQuery, valuePredicate.getValue());
+                }
+            } else {
+                assert predicate instanceof ValueColumnPredicate;
+                values[0] =
+                    toInlineValue(
+                        sqlQuery,
+                        ((ValueColumnPredicate) predicate).getValue());
+            }
+            valueList.add(values);
+        }
+        buf.append(
+            sqlQuery.getDialect().generateInline(
+                columnNames, columnTypes, valueList));
+    }
+
+    /**
+     * Converts a column value to the string that
+     * {@link mondrian.spi.Dialect#generateInline} passes to
+     * {@link mondrian.spi.Dialect#quote}, so that the value is rendered as
+     * {@link ValueColumnPredicate#toInListSql} would render it. In
+     * particular, a null value remains null, rather than becoming the string
+     * "null", and a double gets the exponent that some dialects require.
+     */
+    private static String toInlineValue(SqlQuery sqlQuery, Object value) {
+        if (value == null) {
+            return null;
+        }
+        final String valueString = value.toString();
+        if (sqlQuery.getDialect().needsExponent(value, valueString)) {
+            return valueString + "E0";
+        }
+        return valueString;
+    }
+
     public void toSql(SqlQuery sqlQuery, StringBuilder buf) {
         //
         // If possible, translate the predicate using IN lists.
@@ -122,35 +122,10 @@ public class SegmentBuilder {
         final List<StarColumnPredicate> predicateList =
             new ArrayList<StarColumnPredicate>();
         for (int i = 0; i < constrainedColumns.length; i++) {
-            RolapStar.Column constrainedColumn = constrainedColumns[i];
-            final SortedSet<Comparable> values =
-                header.getConstrainedColumns().get(i).values;
-            StarColumnPredicate predicate;
-            if (values == null) {
-                predicate =
-                    new LiteralStarPredicate(
-                        constrainedColumn,
-                        true);
-            } else if (values.size() == 1) {
-                predicate =
-                    new ValueColumnPredicate(
-                        constrainedColumn,
-                        values.first());
-            } else {
-                final List<StarColumnPredicate> valuePredicateList =
-                    new ArrayList<StarColumnPredicate>();
-                for (Object value : values) {
-                    valuePredicateList.add(
-                        new ValueColumnPredicate(
-                            constrainedColumn,
-                            value));
-                }
-                predicate =
-                    new ListColumnPredicate(
-                        constrainedColumn,
-                        valuePredicateList);
-            }
-            predicateList.add(predicate);
+            predicateList.add(
+                toPredicate(
+                    constrainedColumns[i],
+                    header.getConstrainedColumns().get(i).values));
         }
 
         return new Segment(
@@ -164,6 +139,124 @@ public class SegmentBuilder {
             compoundPredicates);
     }
 
+    /**
+     * Creates a predicate that constrains a column to a set of values.
+     *
+     * @param column Column
+     * @param values Values, or null if the column is not constrained
+     * @return Predicate
+     */
+    private static StarColumnPredicate toPredicate(
+        RolapStar.Column column,
+        SortedSet<Comparable> values)
+    {
+        if (values == null) {
+            return new LiteralStarPredicate(column, true);
+        } else if (values.size() == 1) {
+            return new ValueColumnPredicate(column, values.first());
+        } else {
+            final List<StarColumnPredicate> valuePredicateList =
+                new ArrayList<StarColumnPredicate>();
+            for (Object value : values) {
+                valuePredicateList.add(
+                    new ValueColumnPredicate(column, value));
+            }
+            return new ListColumnPredicate(column, valuePredicateList);
+        }
+    }
+
+    /**
+     * Creates a segment with the same dimensionality as a cached segment, but
+     * whose cells hold only the rows of a region of the fact table. Columns
+     * of the region that are also columns of the segment narrow the segment's
+     * predicates; the others become compound predicates of the new segment.
+     *
+     * <p>Loading the segment yields the values to merge into the cached
+     * segment when rows have been appended to the region; see
+     * {@link #merge}.
+     *
+     * @param header Header of the cached segment
+     * @param measure Measure
+     * @param region Columns and values of the region
+     * @return Segment, or null if a column of the region is not in the
+     *     measure's star
+     */
+    public static Segment toAppendedSegment(
+        SegmentHeader header,
+        RolapStar.Measure measure,
+        SegmentColumn[] region)
+    {
+        final RolapStar star = measure.getStar();
+        final List<SegmentColumn> columns = new ArrayList<SegmentColumn>();
+        for (SegmentColumn column : header.getConstrainedColumns()) {
+            SortedSet<Comparable> values = column.values;
+            for (SegmentColumn regionColumn : region) {
+                if (regionColumn.columnExpression.equals(
+                        column.columnExpression))
+                {
+                    values = values == null
+                        ? regionColumn.values
+                        : Util.intersect(values, regionColumn.values);
+                }
+            }
+            columns.add(
+                new SegmentColumn(
+                    column.columnExpression, column.valueCount, values));
+        }
+        final List<StarPredicate> compoundPredicates =
+            new ArrayList<StarPredicate>();
+        for (SegmentColumn regionColumn : region) {
+            if (header.getConstrainedColumn(regionColumn.columnExpression)
+                != null)
+            {
+                continue;
+            }
+            final RolapStar.Column column =
+                findColumn(star, regionColumn.columnExpression);
+            if (column == null) {
+                return null;
+            }
+            compoundPredicates.add(toPredicate(column, regionColumn.values));
+        }
+        final SegmentHeader appendedHeader =
+            new SegmentHeader(
+                header.schemaName,
+                header.schemaChecksum,
+                header.cubeName,
+                header.measureName,
+                columns,
+                Collections.<String>emptyList(),
+                header.rolapStarFactTableName,
+                header.getConstrainedColumnsBitKey(),
+                Collections.<SegmentColumn>emptyList());
+        return toSegment(
+            appendedHeader,
+            star,
+            header.getConstrainedColumnsBitKey(),
+            getConstrainedColumns(
+                star, header.getConstrainedColumnsBitKey()),
+            measure,
+            compoundPredicates);
+    }
+
+    private static RolapStar.Column findColumn(
+        RolapStar star,
+        String columnExpression)
+    {
+        for (int i = 0; i < star.getColumnCount(); i++) {
+            final RolapStar.Column column = star.getColumn(i);
+            if (column != null
+                && !(column instanceof RolapStar.Measure)
+                && column.getExpression() != null
+                && columnExpression.equals(
+                    column.getExpression().getGenericExpression()))
+            {
+                return column;
+            }
+        }
+        return null;
+    }
+
     /**
      * Given a collection of segments, all of the same dimensionality, rolls up
      * to create a segment with reduced dimensionality.
@@ -376,6 +469,187 @@ public class SegmentBuilder {
                 BigInteger.valueOf(axis.hasNull ? size + 1 : size));
         }
 
+        final SegmentBody body =
+            createBody(
+                cellValues, axisList, bigValueCount, rollupAggregator,
+                datatype);
+
+        // Create header.
+        final List<SegmentColumn> constrainedColumns =
+            new ArrayList<SegmentColumn>();
+        for (int i = 0; i < axes.size(); i++) {
+            AxisInfo axisInfo = axes.get(i);
+
+            constrainedColumns.add(
+                new SegmentColumn(
+                    axisInfo.column.getColumnExpression(),
+                    axisInfo.column.getValueCount(),
+                    axisInfo.lostPredicate
+                        ? axisList.get(i).left
+                        : axisInfo.column.values));
+        }
+        final SegmentHeader header =
+            new SegmentHeader(
+                firstHeader.schemaName,
+                firstHeader.schemaChecksum,
+                firstHeader.cubeName,
+                firstHeader.measureName,
+                constrainedColumns,
+                firstHeader.compoundPredicates,
+                firstHeader.rolapStarFactTableName,
+                targetBitkey,
+                Collections.<SegmentColumn>emptyList());
+        if (LOGGER.isDebugEnabled()) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("Rolling up segments with parameters: \n");
+            builder.append("keepColumns=" + keepColumns + "\n");
+            builder.append("aggregator=" + rollupAggregator + "\n");
+            builder.append("datatype=" + datatype + "\n");
+            for (Map.Entry<SegmentHeader, SegmentBody > segment : segments) {
+                builder.append(segment.getKey() + "\n");
+            }
+            builder.append("AxisInfos constructed:");
+            for (AxisInfo axis : axes) {
+                SortedSet<Comparable> colVals = axis.column.getValues();
+                builder.append(
+                    String.format(
+                        "column.columnExpression=%s\n"
+                        + "column.valueCount=%s\n"
+                        + "column.values=%s\n"
+                        + "requestedValues=%s\n"
+                        + "valueSet=%s\n"
+                        + "values=%s\n"
+                        + "hasNull=%b\n"
+                        + "src=%d\n"
+                        + "lostPredicate=%b\n",
+                        axis.column.columnExpression,
+                        axis.column.getValueCount(),
+                        Arrays.toString(
+                            colVals == null ? null
+                            : colVals.toArray()),
+                        axis.requestedValues,
+                        axis.valueSet,
+                        Arrays.asList(axis.values),
+                        axis.hasNull,
+                        axis.src,
+                        axis.lostPredicate));
+            }
+            builder.append("Resulted in Segment:  \n");
+            builder.append(header);
+            builder.append(body.toString());
+            LOGGER.debug(builder.toString());
+        }
+        return Pair.of(header, body);
+    }
+
+    /**
+     * Merges the cells of a segment with the cells of a segment loaded later,
+     * from rows that have since been appended to the fact table, and returns
+     * the body of the merged segment.
+     *
+     * <p>Both bodies must have the same dimensionality. Cells present in
+     * both are combined using {@code aggregator}, which must be the rollup
+     * aggregator of an additive measure (sum, count, min or max). The axes of
+     * the merged body hold the values of both bodies, so cells for column
+     * values that did not exist before are added.
+     *
+     * @param body Body of the cached segment
+     * @param delta Body of the segment loaded from the appended rows
+     * @param aggregator Aggregator with which to combine cells
+     * @param datatype The data type to use
+     * @return Merged segment body
+     */
+    public static SegmentBody merge(
+        SegmentBody body,
+        SegmentBody delta,
+        Aggregator aggregator,
+        Datatype datatype)
+    {
+        final SortedSet<Comparable>[] valueSets = body.getAxisValueSets();
+        final SortedSet<Comparable>[] deltaValueSets =
+            delta.getAxisValueSets();
+        assert valueSets.length == deltaValueSets.length;
+        final List<Pair<SortedSet<Comparable>, Boolean>> axisList =
+            new ArrayList<Pair<SortedSet<Comparable>, Boolean>>();
+        final Comparable[][] values = new Comparable[valueSets.length][];
+        BigInteger bigValueCount = BigInteger.ONE;
+        for (int i = 0; i < valueSets.length; i++) {
+            final SortedSet<Comparable> valueSet =
+                new TreeSet<Comparable>(valueSets[i]);
+            valueSet.addAll(deltaValueSets[i]);
+            final boolean hasNull =
+                body.getNullAxisFlags()[i] || delta.getNullAxisFlags()[i];
+            axisList.add(Pair.of(valueSet, hasNull));
+            values[i] = valueSet.toArray(new Comparable[valueSet.size()]);
+            bigValueCount = bigValueCount.multiply(
+                BigInteger.valueOf(
+                    hasNull ? values[i].length + 1 : values[i].length));
+        }
+        final Map<CellKey, List<Object>> cellValues =
+            new HashMap<CellKey, List<Object>>();
+        addCells(body, values, cellValues);
+        addCells(delta, values, cellValues);
+        return createBody(
+            cellValues, axisList, bigValueCount, aggregator, datatype);
+    }
+
+    /**
+     * Adds the cells of a segment body to a map of cell values, translating
+     * each cell's ordinals to ordinals in a target set of axis values. The
+     * null value of an axis has an ordinal one greater than the last value.
+     */
+    private static void addCells(
+        SegmentBody body,
+        Comparable[][] targetValues,
+        Map<CellKey, List<Object>> cellValues)
+    {
+        final SortedSet<Comparable>[] valueSets = body.getAxisValueSets();
+        final Comparable[][] sourceValues = new Comparable[valueSets.length][];
+        for (int i = 0; i < valueSets.length; i++) {
+            sourceValues[i] =
+                valueSets[i].toArray(new Comparable[valueSets[i].size()]);
+        }
+        for (Map.Entry<CellKey, Object> entry
+            : body.getValueMap().entrySet())
+        {
+            final int[] ordinals = entry.getKey().getOrdinals();
+            final int[] pos = new int[ordinals.length];
+            for (int i = 0; i < ordinals.length; i++) {
+                pos[i] = ordinals[i] == sourceValues[i].length
+                    ? targetValues[i].length
+                    : Util.binarySearch(
+                        targetValues[i], 0, targetValues[i].length,
+                        sourceValues[i][ordinals[i]]);
+                assert pos[i] >= 0;
+            }
+            final CellKey key = CellKey.Generator.newCellKey(pos);
+            List<Object> list = cellValues.get(key);
+            if (list == null) {
+                list = new ArrayList<Object>(2);
+                cellValues.put(key, list);
+            }
+            list.add(entry.getValue());
+        }
+    }
+
+    /**
+     * Creates a segment body from the values of its cells, aggregating the
+     * values of each cell, and choosing a dense or sparse representation.
+     *
+     * @param cellValues Values of each cell, to be aggregated
+     * @param axisList Values of each axis, and whether it contains null
+     * @param bigValueCount Number of cells in the dense representation
+     * @param aggregator Aggregator
+     * @param datatype The data type to use
+     * @return Segment body
+     */
+    private static SegmentBody createBody(
+        Map<CellKey, List<Object>> cellValues,
+        List<Pair<SortedSet<Comparable>, Boolean>> axisList,
+        BigInteger bigValueCount,
+        Aggregator aggregator,
+        Datatype datatype)
+    {
         // The logic used here for the sparse check follows
         // SegmentLoader.setAxisDataAndDecideSparseUse.
         // The two methods use different data structures (AxisInfo/SegmentAxis)
@@ -408,7 +682,7 @@ public class SegmentBuilder {
             {
                 data.put(
                     CellKey.Generator.newCellKey(entry.getKey().getOrdinals()),
-                    rollupAggregator.aggregate(
+                    aggregator.aggregate(
                         entry.getValue(),
                         datatype));
             }
@@ -430,7 +704,7 @@ public class SegmentBuilder {
                         CellKey.Generator.getOffset(
                             entry.getKey().getOrdinals(), axisMultipliers);
                     final Object value =
-                        rollupAggregator.aggregate(
+                        aggregator.aggregate(
                             entry.getValue(),
                             datatype);
                     if (value != null) {
@@ -454,7 +728,7 @@ public class SegmentBuilder {
                         CellKey.Generator.getOffset(
                             entry.getKey().getOrdinals(), axisMultipliers);
                     final Object value =
-                        rollupAggregator.aggregate(
+                        aggregator.aggregate(
                             entry.getValue(),
                             datatype);
                     if (value != null) {
@@ -477,7 +751,7 @@ public class SegmentBuilder {
                         CellKey.Generator.getOffset(
                             entry.getKey().getOrdinals(), axisMultipliers);
                     objects[offset] =
-                        rollupAggregator.aggregate(
+                        aggregator.aggregate(
                             entry.getValue(),
                             datatype);
                 }
@@ -487,73 +761,7 @@ public class SegmentBuilder {
                         axisList);
             }
         }
-
-        // Create header.
-        final List<SegmentColumn> constrainedColumns =
-            new ArrayList<SegmentColumn>();
-        for (int i = 0; i < axes.size(); i++) {
-            AxisInfo axisInfo = axes.get(i);
-
-            constrainedColumns.add(
-                new SegmentColumn(
-                    axisInfo.column.getColumnExpression(),
-                    axisInfo.column.getValueCount(),
-                    axisInfo.lostPredicate
-                        ? axisList.get(i).left
-                        : axisInfo.column.values));
-        }
-        final SegmentHeader header =
-            new SegmentHeader(
-                firstHeader.schemaName,
-                firstHeader.schemaChecksum,
-                firstHeader.cubeName,
-                firstHeader.measureName,
-                constrainedColumns,
-                firstHeader.compoundPredicates,
-                firstHeader.rolapStarFactTableName,
-                targetBitkey,
-                Collections.<SegmentColumn>emptyList());
-        if (LOGGER.isDebugEnabled()) {
-            StringBuilder builder = new StringBuilder();
-            builder.append("Rolling up segments with parameters: \n");
-            builder.append("keepColumns=" + keepColumns + "\n");
-            builder.append("aggregator=" + rollupAggregator + "\n");
-            builder.append("datatype=" + datatype + "\n");
-            for (Map.Entry<SegmentHeader, SegmentBody > segment : segments) {
-                builder.append(segment.getKey() + "\n");
-            }
-            builder.append("AxisInfos constructed:");
-            for (AxisInfo axis : axes) {
-                SortedSet<Comparable> colVals = axis.column.getValues();
-                builder.append(
-                    String.format(
-                        "column.columnExpression=%s\n"
-                        + "column.valueCount=%s\n"
-                        + "column.values=%s\n"
-                        + "requestedValues=%s\n"
-                        + "valueSet=%s\n"
-                        + "values=%s\n"
-                        + "hasNull=%b\n"
-                        + "src=%d\n"
-                        + "lostPredicate=%b\n",
-                        axis.column.columnExpression,
-                        axis.column.getValueCount(),
-                        Arrays.toString(
-                            colVals == null ? null
-                            : colVals.toArray()),
-                        axis.requestedValues,
-                        axis.valueSet,
-                        Arrays.asList(axis.values),
-                        axis.hasNull,
-                        axis.src,
-                        axis.lostPredicate));
-            }
-            builder.append("Resulted in Segment:  \n");
-            builder.append(header);
-            builder.append(body.toString());
-            LOGGER.debug(builder.toString());
-        }
-        return Pair.of(header, body);
+        return body;
     }
 
     private static List<Comparable> getColumnValsAtCellKey(
@@ -762,7 +970,7 @@ public class SegmentBuilder {
         final RolapSchema schema = segment.star.getSchema();
         return new SegmentHeader(
             schema.getName(),
-            schema.getChecksum(),
+            segment.star.getChecksum(),
             segment.measure.getCubeName(),
             segment.measure.getName(),
             cc,
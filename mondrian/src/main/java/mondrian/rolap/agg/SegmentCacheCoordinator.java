@@ -0,0 +1,269 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.Util;
+import mondrian.rolap.RolapStar;
+import mondrian.spi.SegmentCacheTransport;
+import mondrian.spi.SegmentCacheTransport.Message;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+import mondrian.util.ClassResolver;
+import mondrian.util.ServiceDiscovery;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+
+/**
+ * Keeps the segment cache of this server coherent with those of the other
+ * servers of a cluster, by exchanging messages through a
+ * {@link SegmentCacheTransport}.
+ *
+ * <p>When this server starts loading a segment from SQL, it announces it,
+ * and announces again when the load has finished. If this server needs a
+ * segment that a peer is already loading, and the peer has precedence (its
+ * node id is less than ours), {@link #awaitPeerLoad} waits for the peer to
+ * finish, so that the segment can be read from the shared segment cache
+ * instead of executing the same SQL again. Because only the server with the
+ * lower id waits, two servers never wait for each other.
+ *
+ * <p>When a region is flushed using {@link mondrian.olap.CacheControl}, it
+ * is broadcast, and each peer flushes the region from its own index and its
+ * local cache.
+ */
+class SegmentCacheCoordinator implements SegmentCacheTransport.Listener {
+    private static final Logger LOGGER =
+        Logger.getLogger(SegmentCacheCoordinator.class);
+
+    private final SegmentCacheTransport transport;
+    private final SegmentCacheManager cacheMgr;
+    private final String nodeId;
+
+    /**
+     * For each segment that peers are loading, the peers and when we heard
+     * that they started. Guarded by this.
+     */
+    private final Map<SegmentHeader, Map<String, Long>> peerLoads =
+        new HashMap<SegmentHeader, Map<String, Long>>();
+
+    /**
+     * Creates a SegmentCacheCoordinator.
+     *
+     * @param transport Transport
+     * @param cacheMgr Cache manager that flushes regions that peers have
+     *     flushed; may be null, for testing
+     */
+    SegmentCacheCoordinator(
+        SegmentCacheTransport transport,
+        SegmentCacheManager cacheMgr)
+    {
+        this.transport = transport;
+        this.cacheMgr = cacheMgr;
+        this.nodeId = transport.getNodeId();
+        transport.addListener(this);
+    }
+
+    /**
+     * Creates the transport configured by the
+     * {@link MondrianProperties#SegmentCacheTransport} property or, if it is
+     * not set, the first one declared as a Java service.
+     *
+     * @return Transport, or null if none is configured
+     */
+    static SegmentCacheTransport createTransport() {
+        String className =
+            MondrianProperties.instance().SegmentCacheTransport.get();
+        if (className == null) {
+            final List<Class<SegmentCacheTransport>> implementors =
+                ServiceDiscovery.forClass(SegmentCacheTransport.class)
+                    .getImplementor();
+            if (implementors.isEmpty()) {
+                return null;
+            }
+            className = implementors.get(0).getName();
+        }
+        try {
+            LOGGER.debug("Starting segment cache transport: " + className);
+            return ClassResolver.INSTANCE.instantiateSafe(className);
+        } catch (Exception e) {
+            throw Util.newError(
+                e, "Cannot create segment cache transport " + className);
+        }
+    }
+
+    /**
+     * Announces that this server has started loading a segment.
+     */
+    void loadStarted(SegmentHeader header) {
+        send(Message.load(Message.Type.LOAD_STARTED, nodeId, header));
+    }
+
+    /**
+     * Announces that this server has finished loading a segment, and, if it
+     * succeeded, has put it in the segment cache.
+     */
+    void loadFinished(SegmentHeader header, boolean succeeded) {
+        send(
+            Message.load(
+                succeeded
+                    ? Message.Type.LOAD_SUCCEEDED
+                    : Message.Type.LOAD_FAILED,
+                nodeId,
+                header));
+    }
+
+    /**
+     * Announces that a region of a measure has been flushed.
+     */
+    void flushed(
+        String schemaName,
+        RolapStar star,
+        String cubeName,
+        String measureName,
+        SegmentColumn[] region)
+    {
+        send(
+            Message.flush(
+                nodeId,
+                schemaName,
+                star.getChecksum(),
+                cubeName,
+                measureName,
+                star.getFactTable().getAlias(),
+                region));
+    }
+
+    /**
+     * Returns whether a peer that has precedence over this server is loading
+     * a segment.
+     */
+    synchronized boolean isLoadingOnPeer(SegmentHeader header) {
+        final Map<String, Long> peers = peerLoads.get(header);
+        if (peers == null) {
+            return false;
+        }
+        final long expiry =
+            System.currentTimeMillis() - timeout();
+        for (Iterator<Map.Entry<String, Long>> iterator =
+                 peers.entrySet().iterator();
+             iterator.hasNext();)
+        {
+            final Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getValue() < expiry) {
+                // The peer has probably died.
+                iterator.remove();
+            } else if (entry.getKey().compareTo(nodeId) < 0) {
+                return true;
+            }
+        }
+        if (peers.isEmpty()) {
+            peerLoads.remove(header);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the segments that peers are loading. For testing.
+     */
+    synchronized List<SegmentHeader> getPeerLoads() {
+        return new ArrayList<SegmentHeader>(peerLoads.keySet());
+    }
+
+    /**
+     * Waits until no peer that has precedence over this server is loading a
+     * segment, or until a timeout.
+     *
+     * @param header Segment header
+     * @param deadline Time to stop waiting, as given by
+     *     {@link System#currentTimeMillis()}
+     * @return Whether a peer was loading the segment and has finished; the
+     *     caller should then look for the segment in the cache
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized boolean awaitPeerLoad(SegmentHeader header, long deadline)
+        throws InterruptedException
+    {
+        if (!isLoadingOnPeer(header)) {
+            return false;
+        }
+        while (isLoadingOnPeer(header)) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                LOGGER.debug("Timed out waiting for peer to load " + header);
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the time to wait for a peer, in milliseconds.
+     */
+    static long timeout() {
+        return MondrianProperties.instance().SegmentCachePeerLoadTimeout.get();
+    }
+
+    public void messageReceived(Message message) {
+        switch (message.type) {
+        case LOAD_STARTED:
+            synchronized (this) {
+                Map<String, Long> peers = peerLoads.get(message.header);
+                if (peers == null) {
+                    peers = new HashMap<String, Long>();
+                    peerLoads.put(message.header, peers);
+                }
+                peers.put(message.nodeId, System.currentTimeMillis());
+            }
+            break;
+        case LOAD_SUCCEEDED:
+        case LOAD_FAILED:
+            synchronized (this) {
+                final Map<String, Long> peers =
+                    peerLoads.get(message.header);
+                if (peers != null) {
+                    peers.remove(message.nodeId);
+                    if (peers.isEmpty()) {
+                        peerLoads.remove(message.header);
+                    }
+                }
+                notifyAll();
+            }
+            break;
+        case FLUSH:
+            if (cacheMgr != null) {
+                cacheMgr.peerFlushed(message);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException(String.valueOf(message.type));
+        }
+    }
+
+    private void send(Message message) {
+        try {
+            transport.send(message);
+        } catch (Throwable e) {
+            LOGGER.warn("Failed to send " + message, e);
+        }
+    }
+
+    /**
+     * Disconnects from the transport and tears it down.
+     */
+    void tearDown() {
+        transport.removeListener(this);
+        transport.tearDown();
+    }
+}
+
+// End SegmentCacheCoordinator.java
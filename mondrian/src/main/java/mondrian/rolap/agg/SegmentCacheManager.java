@@ -269,6 +269,17 @@ public class SegmentCacheManager {
         new CopyOnWriteArrayList<SegmentCacheWorker>();
 
     public final SegmentCache compositeCache;
+
+    /**
+     * The local cache, or null if local caching is disabled.
+     */
+    public final MemorySegmentCache localCache;
+
+    /**
+     * Keeps this server's cache coherent with those of other servers, or null
+     * if no {@link SegmentCacheTransport} is configured.
+     */
+    final SegmentCacheCoordinator coordinator;
     private final SegmentCacheIndexRegistry indexRegistry;
 
     private static final Logger LOGGER =
@@ -290,9 +301,11 @@ public class SegmentCacheManager {
         if (!MondrianProperties.instance().DisableLocalSegmentCache.get()
             && !MondrianProperties.instance().DisableCaching.get())
         {
-            final MemorySegmentCache cache = new MemorySegmentCache();
+            localCache = new MemorySegmentCache();
             segmentCacheWorkers.add(
-                new SegmentCacheWorker(cache, thread));
+                new SegmentCacheWorker(localCache, thread));
+        } else {
+            localCache = null;
         }
 
         // Add an external cache, if configured.
@@ -308,6 +321,14 @@ public class SegmentCacheManager {
         }
 
         compositeCache = new CompositeSegmentCache(segmentCacheWorkers);
+
+        // Connect to the other servers of the cluster, if configured.
+        final SegmentCacheTransport transport =
+            SegmentCacheCoordinator.createTransport();
+        coordinator = transport == null
+            ? null
+            : new SegmentCacheCoordinator(transport, this);
+
         // sync elements already in external cache:
         // we're not able to have indexes at this point,
         // have to wait until the schema has been loaded
@@ -509,15 +530,200 @@ public class SegmentCacheManager {
             new PrintCacheStateCommand(region, pw, locus));
     }
 
+    /**
+     * Merges the cells of rows that have been appended to the fact table into
+     * the segments returned by a {@link RefreshCommand}.
+     *
+     * <p>For each segment, loads the cells of the appended rows from SQL, in
+     * the current thread, and puts into the cache a body that combines them
+     * with the cached body. Only a body that was loaded before
+     * {@code appendTime} is merged; a body that was loaded later, or whose
+     * load time is not known, may already contain some of the appended rows,
+     * and merging would count them twice. Such a segment is removed, as is a
+     * segment whose body is no longer in the cache or whose appended rows
+     * cannot be loaded.
+     *
+     * <p>The merged body is stamped with the time that the appended rows
+     * were read, so a later refresh with the same {@code appendTime} removes
+     * it rather than merging the rows again.
+     *
+     * @param result Result of a RefreshCommand
+     * @param appendTime Time, as given by {@link System#currentTimeMillis()},
+     *     no later than the start of the transaction that appended the rows
+     */
+    public void mergeAppended(RefreshResult result, long appendTime) {
+        final SegmentLoader loader = new SegmentLoader(this);
+        final Locus locus = Locus.peek();
+        for (int i = 0; i < result.headers.size(); i++) {
+            final SegmentHeader header = result.headers.get(i);
+            final RolapStar.Measure measure = result.measures.get(i);
+            final SegmentCacheIndex index =
+                indexRegistry.getIndex(measure.getStar());
+            final long deltaTime = System.currentTimeMillis();
+            final SegmentBody body = compositeCache.get(header);
+            final Segment segment =
+                body == null || !loadedBefore(body, appendTime)
+                    ? null
+                    : SegmentBuilder.toAppendedSegment(
+                        header, measure, result.region);
+            final SegmentWithData appended =
+                segment == null
+                    ? null
+                    : loader.loadUncached(
+                        segment, segment.compoundPredicateList);
+            if (appended == null) {
+                execute(
+                    new Command<Void>() {
+                        public Void call() {
+                            index.remove(header);
+                            return null;
+                        }
+                        public Locus getLocus() {
+                            return locus;
+                        }
+                    });
+                compositeCache.remove(header);
+                continue;
+            }
+            final SegmentBody appendedBody =
+                appended.getData().createSegmentBody(
+                    new AbstractList<Pair<SortedSet<Comparable>, Boolean>>() {
+                        public Pair<SortedSet<Comparable>, Boolean> get(
+                            int index)
+                        {
+                            return appended.axes[index]
+                                .getValuesAndIndicator();
+                        }
+
+                        public int size() {
+                            return appended.axes.length;
+                        }
+                    });
+            final SegmentBody merged =
+                SegmentBuilder.merge(
+                    body,
+                    appendedBody,
+                    measure.getAggregator().getRollup(),
+                    measure.getDatatype());
+            if (merged instanceof AbstractSegmentBody) {
+                ((AbstractSegmentBody) merged).setLoadTime(deltaTime);
+            }
+            compositeCache.put(header, merged);
+            // The index still holds the previous body if it loaded the
+            // segment. Add the header again, so that queries read the merged
+            // body from the cache.
+            execute(
+                new Command<Void>() {
+                    public Void call() {
+                        if (index.contains(header)) {
+                            index.remove(header);
+                            index.add(header, null, false);
+                        }
+                        return null;
+                    }
+                    public Locus getLocus() {
+                        return locus;
+                    }
+                });
+        }
+    }
+
+    /**
+     * Returns whether a segment body is known to have been loaded before a
+     * given time.
+     */
+    private static boolean loadedBefore(SegmentBody body, long time) {
+        if (!(body instanceof AbstractSegmentBody)) {
+            return false;
+        }
+        final long loadTime = ((AbstractSegmentBody) body).getLoadTime();
+        return loadTime > 0 && loadTime < time;
+    }
+
     /**
      * Shuts down this cache manager and all active threads and indexes.
      */
     public void shutdown() {
         execute(new ShutdownCommand());
+        if (coordinator != null) {
+            coordinator.tearDown();
+        }
         cacheExecutor.shutdown();
         sqlExecutor.shutdown();
     }
 
+    /**
+     * Flushes a region that a peer has flushed from this server's index and
+     * from its local cache. The peer has already flushed the region from
+     * external caches, which are shared.
+     *
+     * <p>Called by the {@link SegmentCacheCoordinator} when it receives a
+     * message.
+     */
+    void peerFlushed(final SegmentCacheTransport.Message message) {
+        final List<SegmentCacheWorker> workers =
+            new ArrayList<SegmentCacheWorker>();
+        for (SegmentCacheWorker worker : segmentCacheWorkers) {
+            if (worker.cache == localCache) {
+                workers.add(worker);
+            }
+        }
+        final FlushResult result =
+            Locus.execute(
+                Execution.NONE,
+                "SegmentCacheManager.peerFlushed",
+                new Locus.Action<FlushResult>() {
+                    public FlushResult execute() {
+                        final Locus locus = Locus.peek();
+                        return SegmentCacheManager.this.execute(
+                            new Command<FlushResult>() {
+                                public FlushResult call() {
+                                    return flushFromPeer(message, workers);
+                                }
+                                public Locus getLocus() {
+                                    return locus;
+                                }
+                            });
+                    }
+                });
+        final List<Future<Boolean>> futures =
+            new ArrayList<Future<Boolean>>();
+        for (Callable<Boolean> task : result.tasks) {
+            futures.add(cacheExecutor.submit(task));
+        }
+        for (Future<Boolean> future : futures) {
+            Util.safeGet(future, "Flush cache for peer");
+        }
+    }
+
+    private FlushResult flushFromPeer(
+        SegmentCacheTransport.Message message,
+        List<SegmentCacheWorker> workers)
+    {
+        final RolapStar star =
+            getStar(message.rolapStarFactTableName, message.schemaChecksum);
+        if (star == null) {
+            // This server has not loaded the schema.
+            return new FlushResult(
+                Collections.<Callable<Boolean>>emptyList());
+        }
+        CacheControlImpl.flushExpressionResults(star);
+        final SegmentColumn[] region =
+            message.region.toArray(
+                new SegmentColumn[message.region.size()]);
+        final List<SegmentHeader> headers =
+            indexRegistry.getIndex(star).intersectRegion(
+                message.schemaName,
+                message.schemaChecksum,
+                message.cubeName,
+                message.measureName,
+                message.rolapStarFactTableName,
+                region);
+        return flushHeaders(
+            this, null, headers, region, Collections.singletonList(star),
+            workers);
+    }
+
     public SegmentBuilder.SegmentConverter getConverter(
         RolapStar star,
         SegmentHeader header)
@@ -779,13 +985,20 @@ public class SegmentCacheManager {
                 headers.addAll(
                     index.intersectRegion(
                         member.getDimension().getSchema().getName(),
-                        ((RolapSchema) member.getDimension().getSchema())
-                            .getChecksum(),
+                        star.getChecksum(),
                         storedMeasure.getCube().getName(),
                         storedMeasure.getName(),
                         storedMeasure.getCube().getStar()
                             .getFactTable().getAlias(),
                         flushRegion));
+                if (cacheMgr.coordinator != null) {
+                    cacheMgr.coordinator.flushed(
+                        member.getDimension().getSchema().getName(),
+                        star,
+                        storedMeasure.getCube().getName(),
+                        storedMeasure.getName(),
+                        flushRegion);
+                }
                 if (cacheControlImpl.isTraceEnabled()) {
                     Collections.sort(
                         headers,
@@ -801,100 +1014,253 @@ public class SegmentCacheManager {
                 }
             }
 
-            // If flushRegion is empty, this means we must clear all
-            // segments for the region's measures.
-            if (flushRegion.length == 0) {
-                for (final SegmentHeader header : headers) {
-                    for (RolapStar star : starList) {
-                        cacheMgr.indexRegistry.getIndex(star).remove(header);
+            return flushHeaders(
+                cacheMgr, cacheControlImpl, headers, flushRegion, starList,
+                cacheMgr.segmentCacheWorkers);
+        }
+    }
+
+    /**
+     * Command to refresh the segments that intersect a region of the fact
+     * table to which rows have been appended.
+     *
+     * <p>Segments of additive measures (sum, count, min and max) that
+     * have no compound predicates are returned, so that the caller can
+     * load the cells of the appended rows and merge them into the segments
+     * by calling {@link SegmentCacheManager#mergeAppended}. The other
+     * segments are flushed, as by {@link FlushCommand}. So are all segments,
+     * if the region does not list the values of each of its columns,
+     * because then it cannot be told apart from the rows that were already
+     * there.
+     */
+    public static final class RefreshCommand
+        implements Command<RefreshResult>
+    {
+        private final CellRegion region;
+        private final CacheControlImpl cacheControlImpl;
+        private final Locus locus;
+        private final SegmentCacheManager cacheMgr;
+
+        public RefreshCommand(
+            Locus locus,
+            SegmentCacheManager mgr,
+            CellRegion region,
+            CacheControlImpl cacheControlImpl)
+        {
+            this.locus = locus;
+            this.cacheMgr = mgr;
+            this.region = region;
+            this.cacheControlImpl = cacheControlImpl;
+        }
+
+        public Locus getLocus() {
+            return locus;
+        }
+
+        public RefreshResult call() throws Exception {
+            final List<SegmentHeader> flushHeaders =
+                new ArrayList<SegmentHeader>();
+            final List<SegmentHeader> mergeHeaders =
+                new ArrayList<SegmentHeader>();
+            final List<RolapStar.Measure> mergeMeasures =
+                new ArrayList<RolapStar.Measure>();
+            final SegmentColumn[] appendRegion =
+                CacheControlImpl.findAxisValues(region);
+            boolean precise = appendRegion.length > 0;
+            for (SegmentColumn column : appendRegion) {
+                if (column.values == null) {
+                    precise = false;
+                }
+            }
+
+            for (Member member
+                : CacheControlImpl.findMeasures(region))
+            {
+                if (!(member instanceof RolapStoredMeasure)) {
+                    continue;
+                }
+                final RolapStoredMeasure storedMeasure =
+                    (RolapStoredMeasure) member;
+                final RolapStar.Measure measure =
+                    (RolapStar.Measure) storedMeasure.getStarMeasure();
+                final RolapStar star = measure.getStar();
+                final boolean additive = precise && isAdditive(measure);
+                if (cacheMgr.coordinator != null) {
+                    // Peers cannot merge rows they have not loaded; they
+                    // flush the region.
+                    cacheMgr.coordinator.flushed(
+                        member.getDimension().getSchema().getName(),
+                        star,
+                        storedMeasure.getCube().getName(),
+                        storedMeasure.getName(),
+                        appendRegion);
+                }
+                for (SegmentHeader header
+                    : cacheMgr.indexRegistry.getIndex(star).intersectRegion(
+                        member.getDimension().getSchema().getName(),
+                        star.getChecksum(),
+                        storedMeasure.getCube().getName(),
+                        storedMeasure.getName(),
+                        star.getFactTable().getAlias(),
+                        appendRegion))
+                {
+                    if (additive && header.compoundPredicates.isEmpty()) {
+                        mergeHeaders.add(header);
+                        mergeMeasures.add(measure);
+                    } else {
+                        flushHeaders.add(header);
                     }
-                    // Remove the segment from external caches. Use an
-                    // executor, because it may take some time. We discard
-                    // the future, because we don't care too much if it fails.
+                }
+            }
+
+            return new RefreshResult(
+                flushHeaders(
+                    cacheMgr,
+                    cacheControlImpl,
+                    flushHeaders,
+                    appendRegion,
+                    CacheControlImpl.getStarList(region),
+                    cacheMgr.segmentCacheWorkers).tasks,
+                mergeHeaders,
+                mergeMeasures,
+                appendRegion);
+        }
+
+        /**
+         * Returns whether the cells of a measure can be brought up to date
+         * by combining them with the cells of appended rows.
+         */
+        private static boolean isAdditive(RolapStar.Measure measure) {
+            final RolapAggregator aggregator = measure.getAggregator();
+            return (aggregator == RolapAggregator.Sum
+                || aggregator == RolapAggregator.Count
+                || aggregator == RolapAggregator.Min
+                || aggregator == RolapAggregator.Max)
+                && aggregator.getRollup().supportsFastAggregates(
+                    measure.getDatatype());
+        }
+    }
+
+    /**
+     * Flushes a region from segments that intersect it. Segments that can be
+     * constrained are replaced, in the index, by segments that exclude the
+     * region; the others are removed.
+     *
+     * <p>Must be called from the cache manager's thread.
+     *
+     * @param cacheMgr Cache manager
+     * @param cacheControlImpl Cache control, for tracing; may be null
+     * @param headers Headers of segments that intersect the region
+     * @param flushRegion Columns and values of the region
+     * @param starList Stars of the region's measures
+     * @param workers Cache workers from which to remove the region
+     * @return Tasks that the caller must execute to update the cache workers
+     */
+    private static FlushResult flushHeaders(
+        final SegmentCacheManager cacheMgr,
+        CacheControlImpl cacheControlImpl,
+        List<SegmentHeader> headers,
+        SegmentColumn[] flushRegion,
+        List<RolapStar> starList,
+        final List<SegmentCacheWorker> workers)
+    {
+        // If flushRegion is empty, this means we must clear all
+        // segments for the region's measures.
+        if (flushRegion.length == 0) {
+            for (final SegmentHeader header : headers) {
+                for (RolapStar star : starList) {
+                    cacheMgr.indexRegistry.getIndex(star).remove(header);
+                }
+                // Remove the segment from external caches. Use an
+                // executor, because it may take some time. We discard
+                // the future, because we don't care too much if it fails.
+                if (cacheControlImpl != null) {
                     cacheControlImpl.trace(
                         "discard segment - it cannot be constrained and maintain consistency:\n"
                         + header.getDescription());
+                }
 
-                    final Future<?> task = cacheMgr.cacheExecutor.submit(
-                        new Runnable() {
-                            public void run() {
-                                try {
-                                    // Note that the SegmentCache API doesn't
-                                    // require us to verify that the segment
-                                    // exists (by calling "contains") before we
-                                    // call "remove".
-                                    cacheMgr.compositeCache.remove(header);
-                                } catch (Throwable e) {
-                                    LOGGER.warn(
-                                        "remove header failed: " + header,
-                                        e);
+                final Future<?> task = cacheMgr.cacheExecutor.submit(
+                    new Runnable() {
+                        public void run() {
+                            try {
+                                // Note that the SegmentCache API doesn't
+                                // require us to verify that the segment
+                                // exists (by calling "contains") before we
+                                // call "remove".
+                                for (SegmentCacheWorker worker : workers) {
+                                    worker.remove(header);
                                 }
+                            } catch (Throwable e) {
+                                LOGGER.warn(
+                                    "remove header failed: " + header,
+                                    e);
                             }
-                        });
-                    Util.safeGet(task, "SegmentCacheManager.flush");
-                }
-                return new FlushResult(
-                    Collections.<Callable<Boolean>>emptyList());
+                        }
+                    });
+                Util.safeGet(task, "SegmentCacheManager.flush");
             }
+            return new FlushResult(
+                Collections.<Callable<Boolean>>emptyList());
+        }
 
-            // Now we know which headers intersect. For each of them,
-            // we append an excluded region.
-            //
-            // TODO: Optimize the logic here. If a segment is mostly
-            // empty, we should trash it completely.
-            final List<Callable<Boolean>> callableList =
-                new ArrayList<Callable<Boolean>>();
-            for (final SegmentHeader header : headers) {
-                if (!header.canConstrain(flushRegion)) {
-                    // We have to delete that segment altogether.
+        // Now we know which headers intersect. For each of them,
+        // we append an excluded region.
+        //
+        // TODO: Optimize the logic here. If a segment is mostly
+        // empty, we should trash it completely.
+        final List<Callable<Boolean>> callableList =
+            new ArrayList<Callable<Boolean>>();
+        for (final SegmentHeader header : headers) {
+            if (!header.canConstrain(flushRegion)) {
+                // We have to delete that segment altogether.
+                if (cacheControlImpl != null) {
                     cacheControlImpl.trace(
                         "discard segment - it cannot be constrained and maintain consistency:\n"
                         + header.getDescription());
-                    for (RolapStar star : starList) {
-                        cacheMgr.indexRegistry.getIndex(star).remove(header);
-                    }
-                    continue;
                 }
-
-                // Build the new header's dimensionality
-                final SegmentHeader newHeader =
-                    header.constrain(flushRegion);
-
-                // Update the segment index.
                 for (RolapStar star : starList) {
-                    SegmentCacheIndex index =
-                        cacheMgr.indexRegistry.getIndex(star);
-                    index.update(header, newHeader);
+                    cacheMgr.indexRegistry.getIndex(star).remove(header);
                 }
+                continue;
+            }
 
-                // Update all of the cache workers.
-                for (final SegmentCacheWorker worker
-                    : cacheMgr.segmentCacheWorkers)
-                {
-                    callableList.add(
-                        new Callable<Boolean>() {
-                            public Boolean call() throws Exception {
-                                boolean existed;
-                                if (worker.supportsRichIndex()) {
-                                    final SegmentBody sb = worker.get(header);
-                                    existed = worker.remove(header);
-                                    if (sb != null) {
-                                        worker.put(newHeader, sb);
-                                    }
-                                } else {
-                                    // The cache doesn't support rich index. We
-                                    // have to clear the segment entirely.
-                                    existed = worker.remove(header);
+            // Build the new header's dimensionality
+            final SegmentHeader newHeader =
+                header.constrain(flushRegion);
+
+            // Update the segment index.
+            for (RolapStar star : starList) {
+                SegmentCacheIndex index =
+                    cacheMgr.indexRegistry.getIndex(star);
+                index.update(header, newHeader);
+            }
+
+            // Update all of the cache workers.
+            for (final SegmentCacheWorker worker : workers) {
+                callableList.add(
+                    new Callable<Boolean>() {
+                        public Boolean call() throws Exception {
+                            boolean existed;
+                            if (worker.supportsRichIndex()) {
+                                final SegmentBody sb = worker.get(header);
+                                existed = worker.remove(header);
+                                if (sb != null) {
+                                    worker.put(newHeader, sb);
                                 }
-                                return existed;
+                            } else {
+                                // The cache doesn't support rich index. We
+                                // have to clear the segment entirely.
+                                existed = worker.remove(header);
                             }
-                        });
-                }
+                            return existed;
+                        }
+                    });
             }
-
-            // Done
-            return new FlushResult(callableList);
         }
+
+        // Done
+        return new FlushResult(callableList);
     }
 
     private class PrintCacheStateCommand
@@ -950,6 +1316,29 @@ public class SegmentCacheManager {
         }
     }
 
+    /**
+     * Result of a {@link RefreshCommand}. Contains the tasks that must be
+     * executed to flush the segments that cannot be merged, and the segments
+     * into which the caller must merge the cells of the appended rows.
+     */
+    public static class RefreshResult extends FlushResult {
+        public final List<SegmentHeader> headers;
+        public final List<RolapStar.Measure> measures;
+        public final SegmentColumn[] region;
+
+        public RefreshResult(
+            List<Callable<Boolean>> tasks,
+            List<SegmentHeader> headers,
+            List<RolapStar.Measure> measures,
+            SegmentColumn[] region)
+        {
+            super(tasks);
+            this.headers = headers;
+            this.measures = measures;
+            this.region = region;
+        }
+    }
+
     /**
      * Special exception, thrown only by {@link ShutdownCommand}, telling
      * the actor to shut down.
@@ -1486,7 +1875,7 @@ public class SegmentCacheManager {
                 indexRegistry.getIndex(star)
                     .locate(
                         schema.getName(),
-                        schema.getChecksum(),
+                        star.getChecksum(),
                         measure.getCubeName(),
                         measure.getName(),
                         star.getFactTable().getAlias(),
@@ -1568,9 +1957,25 @@ public class SegmentCacheManager {
      * The index is based off the checksum of the schema.
      */
     public class SegmentCacheIndexRegistry {
-        private final Map<SchemaKey, SegmentCacheIndex> indexes =
+        private final Map<Object, SegmentCacheIndex> indexes =
             Collections.synchronizedMap(
-                new HashMap<SchemaKey, SegmentCacheIndex>());
+                new HashMap<Object, SegmentCacheIndex>());
+
+        /**
+         * Returns the key of the index for a given {@link RolapStar}. This is
+         * the key of its schema, unless the star's segments are identified by
+         * a checksum of their own (see
+         * {@link MondrianProperties#ShareSegmentsAcrossSchemas}), in which case
+         * stars with the same checksum and connection share an index.
+         */
+        private Object indexKey(RolapStar star) {
+            final SchemaKey schemaKey = star.getSchema().getKey();
+            if (Util.equals(star.getChecksum(), star.getSchema().getChecksum()))
+            {
+                return schemaKey;
+            }
+            return Pair.of(schemaKey.right, star.getChecksum());
+        }
 
         /**
          * Returns the {@link SegmentCacheIndex} for a given
@@ -1581,17 +1986,17 @@ public class SegmentCacheManager {
                 "SegmentCacheManager.SegmentCacheIndexRegistry.getIndex:"
                 + System.identityHashCode(star));
 
-            if (!indexes.containsKey(star.getSchema().getKey())) {
+            final Object key = indexKey(star);
+            if (!indexes.containsKey(key)) {
                 final SegmentCacheIndexImpl index =
                     new SegmentCacheIndexImpl(thread);
                 LOGGER.trace(
                     "SegmentCacheManager.SegmentCacheIndexRegistry.getIndex:"
                     + "Creating New Index "
                     + System.identityHashCode(index));
-                indexes.put(star.getSchema().getKey(), index);
+                indexes.put(key, index);
             }
-            final SegmentCacheIndex index =
-                indexes.get(star.getSchema().getKey());
+            final SegmentCacheIndex index = indexes.get(key);
             LOGGER.trace(
                 "SegmentCacheManager.SegmentCacheIndexRegistry.getIndex:"
                 + "Returning Index "
@@ -1624,12 +2029,23 @@ public class SegmentCacheManager {
     }
 
     static RolapStar getStar(SegmentHeader header) {
+        return getStar(header.rolapStarFactTableName, header.schemaChecksum);
+    }
+
+    static RolapStar getStar(
+        String rolapStarFactTableName,
+        ByteString schemaChecksum)
+    {
         for (RolapSchema schema : RolapSchema.getRolapSchemas()) {
-            if (!schema.getChecksum().equals(header.schemaChecksum)) {
+            final RolapStar star = schema.getStar(rolapStarFactTableName);
+            if (star == null
+                || !Util.equals(schemaChecksum, star.getChecksum()))
+            {
                 continue;
             }
-            // We have a schema match.
-            return schema.getStar(header.rolapStarFactTableName);
+            // We have a match. If the star's segments are shared across
+            // schemas, any schema with an identical star will do.
+            return star;
         }
         return null;
     }
@@ -121,6 +121,9 @@ public class SegmentLoader {
                         index.getFuture(
                             Locus.peek().execution,
                             segment.getHeader()));
+                    if (cacheMgr.coordinator != null) {
+                        cacheMgr.coordinator.loadStarted(segment.getHeader());
+                    }
                 }
             }
         }
@@ -164,20 +167,154 @@ public class SegmentLoader {
         public Map<Segment, SegmentWithData> call() throws Exception {
             Locus.push(locus);
             try {
+                final SegmentCacheCoordinator coordinator =
+                    segmentLoader.cacheMgr.coordinator;
+                if (coordinator != null
+                    && !MondrianProperties.instance().DisableCaching.get())
+                {
+                    return segmentLoader.loadCoordinated(
+                        coordinator,
+                        cellRequestCount,
+                        groupingSets,
+                        compoundPredicateList);
+                }
                 return segmentLoader.loadImpl(
                     cellRequestCount,
                     groupingSets,
-                    compoundPredicateList);
+                    compoundPredicateList,
+                    true);
             } finally {
                 Locus.pop(locus);
             }
         }
     }
 
-    private Map<Segment, SegmentWithData> loadImpl(
+    /**
+     * Loads the data of a segment from SQL, in the current thread, without
+     * registering the segment in the segment index or writing it to the
+     * cache.
+     *
+     * <p>Used to load the cells of rows that have been appended to the fact
+     * table, which are then merged into a segment that is already cached.
+     *
+     * @param segment Segment
+     * @param compoundPredicateList Compound predicates
+     * @return Segment with data, or null if the statement was canceled
+     */
+    public SegmentWithData loadUncached(
+        Segment segment,
+        List<StarPredicate> compoundPredicateList)
+    {
+        final BitKey measureBitKey =
+            segment.getConstrainedColumnsBitKey().emptyCopy();
+        measureBitKey.set(segment.measure.getBitPosition());
+        final GroupingSet groupingSet =
+            new GroupingSet(
+                Collections.singletonList(segment),
+                segment.getConstrainedColumnsBitKey(),
+                measureBitKey,
+                segment.predicates,
+                segment.getColumns());
+        return loadImpl(
+            0,
+            Collections.singletonList(groupingSet),
+            compoundPredicateList,
+            false).get(segment);
+    }
+
+    /**
+     * Loads segments, taking them from the segment cache if peers in the
+     * cluster were already loading them, and tells the peers when it has
+     * finished.
+     */
+    private Map<Segment, SegmentWithData> loadCoordinated(
+        SegmentCacheCoordinator coordinator,
         int cellRequestCount,
         List<GroupingSet> groupingSets,
         List<StarPredicate> compoundPredicateList)
+    {
+        final List<Segment> segments = new ArrayList<Segment>();
+        for (GroupingSet groupingSet : groupingSets) {
+            segments.addAll(groupingSet.getSegments());
+        }
+        Map<Segment, SegmentWithData> segmentMap = null;
+        try {
+            segmentMap = loadFromPeers(coordinator, segments);
+            if (segmentMap == null) {
+                segmentMap =
+                    loadImpl(
+                        cellRequestCount,
+                        groupingSets,
+                        compoundPredicateList,
+                        true);
+            }
+            return segmentMap;
+        } finally {
+            for (Segment segment : segments) {
+                coordinator.loadFinished(
+                    segment.getHeader(),
+                    segmentMap != null && segmentMap.containsKey(segment));
+            }
+        }
+    }
+
+    /**
+     * Waits for peers that are loading segments, then reads the segments
+     * from the segment cache.
+     *
+     * <p>The segments are loaded by a single SQL statement, so there is
+     * nothing to gain unless peers are loading all of them.
+     *
+     * @return Loaded segments, or null if the segments must be loaded from
+     *     SQL
+     */
+    private Map<Segment, SegmentWithData> loadFromPeers(
+        SegmentCacheCoordinator coordinator,
+        List<Segment> segments)
+    {
+        for (Segment segment : segments) {
+            if (!coordinator.isLoadingOnPeer(segment.getHeader())) {
+                return null;
+            }
+        }
+        final long deadline =
+            System.currentTimeMillis() + SegmentCacheCoordinator.timeout();
+        final List<SegmentBody> bodies = new ArrayList<SegmentBody>();
+        for (Segment segment : segments) {
+            try {
+                coordinator.awaitPeerLoad(segment.getHeader(), deadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            final SegmentBody body =
+                cacheMgr.compositeCache.get(segment.getHeader());
+            if (body == null) {
+                // The peer failed, timed out, or does not share a cache
+                // with us.
+                return null;
+            }
+            bodies.add(body);
+        }
+        final Map<Segment, SegmentWithData> segmentMap =
+            new HashMap<Segment, SegmentWithData>();
+        for (int i = 0; i < segments.size(); i++) {
+            final Segment segment = segments.get(i);
+            segmentMap.put(
+                segment, SegmentBuilder.addData(segment, bodies.get(i)));
+            cacheMgr.loadSucceeded(
+                segment.star, segment.getHeader(), bodies.get(i));
+        }
+        LOGGER.debug(
+            "Took " + segments.size() + " segments loaded by peers");
+        return segmentMap;
+    }
+
+    private Map<Segment, SegmentWithData> loadImpl(
+        int cellRequestCount,
+        List<GroupingSet> groupingSets,
+        List<StarPredicate> compoundPredicateList,
+        boolean cache)
     {
         SqlStatement stmt = null;
         GroupingSetsList groupingSetsList =
@@ -193,10 +330,18 @@ public class SegmentLoader {
             SortedSet<Comparable>[] axisValueSets =
                 getDistinctValueWorkspace(arity);
 
-            stmt = createExecuteSql(
-                cellRequestCount,
-                groupingSetsList,
-                compoundPredicateList);
+            final long startNanos = System.nanoTime();
+            final long startMillis = System.currentTimeMillis();
+            stmt = cache
+                ? createExecuteSql(
+                    cellRequestCount,
+                    groupingSetsList,
+                    compoundPredicateList)
+                : createExecuteSql(
+                    cellRequestCount,
+                    groupingSetsList,
+                    compoundPredicateList,
+                    false);
 
             if (stmt == null) {
                 // Nothing to do. We're done here.
@@ -232,7 +377,10 @@ public class SegmentLoader {
             setDataToSegments(
                 groupingSetsList,
                 groupingDataSetsMap,
-                segmentMap);
+                segmentMap,
+                System.nanoTime() - startNanos,
+                startMillis,
+                cache);
 
             return segmentMap;
         } catch (Throwable e) {
@@ -245,8 +393,10 @@ public class SegmentLoader {
             if (stmt != null) {
                 stmt.close();
             }
-            setFailOnStillLoadingSegments(
-                segmentMap, groupingSetsList, throwable);
+            if (cache) {
+                setFailOnStillLoadingSegments(
+                    segmentMap, groupingSetsList, throwable);
+            }
         }
     }
 
@@ -256,11 +406,14 @@ public class SegmentLoader {
      *
      * @param header Segment header
      * @param body Segment body
+     * @param loadNanos Time taken to execute the SQL statement that loaded
+     *     the segment, in nanoseconds
      */
     private void cacheSegment(
         RolapStar star,
         SegmentHeader header,
-        SegmentBody body)
+        SegmentBody body,
+        long loadNanos)
     {
         // Write the segment into external cache.
         //
@@ -272,6 +425,9 @@ public class SegmentLoader {
         // called cacheMgr.loadSucceeded. That call will allow the current
         // query to proceed.
         if (!MondrianProperties.instance().DisableCaching.get()) {
+            if (cacheMgr.localCache != null) {
+                cacheMgr.localCache.setLoadCost(header, loadNanos);
+            }
             cacheMgr.compositeCache.put(header, body);
             cacheMgr.loadSucceeded(star, header, body);
         }
@@ -415,7 +571,10 @@ public class SegmentLoader {
     private void setDataToSegments(
         GroupingSetsList groupingSetsList,
         Map<BitKey, GroupingSetsList.Cohort> datasetsMap,
-        Map<Segment, SegmentWithData> segmentSlotMap)
+        Map<Segment, SegmentWithData> segmentSlotMap,
+        long loadNanos,
+        long loadTime,
+        boolean cache)
     {
         List<GroupingSet> groupingSets = groupingSetsList.getGroupingSets();
         for (int i = 0; i < groupingSets.size(); i++) {
@@ -434,6 +593,9 @@ public class SegmentLoader {
                         cohort.axes);
 
                 segmentSlotMap.put(segment, segmentWithData);
+                if (!cache) {
+                    continue;
+                }
 
                 final SegmentHeader header = segmentWithData.getHeader();
                 final SegmentBody body =
@@ -452,10 +614,13 @@ public class SegmentLoader {
                                 return segmentWithData.axes.length;
                             }
                         });
+                if (body instanceof AbstractSegmentBody) {
+                    ((AbstractSegmentBody) body).setLoadTime(loadTime);
+                }
 
                 // Send a message to the agg manager. It will place the segment
                 // in the index.
-                cacheSegment(segment.star, header, body);
+                cacheSegment(segment.star, header, body, loadNanos);
             }
         }
     }
@@ -557,6 +722,30 @@ public class SegmentLoader {
         int cellRequestCount,
         final GroupingSetsList groupingSetsList,
         List<StarPredicate> compoundPredicateList)
+    {
+        return createExecuteSql(
+            cellRequestCount,
+            groupingSetsList,
+            compoundPredicateList,
+            !MondrianProperties.instance().DisableCaching.get());
+    }
+
+    /**
+     * Creates and executes a SQL statement to retrieve the set of cells
+     * specified by a GroupingSetsList.
+     *
+     * @param cellRequestCount Number of missed cells that led to this request
+     * @param groupingSetsList Grouping
+     * @param compoundPredicateList Compound predicate list
+     * @param indexed Whether the segments are in the segment index, in
+     *     which case the statement is linked to them
+     * @return An executed SQL statement, or null
+     */
+    private SqlStatement createExecuteSql(
+        int cellRequestCount,
+        final GroupingSetsList groupingSetsList,
+        List<StarPredicate> compoundPredicateList,
+        boolean indexed)
     {
         RolapStar star = groupingSetsList.getStar();
         Pair<String, List<SqlStatement.Type>> pair =
@@ -634,9 +823,9 @@ public class SegmentLoader {
                 -1,
                 // Only one of the two callbacks are required, depending if we
                 // cache the segments or not.
-                MondrianProperties.instance().DisableCaching.get()
-                    ? callbackNoCaching
-                    : callbackWithCaching);
+                indexed
+                    ? callbackWithCaching
+                    : callbackNoCaching);
         } catch (Throwable t) {
             if (Util.getMatchingCause(t, AbortException.class) != null) {
                 return null;
@@ -10,6 +10,7 @@
 package mondrian.rolap.agg;
 
 import mondrian.olap.Util;
+import mondrian.olap.fun.FunUtil;
 import mondrian.rolap.*;
 
 import java.util.*;
@@ -20,6 +21,13 @@ import java.util.*;
  * @author jhyde
  */
 public class SegmentWithData extends Segment {
+    /**
+     * Returned by {@link #getCellKey(Object[])} for a cell that belongs in
+     * this segment but has no value.
+     */
+    private static final CellKey MISSING_CELL = CellKey.Generator.newCellKey(
+        new int[] {-1});
+
     /**
      * An array of axes, one for each constraining column, containing the values
      * returned for that constraining column.
@@ -147,6 +155,58 @@ public class SegmentWithData extends Segment {
      * @see mondrian.olap.Util#deprecated(Object) make package-private?
      */
     public Object getCellValue(Object[] keys) {
+        final CellKey cellKey = getCellKey(keys);
+        if (cellKey == null) {
+            return null;
+        } else if (cellKey == MISSING_CELL) {
+            return Util.nullValue;
+        } else {
+            Object o = data.getObject(cellKey);
+            if (o == null) {
+                o = Util.nullValue;
+            }
+            return o;
+        }
+    }
+
+    /**
+     * Retrieves the value at the location identified by <code>keys</code> as
+     * a <code>double</code>. If the segment holds native values (for example,
+     * a {@link DenseDoubleSegmentDataset}), the value is not boxed.
+     *
+     * @param keys Key values
+     * @param value Array whose first element receives the value, or
+     *     {@link FunUtil#DoubleNull} if the cell value is null
+     * @return Whether the value is in this segment; if false, the value is
+     *     not supposed to be in this segment, and <code>value</code> is
+     *     unchanged
+     * @throws ClassCastException if the value is not numeric
+     */
+    public boolean getCellDouble(Object[] keys, double[] value) {
+        final CellKey cellKey = getCellKey(keys);
+        if (cellKey == null) {
+            return false;
+        } else if (cellKey == MISSING_CELL) {
+            value[0] = FunUtil.DoubleNull;
+        } else if (data instanceof DenseNativeSegmentDataset) {
+            value[0] =
+                ((DenseNativeSegmentDataset) data).getDoubleOrNull(cellKey);
+        } else {
+            final Number number = (Number) data.getObject(cellKey);
+            value[0] = number == null
+                ? FunUtil.DoubleNull
+                : number.doubleValue();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the coordinates of the cell identified by <code>keys</code>;
+     * {@link #MISSING_CELL} if the cell should be in this segment but one or
+     * more of its keys has no values; or null if the cell is not supposed to
+     * be in this segment.
+     */
+    private CellKey getCellKey(Object[] keys) {
         assert keys.length == axes.length;
         int missed = 0;
         CellKey cellKey = CellKey.Generator.newCellKey(axes.length);
@@ -174,14 +234,9 @@ public class SegmentWithData extends Segment {
         if (missed > 0) {
             // the value should be in this segment, but isn't, because one
             // or more of its keys does have any values
-            return Util.nullValue;
-        } else {
-            Object o = data.getObject(cellKey);
-            if (o == null) {
-                o = Util.nullValue;
-            }
-            return o;
+            return MISSING_CELL;
         }
+        return cellKey;
     }
 
     /**
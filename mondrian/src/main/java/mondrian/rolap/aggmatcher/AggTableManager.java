@@ -29,7 +29,12 @@ import javax.sql.DataSource;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Manages aggregate tables.
@@ -42,6 +47,13 @@ import java.util.List;
  *     which scans the JDBC catalog and identifies aggregate tables.
  * <li>For each aggregate table, it creates an {@link AggStar} and calls
  *     {@link RolapStar#addAggStar(AggStar)}.
+ * </ul>
+ *
+ * <p>If {@link MondrianProperties#AggregateLoadAsync} is true,
+ * {@link #initialize()} returns immediately and the aggregate tables are
+ * recognized in a background thread; until then, queries use the fact
+ * tables. The column metadata of candidate tables is read in parallel (see
+ * {@link JdbcSchema#loadColumns(java.util.Collection)}).
  *
  * @author Richard M. Emberson
  */
@@ -53,6 +65,25 @@ public class AggTableManager {
 
     private static final MondrianResource mres = MondrianResource.instance();
 
+    /**
+     * Executor that recognizes aggregate tables in the background, if
+     * {@link MondrianProperties#AggregateLoadAsync} is true. Has
+     * {@link MondrianProperties#AggregateLoadThreads} threads.
+     */
+    private static final ExecutorService loadExecutor =
+        Util.getExecutorService(
+            MondrianProperties.instance().AggregateLoadThreads.get(),
+            MondrianProperties.instance().AggregateLoadThreads.get(),
+            1,
+            "mondrian.rolap.aggmatcher.AggTableManager$loadExecutor",
+            null);
+
+    /**
+     * Background recognition tasks that have not finished. Empty if
+     * recognition is synchronous.
+     */
+    private final List<Future<?>> loadFutures = new ArrayList<Future<?>>();
+
     public AggTableManager(final RolapSchema schema) {
         this.schema = schema;
     }
@@ -63,6 +94,12 @@ public class AggTableManager {
      * associated RolapSchema object.
      */
     public void finalCleanUp() {
+        synchronized (this) {
+            for (Future<?> loadFuture : loadFutures) {
+                loadFuture.cancel(true);
+            }
+            loadFutures.clear();
+        }
         removeJdbcSchema();
 
         if (getLogger().isDebugEnabled()) {
@@ -83,19 +120,83 @@ public class AggTableManager {
      * Initializes this object, loading all aggregate tables and associating
      * them with {@link RolapStar}s.
      * This method should only be called once.
+     *
+     * <p>If {@link MondrianProperties#AggregateLoadAsync} is true, the work
+     * is done in a background thread, and this method returns immediately.
      */
     public void initialize() {
+        initialize(getStars());
+    }
+
+    /**
+     * Loads the aggregate tables of some of the schema's {@link RolapStar}s.
+     * Called by {@link RolapSchema} when a cube is built after the schema
+     * has been loaded, if {@link MondrianProperties#LazyCubeLoading} is
+     * true.
+     *
+     * <p>Like {@link #initialize()}, does its work in a background thread if
+     * {@link MondrianProperties#AggregateLoadAsync} is true.
+     *
+     * @param stars Stars whose aggregate tables to load
+     */
+    public void initialize(final Collection<RolapStar> stars) {
+        if (MondrianProperties.instance().UseAggregates.get()
+            && MondrianProperties.instance().AggregateLoadAsync.get())
+        {
+            synchronized (this) {
+                for (Iterator<Future<?>> iterator = loadFutures.iterator();
+                    iterator.hasNext();)
+                {
+                    if (iterator.next().isDone()) {
+                        iterator.remove();
+                    }
+                }
+                loadFutures.add(
+                    loadExecutor.submit(
+                        new Runnable() {
+                            public void run() {
+                                initializeInBackground(stars);
+                            }
+                        }));
+            }
+            return;
+        }
         if (MondrianProperties.instance().UseAggregates.get()) {
             try {
-                loadRolapStarAggregates();
+                loadRolapStarAggregates(stars);
             } catch (SQLException ex) {
                 throw mres.AggLoadingError.ex(ex);
             }
         }
-        printResults();
+        printResults(stars);
     }
 
-    private void printResults() {
+    /**
+     * Recognizes aggregate tables in a background thread. Errors are logged
+     * rather than thrown; stars whose aggregate tables could not be
+     * recognized continue to use their fact tables.
+     */
+    private void initializeInBackground(Collection<RolapStar> stars) {
+        final long start = System.currentTimeMillis();
+        try {
+            loadRolapStarAggregates(stars);
+            printResults(stars);
+            if (getLogger().isDebugEnabled()) {
+                getLogger().debug(
+                    "AggTableManager: recognized aggregate tables of "
+                    + stars.size() + " star(s) of schema "
+                    + schema.getName() + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            }
+        } catch (Throwable e) {
+            getLogger().error(
+                "Error while recognizing aggregate tables of schema "
+                + schema.getName() + "; queries will use fact tables",
+                e);
+        }
+    }
+
+    private void printResults(Collection<RolapStar> stars) {
 /*
  *   This was too much information at the INFO level, compared to the
  *   rest of Mondrian
@@ -124,7 +225,7 @@ public class AggTableManager {
             // could be a lot
             StringBuilder buf = new StringBuilder(4096);
             buf.append(Util.nl);
-            for (RolapStar star : getStars()) {
+            for (RolapStar star : stars) {
                 buf.append(star.toString());
                 buf.append(Util.nl);
             }
@@ -164,9 +265,16 @@ public class AggTableManager {
      * to ignore for right now). So, All stars have their columns
      * and their BitKeys can be generated.
      *
+     * <p>If {@link MondrianProperties#LazyCubeLoading} is true, this method
+     * is called again for the stars of each cube as it is built.
+     *
+     * @param stars Stars whose aggregate tables to load
      * @throws SQLException
      */
-    private void loadRolapStarAggregates() throws SQLException {
+    private void loadRolapStarAggregates(
+        Collection<RolapStar> stars)
+        throws SQLException
+    {
         ListRecorder msgRecorder = new ListRecorder();
         try {
             DefaultRules rules = DefaultRules.getInstance();
@@ -183,8 +291,12 @@ public class AggTableManager {
                 // loads tables, not their columns
                 db.load();
 
+                // load the columns of all candidate tables in parallel,
+                // rather than one by one as they are examined below
+                db.loadColumns(getCandidateTables(db, rules, stars));
+
                 loop:
-                for (RolapStar star : getStars()) {
+                for (RolapStar star : stars) {
                     // This removes any AggStars from any previous invocation of
                     // this method (if any)
                     star.prepareToLoadAggregates();
@@ -305,6 +417,46 @@ public class AggTableManager {
         }
     }
 
+    /**
+     * Returns the tables whose columns will be needed in order to recognize
+     * aggregate tables: the fact table of each star, and each table whose
+     * name matches an explicit rule or (if
+     * {@link MondrianProperties#ReadAggregates} is true) the default rules.
+     * Mirrors the name tests in {@link #loadRolapStarAggregates}.
+     */
+    private Collection<JdbcSchema.Table> getCandidateTables(
+        JdbcSchema db,
+        DefaultRules rules,
+        Collection<RolapStar> stars)
+    {
+        final Set<JdbcSchema.Table> candidates =
+            new LinkedHashSet<JdbcSchema.Table>();
+        final boolean readAggregates =
+            MondrianProperties.instance().ReadAggregates.get();
+        for (RolapStar star : stars) {
+            final String factTableName = getFactTableName(star);
+            final JdbcSchema.Table dbFactTable = db.getTable(factTableName);
+            if (dbFactTable == null) {
+                continue;
+            }
+            candidates.add(dbFactTable);
+            final List<ExplicitRules.Group> aggGroups = getAggGroups(star);
+            for (JdbcSchema.Table dbTable : db.getTables()) {
+                final String name = dbTable.getName();
+                if (ExplicitRules.excludeTable(name, aggGroups)) {
+                    continue;
+                }
+                if (ExplicitRules.getIncludeByTableDef(name, aggGroups) != null
+                    || (readAggregates
+                        && rules.matchesTableName(factTableName, name)))
+                {
+                    candidates.add(dbTable);
+                }
+            }
+        }
+        return candidates;
+    }
+
     private Collection<RolapStar> getStars() {
         return schema.getStars();
     }
@@ -13,22 +13,24 @@ package mondrian.rolap.aggmatcher;
 
 import mondrian.olap.MondrianDef;
 import mondrian.olap.MondrianProperties;
+import mondrian.olap.Util;
 import mondrian.resource.MondrianResource;
 import mondrian.rolap.RolapAggregator;
 import mondrian.rolap.RolapLevel;
 import mondrian.rolap.RolapStar;
 import mondrian.spi.Dialect;
+import mondrian.util.ByteString;
 import mondrian.util.ClassResolver;
 
 import org.apache.log4j.Logger;
 
 import org.olap4j.impl.Olap4jUtil;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.*;
 import java.lang.ref.SoftReference;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
 import javax.sql.DataSource;
 
 /**
@@ -49,6 +51,16 @@ import javax.sql.DataSource;
  * Of course, as a result, there are a host of methods that can throw an
  * {@link SQLException}, rats.
  *
+ * <p>The columns of several tables can be loaded in parallel using
+ * {@link #loadColumns(java.util.Collection)}. If
+ * {@link MondrianProperties#AggregateMetadataCacheDir} is set, column
+ * metadata is also cached on disk, keyed by the JDBC URL, user, catalog and
+ * schema of the database. The cache is used only while the database's list
+ * of tables (its "fingerprint") is unchanged, and for at most
+ * {@link MondrianProperties#AggregateMetadataCacheMaxAge} seconds. Call
+ * {@link #clearMetadataCache(javax.sql.DataSource)} after altering the
+ * columns of a table.
+ *
  * @author Richard M. Emberson
  */
 public class JdbcSchema {
@@ -57,6 +69,26 @@ public class JdbcSchema {
 
     private static final MondrianResource mres = MondrianResource.instance();
 
+    /**
+     * Executor with which to load the column metadata of tables in parallel.
+     */
+    private static final ExecutorService metadataExecutor =
+        Util.getExecutorService(
+            // We use the same value for coreSize and maxSize
+            // because that's the behavior we want. All extra
+            // tasks will be put on an unbounded queue.
+            MondrianProperties.instance().AggregateMetadataThreads.get(),
+            MondrianProperties.instance().AggregateMetadataThreads.get(),
+            1,
+            "mondrian.rolap.aggmatcher.JdbcSchema$metadataExecutor",
+            null);
+
+    /**
+     * Version of the format of metadata cache files. Increment if the format
+     * changes.
+     */
+    private static final int METADATA_CACHE_VERSION = 1;
+
     /**
      * Returns the Logger.
      */
@@ -1053,7 +1085,7 @@ public class JdbcSchema {
          *
          * @throws SQLException
          */
-        private void loadColumns() throws SQLException {
+        private synchronized void loadColumns() throws SQLException {
             if (! allColumnsLoaded) {
                 Connection conn = getDataSource().getConnection();
                 try {
@@ -1066,7 +1098,6 @@ public class JdbcSchema {
 
                     ResultSet rs = null;
                     try {
-                        Map<String, Column> map = getColumnMap();
                         rs = dmd.getColumns(
                             catalog,
                             schema,
@@ -1082,17 +1113,15 @@ public class JdbcSchema {
                             int charOctetLength = rs.getInt(16);
                             String isNullable = rs.getString(18);
 
-                            Column column = new Column(name);
-                            column.setType(type);
-                            column.setTypeName(typeName);
-                            column.setColumnSize(columnSize);
-                            column.setDecimalDigits(decimalDigits);
-                            column.setNumPrecRadix(numPrecRadix);
-                            column.setCharOctetLength(charOctetLength);
-                            column.setIsNullable(!"NO".equals(isNullable));
-
-                            map.put(name, column);
-                            totalColumnSize += column.getColumnSize();
+                            addColumn(
+                                name,
+                                type,
+                                typeName,
+                                columnSize,
+                                decimalDigits,
+                                numPrecRadix,
+                                charOctetLength,
+                                !"NO".equals(isNullable));
                         }
                     } finally {
                         if (rs != null) {
@@ -1111,6 +1140,90 @@ public class JdbcSchema {
             }
         }
 
+        private void addColumn(
+            String name,
+            int type,
+            String typeName,
+            int columnSize,
+            int decimalDigits,
+            int numPrecRadix,
+            int charOctetLength,
+            boolean isNullable)
+        {
+            Column column = new Column(name);
+            column.setType(type);
+            column.setTypeName(typeName);
+            column.setColumnSize(columnSize);
+            column.setDecimalDigits(decimalDigits);
+            column.setNumPrecRadix(numPrecRadix);
+            column.setCharOctetLength(charOctetLength);
+            column.setIsNullable(isNullable);
+
+            getColumnMap().put(name, column);
+            totalColumnSize += column.getColumnSize();
+        }
+
+        /**
+         * Returns whether the columns of this table have been loaded.
+         */
+        synchronized boolean isLoaded() {
+            return allColumnsLoaded;
+        }
+
+        /**
+         * Writes the column metadata of this table to the metadata cache.
+         */
+        private synchronized void writeColumns(DataOutputStream out)
+            throws IOException
+        {
+            out.writeUTF(name);
+            out.writeInt(getColumnMap().size());
+            for (Column column : getColumnMap().values()) {
+                out.writeUTF(column.getName());
+                out.writeInt(column.getType());
+                out.writeUTF(
+                    column.getTypeName() == null ? "" : column.getTypeName());
+                out.writeInt(column.getColumnSize());
+                out.writeInt(column.getDecimalDigits());
+                out.writeInt(column.getNumPrecRadix());
+                out.writeInt(column.getCharOctetLength());
+                out.writeBoolean(column.isNullable());
+            }
+        }
+
+        /**
+         * Reads the column metadata of this table from the metadata cache.
+         * The table name has already been read.
+         */
+        private synchronized void readColumns(DataInputStream in)
+            throws IOException
+        {
+            final int columnCount = in.readInt();
+            final boolean load = !allColumnsLoaded;
+            for (int i = 0; i < columnCount; i++) {
+                final String columnName = in.readUTF();
+                final int type = in.readInt();
+                final String typeName = in.readUTF();
+                final int columnSize = in.readInt();
+                final int decimalDigits = in.readInt();
+                final int numPrecRadix = in.readInt();
+                final int charOctetLength = in.readInt();
+                final boolean isNullable = in.readBoolean();
+                if (load) {
+                    addColumn(
+                        columnName,
+                        type,
+                        typeName,
+                        columnSize,
+                        decimalDigits,
+                        numPrecRadix,
+                        charOctetLength,
+                        isNullable);
+                }
+            }
+            allColumnsLoaded = true;
+        }
+
         public Map<String, Column> getColumnMap() {
             if (columnMap == null) {
                 columnMap = new HashMap<String, Column>();
@@ -1124,6 +1237,18 @@ public class JdbcSchema {
     private String catalog;
     private boolean allTablesLoaded;
 
+    /**
+     * Identifies the database in the metadata cache; null until the tables
+     * have been loaded.
+     */
+    private String metadataCacheKey;
+
+    /**
+     * Digest of the names and types of the database's tables. If the
+     * fingerprint of a metadata cache file differs, the file is stale.
+     */
+    private String fingerprint;
+
     /**
      * Tables by name. We use a sorted map so {@link #getTables()}'s output
      * is in deterministic order.
@@ -1149,6 +1274,8 @@ public class JdbcSchema {
         allTablesLoaded = false;
         schema = null;
         catalog = null;
+        metadataCacheKey = null;
+        fingerprint = null;
         tables.clear();
     }
 
@@ -1275,6 +1402,8 @@ public class JdbcSchema {
                 loadTablesOfType(databaseMetaData, tableTypes);
             }
             allTablesLoaded = true;
+            metadataCacheKey = computeMetadataCacheKey(databaseMetaData);
+            readMetadataCache();
         } finally {
             if (conn != null) {
                 conn.close();
@@ -1334,6 +1463,257 @@ public class JdbcSchema {
         return tables;
     }
 
+    /**
+     * Loads the columns of a collection of tables, in parallel, using up to
+     * {@link MondrianProperties#AggregateMetadataThreads} threads. Then, if
+     * any columns were loaded, writes the metadata cache.
+     *
+     * @param tables Tables whose columns to load
+     * @throws SQLException if loading any table's columns fails
+     */
+    public void loadColumns(Collection<Table> tables) throws SQLException {
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (final Table table : tables) {
+            if (table.isLoaded()) {
+                continue;
+            }
+            futures.add(
+                metadataExecutor.submit(
+                    new Callable<Void>() {
+                        public Void call() throws SQLException {
+                            table.load();
+                            return null;
+                        }
+                    }));
+        }
+        if (futures.isEmpty()) {
+            return;
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(
+                    "Interrupted while loading column metadata", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw Util.newError(
+                    e.getCause(), "while loading column metadata");
+            }
+        }
+        writeMetadataCache();
+    }
+
+    /**
+     * Computes the key that identifies this database in the metadata cache.
+     */
+    private String computeMetadataCacheKey(DatabaseMetaData databaseMetaData)
+        throws SQLException
+    {
+        return new ByteString(
+            Util.digestMd5(
+                databaseMetaData.getURL()
+                + "|" + databaseMetaData.getUserName()
+                + "|" + getCatalogName()
+                + "|" + getSchemaName())).toString();
+    }
+
+    /**
+     * Returns the file that caches the column metadata of this database, or
+     * null if the cache is disabled or the tables have not been loaded.
+     */
+    private File getMetadataCacheFile() {
+        return getMetadataCacheFile(metadataCacheKey);
+    }
+
+    /**
+     * Returns the file that caches the column metadata of the database with
+     * a given key, or null if the cache is disabled or the key is null.
+     */
+    private static File getMetadataCacheFile(String key) {
+        final String dir =
+            MondrianProperties.instance().AggregateMetadataCacheDir.get();
+        if (dir == null || dir.length() == 0 || key == null) {
+            return null;
+        }
+        return new File(dir, key + ".metadata");
+    }
+
+    /**
+     * Deletes the metadata cache file of the database accessed via a
+     * DataSource, and clears the tables and columns that have been loaded,
+     * so that they are read from the database next time they are needed.
+     *
+     * <p>The cache file is only invalidated automatically if tables are
+     * added or removed, or when it expires; call this method after altering
+     * the columns of an existing table.
+     *
+     * @param dataSource Data source
+     * @throws SQLException if the database cannot be accessed
+     */
+    public static synchronized void clearMetadataCache(DataSource dataSource)
+        throws SQLException
+    {
+        final JdbcSchema db = makeDB(dataSource);
+        Connection conn = null;
+        try {
+            conn = dataSource.getConnection();
+            final File file =
+                getMetadataCacheFile(
+                    db.computeMetadataCacheKey(conn.getMetaData()));
+            if (file != null && file.exists() && !file.delete()) {
+                db.getLogger().warn(
+                    "Could not delete metadata cache file " + file);
+            }
+        } finally {
+            if (conn != null) {
+                conn.close();
+            }
+        }
+        clearDB(dataSource);
+    }
+
+    /**
+     * Computes a digest of the names and types of the tables.
+     */
+    private String computeFingerprint() {
+        final StringBuilder buf = new StringBuilder();
+        for (Table table : getTablesMap().values()) {
+            buf.append(table.getName())
+                .append('\t')
+                .append(table.getTableType())
+                .append('\n');
+        }
+        return new ByteString(Util.digestMd5(buf.toString())).toString();
+    }
+
+    /**
+     * Populates the columns of tables from the metadata cache file, if there
+     * is one, it has not expired, and its fingerprint matches the current
+     * list of tables.
+     */
+    private void readMetadataCache() {
+        final File file = getMetadataCacheFile();
+        if (file == null) {
+            return;
+        }
+        fingerprint = computeFingerprint();
+        if (!file.exists()) {
+            return;
+        }
+        final int maxAge =
+            MondrianProperties.instance().AggregateMetadataCacheMaxAge.get();
+        if (maxAge > 0
+            && System.currentTimeMillis() - file.lastModified()
+                > maxAge * 1000L)
+        {
+            getLogger().debug("Ignoring expired metadata cache file " + file);
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != METADATA_CACHE_VERSION
+                || !in.readUTF().equals(fingerprint))
+            {
+                getLogger().debug(
+                    "Ignoring stale metadata cache file " + file);
+                return;
+            }
+            final int tableCount = in.readInt();
+            int readCount = 0;
+            for (int i = 0; i < tableCount; i++) {
+                final String tableName = in.readUTF();
+                Table table = getTablesMap().get(tableName);
+                if (table == null) {
+                    // Cannot happen if the fingerprint matches, but read
+                    // the columns into a throwaway table to stay in sync.
+                    table = new Table(tableName, null);
+                }
+                table.readColumns(in);
+                ++readCount;
+            }
+            if (getLogger().isDebugEnabled()) {
+                getLogger().debug(
+                    "Read column metadata of " + readCount
+                    + " tables from " + file);
+            }
+        } catch (IOException e) {
+            getLogger().warn(
+                "Error while reading metadata cache file " + file
+                + "; ignoring it", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the columns of every table whose columns have been loaded to
+     * the metadata cache file. Writes to a temporary file first, so that
+     * concurrent readers never see a partial file.
+     */
+    private synchronized void writeMetadataCache() {
+        final File file = getMetadataCacheFile();
+        if (file == null || fingerprint == null) {
+            return;
+        }
+        final List<Table> loadedTables = new ArrayList<Table>();
+        for (Table table : getTablesMap().values()) {
+            if (table.isLoaded()) {
+                loadedTables.add(table);
+            }
+        }
+        DataOutputStream out = null;
+        File tempFile = null;
+        try {
+            file.getParentFile().mkdirs();
+            tempFile =
+                File.createTempFile(
+                    metadataCacheKey, ".tmp", file.getParentFile());
+            out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(METADATA_CACHE_VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(loadedTables.size());
+            for (Table table : loadedTables) {
+                table.writeColumns(out);
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(file)) {
+                file.delete();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("Could not rename " + tempFile);
+                }
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            getLogger().warn(
+                "Error while writing metadata cache file " + file, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
     public static synchronized void clearAllDBs() {
         factory = null;
         makeFactory();
@@ -985,7 +985,7 @@ abstract class Recognizer {
 
         List<RolapCube> list = new ArrayList<RolapCube>();
         RolapSchema schema = star.getSchema();
-        for (RolapCube cube : schema.getCubeList()) {
+        for (RolapCube cube : schema.getLoadedCubeList()) {
             if (cube.isVirtual()) {
                 continue;
             }
@@ -0,0 +1,116 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate count of how often each key has been accessed recently.
+ *
+ * <p>A count-min sketch: each key increments one counter in each of four
+ * rows, chosen by different hashes of the key, and its frequency is the
+ * smallest of those counters. Collisions can only make a frequency larger
+ * than it really is. Counters saturate at 15, and every so often all
+ * counters are halved, so that keys that were popular a long time ago do
+ * not stay popular forever.
+ *
+ * <p>Thread safe, and does not lock, so that it can be incremented each time
+ * a segment is read. An increment that happens while counters are being
+ * halved may be lost; the counts are estimates anyway.
+ */
+class FrequencySketch {
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {
+        0x97cb3127, 0xb4b82e9d, 0x8ffd4c87, 0xc2b2ae35
+    };
+
+    /** Counters; row {@code i} starts at offset {@code i * width}. */
+    private final AtomicIntegerArray table;
+    private final int width;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * Creates a FrequencySketch.
+     *
+     * @param capacity Number of keys expected to be tracked at one time
+     */
+    FrequencySketch(int capacity) {
+        int width = 16;
+        while (width < capacity && width < (1 << 24)) {
+            width <<= 1;
+        }
+        this.table = new AtomicIntegerArray(SEEDS.length * width);
+        this.width = width;
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Records an access to a key.
+     */
+    void increment(Object key) {
+        final int hash = key.hashCode();
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            final int index = index(hash, i);
+            for (;;) {
+                final int count = table.get(index);
+                if (count >= MAX_COUNT) {
+                    break;
+                }
+                if (table.compareAndSet(index, count, count + 1)) {
+                    added = true;
+                    break;
+                }
+            }
+        }
+        // Only the thread that takes the count to the sample size resets.
+        if (added && additions.incrementAndGet() == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the estimated number of recent accesses to a key.
+     */
+    int frequency(Object key) {
+        final int hash = key.hashCode();
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, table.get(index(hash, i)));
+        }
+        return frequency;
+    }
+
+    /**
+     * Returns the offset in {@link #table} of the counter for a hash in a
+     * given row.
+     */
+    private int index(int hash, int i) {
+        int h = (hash ^ (hash >>> 16)) * SEEDS[i];
+        h ^= h >>> 15;
+        return i * width + (h & mask);
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        for (int j = 0; j < table.length(); j++) {
+            table.set(j, table.get(j) >> 1);
+        }
+        additions.addAndGet(-sampleSize / 2);
+    }
+}
+
+// End FrequencySketch.java
@@ -9,9 +9,13 @@
 
 package mondrian.rolap.cache;
 
+import mondrian.olap.MondrianProperties;
 import mondrian.spi.*;
+import mondrian.spi.SegmentCache.SegmentCacheListener.SegmentCacheEvent;
 
-import java.lang.ref.SoftReference;
+import org.apache.log4j.Logger;
+
+import java.lang.ref.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -20,25 +24,114 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * Implementation of {@link mondrian.spi.SegmentCache} that stores segments
  * in memory.
  *
- * <p>Segments are held via soft references, so the garbage collector can remove
- * them if it sees fit.</p>
+ * <p>By default, segments are held via soft references, so the garbage
+ * collector can remove them if it sees fit.</p>
+ *
+ * <p>If {@link MondrianProperties#LocalSegmentCacheMaxMegabytes} is
+ * positive, segments are held via strong references, and the cache keeps
+ * the estimated size of its segments within that budget. When a segment does
+ * not fit, the cache evicts the segments with the lowest value, where value
+ * is recent frequency of use (see {@link FrequencySketch}) times the time
+ * it took to load the segment, divided by its size. A new segment is
+ * admitted only if it is at least as valuable as the segments it would
+ * evict. Segments of each cube are also limited to
+ * {@link MondrianProperties#LocalSegmentCacheCubeQuota}, and segments that
+ * are pinned by a query, via {@link #createPins}, are never evicted.</p>
  *
  * @author Julian Hyde
  */
 public class MemorySegmentCache implements SegmentCache {
+    private static final Logger LOGGER =
+        Logger.getLogger(MemorySegmentCache.class);
+
+    /**
+     * Load time assumed for segments whose load time is not known, such as
+     * segments created by rolling up other segments, and added to the load
+     * time of every segment, in nanoseconds.
+     */
+    private static final long MIN_LOAD_NANOS = 1000000L;
+
+    /**
+     * Maximum number of load times waiting for their segment to be put.
+     */
+    private static final int MAX_LOAD_COSTS = 1000;
+
     // Use a thread-safe map because the SegmentCache
     // interface requires thread safety.
-    private final Map<SegmentHeader, SoftReference<SegmentBody>> map =
-        new ConcurrentHashMap<SegmentHeader, SoftReference<SegmentBody>>();
+    private final Map<SegmentHeader, Entry> map =
+        new ConcurrentHashMap<SegmentHeader, Entry>();
     private final List<SegmentCacheListener> listeners =
         new CopyOnWriteArrayList<SegmentCacheListener>();
 
+    /**
+     * Maximum number of bytes, or 0 if segments are held via soft
+     * references.
+     */
+    private final long maxBytes;
+
+    /**
+     * Maximum number of bytes of segments of any one cube.
+     */
+    private final long maxCubeBytes;
+
+    // The following fields are used only if maxBytes is positive. The sketch
+    // is thread safe; the other fields are guarded by this.
+    private final FrequencySketch sketch;
+    private long bytes;
+    /**
+     * Segments in ascending order of value, as it was when each segment was
+     * last ranked. Segments become more valuable as they are used, so
+     * {@link #chooseVictims} ranks a segment again before evicting it.
+     */
+    private final TreeMap<Rank, SegmentHeader> order =
+        new TreeMap<Rank, SegmentHeader>();
+    private long rankCount;
+    private final Map<List<String>, Long> cubeBytes =
+        new HashMap<List<String>, Long>();
+    private final Map<SegmentHeader, Long> loadCosts =
+        new HashMap<SegmentHeader, Long>();
+    private final Map<SegmentHeader, Integer> pinCounts =
+        new HashMap<SegmentHeader, Integer>();
+    private final Set<Pins> pinsSet = new HashSet<Pins>();
+    private final ReferenceQueue<Object> pinsQueue =
+        new ReferenceQueue<Object>();
+
+    /**
+     * Creates a MemorySegmentCache whose limits are given by
+     * {@link MondrianProperties#LocalSegmentCacheMaxMegabytes} and
+     * {@link MondrianProperties#LocalSegmentCacheCubeQuota}.
+     */
+    public MemorySegmentCache() {
+        this(
+            MondrianProperties.instance().LocalSegmentCacheMaxMegabytes.get()
+                * 1024L * 1024L,
+            MondrianProperties.instance().LocalSegmentCacheCubeQuota.get());
+    }
+
+    /**
+     * Creates a MemorySegmentCache with given limits.
+     *
+     * @param maxBytes Maximum number of bytes, or 0 to hold segments via
+     *     soft references
+     * @param cubeQuota Maximum size of segments of any one cube, as a
+     *     percentage of maxBytes
+     */
+    MemorySegmentCache(long maxBytes, int cubeQuota) {
+        this.maxBytes = Math.max(maxBytes, 0);
+        this.maxCubeBytes =
+            this.maxBytes * Math.max(Math.min(cubeQuota, 100), 1) / 100;
+        this.sketch = this.maxBytes > 0 ? new FrequencySketch(1024) : null;
+    }
+
     public SegmentBody get(SegmentHeader header) {
-        final SoftReference<SegmentBody> ref = map.get(header);
-        if (ref == null) {
+        if (maxBytes > 0) {
+            sketch.increment(header);
+        }
+        final Entry entry = map.get(header);
+        if (entry == null) {
             return null;
         }
-        final SegmentBody body = ref.get();
+        final SegmentBody body = entry.get();
         if (body == null) {
             map.remove(header);
         }
@@ -46,11 +139,11 @@ public class MemorySegmentCache implements SegmentCache {
     }
 
     public boolean contains(SegmentHeader header) {
-        final SoftReference<SegmentBody> ref = map.get(header);
-        if (ref == null) {
+        final Entry entry = map.get(header);
+        if (entry == null) {
             return false;
         }
-        final SegmentBody body = ref.get();
+        final SegmentBody body = entry.get();
         if (body == null) {
             map.remove(header);
             return false;
@@ -67,41 +160,36 @@ public class MemorySegmentCache implements SegmentCache {
         // and throwing an exception?
         assert header != null;
         assert body != null;
-        map.put(header, new SoftReference<SegmentBody>(body));
+        if (maxBytes > 0) {
+            final List<SegmentHeader> evicted = new ArrayList<SegmentHeader>();
+            final boolean admitted = admit(header, body, evicted);
+            for (SegmentHeader victim : evicted) {
+                fireSegmentCacheEvent(
+                    event(victim, SegmentCacheEvent.EventType.ENTRY_DELETED));
+            }
+            if (!admitted) {
+                return false;
+            }
+        } else {
+            map.put(header, new Entry(body, true, 0, 0));
+        }
         fireSegmentCacheEvent(
-            new SegmentCache.SegmentCacheListener.SegmentCacheEvent() {
-                public boolean isLocal() {
-                    return true;
-                }
-                public SegmentHeader getSource() {
-                    return header;
-                }
-                public EventType getEventType() {
-                    return SegmentCacheListener.SegmentCacheEvent
-                        .EventType.ENTRY_CREATED;
-                }
-            });
+            event(header, SegmentCacheEvent.EventType.ENTRY_CREATED));
         return true; // success
     }
 
     public boolean remove(final SegmentHeader header) {
-        final boolean result =
-            map.remove(header) != null;
+        final boolean result;
+        if (maxBytes > 0) {
+            synchronized (this) {
+                result = evict(header) != null;
+            }
+        } else {
+            result = map.remove(header) != null;
+        }
         if (result) {
             fireSegmentCacheEvent(
-                new SegmentCache.SegmentCacheListener.SegmentCacheEvent() {
-                    public boolean isLocal() {
-                        return true;
-                    }
-                    public SegmentHeader getSource() {
-                        return header;
-                    }
-                    public EventType getEventType() {
-                        return
-                            SegmentCacheListener.SegmentCacheEvent
-                                .EventType.ENTRY_DELETED;
-                    }
-                });
+                event(header, SegmentCacheEvent.EventType.ENTRY_DELETED));
         }
         return result;
     }
@@ -109,6 +197,14 @@ public class MemorySegmentCache implements SegmentCache {
     public void tearDown() {
         map.clear();
         listeners.clear();
+        if (maxBytes > 0) {
+            synchronized (this) {
+                bytes = 0;
+                cubeBytes.clear();
+                loadCosts.clear();
+                order.clear();
+            }
+        }
     }
 
     public void addListener(SegmentCacheListener listener) {
@@ -130,6 +226,393 @@ public class MemorySegmentCache implements SegmentCache {
             listener.handle(evt);
         }
     }
+
+    /**
+     * Records how long it took to load a segment, so that the cache can
+     * weigh it when the segment is put. Has no effect unless the cache has
+     * a size limit.
+     *
+     * @param header Header of segment that is about to be put
+     * @param loadNanos Time taken to load the segment, in nanoseconds
+     */
+    public void setLoadCost(SegmentHeader header, long loadNanos) {
+        if (maxBytes > 0) {
+            synchronized (this) {
+                if (loadCosts.size() >= MAX_LOAD_COSTS) {
+                    loadCosts.clear();
+                }
+                loadCosts.put(header, loadNanos);
+            }
+        }
+    }
+
+    /**
+     * Creates an object that pins segments in this cache, that is, prevents
+     * them from being evicted, for as long as a given owner is reachable.
+     *
+     * @param owner Owner, typically a query's set of pinned segments
+     * @return Pins, or null if this cache has no size limit and therefore
+     *     never evicts segments
+     */
+    public Pins createPins(Object owner) {
+        if (maxBytes <= 0) {
+            return null;
+        }
+        synchronized (this) {
+            expungePins();
+            final Pins pins = new Pins(owner, pinsQueue);
+            pinsSet.add(pins);
+            return pins;
+        }
+    }
+
+    /**
+     * Returns the estimated number of bytes used by segments in this cache;
+     * 0 if the cache has no size limit.
+     */
+    public synchronized long getByteCount() {
+        return bytes;
+    }
+
+    /**
+     * Puts a segment into a cache that has a size limit, evicting segments if
+     * necessary.
+     *
+     * @param header Segment header
+     * @param body Segment body
+     * @param evicted List to which to add headers of evicted segments
+     * @return Whether the segment was admitted
+     */
+    private synchronized boolean admit(
+        SegmentHeader header,
+        SegmentBody body,
+        List<SegmentHeader> evicted)
+    {
+        expungePins();
+        sketch.increment(header);
+        final Long loadNanos = loadCosts.remove(header);
+        final Entry old = map.get(header);
+        final Entry entry =
+            new Entry(
+                body,
+                false,
+                estimateBytes(body),
+                loadNanos != null ? loadNanos
+                    : old != null ? old.loadNanos
+                    : 0);
+        final List<SegmentHeader> victims = chooseVictims(header, entry);
+        if (victims == null) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(
+                    "Segment of " + entry.bytes + " bytes not admitted: "
+                    + header.getUniqueID());
+            }
+            // A previous body of the same segment is now out of date.
+            if (old != null) {
+                evict(header);
+                evicted.add(header);
+            }
+            return false;
+        }
+        for (SegmentHeader victim : victims) {
+            evict(victim);
+            evicted.add(victim);
+        }
+        evict(header);
+        map.put(header, entry);
+        rank(header, entry, value(header, entry));
+        bytes += entry.bytes;
+        addCubeBytes(header, entry.bytes);
+        return true;
+    }
+
+    /**
+     * Chooses segments to evict to make room for a new segment, lowest value
+     * first. Returns null if the new segment does not fit, or if it is less
+     * valuable than the segments that would need to be evicted.
+     *
+     * <p>Walks {@link #order} from the least valuable segment, rather than
+     * sorting every segment. A segment that has become more valuable since
+     * it was ranked is ranked again, once, and visited when the walk reaches
+     * its new position.
+     */
+    private List<SegmentHeader> chooseVictims(
+        SegmentHeader header,
+        Entry entry)
+    {
+        if (entry.bytes > maxBytes || entry.bytes > maxCubeBytes) {
+            return null;
+        }
+        final Entry old = map.get(header);
+        final long oldBytes = old == null ? 0 : old.bytes;
+        final List<String> cubeKey = cubeKey(header);
+        long excess = bytes - oldBytes + entry.bytes - maxBytes;
+        long cubeExcess =
+            cubeBytes(cubeKey) - oldBytes + entry.bytes - maxCubeBytes;
+        if (excess <= 0 && cubeExcess <= 0) {
+            return Collections.emptyList();
+        }
+        final double value = value(header, entry);
+        final List<SegmentHeader> victims = new ArrayList<SegmentHeader>();
+        final Set<SegmentHeader> reranked = new HashSet<SegmentHeader>();
+        for (Rank rank = order.isEmpty() ? null : order.firstKey();
+            rank != null;
+            rank = order.higherKey(rank))
+        {
+            final SegmentHeader candidate = order.get(rank);
+            final Entry e = map.get(candidate);
+            if (e == null
+                || candidate.equals(header)
+                || pinCounts.containsKey(candidate))
+            {
+                continue;
+            }
+            final boolean sameCube = cubeKey(candidate).equals(cubeKey);
+            if (excess <= 0 && !sameCube) {
+                // Only the cube's quota is exceeded.
+                continue;
+            }
+            final double candidateValue = value(candidate, e);
+            if (candidateValue > rank.value && reranked.add(candidate)) {
+                rank(candidate, e, candidateValue);
+                continue;
+            }
+            if (candidateValue > value) {
+                return null;
+            }
+            victims.add(candidate);
+            excess -= e.bytes;
+            if (sameCube) {
+                cubeExcess -= e.bytes;
+            }
+            if (excess <= 0 && cubeExcess <= 0) {
+                return victims;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records the value of a segment in {@link #order}.
+     */
+    private void rank(SegmentHeader header, Entry entry, double value) {
+        if (entry.rank != null) {
+            order.remove(entry.rank);
+        }
+        entry.rank = new Rank(value, rankCount++);
+        order.put(entry.rank, header);
+    }
+
+    private double value(SegmentHeader header, Entry entry) {
+        return (double) sketch.frequency(header)
+            * (entry.loadNanos + MIN_LOAD_NANOS)
+            / entry.bytes;
+    }
+
+    /**
+     * Removes a segment from a cache that has a size limit.
+     */
+    private Entry evict(SegmentHeader header) {
+        final Entry entry = map.remove(header);
+        if (entry != null) {
+            if (entry.rank != null) {
+                order.remove(entry.rank);
+            }
+            bytes -= entry.bytes;
+            addCubeBytes(header, -entry.bytes);
+        }
+        return entry;
+    }
+
+    private static List<String> cubeKey(SegmentHeader header) {
+        return Arrays.asList(header.schemaName, header.cubeName);
+    }
+
+    private long cubeBytes(List<String> cubeKey) {
+        final Long n = cubeBytes.get(cubeKey);
+        return n == null ? 0 : n;
+    }
+
+    private void addCubeBytes(SegmentHeader header, long delta) {
+        final List<String> cubeKey = cubeKey(header);
+        final long n = cubeBytes(cubeKey) + delta;
+        if (n == 0) {
+            cubeBytes.remove(cubeKey);
+        } else {
+            cubeBytes.put(cubeKey, n);
+        }
+    }
+
+    /**
+     * Releases the pins of owners that have been garbage-collected.
+     */
+    private void expungePins() {
+        for (Reference<?> ref; (ref = pinsQueue.poll()) != null;) {
+            final Pins pins = (Pins) ref;
+            pinsSet.remove(pins);
+            for (SegmentHeader header : pins.headers) {
+                unpin(header);
+            }
+        }
+    }
+
+    private synchronized void pin(Pins pins, SegmentHeader header) {
+        if (!pinsSet.contains(pins) || !pins.headers.add(header)) {
+            return;
+        }
+        final Integer count = pinCounts.get(header);
+        pinCounts.put(header, count == null ? 1 : count + 1);
+    }
+
+    private synchronized void release(Pins pins) {
+        if (pinsSet.contains(pins)) {
+            for (SegmentHeader header : pins.headers) {
+                unpin(header);
+            }
+            pins.headers.clear();
+        }
+    }
+
+    private void unpin(SegmentHeader header) {
+        final int count = pinCounts.get(header);
+        if (count == 1) {
+            pinCounts.remove(header);
+        } else {
+            pinCounts.put(header, count - 1);
+        }
+    }
+
+    /**
+     * Estimates the number of bytes of memory used by a segment body.
+     *
+     * @param body Segment body
+     * @return Estimated number of bytes
+     */
+    static long estimateBytes(SegmentBody body) {
+        long bytes = 64;
+        final SortedSet<Comparable>[] axisValueSets = body.getAxisValueSets();
+        if (axisValueSets != null) {
+            for (SortedSet<Comparable> axisValueSet : axisValueSets) {
+                bytes += 64 + 48L * axisValueSet.size();
+            }
+        }
+        Object values;
+        try {
+            values = body.getValueArray();
+        } catch (UnsupportedOperationException e) {
+            // Sparse segment.
+            values = null;
+        }
+        if (values instanceof double[]) {
+            final int length = ((double[]) values).length;
+            bytes += 8L * length + length / 8;
+        } else if (values instanceof int[]) {
+            final int length = ((int[]) values).length;
+            bytes += 4L * length + length / 8;
+        } else if (values instanceof Object[]) {
+            // Reference, and a boxed value.
+            bytes += 24L * ((Object[]) values).length;
+        } else {
+            // Key, boxed value, and map entry.
+            bytes += 80L * body.getValueMap().size();
+        }
+        return bytes;
+    }
+
+    private static SegmentCacheEvent event(
+        final SegmentHeader header,
+        final SegmentCacheEvent.EventType eventType)
+    {
+        return new SegmentCacheEvent() {
+            public boolean isLocal() {
+                return true;
+            }
+            public SegmentHeader getSource() {
+                return header;
+            }
+            public EventType getEventType() {
+                return eventType;
+            }
+        };
+    }
+
+    /**
+     * Segment body in the cache, held via a soft or a strong reference.
+     */
+    private static class Entry {
+        private final SoftReference<SegmentBody> ref;
+        private final SegmentBody body;
+        private final long bytes;
+        private final long loadNanos;
+        /**
+         * Position in {@link MemorySegmentCache#order}; guarded by the
+         * cache.
+         */
+        private Rank rank;
+
+        Entry(SegmentBody body, boolean soft, long bytes, long loadNanos) {
+            this.ref = soft ? new SoftReference<SegmentBody>(body) : null;
+            this.body = soft ? null : body;
+            this.bytes = bytes;
+            this.loadNanos = loadNanos;
+        }
+
+        SegmentBody get() {
+            return ref == null ? body : ref.get();
+        }
+    }
+
+    /**
+     * Value of a segment when it was ranked, and a sequence number that
+     * distinguishes segments of equal value.
+     */
+    private static class Rank implements Comparable<Rank> {
+        private final double value;
+        private final long seq;
+
+        Rank(double value, long seq) {
+            this.value = value;
+            this.seq = seq;
+        }
+
+        public int compareTo(Rank o) {
+            final int c = Double.compare(value, o.value);
+            if (c != 0) {
+                return c;
+            }
+            return seq < o.seq ? -1 : seq == o.seq ? 0 : 1;
+        }
+    }
+
+    /**
+     * Segments pinned by an owner. The segments remain pinned until
+     * {@link #release} is called or the owner is garbage-collected.
+     * Segments can be pinned again after a release.
+     */
+    public class Pins extends WeakReference<Object> {
+        private final Set<SegmentHeader> headers =
+            new HashSet<SegmentHeader>();
+
+        private Pins(Object owner, ReferenceQueue<Object> queue) {
+            super(owner, queue);
+        }
+
+        /**
+         * Pins a segment.
+         *
+         * @param header Segment header
+         */
+        public void pin(SegmentHeader header) {
+            MemorySegmentCache.this.pin(this, header);
+        }
+
+        /**
+         * Releases all segments pinned by this owner.
+         */
+        public void release() {
+            MemorySegmentCache.this.release(this);
+        }
+    }
 }
 
 // End MemorySegmentCache.java
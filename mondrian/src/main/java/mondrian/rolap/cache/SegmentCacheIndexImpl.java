@@ -41,8 +41,12 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
     private static final Logger LOGGER =
         Logger.getLogger(SegmentCacheIndexImpl.class);
 
-    private final Map<List, List<SegmentHeader>> bitkeyMap =
-        new HashMap<List, List<SegmentHeader>>();
+    /**
+     * Indexes of the headers with a given dimensionality, keyed by star,
+     * measure, constrained columns and compound predicates.
+     */
+    private final Map<List, SegmentHeaderIndex> bitkeyMap =
+        new HashMap<List, SegmentHeaderIndex>();
 
     /**
      * The fact map allows us to spot quickly which
@@ -68,6 +72,17 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
 
     private final Thread thread;
 
+    /**
+     * Ordinal of the next header to be added. Lookups return headers in the
+     * order they were added.
+     */
+    private long nextOrdinal;
+
+    /**
+     * Maximum number of failed rollup requests to remember for each fact.
+     */
+    private static final int MAX_ROLLUP_MISSES = 1000;
+
     /**
      * Creates a SegmentCacheIndexImpl.
      *
@@ -92,7 +107,7 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
     {
         return Arrays.asList(
             request.getMeasure().getStar().getSchema().getName(),
-            request.getMeasure().getStar().getSchema().getChecksum(),
+            request.getMeasure().getStar().getChecksum(),
             request.getMeasure().getCubeName(),
             request.getMeasure().getStar().getFactTable().getAlias(),
             request.getMeasure().getName(),
@@ -136,15 +151,15 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
                 constrainedColsBitKey,
                 measureName,
                 compoundPredicates);
-        final List<SegmentHeader> headerList = bitkeyMap.get(starKey);
-        if (headerList == null) {
+        final SegmentHeaderIndex index = bitkeyMap.get(starKey);
+        if (index == null) {
             LOGGER.trace(
                 "SegmentCacheIndexImpl("
                 + System.identityHashCode(this)
                 + ").locate:NOMATCH");
             return Collections.emptyList();
         }
-        for (SegmentHeader header : headerList) {
+        for (SegmentHeader header : index.locate(coordinates)) {
             if (matches(header, coordinates, compoundPredicates)) {
                 // Be lazy. Don't allocate a list unless there is at least one
                 // entry.
@@ -190,18 +205,17 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
                 // We put a slot into which the data will become available.
                 headerInfo.slot = new SlotFuture<SegmentBody>();
             }
+            headerInfo.ordinal = nextOrdinal++;
             headerMap.put(header, headerInfo);
         }
 
         final List bitkeyKey = makeBitkeyKey(header);
-        List<SegmentHeader> headerList = bitkeyMap.get(bitkeyKey);
-        if (headerList == null) {
-            headerList = new ArrayList<SegmentHeader>();
-            bitkeyMap.put(bitkeyKey, headerList);
-        }
-        if (!headerList.contains(header)) {
-            headerList.add(header);
+        SegmentHeaderIndex index = bitkeyMap.get(bitkeyKey);
+        if (index == null) {
+            index = new SegmentHeaderIndex();
+            bitkeyMap.put(bitkeyKey, index);
         }
+        index.add(header, headerInfo.ordinal);
 
         final List factKey = makeFactKey(header);
         FactInfo factInfo = factMap.get(factKey);
@@ -209,13 +223,8 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
             factInfo = new FactInfo();
             factMap.put(factKey, factInfo);
         }
-        if (!factInfo.headerList.contains(header)) {
-            factInfo.headerList.add(header);
-        }
-        if (!factInfo.bitkeyPoset
-            .contains(header.getConstrainedColumnsBitKey()))
-        {
-            factInfo.bitkeyPoset.add(header.getConstrainedColumnsBitKey());
+        if (factInfo.headers.add(header)) {
+            factInfo.addBitKey(header.getConstrainedColumnsBitKey());
         }
         if (converter != null) {
             factInfo.converter = converter;
@@ -227,9 +236,7 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
             fuzzyFactInfo = new FuzzyFactInfo();
             fuzzyFactMap.put(fuzzyFactKey, fuzzyFactInfo);
         }
-        if (!fuzzyFactInfo.headerList.contains(header)) {
-            fuzzyFactInfo.headerList.add(header);
-        }
+        fuzzyFactInfo.indexes.add(index);
     }
 
     public void update(
@@ -246,21 +253,18 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
         final HeaderInfo headerInfo = headerMap.get(oldHeader);
         headerMap.remove(oldHeader);
         headerMap.put(newHeader, headerInfo);
+        headerInfo.ordinal = nextOrdinal++;
 
         final List oldBitkeyKey = makeBitkeyKey(oldHeader);
-        List<SegmentHeader> headerList = bitkeyMap.get(oldBitkeyKey);
-        headerList.remove(oldHeader);
-        headerList.add(newHeader);
+        final SegmentHeaderIndex index = bitkeyMap.get(oldBitkeyKey);
+        index.remove(oldHeader);
+        index.add(newHeader, headerInfo.ordinal);
 
         final List oldFactKey = makeFactKey(oldHeader);
         final FactInfo factInfo = factMap.get(oldFactKey);
-        factInfo.headerList.remove(oldHeader);
-        factInfo.headerList.add(newHeader);
-
-        final List oldFuzzyFactKey = makeFuzzyFactKey(oldHeader);
-        final FuzzyFactInfo fuzzyFactInfo = fuzzyFactMap.get(oldFuzzyFactKey);
-        fuzzyFactInfo.headerList.remove(oldHeader);
-        fuzzyFactInfo.headerList.add(newHeader);
+        factInfo.headers.remove(oldHeader);
+        factInfo.headers.add(newHeader);
+        factInfo.rollupMisses.clear();
     }
 
     public void loadSucceeded(SegmentHeader header, SegmentBody body) {
@@ -336,27 +340,29 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
         final List factKey = makeFactKey(header);
         final FactInfo factInfo = factMap.get(factKey);
         if (factInfo != null) {
-            factInfo.headerList.remove(header);
-            factInfo.bitkeyPoset.remove(header.getConstrainedColumnsBitKey());
-            if (factInfo.headerList.size() == 0) {
-                factMap.remove(factKey);
+            if (factInfo.headers.remove(header)) {
+                factInfo.removeBitKey(header.getConstrainedColumnsBitKey());
             }
-        }
-
-        final List fuzzyFactKey = makeFuzzyFactKey(header);
-        final FuzzyFactInfo fuzzyFactInfo = fuzzyFactMap.get(fuzzyFactKey);
-        if (fuzzyFactInfo != null) {
-            fuzzyFactInfo.headerList.remove(header);
-            if (fuzzyFactInfo.headerList.size() == 0) {
-                fuzzyFactMap.remove(fuzzyFactKey);
+            if (factInfo.headers.size() == 0) {
+                factMap.remove(factKey);
             }
         }
 
         final List bitkeyKey = makeBitkeyKey(header);
-        final List<SegmentHeader> headerList = bitkeyMap.get(bitkeyKey);
-        headerList.remove(header);
-        if (headerList.size() == 0) {
+        final SegmentHeaderIndex index = bitkeyMap.get(bitkeyKey);
+        index.remove(header);
+        if (index.isEmpty()) {
             bitkeyMap.remove(bitkeyKey);
+
+            final List fuzzyFactKey = makeFuzzyFactKey(header);
+            final FuzzyFactInfo fuzzyFactInfo =
+                fuzzyFactMap.get(fuzzyFactKey);
+            if (fuzzyFactInfo != null) {
+                fuzzyFactInfo.indexes.remove(index);
+                if (fuzzyFactInfo.indexes.isEmpty()) {
+                    fuzzyFactMap.remove(fuzzyFactKey);
+                }
+            }
         }
     }
 
@@ -427,20 +433,36 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
         if (factInfo == null) {
             return list;
         }
-        for (SegmentHeader header : factInfo.headerList) {
-            // Don't return stale segments.
-            if (headerMap.get(header).removeAfterLoad) {
-                continue;
-            }
-            if (intersects(header, region)) {
-                // Be lazy. Don't allocate a list unless there is at least one
-                // entry.
-                if (list.isEmpty()) {
-                    list = new ArrayList<SegmentHeader>();
+        for (SegmentHeaderIndex index : factInfo.indexes) {
+            for (SegmentHeader header : index.intersect(region)) {
+                // Don't return stale segments.
+                if (headerMap.get(header).removeAfterLoad) {
+                    continue;
+                }
+                if (intersects(header, region)) {
+                    // Be lazy. Don't allocate a list unless there is at least
+                    // one entry.
+                    if (list.isEmpty()) {
+                        list = new ArrayList<SegmentHeader>();
+                    }
+                    list.add(header);
                 }
-                list.add(header);
             }
         }
+        if (factInfo.indexes.size() > 1) {
+            // Return headers in the order they were added.
+            Collections.sort(
+                list,
+                new Comparator<SegmentHeader>() {
+                    public int compare(SegmentHeader o1, SegmentHeader o2) {
+                        final long ordinal1 = headerMap.get(o1).ordinal;
+                        final long ordinal2 = headerMap.get(o2).ordinal;
+                        return ordinal1 < ordinal2 ? -1
+                            : ordinal1 > ordinal2 ? 1
+                            : 0;
+                    }
+                });
+        }
         return list;
     }
 
@@ -481,8 +503,10 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
     public void printCacheState(PrintWriter pw) {
         checkThread();
         final List<List<SegmentHeader>> values =
-            new ArrayList<List<SegmentHeader>>(
-                bitkeyMap.values());
+            new ArrayList<List<SegmentHeader>>();
+        for (SegmentHeaderIndex index : bitkeyMap.values()) {
+            values.add(index.headers());
+        }
         Collections.sort(
             values,
             new Comparator<List<SegmentHeader>>() {
@@ -720,6 +744,29 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
             return Collections.emptyList();
         }
 
+        // If the same request has failed since the last time a header was
+        // added to this fact, it will fail again. Removing headers cannot
+        // make a rollup possible, so only add and update clear the memo.
+        final List missKey =
+            Arrays.asList(
+                constrainedColsBitKey.copy(),
+                new HashMap<String, Comparable>(coordinates));
+        if (factInfo.rollupMisses.contains(missKey)) {
+            return Collections.emptyList();
+        }
+
+        // Coordinates of the cell, with null values replaced by the value
+        // used in segment headers.
+        final Map<String, Comparable> sqlCoordinates =
+            new HashMap<String, Comparable>();
+        for (Map.Entry<String, Comparable> entry : coordinates.entrySet()) {
+            sqlCoordinates.put(
+                entry.getKey(),
+                entry.getValue() == null
+                    ? RolapUtil.sqlNullValue
+                    : entry.getValue());
+        }
+
         // Iterate over all dimensionalities that are a superset of the desired
         // columns and for which a segment is known to exist.
         //
@@ -740,15 +787,28 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
                 bitKey,
                 measureName,
                 compoundPredicates);
-            final List<SegmentHeader> headers = bitkeyMap.get(bitkeyKey);
-            assert headers != null : "bitkeyPoset / bitkeyMap inconsistency";
+            final SegmentHeaderIndex index = bitkeyMap.get(bitkeyKey);
+            assert index != null : "bitkeyPoset / bitkeyMap inconsistency";
+
+            // Skip this dimensionality if, between them, its headers do not
+            // have all values of a column that is being aggregated away.
+            if (!index.mayRollUp(coordinates.keySet())) {
+                continue;
+            }
 
             // For columns that are still present after roll up, make sure that
             // the required value is in the range covered by the segment.
             // Of the columns that are being aggregated away, are all of
             // them wildcarded? If so, this segment is a match. If not, we
             // will need to combine with other segments later.
-            findRollupCandidatesAmong(coordinates, list, headers);
+            findRollupCandidatesAmong(
+                coordinates, list, index.locate(sqlCoordinates));
+        }
+        if (list.isEmpty()) {
+            if (factInfo.rollupMisses.size() >= MAX_ROLLUP_MISSES) {
+                factInfo.rollupMisses.clear();
+            }
+            factInfo.rollupMisses.add(missKey);
         }
         return list;
     }
@@ -958,43 +1018,82 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
                     eqclassPrimaryValues.values()));
         }
 
-        // Iterate over every combination of values, and make sure that some
-        // segment can satisfy each.
-        //
-        // TODO: A greedy algorithm would probably be better. Rather than adding
-        // the first segment that contains a particular value combination, add
-        // the segment that contains the most value combinations that we are are
-        // not currently covering.
-        final CartesianProductList<Comparable> tuples =
-            new CartesianProductList<Comparable>(valueLists);
-        final List<SegmentHeader> usedSegments = new ArrayList<SegmentHeader>();
-        final List<SegmentHeader> unusedSegments =
-            new ArrayList<SegmentHeader>(Pair.left(matchingHeaders));
-        tupleLoop:
-        for (List<Comparable> tuple : tuples) {
-            // If the value combination is handled by one of the used segments,
-            // great!
-            for (SegmentHeader segment : usedSegments) {
-                if (contains(segment, tuple, columnNameList)) {
-                    continue tupleLoop;
+        // Choose segments greedily. Each round, add the segment that contains
+        // the most value combinations that are not yet covered, preferring
+        // the segment with fewer cells if there is a tie. The result is not
+        // always minimal, but it usually has fewer segments and cells to roll
+        // up than the first segments that happen to cover the space.
+        final List<SegmentHeader> candidates = Pair.left(matchingHeaders);
+        final List<BitSet> coverage = new ArrayList<BitSet>();
+        for (int i = 0; i < candidates.size(); i++) {
+            coverage.add(new BitSet());
+        }
+        final BitSet uncovered = new BitSet();
+        int t = 0;
+        for (List<Comparable> tuple
+            : new CartesianProductList<Comparable>(valueLists))
+        {
+            boolean covered = false;
+            for (int i = 0; i < candidates.size(); i++) {
+                if (contains(candidates.get(i), tuple, columnNameList)) {
+                    coverage.get(i).set(t);
+                    covered = true;
                 }
             }
-            // Does one of the unused segments contain it? Use the first one we
-            // find.
-            for (SegmentHeader segment : unusedSegments) {
-                if (contains(segment, tuple, columnNameList)) {
-                    unusedSegments.remove(segment);
-                    usedSegments.add(segment);
-                    continue tupleLoop;
+            if (!covered) {
+                // There was a value combination not contained in any of the
+                // segments. Fail.
+                return;
+            }
+            uncovered.set(t++);
+        }
+        final List<SegmentHeader> usedSegments = new ArrayList<SegmentHeader>();
+        while (!uncovered.isEmpty()) {
+            int best = -1;
+            int bestCount = 0;
+            double bestCellCount = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                final BitSet bitSet = (BitSet) coverage.get(i).clone();
+                bitSet.and(uncovered);
+                final int count = bitSet.cardinality();
+                if (count == 0 || count < bestCount) {
+                    continue;
+                }
+                final double cellCount = cellCount(candidates.get(i));
+                if (count > bestCount || cellCount < bestCellCount) {
+                    best = i;
+                    bestCount = count;
+                    bestCellCount = cellCount;
                 }
             }
-            // There was a value combination not contained in any of the
-            // segments. Fail.
-            return;
+            uncovered.andNot(coverage.get(best));
+            usedSegments.add(candidates.get(best));
         }
         list.add(usedSegments);
     }
 
+    /**
+     * Returns the number of cells in a segment, or an estimate if a column
+     * is wildcarded and its number of values is not known.
+     *
+     * @param header Segment header
+     * @return Number of cells
+     */
+    static double cellCount(SegmentHeader header) {
+        double cellCount = 1;
+        for (SegmentColumn column : header.getConstrainedColumns()) {
+            final SortedSet<Comparable> values = column.getValues();
+            if (values != null) {
+                cellCount *= values.size();
+            } else if (column.getValueCount() > 0) {
+                cellCount *= column.getValueCount();
+            } else {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return cellCount;
+    }
+
     private boolean contains(
         SegmentHeader segment,
         List<Comparable> values,
@@ -1020,21 +1119,63 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
                 }
             };
 
-        private final List<SegmentHeader> headerList =
-            new ArrayList<SegmentHeader>();
+        private final Set<SegmentHeader> headers =
+            new LinkedHashSet<SegmentHeader>();
 
+        /**
+         * Lattice of the dimensionalities of the headers of this fact.
+         * Contains a dimensionality while {@link #bitkeyCounts} says that
+         * there is at least one header with it.
+         */
         private final PartiallyOrderedSet<BitKey> bitkeyPoset =
             new PartiallyOrderedSet<BitKey>(ORDERING);
 
+        /**
+         * Number of headers of each dimensionality.
+         */
+        private final Map<BitKey, Integer> bitkeyCounts =
+            new HashMap<BitKey, Integer>();
+
+        /**
+         * Rollup requests, each a list of dimensionality and coordinates,
+         * that found no candidates since a header was last added.
+         */
+        private final Set<List> rollupMisses = new HashSet<List>();
+
         private SegmentBuilder.SegmentConverter converter;
 
         FactInfo() {
         }
+
+        void addBitKey(BitKey bitKey) {
+            final Integer count = bitkeyCounts.get(bitKey);
+            if (count == null) {
+                bitkeyCounts.put(bitKey, 1);
+                bitkeyPoset.add(bitKey);
+            } else {
+                bitkeyCounts.put(bitKey, count + 1);
+            }
+            rollupMisses.clear();
+        }
+
+        void removeBitKey(BitKey bitKey) {
+            final int count = bitkeyCounts.get(bitKey);
+            if (count == 1) {
+                bitkeyCounts.remove(bitKey);
+                bitkeyPoset.remove(bitKey);
+            } else {
+                bitkeyCounts.put(bitKey, count - 1);
+            }
+        }
     }
 
     private static class FuzzyFactInfo {
-        private final List<SegmentHeader> headerList =
-            new ArrayList<SegmentHeader>();
+        /**
+         * Indexes of the headers of this fact, one for each combination of
+         * dimensionality and compound predicates.
+         */
+        private final Set<SegmentHeaderIndex> indexes =
+            new LinkedHashSet<SegmentHeaderIndex>();
 
         FuzzyFactInfo() {
         }
@@ -1066,6 +1207,10 @@ public class SegmentCacheIndexImpl implements SegmentCacheIndex {
          * when flushing.
          */
         private boolean removeAfterLoad;
+        /**
+         * Order in which this header was added to the index.
+         */
+        private long ordinal;
     }
 }
 
@@ -0,0 +1,315 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.rolap.cache;
+
+import mondrian.rolap.RolapUtil;
+import mondrian.spi.SegmentColumn;
+import mondrian.spi.SegmentHeader;
+
+import java.util.*;
+
+/**
+ * Index of segment headers that have the same constrained columns, that is,
+ * the same dimensionality.
+ *
+ * <p>For each column, the index maps each value to the headers that contain
+ * it, and remembers which headers are wildcarded on the column. Given a
+ * cell's coordinates, {@link #locate} looks up the value of each coordinate
+ * and considers only the headers for the most selective one, instead of
+ * testing every header. Likewise, {@link #intersect} looks up the values of
+ * a flush region.
+ *
+ * <p>Both methods return candidates in the order that they were added;
+ * each header has an ordinal, allocated by the caller, that determines the
+ * order. The caller must still check each candidate, for instance against
+ * the header's excluded regions.
+ *
+ * <p>The per-column summaries also allow {@link #mayRollUp} to rule out a
+ * rollup without looking at individual headers.
+ *
+ * <p>Not thread safe.
+ */
+class SegmentHeaderIndex {
+    private final Map<SegmentHeader, Long> ordinals =
+        new LinkedHashMap<SegmentHeader, Long>();
+
+    private final Map<String, ColumnIndex> columns =
+        new HashMap<String, ColumnIndex>();
+
+    /**
+     * Adds a header, if it is not already present.
+     *
+     * @param header Header
+     * @param ordinal Ordinal, greater than the ordinal of every header
+     *     currently in the index
+     * @return Whether the header was added
+     */
+    boolean add(SegmentHeader header, long ordinal) {
+        if (ordinals.containsKey(header)) {
+            return false;
+        }
+        ordinals.put(header, ordinal);
+        for (SegmentColumn column : header.getConstrainedColumns()) {
+            ColumnIndex columnIndex = columns.get(column.columnExpression);
+            if (columnIndex == null) {
+                columnIndex = new ColumnIndex();
+                columns.put(column.columnExpression, columnIndex);
+            }
+            columnIndex.add(header, column);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a header.
+     *
+     * @param header Header
+     * @return Whether the header was present
+     */
+    boolean remove(SegmentHeader header) {
+        if (ordinals.remove(header) == null) {
+            return false;
+        }
+        for (SegmentColumn column : header.getConstrainedColumns()) {
+            final ColumnIndex columnIndex =
+                columns.get(column.columnExpression);
+            columnIndex.remove(header, column.getValues());
+            if (columnIndex.isEmpty()) {
+                columns.remove(column.columnExpression);
+            }
+        }
+        return true;
+    }
+
+    boolean contains(SegmentHeader header) {
+        return ordinals.containsKey(header);
+    }
+
+    boolean isEmpty() {
+        return ordinals.isEmpty();
+    }
+
+    int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * Returns the headers, in the order they were added.
+     */
+    List<SegmentHeader> headers() {
+        return new ArrayList<SegmentHeader>(ordinals.keySet());
+    }
+
+    /**
+     * Returns the ordinal of a header in this index.
+     */
+    long ordinal(SegmentHeader header) {
+        return ordinals.get(header);
+    }
+
+    /**
+     * Returns the headers that may contain a cell with given coordinates.
+     * Each header in the result contains, or is wildcarded on, the value of
+     * every coordinate.
+     *
+     * @param coordinates Map from column expression to value
+     * @return Candidate headers, in order
+     */
+    List<SegmentHeader> locate(Map<String, Comparable> coordinates) {
+        if (coordinates.isEmpty()) {
+            return headers();
+        }
+        // Find the most selective coordinate.
+        Set<SegmentHeader> best = null;
+        ColumnIndex bestColumn = null;
+        int bestSize = Integer.MAX_VALUE;
+        for (Map.Entry<String, Comparable> entry : coordinates.entrySet()) {
+            final ColumnIndex columnIndex = columns.get(entry.getKey());
+            if (columnIndex == null) {
+                // No header is constrained on this column.
+                return Collections.emptyList();
+            }
+            final Set<SegmentHeader> headers =
+                columnIndex.get(entry.getValue());
+            final int size = headers.size() + columnIndex.wildcards.size();
+            if (size < bestSize) {
+                best = headers;
+                bestColumn = columnIndex;
+                bestSize = size;
+            }
+        }
+        if (bestSize == 0) {
+            return Collections.emptyList();
+        }
+        final List<SegmentHeader> list =
+            new ArrayList<SegmentHeader>(bestSize);
+        list.addAll(best);
+        list.addAll(bestColumn.wildcards);
+        sort(list);
+        return list;
+    }
+
+    /**
+     * Returns the headers that may intersect a region: those that are not
+     * constrained on one of the region's columns, are wildcarded on it, or
+     * contain one of its values.
+     *
+     * @param region Region
+     * @return Candidate headers, in order
+     */
+    List<SegmentHeader> intersect(SegmentColumn[] region) {
+        if (region.length == 0) {
+            return headers();
+        }
+        final Set<SegmentHeader> set = new HashSet<SegmentHeader>();
+        for (SegmentColumn regionColumn : region) {
+            final ColumnIndex columnIndex =
+                columns.get(regionColumn.getColumnExpression());
+            final SortedSet<Comparable> values = regionColumn.getValues();
+            if (columnIndex == null || values == null) {
+                return headers();
+            }
+            set.addAll(columnIndex.wildcards);
+            for (Comparable value : values) {
+                set.addAll(columnIndex.get(value));
+            }
+        }
+        final List<SegmentHeader> list = new ArrayList<SegmentHeader>(set);
+        sort(list);
+        return list;
+    }
+
+    /**
+     * Returns whether the headers in this index, taken together, may contain
+     * every value of each column that is not retained; that is, whether it
+     * is worth searching them for a rollup.
+     *
+     * <p>If this method returns false, no set of headers can be rolled up.
+     * If it returns true, the caller must still check that a set of headers
+     * covers every combination of values.
+     *
+     * @param retainedColumns Columns that are not aggregated away
+     * @return Whether headers in this index may be rolled up
+     */
+    boolean mayRollUp(Set<String> retainedColumns) {
+        for (Map.Entry<String, ColumnIndex> entry : columns.entrySet()) {
+            if (retainedColumns.contains(entry.getKey())) {
+                continue;
+            }
+            final ColumnIndex columnIndex = entry.getValue();
+            if (!columnIndex.wildcards.isEmpty()) {
+                continue;
+            }
+            if (columnIndex.valueCount <= 0
+                || columnIndex.values.size() < columnIndex.valueCount)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sort(List<SegmentHeader> list) {
+        Collections.sort(
+            list,
+            new Comparator<SegmentHeader>() {
+                public int compare(SegmentHeader o1, SegmentHeader o2) {
+                    final long ordinal1 = ordinals.get(o1);
+                    final long ordinal2 = ordinals.get(o2);
+                    return ordinal1 < ordinal2 ? -1
+                        : ordinal1 > ordinal2 ? 1
+                        : 0;
+                }
+            });
+    }
+
+    /**
+     * Index of the values of one column.
+     */
+    private static class ColumnIndex {
+        /**
+         * Map from value to the headers that contain it. Uses the same
+         * ordering as the values of a {@link SegmentColumn}, so that a value
+         * is found if and only if the column contains it.
+         */
+        @SuppressWarnings("unchecked")
+        private final SortedMap<Comparable, Set<SegmentHeader>> values =
+            new TreeMap<Comparable, Set<SegmentHeader>>(
+                RolapUtil.ROLAP_COMPARATOR);
+
+        /**
+         * Headers that are wildcarded on this column.
+         */
+        private final Set<SegmentHeader> wildcards =
+            new HashSet<SegmentHeader>();
+
+        private int headerCount;
+
+        /**
+         * Number of distinct values of the column in the database, as
+         * recorded in the most recently added header, or a non-positive
+         * value if not known.
+         */
+        private long valueCount;
+
+        void add(SegmentHeader header, SegmentColumn column) {
+            final SortedSet<Comparable> headerValues = column.getValues();
+            ++headerCount;
+            valueCount = column.getValueCount();
+            if (headerValues == null) {
+                wildcards.add(header);
+                return;
+            }
+            for (Comparable value : headerValues) {
+                Set<SegmentHeader> headers = values.get(value);
+                if (headers == null) {
+                    headers = new HashSet<SegmentHeader>();
+                    values.put(value, headers);
+                }
+                headers.add(header);
+            }
+        }
+
+        void remove(SegmentHeader header, SortedSet<Comparable> headerValues) {
+            --headerCount;
+            if (headerValues == null) {
+                wildcards.remove(header);
+                return;
+            }
+            for (Comparable value : headerValues) {
+                final Set<SegmentHeader> headers = values.get(value);
+                headers.remove(header);
+                if (headers.isEmpty()) {
+                    values.remove(value);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return headerCount == 0;
+        }
+
+        /**
+         * Returns the headers that contain a value, not including those that
+         * are wildcarded.
+         */
+        Set<SegmentHeader> get(Comparable value) {
+            if (value == null) {
+                return Collections.emptySet();
+            }
+            final Set<SegmentHeader> headers = values.get(value);
+            return headers == null
+                ? Collections.<SegmentHeader>emptySet()
+                : headers;
+        }
+    }
+}
+
+// End SegmentHeaderIndex.java
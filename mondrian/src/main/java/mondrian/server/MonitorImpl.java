@@ -180,7 +180,7 @@ class MonitorImpl
      *
      * @param <T> Return type
      */
-    static interface CommandVisitor<T> extends Visitor<T> {
+    static interface CommandVisitor<T> extends ExtendedVisitor<T> {
         T visit(ConnectionsCommand connectionsCommand);
         T visit(ServerCommand serverCommand);
         T visit(SqlStatementsCommand command);
@@ -201,6 +201,13 @@ class MonitorImpl
         private final MutableConnectionInfo aggConn =
             new MutableConnectionInfo(null);
         private final String stack;
+        private int cubeLoadCount;
+        private long cubeLoadMillis;
+        private int rollupSearchCount;
+        private int rollupSearchHitCount;
+        private long rollupSearchNanos;
+        private int warmupQueryCount;
+        private long warmupMillis;
 
         public MutableServerInfo(String stack) {
             this.stack = stack;
@@ -237,7 +244,14 @@ class MonitorImpl
                 aggExec.cellCacheSegmentCreateViaRollupCount,
                 aggExec.cellCacheSegmentCreateViaSqlCount,
                 aggExec.cellCacheSegmentCellCount,
-                aggExec.cellCacheSegmentCoordinateSum);
+                aggExec.cellCacheSegmentCoordinateSum,
+                cubeLoadCount,
+                cubeLoadMillis,
+                rollupSearchCount,
+                rollupSearchHitCount,
+                rollupSearchNanos,
+                warmupQueryCount,
+                warmupMillis);
         }
     }
 
@@ -842,6 +856,46 @@ class MonitorImpl
             }
         }
 
+        public Object visit(CellCacheRollupEvent event) {
+            ++server.rollupSearchCount;
+            if (event.candidateCount > 0) {
+                ++server.rollupSearchHitCount;
+            }
+            server.rollupSearchNanos += event.searchNanos;
+            if (RolapUtil.MONITOR_LOGGER.isDebugEnabled()) {
+                RolapUtil.MONITOR_LOGGER.debug(
+                    "Rollup search for cell with " + event.coordinateCount
+                    + " coordinates found " + event.candidateCount
+                    + " candidates; chose " + event.segmentCount
+                    + " segments in " + event.searchNanos / 1000 + " us");
+            }
+            return null;
+        }
+
+        public Object visit(CacheWarmupEvent event) {
+            server.warmupQueryCount += event.queryCount;
+            server.warmupMillis += event.elapsedMillis;
+            if (RolapUtil.MONITOR_LOGGER.isDebugEnabled()) {
+                RolapUtil.MONITOR_LOGGER.debug(
+                    "Warm-up of schema [" + event.schemaName + "] replayed "
+                    + event.queryCount + " queries (" + event.failureCount
+                    + " failed) in " + event.elapsedMillis + " ms");
+            }
+            return null;
+        }
+
+        public Object visit(CubeLoadEvent event) {
+            ++server.cubeLoadCount;
+            server.cubeLoadMillis += event.loadMillis;
+            if (RolapUtil.MONITOR_LOGGER.isDebugEnabled()) {
+                RolapUtil.MONITOR_LOGGER.debug(
+                    "Cube [" + event.cubeName + "] in schema ["
+                    + event.schemaName + "] loaded in "
+                    + event.loadMillis + " ms");
+            }
+            return null;
+        }
+
         public Object visit(SqlStatementStartEvent event) {
             final MutableStatementInfo stmt =
                 statementMap.get(
@@ -0,0 +1,84 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.server.monitor;
+
+/**
+ * Event indicating that recorded queries have been replayed to warm up the
+ * cell cache of a schema.
+ *
+ * @see mondrian.olap.MondrianProperties#CacheWarmupQueryCount
+ */
+public class CacheWarmupEvent extends Event {
+    /**
+     * Identifier of the server.
+     */
+    public final int serverId;
+
+    /**
+     * Name of the schema whose queries were replayed.
+     */
+    public final String schemaName;
+
+    /**
+     * Number of queries that were replayed successfully.
+     */
+    public final int queryCount;
+
+    /**
+     * Number of queries that failed.
+     */
+    public final int failureCount;
+
+    /**
+     * Time taken to replay the queries, in milliseconds, including time
+     * spent waiting for SQL threads.
+     */
+    public final long elapsedMillis;
+
+    /**
+     * Creates a CacheWarmupEvent.
+     *
+     * @param timestamp Timestamp
+     * @param serverId Server id
+     * @param schemaName Schema name
+     * @param queryCount Number of queries replayed successfully
+     * @param failureCount Number of queries that failed
+     * @param elapsedMillis Time taken, in milliseconds
+     */
+    public CacheWarmupEvent(
+        long timestamp,
+        int serverId,
+        String schemaName,
+        int queryCount,
+        int failureCount,
+        long elapsedMillis)
+    {
+        super(timestamp);
+        this.serverId = serverId;
+        this.schemaName = schemaName;
+        this.queryCount = queryCount;
+        this.failureCount = failureCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String toString() {
+        return "CacheWarmupEvent(" + schemaName + ", " + queryCount + ", "
+            + failureCount + ", " + elapsedMillis + "ms)";
+    }
+
+    public <T> T accept(Visitor<T> visitor) {
+        if (visitor instanceof ExtendedVisitor) {
+            return ((ExtendedVisitor<T>) visitor).visit(this);
+        }
+        return null;
+    }
+}
+
+// End CacheWarmupEvent.java
@@ -0,0 +1,88 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.server.monitor;
+
+/**
+ * Event indicating that the cell cache has been searched for segments that
+ * can be rolled up to satisfy a cell request.
+ *
+ * <p>If the search succeeds, the segment created by the rollup is reported
+ * later, by a {@link CellCacheSegmentCreateEvent} whose source is
+ * {@link CellCacheEvent.Source#ROLLUP}.
+ */
+public class CellCacheRollupEvent extends ExecutionEvent {
+    /**
+     * Number of coordinates of the requested cell.
+     */
+    public final int coordinateCount;
+
+    /**
+     * Number of candidates found; each candidate is a set of segments that,
+     * combined, can answer the request. Zero if the search failed.
+     */
+    public final int candidateCount;
+
+    /**
+     * Number of segments in the candidate that was chosen, or zero if the
+     * search failed.
+     */
+    public final int segmentCount;
+
+    /**
+     * Time taken by the search, in nanoseconds.
+     */
+    public final long searchNanos;
+
+    /**
+     * Creates a CellCacheRollupEvent.
+     *
+     * @param timestamp Timestamp
+     * @param serverId Server id
+     * @param connectionId Connection id
+     * @param statementId Statement id
+     * @param executionId Execution id
+     * @param coordinateCount Number of coordinates of the requested cell
+     * @param candidateCount Number of candidates found
+     * @param segmentCount Number of segments in the chosen candidate
+     * @param searchNanos Time taken by the search, in nanoseconds
+     */
+    public CellCacheRollupEvent(
+        long timestamp,
+        int serverId,
+        int connectionId,
+        long statementId,
+        long executionId,
+        int coordinateCount,
+        int candidateCount,
+        int segmentCount,
+        long searchNanos)
+    {
+        super(timestamp, serverId, connectionId, statementId, executionId);
+        this.coordinateCount = coordinateCount;
+        this.candidateCount = candidateCount;
+        this.segmentCount = segmentCount;
+        this.searchNanos = searchNanos;
+    }
+
+    public String toString() {
+        return "CellCacheRollupEvent(" + coordinateCount + ", "
+            + candidateCount + ", " + segmentCount + ", " + searchNanos
+            + "ns)";
+    }
+
+    public <T> T accept(Visitor<T> visitor) {
+        if (visitor instanceof ExtendedVisitor) {
+            return ((ExtendedVisitor<T>) visitor).visit(this);
+        }
+        return null;
+    }
+}
+
+// End CellCacheRollupEvent.java
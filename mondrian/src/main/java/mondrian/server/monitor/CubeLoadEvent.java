@@ -0,0 +1,80 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.server.monitor;
+
+/**
+ * Event indicating that a cube has been built from its schema definition.
+ *
+ * <p>If {@link mondrian.olap.MondrianProperties#LazyCubeLoading} is true,
+ * cubes are built on first access, so these events arrive during query
+ * preparation rather than while the schema is loading.
+ */
+public class CubeLoadEvent extends ConnectionEvent {
+    /**
+     * Name of the schema the cube belongs to.
+     */
+    public final String schemaName;
+
+    /**
+     * Name of the cube.
+     */
+    public final String cubeName;
+
+    /**
+     * Whether the cube is a virtual cube.
+     */
+    public final boolean virtual;
+
+    /**
+     * Time taken to build the cube, in milliseconds.
+     */
+    public final long loadMillis;
+
+    /**
+     * Creates a CubeLoadEvent.
+     *
+     * @param timestamp Timestamp
+     * @param serverId Server id
+     * @param connectionId Id of the schema's internal connection
+     * @param schemaName Schema name
+     * @param cubeName Cube name
+     * @param virtual Whether cube is virtual
+     * @param loadMillis Time taken to build the cube, in milliseconds
+     */
+    public CubeLoadEvent(
+        long timestamp,
+        int serverId,
+        int connectionId,
+        String schemaName,
+        String cubeName,
+        boolean virtual,
+        long loadMillis)
+    {
+        super(timestamp, serverId, connectionId);
+        this.schemaName = schemaName;
+        this.cubeName = cubeName;
+        this.virtual = virtual;
+        this.loadMillis = loadMillis;
+    }
+
+    public String toString() {
+        return "CubeLoadEvent(" + schemaName + ", " + cubeName + ", "
+            + loadMillis + "ms)";
+    }
+
+    public <T> T accept(Visitor<T> visitor) {
+        if (visitor instanceof ExtendedVisitor) {
+            return ((ExtendedVisitor<T>) visitor).visit(this);
+        }
+        return null;
+    }
+}
+
+// End CubeLoadEvent.java
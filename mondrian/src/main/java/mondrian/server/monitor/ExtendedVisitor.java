@@ -0,0 +1,26 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.server.monitor;
+
+/**
+ * Visitor for events, including events that are not visited by
+ * {@link Visitor}.
+ *
+ * <p>An event of one of these kinds returns null when it accepts a visitor
+ * that does not implement this interface, so that existing implementations
+ * of {@link Visitor} continue to work.
+ */
+public interface ExtendedVisitor<T> extends Visitor<T> {
+    T visit(CellCacheRollupEvent event);
+    T visit(CubeLoadEvent event);
+    T visit(CacheWarmupEvent event);
+}
+
+// End ExtendedVisitor.java
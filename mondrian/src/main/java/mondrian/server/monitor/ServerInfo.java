@@ -102,6 +102,48 @@ public class ServerInfo extends Info {
      */
     public final int cellCoordinateCount;
 
+    /**
+     * The number of cubes that have been built since the server started.
+     */
+    public final int cubeLoadCount;
+
+    /**
+     * Cumulative time spent building cubes, in milliseconds.
+     */
+    public final long cubeLoadMillis;
+
+    /**
+     * The number of times the cell cache has been searched for segments to
+     * roll up.
+     */
+    public final int rollupSearchCount;
+
+    /**
+     * The number of rollup searches that found segments to roll up.
+     */
+    public final int rollupSearchHitCount;
+
+    /**
+     * Cumulative time spent searching for segments to roll up, in
+     * nanoseconds.
+     */
+    public final long rollupSearchNanos;
+
+    /**
+     * The number of queries replayed to warm up the cell cache.
+     */
+    public final int warmupQueryCount;
+
+    /**
+     * Cumulative time spent replaying queries to warm up the cell cache, in
+     * milliseconds.
+     */
+    public final long warmupMillis;
+
+    /**
+     * Creates a ServerInfo with no statistics about cube loading, rollup
+     * searches or cache warmup.
+     */
     public ServerInfo(
         String stack,
         int connectionStartCount,
@@ -131,6 +173,75 @@ public class ServerInfo extends Info {
         int segmentCreateViaSqlCount,
         int cellCount,
         int cellCoordinateCount)
+    {
+        this(
+            stack,
+            connectionStartCount,
+            connectionEndCount,
+            statementStartCount,
+            statementEndCount,
+            sqlStatementStartCount,
+            sqlStatementExecuteCount,
+            sqlStatementEndCount,
+            sqlStatementRowFetchCount,
+            sqlStatementExecuteNanos,
+            sqlStatementCellRequestCount,
+            cellCacheHitCount,
+            cellCacheRequestCount,
+            cellCacheMissCount,
+            cellCachePendingCount,
+            executeStartCount,
+            executeEndCount,
+            jvmHeapBytesUsed,
+            jvmHeapBytesCommitted,
+            jvmHeapBytesMax,
+            segmentCount,
+            segmentCreateCount,
+            segmentCreateViaExternalCount,
+            segmentDeleteViaExternalCount,
+            segmentCreateViaRollupCount,
+            segmentCreateViaSqlCount,
+            cellCount,
+            cellCoordinateCount,
+            0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public ServerInfo(
+        String stack,
+        int connectionStartCount,
+        int connectionEndCount,
+        int statementStartCount,
+        int statementEndCount,
+        int sqlStatementStartCount,
+        int sqlStatementExecuteCount,
+        int sqlStatementEndCount,
+        long sqlStatementRowFetchCount,
+        long sqlStatementExecuteNanos,
+        int sqlStatementCellRequestCount,
+        int cellCacheHitCount,
+        int cellCacheRequestCount,
+        int cellCacheMissCount,
+        int cellCachePendingCount,
+        int executeStartCount,
+        int executeEndCount,
+        long jvmHeapBytesUsed,
+        long jvmHeapBytesCommitted,
+        long jvmHeapBytesMax,
+        int segmentCount,
+        int segmentCreateCount,
+        int segmentCreateViaExternalCount,
+        int segmentDeleteViaExternalCount,
+        int segmentCreateViaRollupCount,
+        int segmentCreateViaSqlCount,
+        int cellCount,
+        int cellCoordinateCount,
+        int cubeLoadCount,
+        long cubeLoadMillis,
+        int rollupSearchCount,
+        int rollupSearchHitCount,
+        long rollupSearchNanos,
+        int warmupQueryCount,
+        long warmupMillis)
     {
         super(stack);
         this.connectionStartCount = connectionStartCount;
@@ -160,6 +271,13 @@ public class ServerInfo extends Info {
         this.segmentCreateViaSqlCount = segmentCreateViaSqlCount;
         this.cellCount = cellCount;
         this.cellCoordinateCount = cellCoordinateCount;
+        this.cubeLoadCount = cubeLoadCount;
+        this.cubeLoadMillis = cubeLoadMillis;
+        this.rollupSearchCount = rollupSearchCount;
+        this.rollupSearchHitCount = rollupSearchHitCount;
+        this.rollupSearchNanos = rollupSearchNanos;
+        this.warmupQueryCount = warmupQueryCount;
+        this.warmupMillis = warmupMillis;
     }
 
     public int getCellCacheMissCount() {
@@ -297,6 +415,34 @@ public class ServerInfo extends Info {
     public int getCellCoordinateCount() {
         return cellCoordinateCount;
     }
+
+    public int getCubeLoadCount() {
+        return cubeLoadCount;
+    }
+
+    public long getCubeLoadMillis() {
+        return cubeLoadMillis;
+    }
+
+    public int getRollupSearchCount() {
+        return rollupSearchCount;
+    }
+
+    public int getRollupSearchHitCount() {
+        return rollupSearchHitCount;
+    }
+
+    public long getRollupSearchNanos() {
+        return rollupSearchNanos;
+    }
+
+    public int getWarmupQueryCount() {
+        return warmupQueryCount;
+    }
+
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
 }
 
 // End ServerInfo.java
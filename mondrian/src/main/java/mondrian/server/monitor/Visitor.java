@@ -11,6 +11,10 @@ package mondrian.server.monitor;
 
 /**
  * Visitor for events.
+ *
+ * <p>Events added after this interface was published are visited by
+ * {@link ExtendedVisitor}; a visitor that implements only this interface
+ * ignores them.
  */
 public interface Visitor<T> {
     T visit(ConnectionStartEvent event);
@@ -467,6 +467,31 @@ public interface Dialect {
      */
     boolean supportsUnlimitedValueList();
 
+    /**
+     * Returns whether this Dialect can skip the first rows of a query and
+     * return a limited number of the rest; for example, using
+     * <code>LIMIT</code> and <code>OFFSET</code> clauses.
+     *
+     * @return whether this Dialect supports a range of rows
+     * @see #generateLimitOffset(int, int)
+     */
+    boolean supportsLimitOffset();
+
+    /**
+     * Generates a clause, to be appended to a query after its ORDER BY
+     * clause, that skips the first <code>offset</code> rows and returns at
+     * most <code>limit</code> rows.
+     *
+     * <p>For example, <code>generateLimitOffset(100, 50)</code> returns
+     * " limit 50 offset 100" in MySQL.
+     *
+     * @param offset Number of rows to skip
+     * @param limit Maximum number of rows to return; must be positive
+     * @return Clause, starting with a space
+     * @see #supportsLimitOffset()
+     */
+    String generateLimitOffset(int offset, int limit);
+
     /**
      * Returns true if this Dialect can include expressions in the GROUP BY
      * clause only by adding an expression to the SELECT clause and using
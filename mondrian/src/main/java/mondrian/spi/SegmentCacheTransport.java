@@ -0,0 +1,232 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.spi;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.util.ByteString;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SPI by which the Mondrian servers of a cluster exchange messages about
+ * their segment caches.
+ *
+ * <p>A {@link SegmentCache} shared by several servers lets each server use the
+ * segments that the others have loaded, but it does not tell a server that a
+ * peer is already loading a segment, nor which regions a peer has flushed
+ * from its index. Servers that are connected by a transport announce when
+ * they start and finish loading a segment, so that a server that needs a
+ * segment a peer is already loading waits for the peer instead of executing
+ * the same SQL; and they broadcast the regions flushed using
+ * {@link mondrian.olap.CacheControl}, so that no server keeps answering
+ * queries from cells that another has flushed.
+ *
+ * <p>To use a transport, set the
+ * {@link MondrianProperties#SegmentCacheTransport} property to the name of a
+ * class that implements this interface and has a public default
+ * constructor, or declare it in
+ * <code>/META-INF/services/mondrian.spi.SegmentCacheTransport</code>. There
+ * is one transport per Mondrian server.
+ *
+ * <p>Mondrian sends messages from threads that must not wait, so
+ * {@link #send} should queue the message and return immediately. Messages
+ * may be lost or delayed; Mondrian stops waiting for a peer after
+ * {@link MondrianProperties#SegmentCachePeerLoadTimeout} milliseconds.
+ *
+ * @see mondrian.spi.impl.LoopbackSegmentCacheTransport
+ */
+public interface SegmentCacheTransport {
+    /**
+     * Returns the identifier of this server in the cluster.
+     *
+     * <p>Identifiers must be unique within the cluster and must not change
+     * while the transport is in use. When two servers start loading the same
+     * segment at the same time, the one whose identifier is less wins and
+     * the other waits for it.
+     */
+    String getNodeId();
+
+    /**
+     * Sends a message to all other servers of the cluster.
+     *
+     * <p>Must not block, and must not deliver the message to this server's
+     * own listeners.
+     *
+     * @param message Message
+     */
+    void send(Message message);
+
+    /**
+     * Registers a listener that is called when a message from another server
+     * is received.
+     *
+     * @param listener Listener
+     */
+    void addListener(Listener listener);
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener Listener
+     */
+    void removeListener(Listener listener);
+
+    /**
+     * Disconnects this server from the cluster and releases resources.
+     */
+    void tearDown();
+
+    /**
+     * Receives messages sent by other servers.
+     */
+    interface Listener {
+        /**
+         * Called when a message has been received.
+         *
+         * <p>Called from a thread owned by the transport. Mondrian's
+         * listener returns quickly, except that it waits while it flushes a
+         * region from its own cache.
+         *
+         * @param message Message
+         */
+        void messageReceived(Message message);
+    }
+
+    /**
+     * Message exchanged between servers.
+     *
+     * <p>A load message carries the header of the segment. A flush message
+     * identifies a measure, by its schema, cube, name and fact table, and
+     * carries the flushed region.
+     */
+    final class Message implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Kind of message.
+         */
+        public enum Type {
+            /**
+             * The sender has started to load a segment.
+             */
+            LOAD_STARTED,
+
+            /**
+             * The sender has loaded a segment and put it in the segment
+             * cache.
+             */
+            LOAD_SUCCEEDED,
+
+            /**
+             * The sender failed to load a segment.
+             */
+            LOAD_FAILED,
+
+            /**
+             * The sender has flushed a region of a measure.
+             */
+            FLUSH
+        }
+
+        public final Type type;
+        public final String nodeId;
+        public final SegmentHeader header;
+        public final String schemaName;
+        public final ByteString schemaChecksum;
+        public final String cubeName;
+        public final String measureName;
+        public final String rolapStarFactTableName;
+        public final List<SegmentColumn> region;
+
+        private Message(
+            Type type,
+            String nodeId,
+            SegmentHeader header,
+            String schemaName,
+            ByteString schemaChecksum,
+            String cubeName,
+            String measureName,
+            String rolapStarFactTableName,
+            List<SegmentColumn> region)
+        {
+            this.type = type;
+            this.nodeId = nodeId;
+            this.header = header;
+            this.schemaName = schemaName;
+            this.schemaChecksum = schemaChecksum;
+            this.cubeName = cubeName;
+            this.measureName = measureName;
+            this.rolapStarFactTableName = rolapStarFactTableName;
+            this.region = region;
+        }
+
+        /**
+         * Creates a message about the loading of a segment.
+         *
+         * @param type {@link Type#LOAD_STARTED}, {@link Type#LOAD_SUCCEEDED}
+         *     or {@link Type#LOAD_FAILED}
+         * @param nodeId Identifier of the sender
+         * @param header Header of the segment
+         * @return Message
+         */
+        public static Message load(
+            Type type,
+            String nodeId,
+            SegmentHeader header)
+        {
+            assert type != Type.FLUSH;
+            return new Message(
+                type, nodeId, header, null, null, null, null, null, null);
+        }
+
+        /**
+         * Creates a message that a region of a measure has been flushed.
+         *
+         * @param nodeId Identifier of the sender
+         * @param schemaName Schema name
+         * @param schemaChecksum Schema checksum
+         * @param cubeName Cube name
+         * @param measureName Measure name
+         * @param rolapStarFactTableName Alias of the fact table
+         * @param region Columns and values of the region; empty means all
+         *     cells of the measure
+         * @return Message
+         */
+        public static Message flush(
+            String nodeId,
+            String schemaName,
+            ByteString schemaChecksum,
+            String cubeName,
+            String measureName,
+            String rolapStarFactTableName,
+            SegmentColumn[] region)
+        {
+            final List<SegmentColumn> list = new ArrayList<SegmentColumn>();
+            for (SegmentColumn column : region) {
+                list.add(column);
+            }
+            return new Message(
+                Type.FLUSH, nodeId, null, schemaName, schemaChecksum,
+                cubeName, measureName, rolapStarFactTableName, list);
+        }
+
+        public String toString() {
+            return "Message(" + type + ", " + nodeId + ", "
+                + (header != null
+                    ? header.getUniqueID()
+                    : cubeName + "." + measureName)
+                + ")";
+        }
+    }
+}
+
+// End SegmentCacheTransport.java
@@ -850,6 +850,16 @@ public class JdbcDialectImpl implements Dialect {
         return false;
     }
 
+    public boolean supportsLimitOffset() {
+        return false;
+    }
+
+    public String generateLimitOffset(int offset, int limit) {
+        // SQL:2008 syntax
+        return " offset " + offset + " rows fetch next " + limit
+            + " rows only";
+    }
+
     public boolean requiresGroupByAlias() {
         return false;
     }
@@ -0,0 +1,137 @@
+/*
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// You must accept the terms of that agreement to use this software.
+//
+// Copyright (C) 2026 Pentaho and others
+// All Rights Reserved.
+*/
+package mondrian.spi.impl;
+
+import mondrian.olap.Util;
+import mondrian.spi.SegmentCacheTransport;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of {@link SegmentCacheTransport} that connects the
+ * transports created in the same JVM.
+ *
+ * <p>Each instance is a node; a message sent by one node is delivered to
+ * every other node that has not been torn down. Each node delivers the
+ * messages it receives, in order, in a thread of its own. Messages are
+ * serialized and deserialized on the way, as they would be by a transport
+ * that uses the network.
+ *
+ * <p>Useful for testing, and as a stand-in for a real transport when several
+ * Mondrian servers run in one JVM.
+ */
+public class LoopbackSegmentCacheTransport implements SegmentCacheTransport {
+    private static final Logger LOGGER =
+        Logger.getLogger(LoopbackSegmentCacheTransport.class);
+
+    private static final List<LoopbackSegmentCacheTransport> NODES =
+        new CopyOnWriteArrayList<LoopbackSegmentCacheTransport>();
+
+    private static final AtomicInteger NODE_COUNT = new AtomicInteger();
+
+    private final String nodeId;
+    private final boolean serialize;
+    private final List<Listener> listeners =
+        new CopyOnWriteArrayList<Listener>();
+    private final ExecutorService executor;
+
+    /**
+     * Creates a node that serializes messages.
+     */
+    public LoopbackSegmentCacheTransport() {
+        this(true);
+    }
+
+    /**
+     * Creates a node.
+     *
+     * @param serialize Whether to serialize and deserialize each message
+     */
+    public LoopbackSegmentCacheTransport(boolean serialize) {
+        this.nodeId =
+            String.format("loopback-%08d", NODE_COUNT.incrementAndGet());
+        this.serialize = serialize;
+        this.executor =
+            Util.getExecutorService(
+                1, 1, 1,
+                "mondrian.spi.impl.LoopbackSegmentCacheTransport$" + nodeId,
+                null);
+        NODES.add(this);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void send(Message message) {
+        final Message copy = serialize ? copy(message) : message;
+        for (final LoopbackSegmentCacheTransport node : NODES) {
+            if (node == this) {
+                continue;
+            }
+            try {
+                node.executor.execute(
+                    new Runnable() {
+                        public void run() {
+                            node.deliver(copy);
+                        }
+                    });
+            } catch (RejectedExecutionException e) {
+                // The node has been torn down since we looked.
+            }
+        }
+    }
+
+    private void deliver(Message message) {
+        for (Listener listener : listeners) {
+            try {
+                listener.messageReceived(message);
+            } catch (Throwable e) {
+                LOGGER.warn("Listener failed on " + message, e);
+            }
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public void tearDown() {
+        NODES.remove(this);
+        listeners.clear();
+        executor.shutdown();
+    }
+
+    private static Message copy(Message message) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(message);
+            out.close();
+            final ObjectInputStream in =
+                new ObjectInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray()));
+            return (Message) in.readObject();
+        } catch (Exception e) {
+            throw Util.newInternal(e, "Cannot serialize " + message);
+        }
+    }
+}
+
+// End LoopbackSegmentCacheTransport.java
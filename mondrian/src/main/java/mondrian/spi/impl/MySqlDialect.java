@@ -265,6 +265,16 @@ public class MySqlDialect extends JdbcDialectImpl {
         return true;
     }
 
+    @Override
+    public boolean supportsLimitOffset() {
+        return true;
+    }
+
+    @Override
+    public String generateLimitOffset(int offset, int limit) {
+        return " limit " + limit + " offset " + offset;
+    }
+
     private enum Scope {
         SESSION,
         GLOBAL
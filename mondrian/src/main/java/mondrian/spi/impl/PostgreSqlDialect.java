@@ -81,6 +81,16 @@ public class PostgreSqlDialect extends JdbcDialectImpl {
         return true;
     }
 
+    @Override
+    public boolean supportsLimitOffset() {
+        return true;
+    }
+
+    @Override
+    public String generateLimitOffset(int offset, int limit) {
+        return " limit " + limit + " offset " + offset;
+    }
+
     public String generateRegularExpression(String source, String javaRegex) {
         try {
             Pattern.compile(javaRegex);
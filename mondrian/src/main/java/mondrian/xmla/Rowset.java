@@ -16,8 +16,12 @@ import mondrian.olap.Util;
 import org.apache.log4j.Logger;
 
 import org.olap4j.OlapConnection;
+import org.olap4j.OlapException;
 import org.olap4j.impl.LcidLocale;
 import org.olap4j.metadata.Catalog;
+import org.olap4j.metadata.Cube;
+import org.olap4j.metadata.NamedList;
+import org.olap4j.metadata.Schema;
 
 import java.sql.SQLException;
 import java.util.*;
@@ -494,6 +498,39 @@ abstract class Rowset implements XmlaConstants {
         return -1;
     }
 
+    /**
+     * Returns the cubes of a schema that may satisfy the restriction on a
+     * column that holds cube names, sorted by name.
+     *
+     * <p>If the restriction is a list of names, looks up just those cubes, so
+     * that a request about one cube does not build every cube of a schema
+     * whose cubes are loaded lazily. Otherwise returns all cubes; the caller
+     * must still apply the condition.
+     *
+     * @param schema Schema
+     * @param column Column whose restriction holds cube names
+     * @return Cubes
+     */
+    Iterable<Cube> restrictedCubes(
+        Schema schema,
+        RowsetDefinition.Column column)
+        throws OlapException
+    {
+        final Object restriction = restrictions.get(column.name);
+        if (!(restriction instanceof List)) {
+            return RowsetDefinition.sortedCubes(schema);
+        }
+        final NamedList<Cube> allCubes = schema.getCubes();
+        final SortedMap<String, Cube> cubes = new TreeMap<String, Cube>();
+        for (Object name : (List) restriction) {
+            final Cube cube = allCubes.get(String.valueOf(name));
+            if (cube != null) {
+                cubes.put(cube.getName(), cube);
+            }
+        }
+        return cubes.values();
+    }
+
     /**
      * Returns true if there is a restriction for the given column
      * definition.
@@ -3599,7 +3599,9 @@ TODO: see above
                 for (Schema schema
                     : filter(catalog.getSchemas(), schemaNameCond))
                 {
-                    for (Cube cube : filter(sortedCubes(schema), cubeNameCond))
+                    for (Cube cube
+                        : filter(
+                            restrictedCubes(schema, CubeName), cubeNameCond))
                     {
                         String desc = cube.getDescription();
                         if (desc == null) {
@@ -3893,7 +3895,12 @@ TODO: see above
             throws XmlaException, SQLException
         {
             for (Schema schema : filter(catalog.getSchemas(), schemaNameCond)) {
-                for (Cube cube : filteredCubes(schema, cubeNameCond)) {
+                for (Cube cube
+                    : filteredCubes(
+                        schema,
+                        restrictedCubes(schema, CubeName),
+                        cubeNameCond))
+                {
                     populateCube(connection, catalog, cube, rows);
                 }
             }
@@ -4449,7 +4456,12 @@ TODO: see above
             throws XmlaException, SQLException
         {
             for (Schema schema : filter(catalog.getSchemas(), schemaNameCond)) {
-                for (Cube cube : filteredCubes(schema, cubeNameCond)) {
+                for (Cube cube
+                    : filteredCubes(
+                        schema,
+                        restrictedCubes(schema, CubeName),
+                        cubeNameCond))
+                {
                     populateCube(connection, catalog, cube, rows);
                 }
             }
@@ -4796,7 +4808,12 @@ TODO: see above
             throws XmlaException, SQLException
         {
             for (Schema schema : filter(catalog.getSchemas(), schemaNameCond)) {
-                for (Cube cube : filteredCubes(schema, cubeNameCond)) {
+                for (Cube cube
+                    : filteredCubes(
+                        schema,
+                        restrictedCubes(schema, CubeName),
+                        cubeNameCond))
+                {
                     populateCube(connection, catalog, cube, rows);
                 }
             }
@@ -5135,7 +5152,12 @@ TODO: see above
             StringBuilder buf = new StringBuilder(100);
 
             for (Schema schema : filter(catalog.getSchemas(), schemaNameCond)) {
-                for (Cube cube : filteredCubes(schema, cubeNameCond)) {
+                for (Cube cube
+                    : filteredCubes(
+                        schema,
+                        restrictedCubes(schema, CubeName),
+                        cubeNameCond))
+                {
                     buf.setLength(0);
 
                     int j = 0;
@@ -5467,7 +5489,12 @@ TODO: see above
             throws XmlaException, SQLException
         {
             for (Schema schema : filter(catalog.getSchemas(), schemaNameCond)) {
-                for (Cube cube : filteredCubes(schema, cubeNameCond)) {
+                for (Cube cube
+                    : filteredCubes(
+                        schema,
+                        restrictedCubes(schema, CubeName),
+                        cubeNameCond))
+                {
                     if (isRestricted(MemberUniqueName)) {
                         // NOTE: it is believed that if MEMBER_UNIQUE_NAME is
                         // a restriction, then none of the remaining possible
@@ -5903,7 +5930,9 @@ TODO: see above
             throws OlapException
         {
             for (Schema schema : filter(catalog.getSchemas(), schemaNameCond)) {
-                for (Cube cube : filter(sortedCubes(schema), cubeNameCond)) {
+                for (Cube cube
+                    : filter(restrictedCubes(schema, CubeName), cubeNameCond))
+                {
                     populateNamedSets(cube, catalog, rows);
                 }
             }
@@ -6130,7 +6159,12 @@ TODO: see above
             throws XmlaException, SQLException
         {
             for (Schema schema : filter(catalog.getSchemas(), schemaNameCond)) {
-                for (Cube cube : filteredCubes(schema, cubeNameCond)) {
+                for (Cube cube
+                    : filteredCubes(
+                        schema,
+                        restrictedCubes(schema, CubeName),
+                        cubeNameCond))
+                {
                     populateCube(catalog, cube, rows);
                 }
             }
@@ -6357,11 +6391,10 @@ TODO: see above
 
     static Iterable<Cube> filteredCubes(
         final Schema schema,
+        Iterable<Cube> cubes,
         Util.Functor1<Boolean, Cube> cubeNameCond)
-        throws OlapException
     {
-        final Iterable<Cube> iterable =
-            filter(sortedCubes(schema), cubeNameCond);
+        final Iterable<Cube> iterable = filter(cubes, cubeNameCond);
         if (!cubeNameCond.apply(new SharedDimensionHolderCube(schema))) {
             return iterable;
         }
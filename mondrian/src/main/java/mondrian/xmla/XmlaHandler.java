@@ -1391,7 +1391,15 @@ public class XmlaHandler {
                     tabFields,
                     rowCountSlot);
             int rowCount = enableRowCount ? rowCountSlot[0] : -1;
-            return new TabularRowSet(resultSet, rowCount);
+            final TabularRowSet rowSet =
+                new TabularRowSet(resultSet, rowCount, statement, connection);
+            // The row set now owns the result set, statement and connection.
+            // It reads the rows as it writes the response, and closes them
+            // when it is closed.
+            resultSet = null;
+            statement = null;
+            connection = null;
+            return rowSet;
         } catch (XmlaException xex) {
             throw xex;
         } catch (SQLException sqle) {
@@ -1453,22 +1461,32 @@ public class XmlaHandler {
         private final List<Column> columns = new ArrayList<Column>();
         private final List<Object[]> rows;
         private int totalCount;
+        private ResultSet resultSet;
+        private java.sql.Statement statement;
+        private java.sql.Connection connection;
 
         /**
          * Creates a TabularRowSet based upon a SQL statement result.
          *
-         * <p>Does not close the ResultSet, on success or failure. Client
-         * must do it.
+         * <p>Does not read the rows; {@link #unparse} writes each row as it
+         * reads it from the result set, so that a large drill-through does
+         * not have to fit in memory. If the constructor succeeds, the row set
+         * owns the result set, statement and connection, and closes them in
+         * {@link #close}; if it fails, the client must close them.
          *
          * @param rs Result set
          * @param totalCount Total number of rows. If >= 0, writes the
          *   "totalCount" attribute into the XMLA response.
+         * @param statement Statement that produced the result set, or null
+         * @param connection Connection of the statement, or null
          *
          * @throws SQLException on error
          */
         public TabularRowSet(
             ResultSet rs,
-            int totalCount)
+            int totalCount,
+            java.sql.Statement statement,
+            java.sql.Connection connection)
             throws SQLException
         {
             this.totalCount = totalCount;
@@ -1483,18 +1501,10 @@ public class XmlaHandler {
                         md.getColumnType(i + 1),
                         md.getScale(i + 1)));
             }
-
-            // Populate data; assume that SqlStatement is already positioned
-            // on first row (or isDone() is true), and assume that the
-            // number of rows returned is limited.
-            rows = new ArrayList<Object[]>();
-            while (rs.next()) {
-                Object[] row = new Object[columnCount];
-                for (int i = 0; i < columnCount; i++) {
-                    row[i] = rs.getObject(i + 1);
-                }
-                rows.add(row);
-            }
+            this.rows = null;
+            this.resultSet = rs;
+            this.statement = statement;
+            this.connection = connection;
         }
 
         /**
@@ -1526,11 +1536,20 @@ public class XmlaHandler {
             rows.add(row);
         }
 
-        public void close() {
-            // no resources to close
+        public void close() throws SQLException {
+            final SQLException e =
+                Util.close(resultSet, statement, connection);
+            resultSet = null;
+            statement = null;
+            connection = null;
+            if (e != null) {
+                throw e;
+            }
         }
 
-        public void unparse(SaxWriter writer) throws SAXException {
+        public void unparse(SaxWriter writer)
+            throws SAXException, OlapException
+        {
             // write total count row if enabled
             if (totalCount >= 0) {
                 String countStr = Integer.toString(totalCount);
@@ -1543,29 +1562,52 @@ public class XmlaHandler {
                 writer.endElement(); // row
             }
 
-            for (Object[] row : rows) {
-                writer.startElement("row");
-                for (int i = 0; i < row.length; i++) {
-                    writer.startElement(
-                        columns.get(i).encodedName,
-                        new Object[] {
-                            "xsi:type",
-                            columns.get(i).xsdType});
-                    Object value = row[i];
-                    if (value == null) {
-                        writer.characters("null");
-                    } else {
-                        String valueString = value.toString();
-                        if (value instanceof Number) {
-                            valueString =
-                                XmlaUtil.normalizeNumericString(valueString);
-                        }
-                        writer.characters(valueString);
+            if (rows != null) {
+                for (Object[] row : rows) {
+                    unparseRow(writer, row);
+                }
+                return;
+            }
+
+            // Stream the rows. The result set is positioned before the first
+            // row; reading is paced by the writer, and the result set checks
+            // whether the statement has been canceled.
+            final Object[] row = new Object[columns.size()];
+            try {
+                while (resultSet.next()) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = resultSet.getObject(i + 1);
                     }
-                    writer.endElement();
+                    unparseRow(writer, row);
                 }
-                writer.endElement(); // row
+            } catch (SQLException e) {
+                throw new OlapException(
+                    "Error while reading drill-through rows", e);
+            }
+        }
+
+        private void unparseRow(SaxWriter writer, Object[] row) {
+            writer.startElement("row");
+            for (int i = 0; i < row.length; i++) {
+                writer.startElement(
+                    columns.get(i).encodedName,
+                    new Object[] {
+                        "xsi:type",
+                        columns.get(i).xsdType});
+                Object value = row[i];
+                if (value == null) {
+                    writer.characters("null");
+                } else {
+                    String valueString = value.toString();
+                    if (value instanceof Number) {
+                        valueString =
+                            XmlaUtil.normalizeNumericString(valueString);
+                    }
+                    writer.characters(valueString);
+                }
+                writer.endElement();
             }
+            writer.endElement(); // row
         }
 
         /**
@@ -14,6 +14,7 @@ import mondrian.util.XmlParserFactoryProducer;
 import mondrian.xmla.*;
 
 import org.olap4j.impl.Olap4jUtil;
+import org.olap4j.metadata.XmlaConstants.Method;
 
 import org.w3c.dom.*;
 import org.xml.sax.InputSource;
@@ -46,6 +47,18 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
     private static final String REQUIRE_AUTHENTICATED_SESSIONS =
         "requireAuthenticatedSessions";
 
+    /**
+     * Size of the encoded body of a drill-through response above which the
+     * body is sent as it is written, rather than buffered.
+     */
+    private static final int STREAM_THRESHOLD = 64 * 1024;
+
+    /**
+     * Marks a response body that {@link #handleSoapBody} has already sent,
+     * so that {@link #marshallSoapMessage} does not send it again.
+     */
+    private static final byte[] SENT_BODY = new byte[0];
+
     private DocumentBuilderFactory domFactory = null;
 
     private boolean requireAuthenticatedSessions = false;
@@ -482,6 +495,9 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
 
             Element xmlaReqElem = (dreqs.length == 0 ? ereqs[0] : dreqs[0]);
 
+            // The body is buffered, so that if processing fails the servlet
+            // can send a Fault instead, and so that post-action callbacks can
+            // see it. A large drill-through is the exception; see below.
             ByteArrayOutputStream osBuf = new ByteArrayOutputStream();
 
             // use context variable 'role_name' as this request's XML/A role
@@ -510,14 +526,46 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
                 }
             }
 
+            // The rows of a drill-through are read from a cursor, so do not
+            // hold them all here either: once the body is large, send it as
+            // it is written. If there are callbacks, they may need to see or
+            // change the body, so it is buffered as usual.
+            final StreamingBody streamingBody;
+            if (xmlaReq.getMethod() == Method.EXECUTE
+                && xmlaReq.isDrillThrough()
+                && responseMimeType == Enumeration.ResponseMimeType.SOAP
+                && context.get(CONTEXT_MIME_TYPE)
+                == Enumeration.ResponseMimeType.SOAP
+                && getCallbacks().isEmpty())
+            {
+                streamingBody =
+                    new StreamingBody(response, responseSoapParts[0], osBuf);
+            } else {
+                streamingBody = null;
+            }
+
             XmlaResponse xmlaRes =
-                new DefaultXmlaResponse(osBuf, encoding, responseMimeType);
+                new DefaultXmlaResponse(
+                    streamingBody != null ? streamingBody : osBuf,
+                    encoding,
+                    responseMimeType);
 
             try {
                 getXmlaHandler().process(xmlaReq, xmlaRes);
-            } catch (XmlaException ex) {
-                throw ex;
             } catch (Exception ex) {
+                if (streamingBody != null && streamingBody.isStarted()) {
+                    // Part of the body has been sent, so it is too late to
+                    // send a Fault. The client gets a truncated envelope.
+                    LOGGER.error(
+                        "Error while sending XML/A response; response is"
+                        + " incomplete",
+                        ex);
+                    responseSoapParts[1] = SENT_BODY;
+                    return;
+                }
+                if (ex instanceof XmlaException) {
+                    throw (XmlaException) ex;
+                }
                 throw new XmlaException(
                     SERVER_FAULT_FC,
                     HSB_PROCESS_CODE,
@@ -525,7 +573,12 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
                     ex);
             }
 
-            responseSoapParts[1] = osBuf.toByteArray();
+            if (streamingBody != null && streamingBody.isStarted()) {
+                streamingBody.finish();
+                responseSoapParts[1] = SENT_BODY;
+            } else {
+                responseSoapParts[1] = osBuf.toByteArray();
+            }
         } catch (XmlaException xex) {
             throw xex;
         } catch (Exception ex) {
@@ -543,12 +596,12 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
         Enumeration.ResponseMimeType responseMimeType)
         throws XmlaException
     {
+        if (responseSoapParts[1] == SENT_BODY) {
+            return;
+        }
         try {
             // If CharacterEncoding was set in web.xml, use this value
-            String encoding =
-                (charEncoding != null)
-                    ? charEncoding
-                    : response.getCharacterEncoding();
+            String encoding = getResponseEncoding(response);
 
             // Since we just reset response, encoding and content-type were
             // reset too
@@ -588,19 +641,9 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
 
                 case SOAP:
                 default:
-                    String s0 =
-                        "<?xml version=\"1.0\" encoding=\"" + encoding
-                        + "\"?>\n<" + SOAP_PREFIX + ":Envelope xmlns:"
-                        + SOAP_PREFIX + "=\"" + NS_SOAP_ENV_1_1 + "\" "
-                        + SOAP_PREFIX + ":encodingStyle=\""
-                        + NS_SOAP_ENC_1_1 + "\" >" + "\n<" + SOAP_PREFIX
-                        + ":Header>\n";
-                    String s2 =
-                        "</" + SOAP_PREFIX + ":Header>\n<" + SOAP_PREFIX
-                        + ":Body>\n";
-                    String s4 =
-                        "\n</" + SOAP_PREFIX + ":Body>\n</" + SOAP_PREFIX
-                        + ":Envelope>\n";
+                    String s0 = envelopeStart(encoding);
+                    String s2 = envelopeMiddle();
+                    String s4 = envelopeEnd();
 
                     byteChunks = new Object[] {
                         s0.getBytes(encoding),
@@ -680,6 +723,46 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
         }
     }
 
+    /**
+     * Returns the character encoding of the response: the one set in
+     * web.xml, if any, otherwise the response's.
+     */
+    private String getResponseEncoding(HttpServletResponse response) {
+        return charEncoding != null
+            ? charEncoding
+            : response.getCharacterEncoding();
+    }
+
+    /**
+     * Returns the start of a SOAP envelope, up to the contents of its
+     * header.
+     */
+    private static String envelopeStart(String encoding) {
+        return "<?xml version=\"1.0\" encoding=\"" + encoding
+            + "\"?>\n<" + SOAP_PREFIX + ":Envelope xmlns:"
+            + SOAP_PREFIX + "=\"" + NS_SOAP_ENV_1_1 + "\" "
+            + SOAP_PREFIX + ":encodingStyle=\""
+            + NS_SOAP_ENC_1_1 + "\" >" + "\n<" + SOAP_PREFIX
+            + ":Header>\n";
+    }
+
+    /**
+     * Returns the part of a SOAP envelope between the contents of its header
+     * and the contents of its body.
+     */
+    private static String envelopeMiddle() {
+        return "</" + SOAP_PREFIX + ":Header>\n<" + SOAP_PREFIX
+            + ":Body>\n";
+    }
+
+    /**
+     * Returns the end of a SOAP envelope, after the contents of its body.
+     */
+    private static String envelopeEnd() {
+        return "\n</" + SOAP_PREFIX + ":Body>\n</" + SOAP_PREFIX
+            + ":Envelope>\n";
+    }
+
     /**
      * This produces a SOAP 1.1 version Fault element - not a 1.2 version.
      *
@@ -862,5 +945,84 @@ public abstract class DefaultXmlaServlet extends XmlaServlet {
             this.password = password;
         }
     }
+
+    /**
+     * Output stream for the body of a response. Buffers the body until it
+     * reaches {@link #STREAM_THRESHOLD} bytes, then writes the start of the
+     * SOAP envelope and the buffered bytes to the HTTP response, and writes
+     * what follows straight through. Once it has started, the response can
+     * no longer be replaced by a Fault.
+     */
+    private class StreamingBody extends OutputStream {
+        private final HttpServletResponse response;
+        private final byte[] soapHeader;
+        private final ByteArrayOutputStream buffer;
+        private OutputStream out;
+
+        StreamingBody(
+            HttpServletResponse response,
+            byte[] soapHeader,
+            ByteArrayOutputStream buffer)
+        {
+            this.response = response;
+            this.soapHeader = soapHeader;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Returns whether any of the response has been sent.
+         */
+        boolean isStarted() {
+            return out != null;
+        }
+
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out != null) {
+                out.write(b, off, len);
+                return;
+            }
+            buffer.write(b, off, len);
+            if (buffer.size() >= STREAM_THRESHOLD) {
+                start();
+            }
+        }
+
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        private void start() throws IOException {
+            final String encoding = getResponseEncoding(response);
+            if (charEncoding != null) {
+                response.setCharacterEncoding(charEncoding);
+            }
+            response.setContentType("text/xml");
+            response.setStatus(HttpServletResponse.SC_OK);
+            out = response.getOutputStream();
+            out.write(envelopeStart(encoding).getBytes(encoding));
+            if (soapHeader != null) {
+                out.write(soapHeader);
+            }
+            out.write(envelopeMiddle().getBytes(encoding));
+            buffer.writeTo(out);
+            buffer.reset();
+        }
+
+        /**
+         * Writes the end of the envelope, after the whole body has been
+         * written.
+         */
+        void finish() throws IOException {
+            final String encoding = getResponseEncoding(response);
+            out.write(envelopeEnd().getBytes(encoding));
+            out.flush();
+        }
+    }
 }
 // End DefaultXmlaServlet.java